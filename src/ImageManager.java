@@ -1,3 +1,4 @@
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -6,7 +7,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 import javax.swing.UnsupportedLookAndFeelException;
+import textgimp.control.BatchProcessor;
 import textgimp.control.Controller;
 import textgimp.control.GUIGimpController;
 import textgimp.control.TextGimpController;
@@ -16,6 +22,10 @@ import textgimp.model.GuiGimpReadModel;
 import textgimp.model.Model;
 import textgimp.model.ReadOnlyModel;
 import textgimp.model.TextGimpModel;
+import textgimp.model.imagestore.ImageHistory;
+import textgimp.model.imagestore.ImageInterner;
+import textgimp.model.imagestore.ResultCache;
+import textgimp.model.imagestore.SpillingImageStore;
 import textgimp.view.TextGimpView;
 import textgimp.view.TextView;
 
@@ -26,9 +36,16 @@ import textgimp.view.TextView;
 public class ImageManager {
 
   private static String scriptFilePath; // Path to script file.
+  private static String[] batchArgs; // Pipeline, source, pattern and target of a batch.
   private static RunMode GimpRunMode; // True if controller runs on script.
   private static InputStream input; // Input stream for the application.
   private static OutputStream output; // OutputStream for the application.
+  private static long memoryBudget; // Image memory budget in bytes, 0 if unlimited.
+  private static int threads; // Number of threads running script commands.
+  private static int ioThreads; // Number of threads loading and saving files of batches, or 0.
+  private static long historyBudget; // Undo history budget of the GUI in bytes.
+  private static SpillingImageStore imageStore; // Budgeted image store, null if unlimited.
+  private static ImageInterner imageInterner; // Interner sharing identical images of the model.
 
   /**
    * Entry point for the Text Gimp Application.
@@ -49,8 +66,10 @@ public class ImageManager {
 
       System.out.println("Running TextGimp");
 
-      // run the application in Text or GUI mode
-      if (GimpRunMode != RunMode.GUI) {
+      // run the application in Batch, Text or GUI mode
+      if (GimpRunMode == RunMode.BATCH) {
+        runBatchGimp();
+      } else if (GimpRunMode != RunMode.GUI) {
         runTextGimp();
       } else {
         runGUIGimp();
@@ -72,6 +91,10 @@ public class ImageManager {
   private static void handleArgs(String[] args) {
     int i = 0;
     output = System.out;
+    memoryBudget = 0;
+    threads = 1;
+    ioThreads = 0;
+    historyBudget = ImageHistory.DEFAULT_BUDGET;
     GimpRunMode = RunMode.GUI;
     // handle arguments
     while (i < args.length) {
@@ -89,10 +112,31 @@ public class ImageManager {
           GimpRunMode = RunMode.TEXT;
           break;
 
+        case "-batch":
+          handleBatch(i, args);
+          i += 4;
+          break;
+
         case "-output":
           handleOutput(i++, args);
           break;
 
+        case "-memory":
+          handleMemory(i++, args);
+          break;
+
+        case "-threads":
+          handleThreads(i++, args);
+          break;
+
+        case "-io-threads":
+          handleIoThreads(i++, args);
+          break;
+
+        case "-history":
+          handleHistory(i++, args);
+          break;
+
         default:
           System.out.println("Unsupported argument");
       }
@@ -116,10 +160,30 @@ public class ImageManager {
    * Runs Text Gimp Application in interactive text mode.
    */
   private static void runTextGimp() {
-    Model model = new TextGimpModel();
+    Model model = createModel();
     TextView view = new TextGimpView(input, output);
-    Controller controller = new TextGimpController(model, view);
+    // scripts are analysed up front so images can be released after their last use
+    Controller controller = new TextGimpController(model, view, GimpRunMode == RunMode.SCRIPT,
+        threads, TextGimpModel::new);
     controller.run();
+    closeImageStore();
+  }
+
+  /**
+   * Runs a pipeline script on every matching file of a directory, without reading commands.
+   */
+  private static void runBatchGimp() {
+    TextView view = new TextGimpView(new ByteArrayInputStream(new byte[0]), output);
+    try {
+      List<String> pipeline = Files.readAllLines(Paths.get(batchArgs[0]));
+      BatchProcessor processor = ioThreads > 0
+          ? new BatchProcessor(TextGimpModel::new, ioThreads, threads, ioThreads)
+          : new BatchProcessor(TextGimpModel::new, threads);
+      view.displayResult(processor.run(pipeline, Paths.get(batchArgs[1]), batchArgs[2],
+          Paths.get(batchArgs[3]), view::displayResult));
+    } catch (IOException e) {
+      System.err.println("failed to open pipeline file:" + e.getMessage());
+    }
   }
 
   /**
@@ -127,14 +191,50 @@ public class ImageManager {
    */
   private static void runGUIGimp() throws UnsupportedLookAndFeelException,
           ClassNotFoundException, InstantiationException, IllegalAccessException {
-    Model model = new TextGimpModel();
+    Model model = createModel();
     ReadOnlyModel readOnlyModel = new GuiGimpReadModel(model);
     GUIView view = new SwingGUI(readOnlyModel);
-    GUIGimpController controller = new GUIGimpController(model, view);
+    GUIGimpController controller = new GUIGimpController(model, view, historyBudget);
     view.addFeatureHandler(controller.getFeature());
     controller.run();
   }
 
+  /**
+   * Create the model for the application. If a memory budget was passed, images are kept in a
+   * store that spills least recently used images to disk.
+   *
+   * @return model for the application.
+   */
+  private static Model createModel() {
+    if (memoryBudget > 0) {
+      try {
+        imageStore = new SpillingImageStore(memoryBudget);
+        imageInterner = new ImageInterner();
+        // results are only cached while the store keeps them, so they can be spilled
+        return new TextGimpModel(imageStore,
+            new ResultCache(ResultCache.DEFAULT_BUDGET, true), imageInterner);
+      } catch (IOException e) {
+        System.err.println("Failed to create spill directory, memory is not limited:"
+            + e.getMessage());
+      }
+    }
+    return new TextGimpModel();
+  }
+
+  /**
+   * Report the image store and deduplication metrics and delete spilled images, if a budgeted
+   * store is used.
+   */
+  private static void closeImageStore() {
+    if (imageStore == null) {
+      return;
+    }
+    PrintStream printer = new PrintStream(output, true);
+    printer.println(imageStore);
+    printer.println(imageInterner);
+    imageStore.close();
+  }
+
   /**
    * Display help message to the user. Used for displaying help for command arguments.
    */
@@ -144,7 +244,18 @@ public class ImageManager {
     System.out.println("-text: run the program in interactive text mode");
     System.out.println("-file: run scripts from a .tg file, must be "
         + "followed by file path. By default, TextGimp is interactive");
+    System.out.println("-batch: load every file of a directory matching a pattern as image, run "
+        + "a .tg pipeline on it and save image to a target directory, must be followed by the "
+        + "pipeline, the directory, the quoted pattern like '*.png' and the target directory");
     System.out.println("-output: redirect output of TextGimp to this file");
+    System.out.println("-memory: limit the memory used for images to this many megabytes, "
+        + "least recently used images are spilled to disk");
+    System.out.println("-threads: run independent commands of scripts and files of batches "
+        + "concurrently on this many threads");
+    System.out.println("-io-threads: load and save files of batches on this many threads each, "
+        + "half the number of threads by default");
+    System.out.println("-history: keep at most this many megabytes of undo history in the GUI, "
+        + "older steps are compressed and then dropped");
   }
 
   /**
@@ -162,6 +273,23 @@ public class ImageManager {
     }
   }
 
+  /**
+   * Handle the -batch argument, Obtain the pipeline, source directory, pattern and target
+   * directory, and run the application in batch mode.
+   *
+   * @param i    index of the argument
+   * @param args arguments passed to Manager
+   */
+  private static void handleBatch(int i, String[] args) {
+    if (i + 4 < args.length) {
+      batchArgs = new String[]{args[i + 1], args[i + 2], args[i + 3], args[i + 4]};
+      GimpRunMode = RunMode.BATCH;
+    } else {
+      System.err.println("-batch must be followed with a pipeline, a directory, a pattern and "
+          + "a target directory");
+    }
+  }
+
   /**
    * Handle the -output argument, Obtain the output path and set the output stream.
    *
@@ -180,6 +308,79 @@ public class ImageManager {
     }
   }
 
+  /**
+   * Handle the -memory argument, Obtain the memory budget for images in megabytes.
+   *
+   * @param i    index of the argument
+   * @param args arguments passed to Manager
+   */
+  private static void handleMemory(int i, String[] args) {
+    if (i + 1 < args.length) {
+      try {
+        memoryBudget = Long.parseLong(args[++i]) * 1024 * 1024;
+      } catch (NumberFormatException e) {
+        System.err.println("-memory must be followed by a number of megabytes");
+      }
+    } else {
+      System.err.println("-memory must be followed by a number of megabytes");
+    }
+  }
+
+  /**
+   * Handle the -threads argument, Obtain the number of threads running script commands.
+   *
+   * @param i    index of the argument
+   * @param args arguments passed to Manager
+   */
+  private static void handleThreads(int i, String[] args) {
+    if (i + 1 < args.length) {
+      try {
+        threads = Math.max(1, Integer.parseInt(args[++i]));
+      } catch (NumberFormatException e) {
+        System.err.println("-threads must be followed by a number of threads");
+      }
+    } else {
+      System.err.println("-threads must be followed by a number of threads");
+    }
+  }
+
+  /**
+   * Handle the -io-threads argument, Obtain the number of threads loading and saving files of
+   * batches.
+   *
+   * @param i    index of the argument
+   * @param args arguments passed to Manager
+   */
+  private static void handleIoThreads(int i, String[] args) {
+    if (i + 1 < args.length) {
+      try {
+        ioThreads = Math.max(1, Integer.parseInt(args[++i]));
+      } catch (NumberFormatException e) {
+        System.err.println("-io-threads must be followed by a number of threads");
+      }
+    } else {
+      System.err.println("-io-threads must be followed by a number of threads");
+    }
+  }
+
+  /**
+   * Handle the -history argument, Obtain the undo history budget of the GUI in megabytes.
+   *
+   * @param i    index of the argument
+   * @param args arguments passed to Manager
+   */
+  private static void handleHistory(int i, String[] args) {
+    if (i + 1 < args.length) {
+      try {
+        historyBudget = Math.max(1, Long.parseLong(args[++i])) * 1024 * 1024;
+      } catch (NumberFormatException e) {
+        System.err.println("-history must be followed by a number of megabytes");
+      }
+    } else {
+      System.err.println("-history must be followed by a number of megabytes");
+    }
+  }
+
   /**
    * Create a new file output stream.
    *
@@ -209,6 +410,6 @@ public class ImageManager {
    * Run modes for the application.
    */
   private enum RunMode {
-    TEXT, SCRIPT, GUI
+    TEXT, SCRIPT, BATCH, GUI
   }
 }
@@ -0,0 +1,285 @@
+package textgimp.control;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import textgimp.control.commands.CommandRunner;
+import textgimp.control.commands.ImageCommandRunner;
+import textgimp.model.Model;
+import textgimp.utility.Result;
+import textgimp.utility.ResultImpl;
+
+/**
+ * Applies a pipeline of commands to every matching file of a directory and saves the results to
+ * a target directory. Every file is loaded as the image named {@value #IMAGE_NAME}, the pipeline
+ * is run, and the image with that name is saved under the file name of the source.
+ *
+ * <p>Files go through three stages, each on its own pool of threads: decoding loads a file into
+ * a new model, processing runs the pipeline and encoding saves the image. Files are read and
+ * written by the stages themselves rather than through load and save commands, so paths may
+ * contain spaces. Stages hand files to
+ * each other through bounded queues, so files are decoded and encoded while others are processed,
+ * only a few files are in progress at any time, and a model is dropped as soon as its file is
+ * saved. Memory does not grow with the number of files.
+ */
+public class BatchProcessor {
+
+  /**
+   * Name of the image every file is loaded as and saved from.
+   */
+  public static final String IMAGE_NAME = "image";
+
+  private final Supplier<Model> models; // creates the model of every file.
+  private final int decoders; // number of threads loading files.
+  private final int processors; // number of threads running the pipeline.
+  private final int encoders; // number of threads saving files.
+
+  /**
+   * Create a batch processor running the pipeline on the given number of threads, and loading and
+   * saving files on half as many threads each.
+   *
+   * @param models  creates a new empty model for every file.
+   * @param threads number of threads running the pipeline, must be positive.
+   * @throws IllegalArgumentException if the model supplier is null or the number of threads is
+   *                                  not positive.
+   */
+  public BatchProcessor(Supplier<Model> models, int threads) throws IllegalArgumentException {
+    this(models, Math.max(1, threads / 2), threads, Math.max(1, threads / 2));
+  }
+
+  /**
+   * Create a batch processor with a pool of threads of the given size for every stage.
+   *
+   * @param models     creates a new empty model for every file.
+   * @param decoders   number of threads loading files, must be positive.
+   * @param processors number of threads running the pipeline, must be positive.
+   * @param encoders   number of threads saving files, must be positive.
+   * @throws IllegalArgumentException if the model supplier is null or a number of threads is not
+   *                                  positive.
+   */
+  public BatchProcessor(Supplier<Model> models, int decoders, int processors, int encoders)
+      throws IllegalArgumentException {
+    if (models == null) {
+      throw new IllegalArgumentException("Model supplier cannot be null.");
+    }
+    if (decoders < 1 || processors < 1 || encoders < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive");
+    }
+    this.models = models;
+    this.decoders = decoders;
+    this.processors = processors;
+    this.encoders = encoders;
+  }
+
+  /**
+   * Apply a pipeline to every file of a directory matching a pattern.
+   *
+   * @param pipeline commands applied to every image, they cannot run scripts or batches.
+   * @param source   directory of the files to process.
+   * @param pattern  glob pattern of the file names to process, like *.png.
+   * @param target   directory the results are saved to, created if it does not exist.
+   * @param output   consumer receiving the failure of every file, progress after every tenth of
+   *                 the files and a summary at the end.
+   * @return summary of the batch, failed if any file failed.
+   */
+  public Result run(List<String> pipeline, Path source, String pattern, Path target,
+      Consumer<Result> output) {
+    // validate the pipeline and the directories
+    for (String command : pipeline) {
+      String trimmed = command.trim();
+      if (trimmed.startsWith("run ") || trimmed.startsWith("batch ")) {
+        return new ResultImpl(false, "Pipelines cannot run scripts or batches: " + trimmed);
+      }
+    }
+    List<Path> files;
+    try {
+      files = this.listFiles(source, pattern);
+      Files.createDirectories(target);
+    } catch (IOException | RuntimeException e) {
+      return new ResultImpl(false, "Batch failed: " + e.getMessage());
+    }
+
+    // decode, process and encode files on separate pools of threads
+    PipelineExecutor<FileJob> executor = new PipelineExecutor<FileJob>()
+        .addStage("decode", this.decoders, this::decode)
+        .addStage("process", this.processors, job -> this.process(pipeline, job))
+        .addStage("encode", this.encoders, job -> this.encode(job, target));
+    int step = Math.max(1, files.size() / 10);
+    int[] counts = new int[2];
+    long[] bytes = new long[2];
+    long start = System.nanoTime();
+    try {
+      executor.run(files.stream().map(FileJob::new).iterator(), job -> {
+        bytes[0] += job.bytesRead;
+        bytes[1] += job.bytesWritten;
+        if (!job.result.isSuccess()) {
+          counts[1]++;
+          output.accept(job.result);
+        }
+        if (++counts[0] % step == 0 && counts[0] < files.size()) {
+          output.accept(new ResultImpl(true, String.format("Processed %d of %d files",
+              counts[0], files.size())));
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ResultImpl(false, "Batch interrupted");
+    } catch (RuntimeException e) {
+      return new ResultImpl(false, "Batch failed: " + e.getMessage());
+    }
+    return summary(files.size(), counts[1], bytes[0], bytes[1], System.nanoTime() - start,
+        executor.describeStages());
+  }
+
+  /**
+   * List the files of a directory matching a pattern, in the order of their names.
+   *
+   * @param source  the directory.
+   * @param pattern glob pattern of the file names.
+   * @return the matching regular files.
+   * @throws IOException if the directory cannot be read.
+   */
+  private List<Path> listFiles(Path source, String pattern) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(source, pattern)) {
+      for (Path file : stream) {
+        if (Files.isRegularFile(file)) {
+          files.add(file);
+        }
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  /**
+   * Load the file of a job into a new model.
+   *
+   * @param job the job of the file.
+   * @return the job, with the result of loading the file.
+   */
+  private FileJob decode(FileJob job) {
+    try {
+      byte[] content = Files.readAllBytes(job.file);
+      job.model = this.models.get();
+      job.model.load(content, IMAGE_NAME, imageType(job.file));
+      job.bytesRead = content.length;
+      job.result = new ResultImpl(true, "Successfully loaded the file");
+    } catch (IOException e) {
+      job.result = new ResultImpl(false, "Failed to read file: " + e.getMessage());
+    } catch (RuntimeException e) {
+      // decoders may fail with other exceptions on malformed files
+      job.result = new ResultImpl(false, "Unable to load file: " + e.getMessage());
+    }
+    return job;
+  }
+
+  /**
+   * Run the pipeline on the image of a job, if it was loaded.
+   *
+   * @param pipeline commands applied to the image.
+   * @param job      the job of the file.
+   * @return the job, with the result of the last command run.
+   */
+  private FileJob process(List<String> pipeline, FileJob job) {
+    if (!job.result.isSuccess()) {
+      return job;
+    }
+    CommandRunner runner = new ImageCommandRunner(job.model);
+    for (int i = 0; i < pipeline.size() && job.result.isSuccess(); i++) {
+      if (runner.isTerminating(pipeline.get(i))) {
+        break;
+      }
+      job.result = runner.runCommand(pipeline.get(i));
+    }
+    return job;
+  }
+
+  /**
+   * Save the image of a job, if the pipeline succeeded, and drop its model.
+   *
+   * @param job    the job of the file.
+   * @param target directory the image is saved to.
+   * @return the job, with the result of the file and the sizes of the files read and written.
+   */
+  private FileJob encode(FileJob job, Path target) {
+    String name = job.file.getFileName().toString();
+    if (job.result.isSuccess()) {
+      try {
+        byte[] content = job.model.save(IMAGE_NAME, imageType(job.file));
+        Files.write(target.resolve(name), content);
+        job.bytesWritten = content.length;
+        job.result = new ResultImpl(true, "Successfully saved file");
+      } catch (IOException e) {
+        job.result = new ResultImpl(false, "Save file failed: " + e.getMessage());
+      } catch (RuntimeException e) {
+        job.result = new ResultImpl(false, "Unable to save file: " + e.getMessage());
+      }
+    }
+    job.model = null;
+    if (!job.result.isSuccess()) {
+      job.result = new ResultImpl(false, name + ": " + job.result.getMessage());
+    }
+    return job;
+  }
+
+  /**
+   * Get the type of an image file from the extension of its name, like the load and save
+   * commands do.
+   *
+   * @param file the file.
+   * @return the extension of the file name.
+   */
+  private static String imageType(Path file) {
+    String name = file.getFileName().toString();
+    return name.substring(name.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Describe the number of files processed and the throughput of a batch.
+   *
+   * @param files        number of files.
+   * @param failed       number of files that failed.
+   * @param bytesRead    size of the files processed.
+   * @param bytesWritten size of the files saved.
+   * @param nanos        duration of the batch.
+   * @param stages       busy time of every stage.
+   * @return summary of the batch, failed if any file failed.
+   */
+  private static Result summary(int files, int failed, long bytesRead, long bytesWritten,
+      long nanos, String stages) {
+    double seconds = Math.max(nanos, 1) / 1e9;
+    return new ResultImpl(failed == 0, String.format("Processed %d files, %d failed, in %.2f s: "
+            + "%.1f files/s, %.1f MB/s read, %.1f MB/s written (%s)", files, failed, seconds,
+        (files - failed) / seconds, bytesRead / seconds / (1024 * 1024),
+        bytesWritten / seconds / (1024 * 1024), stages));
+  }
+
+  /**
+   * A file going through the stages of a batch, with the model it is loaded into and the result
+   * of the last command run on it.
+   */
+  private static final class FileJob {
+
+    private final Path file;
+    private Model model;
+    private Result result;
+    private long bytesRead;
+    private long bytesWritten;
+
+    /**
+     * Create the job of a file that is not loaded yet.
+     *
+     * @param file the file to process.
+     */
+    FileJob(Path file) {
+      this.file = file;
+    }
+  }
+}
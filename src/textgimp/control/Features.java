@@ -17,7 +17,8 @@ public interface Features {
   Result load(String path);
 
   /**
-   * Save the currently loaded image at the specified path.
+   * Save the currently loaded image at the specified path. This returns once the save is queued,
+   * the view is shown its result when the file is written.
    *
    * @param path path where image should be saved.
    */
@@ -35,7 +36,8 @@ public interface Features {
 
   /**
    * Split the currently loaded image into three images using the red, green, and blue channels and
-   * store them in three image paths provided.
+   * store them in three image paths provided. This returns once the split is queued, the view is
+   * shown its result when the files are written.
    *
    * @param redPath   path to red image file.
    * @param greenPath path to green image file.
@@ -52,7 +54,8 @@ public interface Features {
 
   /**
    * Combine three images into one using the red, green, and blue channels and display the result on
-   * the GUI. The three images must be the same size.
+   * the GUI. The three images must be the same size. This returns once the combination is
+   * queued, the view is shown its result when it is done.
    *
    * @param redPath   path to red image file.
    * @param greenPath path to green image file.
@@ -88,5 +91,23 @@ public interface Features {
    */
   Result dither();
 
+  /**
+   * Cancel the operations that are still running on the full image. The image goes back to the
+   * result of the last operation that was completed.
+   */
+  Result cancel();
+
+  /**
+   * Undo the last operation on the image and display the image as it was before it. This
+   * returns once the undo is queued, the view is shown its result when it is done.
+   */
+  Result undo();
+
+  /**
+   * Redo the last operation that was undone and display its result. This returns once the redo
+   * is queued, the view is shown its result when it is done.
+   */
+  Result redo();
+
 
 }
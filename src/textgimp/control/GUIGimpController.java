@@ -24,6 +24,18 @@ public class GUIGimpController implements GuiController {
     this.featureControl = new GuiFeatures(model, view);
   }
 
+  /**
+   * Initialize the controller with a model, a view and the budget of the undo history.
+   *
+   * @param model         model for the application
+   * @param view          GUI based view for the application
+   * @param historyBudget maximum number of bytes kept by the undo history
+   */
+  public GUIGimpController(Model model, GUIView view, long historyBudget) {
+    this.view = view;
+    this.featureControl = new GuiFeatures(model, view, historyBudget);
+  }
+
   @Override
   public void run() {
     this.view.showGUI();
@@ -1,21 +1,66 @@
 package textgimp.control;
 
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import textgimp.control.commands.CommandRunner;
 import textgimp.control.commands.ImageCommandRunner;
 import textgimp.guiview.GUIView;
 import textgimp.model.Model;
+import textgimp.model.betterimage.Region;
+import textgimp.model.imagestore.ImageHistory;
+import textgimp.model.macros.MacroProgress;
 import textgimp.utility.Result;
 import textgimp.utility.ResultImpl;
 
 /**
  * This class implements features for the GUI view. It contains callback methods for handling the
  * user input on the GUI view. Builds the string command and delegates it to the command objects.
+ *
+ * <p>The view is given a reduced preview of the target image, so displaying the image and its
+ * histograms does not depend on the size of the image. Operations are applied to the preview first
+ * and its result is displayed right away. The same operation is queued on the full image and runs
+ * in the background, one operation at a time in the order they were requested. When the queue is
+ * empty the preview is replaced by a preview of the full result. Saving and splitting are queued
+ * after the operations, so files are always written from the full image.
+ *
+ * <p>Features that only have a result once the full image is processed, like saving, splitting,
+ * combining, undo and redo, never wait for it: they return as soon as their work is queued and
+ * the view is given their result when it is done. The caller, usually the event dispatch thread,
+ * stays free to paint the progress and to cancel.
+ *
+ * <p>Once an image is displayed, the view is only told the region of the preview that changed, so
+ * it reads back that region and the histograms of the rows it covers. Nothing is refreshed when an
+ * operation leaves the preview as it was.
+ *
+ * <p>The view is told about the progress of the operation running on the full image. Cancelling
+ * interrupts it and drops the queued operations. Macros check for the interruption between bands
+ * of rows, the full image keeps its last completed result and the preview is rebuilt from it.
+ *
+ * <p>The model keeps the undo history of the full image within a memory budget. Undo and redo are
+ * queued like operations, so they apply to the result of every operation requested before them.
+ * A new image starts a new history.
  */
 public class GuiFeatures implements Features {
 
   private final CommandRunner imageCommandRunner;
   private final Model model;
   private final GUIView view;
+  private final ExecutorService worker;
+  private final Deque<Operation> queued;
+  private final long historyBudget;
+
+  // number of queued operations on the full image, guarded by previewLock
+  private final Object previewLock;
+  private int pending;
 
   // default image names - required while loading images from GUI
   private final String TARGET = "TARGET";
@@ -23,6 +68,13 @@ public class GuiFeatures implements Features {
   private final String TARGET_GREEN = "TARGET_GREEN";
   private final String TARGET_BLUE = "TARGET_BLUE";
 
+  // reduced copy of the target, used for display and histograms
+  private final String TARGET_PREVIEW = "TARGET_PREVIEW";
+
+  // the preview as it was last given to the view, to find the region that changed since
+  private final String TARGET_SHOWN = "TARGET_SHOWN";
+  private final int PREVIEW_SIZE = 1024;
+
   /**
    * Initialize the feature handler with model, view and command objects.
    *
@@ -30,159 +82,465 @@ public class GuiFeatures implements Features {
    * @param view  GUI view for the application
    */
   GuiFeatures(Model model, GUIView view) {
+    this(model, view, ImageHistory.DEFAULT_BUDGET);
+  }
+
+  /**
+   * Initialize the feature handler with model, view and the budget of the undo history.
+   *
+   * @param model         model for the application
+   * @param view          GUI view for the application
+   * @param historyBudget maximum number of bytes kept by the undo history
+   */
+  GuiFeatures(Model model, GUIView view, long historyBudget) {
+    this(model, view, Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "full-resolution");
+      thread.setDaemon(true);
+      return thread;
+    }), historyBudget);
+  }
+
+  /**
+   * Initialize the feature handler with model, view and the executor that applies operations to
+   * the full image. The executor must run its tasks one at a time, in the order they are given.
+   *
+   * @param model  model for the application
+   * @param view   GUI view for the application
+   * @param worker single thread executor for operations on the full image
+   */
+  GuiFeatures(Model model, GUIView view, ExecutorService worker) {
+    this(model, view, worker, ImageHistory.DEFAULT_BUDGET);
+  }
+
+  /**
+   * Initialize the feature handler with model, view, the executor that applies operations to the
+   * full image and the budget of the undo history.
+   *
+   * @param model         model for the application
+   * @param view          GUI view for the application
+   * @param worker        single thread executor for operations on the full image
+   * @param historyBudget maximum number of bytes kept by the undo history
+   */
+  GuiFeatures(Model model, GUIView view, ExecutorService worker, long historyBudget) {
     this.imageCommandRunner = new ImageCommandRunner(model);
     this.model = model;
     this.view = view;
+    this.worker = worker;
+    this.queued = new ConcurrentLinkedDeque<>();
+    this.historyBudget = historyBudget;
+    this.previewLock = new Object();
+    this.pending = 0;
   }
 
   @Override
   public Result load(String path) {
-    // build and run the load command using command runner
-    Result res = imageCommandRunner.runCommand(String.format("load %s %s", path, TARGET));
-    if (res.isSuccess()) {
-      view.displayImage(TARGET);
+    // decode a preview first and display it right away
+    Result res;
+    synchronized (this.previewLock) {
+      res = imageCommandRunner.runCommand(String.format("load-preview %d %s %s",
+          PREVIEW_SIZE, path, TARGET_PREVIEW));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      this.markShown();
+      this.pending++;
     }
+    view.displayImage(TARGET_PREVIEW);
+
+    // decode the full image in the background, the preview was readable so the file is too
+    this.queue("Loading", () -> {
+      Result loaded = imageCommandRunner.runCommand(String.format("load %s %s", path, TARGET));
+      if (loaded.isSuccess()) {
+        model.keepHistory(TARGET, this.historyBudget);
+      }
+      return loaded;
+    });
     return res;
   }
 
   @Override
   public Result save(String path) {
-    return imageCommandRunner.runCommand(String.format("save %s %s", path,
-        TARGET));
+    return this.commit("Saving", "Save file", () -> imageCommandRunner.runCommand(
+        String.format("save %s %s", path, TARGET)));
   }
 
   @Override
   public Result horizontalFlip() {
-    try {
-      model.horizontalFlip(TARGET, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully flipped the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to flip, no image loaded.");
-    }
+    return this.applyOperation("Flipping", model::horizontalFlip,
+        "Successfully flipped the image", "Failed to flip, no image loaded.");
   }
 
   @Override
   public Result verticalFlip() {
-    try {
-      model.verticalFlip(TARGET, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully flipped the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to flip, no image loaded.");
-    }
+    return this.applyOperation("Flipping", model::verticalFlip,
+        "Successfully flipped the image", "Failed to flip, no image loaded.");
   }
 
   @Override
   public Result rgbSplit(String redPath, String greenPath,
       String bluePath) {
-    try {
-      model.rgbSplit(TARGET, TARGET_RED, TARGET_GREEN, TARGET_BLUE);
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to split, no image loaded.");
-    }
-    Result res = imageCommandRunner.runCommand(String.format("save %s %s",
-        redPath,
-        TARGET_RED));
-    if (!res.isSuccess()) {
-      return res;
-    }
-    res = imageCommandRunner.runCommand(String.format("save %s %s", bluePath,
-        TARGET_BLUE));
-    if (!res.isSuccess()) {
-      return res;
-    }
-    res = imageCommandRunner.runCommand(String.format("save %s %s", greenPath,
-        TARGET_GREEN));
-    if (!res.isSuccess()) {
-      return res;
-    }
-    return new ResultImpl(true, "Successfully split the image and saved at "
-        + "the location");
+    return this.commit("Splitting", "RGB Split", () -> {
+      try {
+        model.rgbSplit(TARGET, TARGET_RED, TARGET_GREEN, TARGET_BLUE);
+      } catch (Exception e) {
+        return new ResultImpl(false, "Failed to split, no image loaded.");
+      }
+      Result res = imageCommandRunner.runCommand(String.format("save %s %s",
+          redPath,
+          TARGET_RED));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      res = imageCommandRunner.runCommand(String.format("save %s %s", bluePath,
+          TARGET_BLUE));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      res = imageCommandRunner.runCommand(String.format("save %s %s", greenPath,
+          TARGET_GREEN));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      return new ResultImpl(true, "Successfully split the image and saved at "
+          + "the location");
+    });
   }
 
   @Override
   public Result brighten(int amount) {
-    try {
-      model.brighten(TARGET, amount, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully brightened the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to split, no image loaded.");
-    }
+    return this.applyOperation("Brightening",
+        (source, dest) -> model.brighten(source, amount, dest),
+        "Successfully brightened the image", "Failed to split, no image loaded.");
   }
 
   @Override
   public Result rgbCombine(String redPath, String greenPath,
       String bluePath) {
-    Result res = imageCommandRunner.runCommand(String.format("load %s %s",
-        redPath,
-        TARGET_RED));
-    if (!res.isSuccess()) {
-      return res;
-    }
-    res = imageCommandRunner.runCommand(String.format("load %s %s", bluePath,
-        TARGET_BLUE));
-    if (!res.isSuccess()) {
-      return res;
-    }
-    res = imageCommandRunner.runCommand(String.format("load %s %s", greenPath,
-        TARGET_GREEN));
-    if (!res.isSuccess()) {
-      return res;
-    }
-    try {
-      model.rgbCombine(TARGET_RED, TARGET_GREEN,
-          TARGET_BLUE, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully combined the images");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to combine, images are not of the "
-          + "same size.");
+    // the combined image replaces the full image, so it is queued like an operation
+    synchronized (this.previewLock) {
+      this.pending++;
     }
+    this.queue("Combining", "RGB combine", () -> {
+      Result res = imageCommandRunner.runCommand(String.format("load %s %s",
+          redPath,
+          TARGET_RED));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      res = imageCommandRunner.runCommand(String.format("load %s %s", bluePath,
+          TARGET_BLUE));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      res = imageCommandRunner.runCommand(String.format("load %s %s", greenPath,
+          TARGET_GREEN));
+      if (!res.isSuccess()) {
+        return res;
+      }
+      try {
+        model.rgbCombine(TARGET_RED, TARGET_GREEN,
+            TARGET_BLUE, TARGET);
+        return new ResultImpl(true, "Successfully combined the images");
+      } catch (Exception e) {
+        return new ResultImpl(false, "Failed to combine, images are not of the "
+            + "same size.");
+      }
+    });
+    return new ResultImpl(true, "Combining...");
   }
 
   @Override
   public Result greyscale(String component) {
-    try {
-      model.greyscale(TARGET, component, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully greyscaled the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to greyscale, no image loaded.");
-    }
+    return this.applyOperation("Greyscaling",
+        (source, dest) -> model.greyscale(source, component, dest),
+        "Successfully greyscaled the image", "Failed to greyscale, no image loaded.");
   }
 
   @Override
   public Result filter(String filterType) {
-    try {
-      model.filter(TARGET, filterType, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully filtered the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to filtered, no image loaded.");
-    }
+    return this.applyOperation("Filtering",
+        (source, dest) -> model.filter(source, filterType, dest),
+        "Successfully filtered the image", "Failed to filtered, no image loaded.");
   }
 
   @Override
   public Result transform(String transformType) {
-    try {
-      model.transform(TARGET, transformType, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully transformed the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to transformed, no image loaded.");
-    }
+    return this.applyOperation("Transforming",
+        (source, dest) -> model.transform(source, transformType, dest),
+        "Successfully transformed the image", "Failed to transformed, no image loaded.");
   }
 
   @Override
   public Result dither() {
+    return this.applyOperation("Dithering", model::dither,
+        "Successfully dithered the image", "Failed to dithered, no image loaded.");
+  }
+
+  @Override
+  public Result cancel() {
+    // cancel the newest operations first, so no queued operation starts meanwhile
+    int cancelled = 0;
+    for (Iterator<Operation> it = this.queued.descendingIterator(); it.hasNext(); ) {
+      if (it.next().cancel(true)) {
+        cancelled++;
+      }
+    }
+    if (cancelled == 0) {
+      return new ResultImpl(true, "No operation to cancel.");
+    }
+    return new ResultImpl(true, "Cancelled " + cancelled + " operation(s).");
+  }
+
+  @Override
+  public Result undo() {
+    return this.step("Undoing", "Undo", () -> model.undo(TARGET),
+        "Undid the last operation.", "Nothing to undo.");
+  }
+
+  @Override
+  public Result redo() {
+    return this.step("Redoing", "Redo", () -> model.redo(TARGET),
+        "Redid the last undone operation.", "Nothing to redo.");
+  }
+
+  /**
+   * Queue a step through the history of the full image without waiting for it. The preview is
+   * rebuilt from the full image once no other operation is queued, and the view is then given the
+   * result of the step.
+   *
+   * @param task    description of the step, shown with its progress
+   * @param action  description of the action shown with the result
+   * @param step    the step to take
+   * @param success message shown if the step was taken
+   * @param failure message shown if there was no step to take
+   * @return a successful result saying the step was queued
+   */
+  private Result step(String task, String action, Runnable step, String success,
+      String failure) {
+    synchronized (this.previewLock) {
+      this.pending++;
+    }
+    this.queue(task, action, () -> {
+      try {
+        step.run();
+      } catch (IllegalArgumentException e) {
+        return new ResultImpl(false, failure);
+      }
+      return new ResultImpl(true, success);
+    });
+    return new ResultImpl(true, task + "...");
+  }
+
+  /**
+   * Apply an operation to the preview and display the result, then queue the same operation on
+   * the full image.
+   *
+   * @param task      description of the operation, shown with its progress
+   * @param operation the operation, given the source and destination image names
+   * @param success   message returned if the operation was applied to the preview
+   * @param failure   message returned if the operation failed
+   * @return the result of applying the operation to the preview
+   */
+  private Result applyOperation(String task, BiConsumer<String, String> operation,
+      String success, String failure) {
+    // apply the operation to the preview, it fails if no image is loaded
+    Region changed;
+    synchronized (this.previewLock) {
+      try {
+        operation.accept(TARGET_PREVIEW, TARGET_PREVIEW);
+      } catch (Exception e) {
+        return new ResultImpl(false, failure);
+      }
+      changed = this.markShown();
+      this.pending++;
+    }
+    this.refresh(changed);
+
+    // queue the operation on the full image, if it fails the next preview shows the full image
+    this.queue(task, () -> {
+      operation.accept(TARGET, TARGET);
+      return new ResultImpl(true, success);
+    });
+    return new ResultImpl(true, success);
+  }
+
+  /**
+   * Queue a task on the full image. The caller must have counted it as pending.
+   *
+   * @param task description of the task, shown with its progress
+   * @param work the work to do
+   */
+  private void queue(String task, Supplier<Result> work) {
+    this.queue(task, null, work);
+  }
+
+  /**
+   * Queue a task on the full image whose result is given to the view once the task is finished.
+   * The caller must have counted it as pending.
+   *
+   * @param task   description of the task, shown with its progress
+   * @param action description of the action shown with the result, or null to drop the result
+   * @param work   the work to do
+   */
+  private void queue(String task, String action, Supplier<Result> work) {
+    Operation operation = new Operation(task, action, work);
+    this.queued.add(operation);
+    this.worker.execute(operation);
+  }
+
+  /**
+   * Mark a queued operation on the full image as done. When no other operation is queued, the
+   * preview is replaced by a preview of the full image and displayed. Operations applied to the
+   * preview hold the same lock, so they are never overwritten by an older full image.
+   */
+  private void finishOperation() {
+    Region changed;
+    synchronized (this.previewLock) {
+      this.pending--;
+      if (this.pending > 0) {
+        return;
+      }
+      try {
+        model.preview(TARGET, PREVIEW_SIZE, TARGET_PREVIEW);
+      } catch (Exception e) {
+        // no full image was loaded, keep the current preview
+        return;
+      }
+      changed = this.markShown();
+    }
+    this.refresh(changed);
+  }
+
+  /**
+   * Find the region where the preview differs from the preview last given to the view, and keep
+   * the preview as the one given to the view. The caller must hold the preview lock, so the
+   * regions of consecutive changes cover every change between them.
+   *
+   * @return the changed region, or null if the preview did not change
+   */
+  private Region markShown() {
+    Region changed;
     try {
-      model.dither(TARGET, TARGET);
-      view.displayImage(TARGET);
-      return new ResultImpl(true, "Successfully dithered the image");
-    } catch (Exception e) {
-      return new ResultImpl(false, "Failed to dithered, no image loaded.");
+      changed = model.getChangedRegion(TARGET_SHOWN, TARGET_PREVIEW);
+    } catch (IllegalArgumentException e) {
+      // nothing was shown yet
+      changed = model.getBounds(TARGET_PREVIEW);
+    }
+
+    // the preview of a preview is the same image, so this keeps it without copying
+    model.preview(TARGET_PREVIEW, PREVIEW_SIZE, TARGET_SHOWN);
+    return changed;
+  }
+
+  /**
+   * Refresh the changed region of the preview in the view.
+   *
+   * @param changed the changed region, or null if nothing changed
+   */
+  private void refresh(Region changed) {
+    if (changed != null) {
+      view.refreshImage(TARGET_PREVIEW, changed);
+    }
+  }
+
+  /**
+   * Run a task after every queued operation on the full image without waiting for it. The view
+   * is given its result when it is done.
+   *
+   * @param task   description of the task, returned while it is queued
+   * @param action description of the action shown with the result
+   * @param work   the work to do
+   * @return a successful result saying the task was queued
+   */
+  private Result commit(String task, String action, Supplier<Result> work) {
+    this.worker.execute(() -> {
+      Result result;
+      try {
+        result = work.get();
+      } catch (RuntimeException e) {
+        result = new ResultImpl(false, "Failed to process the image: " + e.getMessage());
+      }
+      view.showResult(action, result);
+    });
+    return new ResultImpl(true, task + "...");
+  }
+
+  /**
+   * This class represents an operation queued on the full image. It reports its progress to the
+   * view and is finished exactly once: when it stops running, or when it is cancelled before it
+   * started. Its result is given to the view once the preview was rebuilt from it.
+   */
+  private final class Operation extends FutureTask<Result> {
+
+    private final String task;
+    private final String action;
+    private final AtomicBoolean started;
+
+    /**
+     * Create an operation that reports the progress of its macros to the view.
+     *
+     * @param task   description of the operation
+     * @param action description of the action shown with the result, or null to drop the result
+     * @param work   the work to do
+     */
+    Operation(String task, String action, Supplier<Result> work) {
+      super(() -> MacroProgress.track(work, value -> view.showProgress(task, value)));
+      this.task = task;
+      this.action = action;
+      this.started = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void run() {
+      if (!this.started.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        view.showProgress(this.task, 0);
+        super.run();
+      } finally {
+        // clear the interrupt of a cancelled operation before rebuilding the preview
+        Thread.interrupted();
+        view.showProgress(this.task, 1);
+        queued.remove(this);
+        finishOperation();
+        this.report();
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+      // a running operation is finished when it stops, one that never started is finished here
+      if (cancelled && this.started.compareAndSet(false, true)) {
+        queued.remove(this);
+        finishOperation();
+        this.report();
+      }
+      return cancelled;
+    }
+
+    /**
+     * Give the result of the finished operation to the view, if it has an action.
+     */
+    private void report() {
+      if (this.action == null) {
+        return;
+      }
+      Result result;
+      try {
+        result = this.get();
+      } catch (CancellationException e) {
+        result = new ResultImpl(false, "Operation was cancelled.");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        result = new ResultImpl(false, "Interrupted while waiting for the image.");
+      } catch (ExecutionException e) {
+        result = new ResultImpl(false, "Failed to process the image: "
+            + e.getCause().getMessage());
+      }
+      view.showResult(this.action, result);
     }
   }
 }
@@ -0,0 +1,262 @@
+package textgimp.control;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs items through a sequence of stages, every stage on its own pool of threads. Stages hand
+ * items to the next stage through bounded queues, so a stage waiting for the disk does not stop
+ * the others from using the processor, and a slow stage holds back the stages before it instead
+ * of letting items pile up. Every queue holds as many items as the stage reading it has threads.
+ *
+ * <p>Items leave the last stage in the order they finish, not in the order they were given.
+ *
+ * @param <T> type of the items, every stage returns the item passed to the next one.
+ */
+class PipelineExecutor<T> {
+
+  // marks the end of the items in a queue
+  private static final Object END = new Object();
+
+  // how long a thread waits to hand on the end marker before checking if the run has stopped
+  private static final long END_WAIT_MILLIS = 10;
+
+  private final List<String> names;
+  private final List<Integer> threads;
+  private final List<UnaryOperator<T>> operations;
+  private final List<AtomicLong> busy;
+
+  /**
+   * Create a pipeline without stages.
+   */
+  PipelineExecutor() {
+    this.names = new ArrayList<>();
+    this.threads = new ArrayList<>();
+    this.operations = new ArrayList<>();
+    this.busy = new ArrayList<>();
+  }
+
+  /**
+   * Add a stage after the existing ones.
+   *
+   * @param name      name of the stage, used when describing the pipeline.
+   * @param threads   number of threads running the stage.
+   * @param operation operation applied to every item by the stage, it should report failures in
+   *                  the item it returns rather than throw. Items it returns null for are
+   *                  dropped.
+   * @return this pipeline.
+   * @throws IllegalArgumentException if the operation is null or the number of threads is not
+   *                                  positive.
+   */
+  PipelineExecutor<T> addStage(String name, int threads, UnaryOperator<T> operation)
+      throws IllegalArgumentException {
+    if (operation == null) {
+      throw new IllegalArgumentException("Stage operation cannot be null.");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive");
+    }
+    this.names.add(name);
+    this.threads.add(threads);
+    this.operations.add(operation);
+    this.busy.add(new AtomicLong());
+    return this;
+  }
+
+  /**
+   * Run every item through the stages. Items are read from the iterator on a separate thread, and
+   * the sink is called on the calling thread as items leave the last stage. The first exception or
+   * error thrown by a stage or by the iterator is rethrown once every other item has been
+   * processed, a checked exception is wrapped in an IllegalStateException.
+   *
+   * @param items items to process.
+   * @param sink  consumer receiving every processed item.
+   * @throws IllegalStateException if the pipeline has no stages.
+   * @throws InterruptedException  if the calling thread is interrupted, the stages are then
+   *                               stopped.
+   */
+  void run(Iterator<T> items, Consumer<T> sink) throws IllegalStateException,
+      InterruptedException {
+    int count = this.operations.size();
+    if (count == 0) {
+      throw new IllegalStateException("Pipeline has no stages.");
+    }
+
+    // queue i feeds stage i, the last queue holds the processed items
+    List<BlockingQueue<Object>> queues = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      queues.add(new ArrayBlockingQueue<>(this.threads.get(i)));
+    }
+    queues.add(new ArrayBlockingQueue<>(this.threads.get(count - 1)));
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    AtomicBoolean stopped = new AtomicBoolean();
+    List<ExecutorService> pools = new ArrayList<>();
+    try {
+      ExecutorService feeder = Executors.newSingleThreadExecutor();
+      pools.add(feeder);
+      feeder.execute(() -> feed(items, queues.get(0), failure, stopped));
+      for (int i = 0; i < count; i++) {
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads.get(i));
+        pools.add(pool);
+        AtomicInteger running = new AtomicInteger(this.threads.get(i));
+        for (int t = 0; t < this.threads.get(i); t++) {
+          int stage = i;
+          pool.execute(() -> this.work(stage, queues.get(stage), queues.get(stage + 1), running,
+              failure, stopped));
+        }
+      }
+
+      // drain the last queue until every stage has finished
+      BlockingQueue<Object> results = queues.get(count);
+      for (Object item = results.take(); item != END; item = results.take()) {
+        sink.accept(this.cast(item));
+      }
+    } finally {
+      stopped.set(true);
+      pools.forEach(ExecutorService::shutdownNow);
+    }
+
+    Throwable thrown = failure.get();
+    if (thrown instanceof RuntimeException) {
+      throw (RuntimeException) thrown;
+    } else if (thrown instanceof Error) {
+      throw (Error) thrown;
+    } else if (thrown != null) {
+      throw new IllegalStateException(thrown);
+    }
+  }
+
+  /**
+   * Get the time every stage spent processing items during the last runs, summed over its threads.
+   *
+   * @return the busy time of every stage, like "decode 1.20 s on 2 threads".
+   */
+  String describeStages() {
+    List<String> stages = new ArrayList<>();
+    for (int i = 0; i < this.names.size(); i++) {
+      stages.add(String.format("%s %.2f s on %d threads", this.names.get(i),
+          this.busy.get(i).get() / 1e9, this.threads.get(i)));
+    }
+    return String.join(", ", stages);
+  }
+
+  /**
+   * Put every item in the first queue, followed by the end marker. The end marker is put even if
+   * the iterator fails.
+   *
+   * @param items   items to process.
+   * @param queue   the first queue.
+   * @param failure first exception or error thrown while processing items.
+   * @param stopped true once the run has stopped.
+   */
+  private static void feed(Iterator<?> items, BlockingQueue<Object> queue,
+      AtomicReference<Throwable> failure, AtomicBoolean stopped) {
+    try {
+      while (items.hasNext()) {
+        queue.put(items.next());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      putEnd(queue, stopped);
+    }
+  }
+
+  /**
+   * Apply the operation of a stage to items of its queue until the end marker. The last thread of
+   * the stage to finish passes the end marker on to the next stage, even if threads of the stage
+   * stop early, so the run always ends.
+   *
+   * @param stage   index of the stage.
+   * @param input   queue of the items to process.
+   * @param output  queue of the next stage.
+   * @param running number of threads of the stage that have not finished.
+   * @param failure first exception or error thrown while processing items.
+   * @param stopped true once the run has stopped.
+   */
+  private void work(int stage, BlockingQueue<Object> input, BlockingQueue<Object> output,
+      AtomicInteger running, AtomicReference<Throwable> failure, AtomicBoolean stopped) {
+    boolean ended = false;
+    try {
+      for (Object item = input.take(); item != END; item = input.take()) {
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+          result = this.operations.get(stage).apply(this.cast(item));
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+        this.busy.get(stage).addAndGet(System.nanoTime() - start);
+
+        // an item whose stage failed is dropped
+        if (result != null) {
+          output.put(result);
+        }
+      }
+      ended = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      // the end marker taken by this thread is left for the other threads of the stage
+      if (running.decrementAndGet() == 0) {
+        putEnd(output, stopped);
+      } else if (ended) {
+        putEnd(input, stopped);
+      }
+    }
+  }
+
+  /**
+   * Put the end marker in a queue, waiting for room even if the thread is interrupted, until the
+   * run stops.
+   *
+   * @param queue   the queue.
+   * @param stopped true once the run has stopped.
+   */
+  private static void putEnd(BlockingQueue<Object> queue, AtomicBoolean stopped) {
+    boolean interrupted = Thread.interrupted();
+    try {
+      while (!stopped.get()) {
+        try {
+          if (queue.offer(END, END_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Cast an item taken from a queue. Queues only hold items and the end marker.
+   *
+   * @param item the item.
+   * @return the item as its type.
+   */
+  @SuppressWarnings("unchecked")
+  private T cast(Object item) {
+    return (T) item;
+  }
+}
@@ -0,0 +1,173 @@
+package textgimp.control;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import textgimp.control.commands.CommandAccess;
+import textgimp.control.commands.CommandRunner;
+import textgimp.utility.Result;
+
+/**
+ * Runs the commands of a script concurrently on a pool of worker threads. The scheduler builds a
+ * dependency graph over the images and files read and written by every command. A command starts
+ * once every earlier command writing something it uses, or reading something it writes, has
+ * finished. Results are reported in the order of the script, so the output is the same as when
+ * the script is run one command at a time.
+ */
+class ScriptScheduler {
+
+  private final CommandRunner commandRunner; // runs and describes single commands.
+  private final int threads; // number of worker threads.
+
+  /**
+   * Create a scheduler running commands with the given command runner.
+   *
+   * @param commandRunner runner used to describe and run every command.
+   * @param threads       number of worker threads, must be positive.
+   * @throws IllegalArgumentException if the number of threads is not positive.
+   */
+  ScriptScheduler(CommandRunner commandRunner, int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive");
+    }
+    this.commandRunner = commandRunner;
+    this.threads = threads;
+  }
+
+  /**
+   * Run the commands of a script. Commands after the first quit command are not run.
+   *
+   * @param commands commands of the script, in order. Scripts running other scripts are not
+   *                 supported.
+   * @param releases images to unload silently after each command, by command index.
+   * @param output   consumer receiving the result of every command in script order.
+   * @return true if the script contains a command quitting the application.
+   */
+  boolean run(List<String> commands, Map<Integer, List<String>> releases,
+      Consumer<Result> output) {
+    // expand the script into tasks, releases are silent tasks writing the released image
+    List<String> tasks = new ArrayList<>();
+    List<Boolean> silent = new ArrayList<>();
+    for (int i = 0; i < commands.size(); i++) {
+      tasks.add(commands.get(i));
+      silent.add(false);
+      if (commandRunner.isTerminating(commands.get(i))) {
+        break;
+      }
+      for (String imageName : releases.getOrDefault(i, List.of())) {
+        tasks.add("unload " + imageName);
+        silent.add(true);
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+    try {
+      List<CompletableFuture<Result>> futures = submit(tasks, executor);
+
+      // report results in script order
+      for (int i = 0; i < tasks.size(); i++) {
+        Result result = join(futures.get(i));
+        if (!silent.get(i)) {
+          output.accept(result);
+        }
+        if (result.isTerminating()) {
+          return true;
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return false;
+  }
+
+  /**
+   * Submit every task to the executor once the tasks it depends on have finished.
+   *
+   * @param tasks    commands to run, in order.
+   * @param executor executor running the commands.
+   * @return future result of every task.
+   */
+  private List<CompletableFuture<Result>> submit(List<String> tasks, ExecutorService executor) {
+    List<CompletableFuture<Result>> futures = new ArrayList<>();
+    Map<String, Integer> lastWriter = new HashMap<>();
+    Map<String, List<Integer>> readers = new HashMap<>();
+
+    for (int i = 0; i < tasks.size(); i++) {
+      CommandAccess access = commandRunner.getAccess(tasks.get(i));
+      Set<String> reads = new HashSet<>();
+      Set<String> writes = new HashSet<>();
+      access.getReadImages().forEach(name -> reads.add("image:" + name));
+      access.getWrittenImages().forEach(name -> writes.add("image:" + name));
+      access.getReadFiles().forEach(path -> reads.add("file:" + normalize(path)));
+      access.getWrittenFiles().forEach(path -> writes.add("file:" + normalize(path)));
+
+      // a read waits for the last write, a write waits for the last write and the reads after it
+      Set<Integer> dependencies = new HashSet<>();
+      for (String resource : reads) {
+        dependencies.add(lastWriter.getOrDefault(resource, -1));
+      }
+      for (String resource : writes) {
+        dependencies.add(lastWriter.getOrDefault(resource, -1));
+        dependencies.addAll(readers.getOrDefault(resource, List.of()));
+      }
+      dependencies.remove(-1);
+      dependencies.remove(i);
+
+      // record this task as the latest access of its resources
+      for (String resource : reads) {
+        readers.computeIfAbsent(resource, k -> new ArrayList<>()).add(i);
+      }
+      for (String resource : writes) {
+        lastWriter.put(resource, i);
+        readers.remove(resource);
+      }
+
+      String command = tasks.get(i);
+      CompletableFuture<?>[] before = dependencies.stream().map(futures::get)
+          .toArray(CompletableFuture[]::new);
+      futures.add(CompletableFuture.allOf(before)
+          .thenApplyAsync(v -> commandRunner.runCommand(command), executor));
+    }
+    return futures;
+  }
+
+  /**
+   * Normalize a file path so that different spellings of the same file share dependencies.
+   *
+   * @param path file path as written in the script.
+   * @return absolute normalized path, or the path itself if it is not valid.
+   */
+  private static String normalize(String path) {
+    try {
+      return Paths.get(path).toAbsolutePath().normalize().toString();
+    } catch (RuntimeException e) {
+      return path;
+    }
+  }
+
+  /**
+   * Wait for a task and return its result, rethrowing any unchecked exception of the command.
+   *
+   * @param future future result of the task.
+   * @return result of the task.
+   */
+  private static Result join(CompletableFuture<Result> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
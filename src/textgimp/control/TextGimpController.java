@@ -3,10 +3,19 @@ package textgimp.control;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.function.Supplier;
+import textgimp.control.commands.CommandAccess;
 import textgimp.control.commands.ImageCommandRunner;
 import textgimp.model.Model;
 import textgimp.utility.Result;
@@ -17,12 +26,26 @@ import textgimp.view.TextView;
  * Controller for TextGimp Application. Handles user interactions, validates commands, and uses
  * command objects to call appropriate methods in the model. Also, displays the results using the
  * view.
+ *
+ * <p>When created with image release enabled, the whole input is read as a script before it is
+ * run, and every image is unloaded right after the last command that uses it. This keeps only the
+ * images that are still needed in memory.
+ *
+ * <p>When created with more than one thread, commands of scripts are run concurrently whenever
+ * they do not depend on each other's images or files. Results are still displayed in the order of
+ * the script.
+ *
+ * <p>When created with a supplier of models, batch commands apply a pipeline script to every
+ * matching file of a directory, each file in its own model, on as many threads as scripts.
  */
 public class TextGimpController implements Controller {
 
   private final TextView view; // TextGimp View to be used in this controller.
   private final Set<String> runningScripts; // A set of scripts that are currently running.
   private final ImageCommandRunner imageCommandRunner; // object to validate and run commands.
+  private final boolean releaseImages; // True if images are unloaded after their last use.
+  private final ScriptScheduler scheduler; // Runs scripts concurrently, null if sequential.
+  private final BatchProcessor batchProcessor; // Runs batches, null if they are not supported.
 
   /**
    * Constructs a TextGimpController object and initialize the view and model and command objects
@@ -32,9 +55,61 @@ public class TextGimpController implements Controller {
    * @param view  view to read input and display output.
    */
   public TextGimpController(Model model, TextView view) {
+    this(model, view, false);
+  }
+
+  /**
+   * Constructs a TextGimpController object that optionally treats its whole input as a script and
+   * unloads images after their last use.
+   *
+   * @param model         model to run the commands on.
+   * @param view          view to read input and display output.
+   * @param releaseImages true if images should be unloaded after their last use.
+   */
+  public TextGimpController(Model model, TextView view, boolean releaseImages) {
+    this(model, view, releaseImages, 1);
+  }
+
+  /**
+   * Constructs a TextGimpController object that optionally unloads images after their last use
+   * and runs independent commands of scripts concurrently.
+   *
+   * @param model         model to run the commands on, must be thread-safe if threads is more
+   *                      than one.
+   * @param view          view to read input and display output.
+   * @param releaseImages true if images should be unloaded after their last use.
+   * @param threads       number of threads running script commands, 1 to run them in order.
+   * @throws IllegalArgumentException if the number of threads is not positive.
+   */
+  public TextGimpController(Model model, TextView view, boolean releaseImages, int threads)
+      throws IllegalArgumentException {
+    this(model, view, releaseImages, threads, null);
+  }
+
+  /**
+   * Constructs a TextGimpController object that optionally unloads images after their last use,
+   * runs independent commands of scripts concurrently and runs batches of files.
+   *
+   * @param model         model to run the commands on, must be thread-safe if threads is more
+   *                      than one.
+   * @param view          view to read input and display output.
+   * @param releaseImages true if images should be unloaded after their last use.
+   * @param threads       number of threads running script commands and files of batches.
+   * @param batchModels   creates the model of every file of a batch, or null if batches are not
+   *                      supported.
+   * @throws IllegalArgumentException if the number of threads is not positive.
+   */
+  public TextGimpController(Model model, TextView view, boolean releaseImages, int threads,
+      Supplier<Model> batchModels) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive");
+    }
     this.view = view;
     this.imageCommandRunner = new ImageCommandRunner(model);
     this.runningScripts = new HashSet<String>();
+    this.releaseImages = releaseImages;
+    this.scheduler = threads > 1 ? new ScriptScheduler(this.imageCommandRunner, threads) : null;
+    this.batchProcessor = batchModels != null ? new BatchProcessor(batchModels, threads) : null;
   }
 
   /**
@@ -60,6 +135,12 @@ public class TextGimpController implements Controller {
       return runFromFile(command.substring(4));
     }
 
+    // run a batch of files
+    if (command.startsWith("batch ")) {
+      runBatch(command.substring(6));
+      return false;
+    }
+
     result = imageCommandRunner.runCommand(command);
 
     // display result
@@ -88,14 +169,12 @@ public class TextGimpController implements Controller {
     try (InputStream fileInput = new FileInputStream(filePath)) {
       Scanner scanner = new Scanner(fileInput);
 
-      // read commands from file and run them
+      // read commands from file and run them, images of nested scripts may be used by the caller
+      List<String> commands = new ArrayList<>();
       while (scanner.hasNextLine()) {
-        String command = scanner.nextLine();
-        boolean quitApplication = runCommand(command);
-        if (quitApplication) {
-          return true;
-        }
+        commands.add(scanner.nextLine());
       }
+      return runScript(commands, false);
     } catch (IOException e) {
       // display error message
       result = new ResultImpl(false, "Load file failed:" + e.getMessage());
@@ -108,12 +187,165 @@ public class TextGimpController implements Controller {
     return false;
   }
 
+  /**
+   * Run a pipeline script on every matching file of a directory, displaying failures, progress
+   * and a summary.
+   *
+   * @param arguments the pipeline script, the source directory, the pattern of file names and the
+   *                  target directory, separated by spaces. Arguments containing spaces are
+   *                  enclosed in double quotes.
+   */
+  private void runBatch(String arguments) {
+    String[] args = splitArguments(arguments);
+    if (this.batchProcessor == null) {
+      sendToView(new ResultImpl(false, "Batches are not supported."));
+      return;
+    }
+    if (args.length != 4) {
+      sendToView(new ResultImpl(false, "Incorrect usage.\n"
+          + "batch <pipeline> <source-dir> <pattern> <target-dir>\n"
+          + "\t\tQuote paths that contain spaces, like \"my photos\"."));
+      return;
+    }
+
+    // validate and read the pipeline script
+    Result result = validateScript(args[0]);
+    if (!result.isSuccess()) {
+      sendToView(result);
+      return;
+    }
+    try {
+      List<String> pipeline = Files.readAllLines(Paths.get(args[0]));
+      sendToView(this.batchProcessor.run(pipeline, Paths.get(args[1]), args[2],
+          Paths.get(args[3]), this::sendToView));
+    } catch (IOException | InvalidPathException e) {
+      sendToView(new ResultImpl(false, "Load file failed:" + e.getMessage()));
+    }
+  }
+
+  /**
+   * Split arguments at spaces, except for spaces between double quotes. The quotes themselves are
+   * removed.
+   *
+   * @param arguments the arguments.
+   * @return every argument, without empty ones.
+   */
+  private static String[] splitArguments(String arguments) {
+    List<String> args = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean quoted = false;
+    boolean started = false;
+    for (char c : arguments.toCharArray()) {
+      if (c == '"') {
+        quoted = !quoted;
+        started = true;
+      } else if (c == ' ' && !quoted) {
+        if (started) {
+          args.add(current.toString());
+          current.setLength(0);
+          started = false;
+        }
+      } else {
+        current.append(c);
+        started = true;
+      }
+    }
+    if (started) {
+      args.add(current.toString());
+    }
+    return args.toArray(new String[0]);
+  }
+
+  /**
+   * Run a list of commands read from a script, optionally unloading images after their last use.
+   * Scripts that do not run other scripts are run concurrently if the controller has more than one
+   * thread.
+   *
+   * @param commands commands to be run, in order.
+   * @param release  true if images should be unloaded after their last use.
+   * @return true if application has to quit after running the commands.
+   */
+  private boolean runScript(List<String> commands, boolean release) {
+    boolean nested = runsScripts(commands);
+    Map<Integer, List<String>> releases = release && !nested
+        ? planReleases(commands) : Map.of();
+
+    if (this.scheduler != null && !nested) {
+      return this.scheduler.run(commands, releases, this::sendToView);
+    }
+
+    for (int i = 0; i < commands.size(); i++) {
+      boolean quitApplication = runCommand(commands.get(i));
+      if (quitApplication) {
+        return true;
+      }
+
+      // release images that are not used by any later command, the result is not displayed
+      // since an image may not exist if the command creating it failed
+      for (String imageName : releases.getOrDefault(i, List.of())) {
+        imageCommandRunner.runCommand("unload " + imageName);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check if a script runs other scripts or batches. Such scripts are neither analysed nor run
+   * concurrently, since the nested script may use any image and batches use any file.
+   *
+   * @param commands commands of the script.
+   * @return true if any command runs another script or a batch.
+   */
+  private boolean runsScripts(List<String> commands) {
+    return commands.stream().map(String::trim)
+        .anyMatch(command -> command.startsWith("run ") || command.startsWith("batch "));
+  }
+
+  /**
+   * Find the images that can be unloaded after each command of a script. An image can be unloaded
+   * after the last command that reads or writes it.
+   *
+   * @param commands commands of the script, in order.
+   * @return map from command index to the images to unload after it.
+   */
+  private Map<Integer, List<String>> planReleases(List<String> commands) {
+    Map<Integer, List<String>> releases = new HashMap<>();
+
+    // find the last command using each image
+    Map<String, Integer> lastUse = new HashMap<>();
+    for (int i = 0; i < commands.size(); i++) {
+      CommandAccess access = imageCommandRunner.getAccess(commands.get(i));
+      for (String imageName : access.getReadImages()) {
+        lastUse.put(imageName, i);
+      }
+      for (String imageName : access.getWrittenImages()) {
+        lastUse.put(imageName, i);
+      }
+    }
+
+    // group images by the command after which they are released
+    for (Map.Entry<String, Integer> entry : lastUse.entrySet()) {
+      releases.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+    }
+    return releases;
+  }
+
   @Override
   public void run() {
     // show help message
     this.displayHelp();
 
     try {
+      // read the whole input as a script so that images can be released after their last use
+      if (this.releaseImages) {
+        List<String> commands = new ArrayList<>();
+        while (this.view.hasInput()) {
+          commands.add(this.view.readInputByLine());
+        }
+        runScript(commands, true);
+        return;
+      }
+
       while (this.view.hasInput()) {
         // read input from view and run command
         String inputData = this.view.readInputByLine();
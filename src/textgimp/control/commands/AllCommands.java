@@ -1,6 +1,9 @@
 package textgimp.control.commands;
 
+import java.util.Arrays;
+import java.util.Set;
 import textgimp.model.Model;
+import textgimp.model.betterimage.Region;
 import textgimp.utility.Result;
 import textgimp.utility.ResultImpl;
 
@@ -55,6 +58,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // second parameter is the source image name, third the destination image name
+      if (args.length < 3) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[1], args[2]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -101,6 +113,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the source image name, second the destination image name
+      if (args.length < 2) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[0], args[1]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -153,6 +174,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the source image name, second the destination image name
+      if (args.length < 2) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[0], args[1]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -206,6 +236,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // second parameter is the source image name, third the destination image name
+      if (args.length < 3) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[1], args[2]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -254,6 +293,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the source image name, second the destination image name
+      if (args.length < 2) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[0], args[1]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -308,6 +356,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the destination, the rest are the channel images
+      if (args.length < 4) {
+        return CommandAccess.none();
+      }
+      return new CommandAccess(Set.copyOf(Arrays.asList(args).subList(1, 4)), Set.of(args[0]));
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -362,6 +419,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the source, the rest are the channel images
+      if (args.length < 4) {
+        return CommandAccess.none();
+      }
+      return new CommandAccess(Set.of(args[0]), Set.copyOf(Arrays.asList(args).subList(1, 4)));
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -410,6 +476,15 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the source image name, second the destination image name
+      if (args.length < 2) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[0], args[1]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
@@ -461,22 +536,424 @@ public class AllCommands {
       return res;
     }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // first parameter is the source image name, second the destination image name
+      if (args.length < 2) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[0], args[1]);
+    }
+
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
+
+  /**
+   * This class represents a command to unload images from the application. This class is
+   * responsible for validating parameters required for unload command and calling the appropriate
+   * methods in the model.
+   */
+  static class Unload implements Command {
+
+    private final String helpMessage;
+
+    /**
+     * Constructs an unload command object and initializes the help message.
+     */
+    Unload() {
+      this.helpMessage = "unload <image-name>...\n"
+          + "\t\tRemove the images with the given names and release the memory they use.";
+    }
+
+    @Override
+    public Result execute(String[] args, Model model) {
+      // we need at least 1 argument, the image name
+      if (args.length < 1) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
+
+      // unload every image, stopping at the first one that is not loaded
+      try {
+        for (String imageName : args) {
+          model.unload(imageName);
+        }
+      } catch (IllegalArgumentException e) {
+        return new ResultImpl(false, "Unable to unload the image: " + e.getMessage());
+      }
+      return new ResultImpl(true, "Successfully unloaded the image");
+    }
+
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // every parameter is an image that is removed
+      return CommandAccess.writes(args);
+    }
+
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
+
+  /**
+   * This class represents a command to create a preview of an image. This class is responsible for
+   * validating parameters required for preview command and calling the appropriate methods in the
+   * model.
+   */
+  static class Preview implements Command {
+
+    private final String helpMessage;
+
+    /**
+     * Constructs a preview command object and initializes the help message.
+     */
+    Preview() {
+      this.helpMessage = "preview <max-size> <image-name> <dest-image-name>\n"
+          + "\t\tCreate a reduced copy of the image with image-name whose width and height are"
+          + " at most max-size and store it with dest-image-name.";
+    }
+
+    @Override
+    public Result execute(String[] args, Model model) {
+      Result res;
+      // we need at least 3 arguments, size, source image name and destination image name
+      if (args.length < 3) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
+
+      // parse parameters and call the model to perform the operation
+      // first parameter is the integer size
+      // second parameter is the source image name
+      // third parameter is the destination image name
+      try {
+        int maxSize = Integer.parseInt(args[0]);
+        String sourceImageName = args[1];
+        String destImageName = args[2];
+        model.preview(sourceImageName, maxSize, destImageName);
+        res = new ResultImpl(true, "Successfully created a preview of the image.");
+      } catch (NumberFormatException e) {
+        res = new ResultImpl(false, "Failed to convert size to an integer");
+      } catch (IllegalArgumentException e) {
+        res = new ResultImpl(false, "Unable to create a preview of the image: " + e.getMessage());
+      }
+      return res;
+    }
+
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // second parameter is the source image name, third the destination image name
+      if (args.length < 3) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[1], args[2]);
+    }
+
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
+
+  /**
+   * This class represents a command to resize an image. This class is responsible for validating
+   * parameters required for resize command and calling the appropriate methods in the model.
+   */
+  static class Resize implements Command {
+
+    private final String helpMessage;
+
+    /**
+     * Constructs a resize command object and initializes the help message.
+     */
+    Resize() {
+      this.helpMessage = "resize <width> <height> <image-name> <dest-image-name> [method]\n"
+          + "\t\tResize the image with image-name to width and height and store it with"
+          + " dest-image-name.\n"
+          + "\t\tThe method is nearest, bilinear, bicubic or lanczos, bicubic by default.";
+    }
+
+    @Override
+    public Result execute(String[] args, Model model) {
+      Result res;
+      // we need at least 4 arguments, the size, source image name and destination image name
+      if (args.length < 4) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
+
+      // parse parameters and call the model to perform the operation
+      // first and second parameters are the integer width and height
+      // third parameter is the source image name
+      // fourth parameter is the destination image name
+      // fifth parameter is the optional resampling method
+      try {
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        String method = args.length > 4 ? args[4] : "bicubic";
+        model.resize(args[2], width, height, method, args[3]);
+        res = new ResultImpl(true, "Successfully resized the image.");
+      } catch (NumberFormatException e) {
+        res = new ResultImpl(false, "Failed to convert size to an integer");
+      } catch (IllegalArgumentException e) {
+        res = new ResultImpl(false, "Unable to resize the image: " + e.getMessage());
+      }
+      return res;
+    }
+
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // third parameter is the source image name, fourth the destination image name
+      if (args.length < 4) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[2], args[3]);
+    }
+
     @Override
     public String help() {
       return this.helpMessage;
     }
   }
-}
 
+  /**
+   * This class represents a command to rotate an image. This class is responsible for validating
+   * parameters required for rotate command and calling the appropriate methods in the model.
+   */
+  static class Rotate implements Command {
 
+    private final String helpMessage;
 
+    /**
+     * Constructs a rotate command object and initializes the help message.
+     */
+    Rotate() {
+      this.helpMessage = "rotate <degrees> <image-name> <dest-image-name>\n"
+          + "\t\tRotate the image with image-name clockwise by degrees and store it with"
+          + " dest-image-name.\n"
+          + "\t\tAngles that are not a multiple of 90 enlarge the image to hold all of it.";
+    }
 
+    @Override
+    public Result execute(String[] args, Model model) {
+      Result res;
+      // we need at least 3 arguments, angle, source image name and destination image name
+      if (args.length < 3) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
+
+      // parse parameters and call the model to perform the operation
+      // first parameter is the angle
+      // second parameter is the source image name
+      // third parameter is the destination image name
+      try {
+        double degrees = Double.parseDouble(args[0]);
+        model.rotate(args[1], degrees, args[2]);
+        res = new ResultImpl(true, "Successfully rotated the image.");
+      } catch (NumberFormatException e) {
+        res = new ResultImpl(false, "Failed to convert angle to a number");
+      } catch (IllegalArgumentException e) {
+        res = new ResultImpl(false, "Unable to rotate the image: " + e.getMessage());
+      }
+      return res;
+    }
+
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // second parameter is the source image name, third the destination image name
+      if (args.length < 3) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[1], args[2]);
+    }
 
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
 
+  /**
+   * This class represents a command to apply an affine transform to an image. This class is
+   * responsible for validating parameters required for affine command and calling the appropriate
+   * methods in the model.
+   */
+  static class Affine implements Command {
 
+    private final String helpMessage;
 
+    /**
+     * Constructs an affine command object and initializes the help message.
+     */
+    Affine() {
+      this.helpMessage = "affine <a> <b> <c> <d> <e> <f> <image-name> <dest-image-name>\n"
+          + "\t\tMove the pixel at column x and row y of the image with image-name to column"
+          + " a*x + b*y + c and row d*x + e*y + f and store it with dest-image-name.";
+    }
 
+    @Override
+    public Result execute(String[] args, Model model) {
+      Result res;
+      // we need at least 8 arguments, the matrix, source image name and destination image name
+      if (args.length < 8) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
 
+      // parse parameters and call the model to perform the operation
+      try {
+        double[] matrix = new double[6];
+        for (int i = 0; i < matrix.length; i++) {
+          matrix[i] = Double.parseDouble(args[i]);
+        }
+        model.affine(args[6], matrix, args[7]);
+        res = new ResultImpl(true, "Successfully transformed the image.");
+      } catch (NumberFormatException e) {
+        res = new ResultImpl(false, "Failed to convert the matrix to numbers");
+      } catch (IllegalArgumentException e) {
+        res = new ResultImpl(false, "Unable to transform the image: " + e.getMessage());
+      }
+      return res;
+    }
 
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // seventh parameter is the source image name, eighth the destination image name
+      if (args.length < 8) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[6], args[7]);
+    }
 
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
 
+  /**
+   * This class represents a command to select a region of an image. This class is responsible for
+   * validating parameters required for select command and calling the appropriate methods in the
+   * model.
+   */
+  static class Select implements Command {
+
+    private final String helpMessage;
+
+    /**
+     * Constructs a select command object and initializes the help message.
+     */
+    Select() {
+      this.helpMessage = "select <x> <y> <width> <height> <image-name>\n"
+          + "\t\tSelect the region of the image with image-name that starts at column x and row y."
+          + "\n\t\tLater operations on the image only change the selected region.\n"
+          + "select none <image-name>\n"
+          + "\t\tSelect the whole image with image-name again.";
+    }
+
+    @Override
+    public Result execute(String[] args, Model model) {
+      Result res;
+      // we need either the word none or 4 integers, and the image name
+      if (args.length < 2 || (!args[0].equals("none") && args.length < 5)) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
+
+      // parse parameters and call the model to perform the operation
+      try {
+        if (args[0].equals("none")) {
+          model.select(args[1], null);
+          return new ResultImpl(true, "Successfully selected the whole image.");
+        }
+        Region region = parseRegion(args);
+        model.select(args[4], region);
+        res = new ResultImpl(true, "Successfully selected " + region + " in the image.");
+      } catch (NumberFormatException e) {
+        res = new ResultImpl(false, "Failed to convert the region to integers");
+      } catch (IllegalArgumentException e) {
+        res = new ResultImpl(false, "Unable to select the region: " + e.getMessage());
+      }
+      return res;
+    }
+
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // the last parameter is the image name, its selection is replaced
+      int index = args.length > 0 && args[0].equals("none") ? 1 : 4;
+      if (args.length <= index) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[index], args[index]);
+    }
+
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
+
+  /**
+   * This class represents a command to crop an image. This class is responsible for validating
+   * parameters required for crop command and calling the appropriate methods in the model.
+   */
+  static class Crop implements Command {
+
+    private final String helpMessage;
+
+    /**
+     * Constructs a crop command object and initializes the help message.
+     */
+    Crop() {
+      this.helpMessage = "crop <x> <y> <width> <height> <image-name> <dest-image-name>\n"
+          + "\t\tKeep the region of the image with image-name that starts at column x and row y"
+          + " and store it with dest-image-name.";
+    }
+
+    @Override
+    public Result execute(String[] args, Model model) {
+      Result res;
+      // we need at least 6 arguments, the region, source image name and destination image name
+      if (args.length < 6) {
+        return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+      }
+
+      // parse parameters and call the model to perform the operation
+      try {
+        model.crop(args[4], parseRegion(args), args[5]);
+        res = new ResultImpl(true, "Successfully cropped the image.");
+      } catch (NumberFormatException e) {
+        res = new ResultImpl(false, "Failed to convert the region to integers");
+      } catch (IllegalArgumentException e) {
+        res = new ResultImpl(false, "Unable to crop the image: " + e.getMessage());
+      }
+      return res;
+    }
+
+    @Override
+    public CommandAccess getAccess(String[] args) {
+      // fifth parameter is the source image name, sixth the destination image name
+      if (args.length < 6) {
+        return CommandAccess.none();
+      }
+      return CommandAccess.sourceToDest(args[4], args[5]);
+    }
+
+    @Override
+    public String help() {
+      return this.helpMessage;
+    }
+  }
+
+  /**
+   * Parse a region from the first four arguments of a command: x, y, width and height.
+   *
+   * @param args the arguments of the command
+   * @return the region
+   * @throws NumberFormatException    if an argument is not an integer
+   * @throws IllegalArgumentException if the region is empty or starts at a negative position
+   */
+  private static Region parseRegion(String[] args) throws IllegalArgumentException {
+    return new Region(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+  }
+}
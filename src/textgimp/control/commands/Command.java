@@ -19,6 +19,15 @@ interface Command {
    */
   Result execute(String[] args, Model model);
 
+  /**
+   * Describe the images the command would read and write with the given arguments, without running
+   * it. Arguments that the command would reject access no images.
+   *
+   * @param args arguments for the command.
+   * @return images accessed by the command.
+   */
+  CommandAccess getAccess(String[] args);
+
   /**
    * Get the help string for the command.
    *
@@ -0,0 +1,120 @@
+package textgimp.control.commands;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * This class describes which images and files a command reads and which it writes, without running
+ * it. It is used by the controller to analyse scripts before they are run.
+ */
+public final class CommandAccess {
+
+  private static final CommandAccess NONE = new CommandAccess(Set.of(), Set.of());
+
+  private final Set<String> readImages;
+  private final Set<String> writtenImages;
+  private final Set<String> readFiles;
+  private final Set<String> writtenFiles;
+
+  /**
+   * Create a description of the images accessed by a command.
+   *
+   * @param readImages    names of the images read by the command.
+   * @param writtenImages names of the images created, replaced or removed by the command.
+   */
+  public CommandAccess(Set<String> readImages, Set<String> writtenImages) {
+    this(readImages, writtenImages, Set.of(), Set.of());
+  }
+
+  /**
+   * Create a description of the images and files accessed by a command.
+   *
+   * @param readImages    names of the images read by the command.
+   * @param writtenImages names of the images created, replaced or removed by the command.
+   * @param readFiles     paths of the files read by the command.
+   * @param writtenFiles  paths of the files written by the command.
+   */
+  public CommandAccess(Set<String> readImages, Set<String> writtenImages, Set<String> readFiles,
+      Set<String> writtenFiles) {
+    this.readImages = Set.copyOf(readImages);
+    this.writtenImages = Set.copyOf(writtenImages);
+    this.readFiles = Set.copyOf(readFiles);
+    this.writtenFiles = Set.copyOf(writtenFiles);
+  }
+
+  /**
+   * Access of a command that does not touch any image.
+   *
+   * @return an empty access description.
+   */
+  public static CommandAccess none() {
+    return NONE;
+  }
+
+  /**
+   * Access of a command that reads one image and writes another one.
+   *
+   * @param source name of the image read.
+   * @param dest   name of the image written.
+   * @return access description.
+   */
+  static CommandAccess sourceToDest(String source, String dest) {
+    return new CommandAccess(Set.of(source), Set.of(dest));
+  }
+
+  /**
+   * Access of a command that reads images only.
+   *
+   * @param names names of the images read.
+   * @return access description.
+   */
+  static CommandAccess reads(String... names) {
+    return new CommandAccess(Set.copyOf(Arrays.asList(names)), Set.of());
+  }
+
+  /**
+   * Access of a command that writes images only.
+   *
+   * @param names names of the images written.
+   * @return access description.
+   */
+  static CommandAccess writes(String... names) {
+    return new CommandAccess(Set.of(), Set.copyOf(Arrays.asList(names)));
+  }
+
+  /**
+   * Get the names of the images read by the command.
+   *
+   * @return set of image names.
+   */
+  public Set<String> getReadImages() {
+    return this.readImages;
+  }
+
+  /**
+   * Get the names of the images created, replaced or removed by the command.
+   *
+   * @return set of image names.
+   */
+  public Set<String> getWrittenImages() {
+    return this.writtenImages;
+  }
+
+  /**
+   * Get the paths of the files read by the command.
+   *
+   * @return set of file paths.
+   */
+  public Set<String> getReadFiles() {
+    return this.readFiles;
+  }
+
+  /**
+   * Get the paths of the files written by the command.
+   *
+   * @return set of file paths.
+   */
+  public Set<String> getWrittenFiles() {
+    return this.writtenFiles;
+  }
+}
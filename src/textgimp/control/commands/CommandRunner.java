@@ -17,6 +17,23 @@ public interface CommandRunner {
    */
   Result runCommand(String command);
 
+  /**
+   * Check if a string command quits the application.
+   *
+   * @param command a string representing the command.
+   * @return true if the application quits after this command.
+   */
+  boolean isTerminating(String command);
+
+  /**
+   * Describe the images a string command would read and write, without running it. Comments,
+   * unsupported commands and commands with invalid arguments access no images.
+   *
+   * @param command a string representing the command.
+   * @return images accessed by the command.
+   */
+  CommandAccess getAccess(String command);
+
   /**
    * Get help string for command.
    *
@@ -51,6 +51,14 @@ public class ImageCommandRunner implements CommandRunner {
     commandMap.put("sepia", new AllCommands.Transform("sepia"));
     commandMap.put("greyscale", new AllCommands.Greyscale());
     commandMap.put("dither", new AllCommands.Dither());
+    commandMap.put("unload", new AllCommands.Unload());
+    commandMap.put("load-preview", new LoadPreview());
+    commandMap.put("preview", new AllCommands.Preview());
+    commandMap.put("resize", new AllCommands.Resize());
+    commandMap.put("rotate", new AllCommands.Rotate());
+    commandMap.put("affine", new AllCommands.Affine());
+    commandMap.put("select", new AllCommands.Select());
+    commandMap.put("crop", new AllCommands.Crop());
     return commandMap;
   }
 
@@ -92,8 +100,8 @@ public class ImageCommandRunner implements CommandRunner {
       return new ResultImpl(true, "");
     }
 
-    // ignore comments
-    if (command.startsWith("q") || command.startsWith("quit")) {
+    // quit the application
+    if (isTerminating(command)) {
       return new ResultImpl(true, true, "Thank you for using TextGimp.");
     }
 
@@ -103,6 +111,27 @@ public class ImageCommandRunner implements CommandRunner {
     return runCommandFromMap(command);
   }
 
+  @Override
+  public boolean isTerminating(String command) {
+    return command.startsWith("q") || command.startsWith("quit");
+  }
+
+  @Override
+  public CommandAccess getAccess(String command) {
+    // comments and special commands do not access images
+    if (command.isEmpty() || command.startsWith("#")) {
+      return CommandAccess.none();
+    }
+
+    String[] splitCommand = command.trim().split(" ");
+    Command cmdObject = commandMap.getOrDefault(splitCommand[0], null);
+    if (cmdObject == null) {
+      return CommandAccess.none();
+    }
+    String[] cmdArgs = Arrays.stream(splitCommand).skip(1).toArray(String[]::new);
+    return cmdObject.getAccess(cmdArgs);
+  }
+
   @Override
   public Result getHelp(String command) {
     Result result;
@@ -121,6 +150,9 @@ public class ImageCommandRunner implements CommandRunner {
 
       // add default help commands
       helpMessage.append("run <filename> - run a script file\n\n");
+      helpMessage.append("batch <pipeline> <source-dir> <pattern> <target-dir> - load every file "
+          + "of source-dir matching pattern as image, run the pipeline script on it and save "
+          + "image to target-dir\n\n");
       helpMessage.append("help <command> - display help for a command\n\n");
       helpMessage.append("help - display help for all commands\n");
       result = new ResultImpl(true, helpMessage.toString());
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Set;
 import textgimp.model.Model;
 import textgimp.utility.Result;
 import textgimp.utility.ResultImpl;
@@ -30,7 +31,18 @@ class LoadFile implements Command {
     if (args.length < 2) {
       return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
     }
+    return this.loadFile(args, model, 0);
+  }
 
+  /**
+   * Read the file and pass its data to the model, either as a full image or as a preview.
+   *
+   * @param args    the file path, possibly split at spaces, followed by the image name
+   * @param model   the model to load the image into
+   * @param maxSize the largest width and height of the preview, or 0 to load the full image
+   * @return the result of loading the file
+   */
+  Result loadFile(String[] args, Model model, int maxSize) {
     // if the image path contains spaces, the array will contain more than 2 elements
     // the last element will be the image name, rest of them will be parts of the file path
     // we need to combine them to get the complete file path
@@ -59,7 +71,11 @@ class LoadFile implements Command {
       String imageType = name.substring(name.lastIndexOf('.') + 1);
 
       // load the image
-      model.load(fileContent, imageName, imageType);
+      if (maxSize > 0) {
+        model.loadPreview(fileContent, imageName, imageType, maxSize);
+      } else {
+        model.load(fileContent, imageName, imageType);
+      }
       res = new ResultImpl(true, "Successfully loaded the file");
     } catch (IllegalArgumentException e) {
       res = new ResultImpl(false, "Unable to load file: " + e.getMessage());
@@ -69,6 +85,16 @@ class LoadFile implements Command {
     return res;
   }
 
+  @Override
+  public CommandAccess getAccess(String[] args) {
+    // the last element in the array is the image name, the rest is the file path
+    if (args.length < 2) {
+      return CommandAccess.none();
+    }
+    String filePath = String.join(" ", Arrays.asList(args).subList(0, args.length - 1));
+    return new CommandAccess(Set.of(), Set.of(args[args.length - 1]), Set.of(filePath), Set.of());
+  }
+
   @Override
   public String help() {
     return this.helpMessage;
@@ -0,0 +1,59 @@
+package textgimp.control.commands;
+
+import java.util.Arrays;
+import textgimp.model.Model;
+import textgimp.utility.Result;
+import textgimp.utility.ResultImpl;
+
+/**
+ * This class represents a command to load a reduced copy of an image from a file. Only the pixels
+ * of the preview are decoded, which makes it much faster than loading the full image when the
+ * image is only displayed or used for a thumbnail.
+ */
+class LoadPreview extends LoadFile {
+
+  private final String helpMessage;
+
+  /**
+   * Constructs a load preview command object and initializes the help message.
+   */
+  LoadPreview() {
+    this.helpMessage = "load-preview <max-size> <image-path> <image-name>\n"
+        + "\t\tLoad a reduced copy of the image at image-path whose width and height are at most"
+        + " max-size and store it with image-name.";
+  }
+
+  @Override
+  public Result execute(String[] args, Model model) {
+    // we need at least 3 arguments, the size, the file path and the image name
+    if (args.length < 3) {
+      return new ResultImpl(false, "Incorrect usage.\n" + this.helpMessage);
+    }
+
+    // first parameter is the size, the rest is handled like the load command
+    int maxSize;
+    try {
+      maxSize = Integer.parseInt(args[0]);
+    } catch (NumberFormatException e) {
+      return new ResultImpl(false, "Failed to convert size to an integer");
+    }
+    if (maxSize <= 0) {
+      return new ResultImpl(false, "Preview size must be positive.");
+    }
+    return this.loadFile(Arrays.copyOfRange(args, 1, args.length), model, maxSize);
+  }
+
+  @Override
+  public CommandAccess getAccess(String[] args) {
+    // the first parameter is the size, the rest is the same as for the load command
+    if (args.length < 3) {
+      return CommandAccess.none();
+    }
+    return super.getAccess(Arrays.copyOfRange(args, 1, args.length));
+  }
+
+  @Override
+  public String help() {
+    return this.helpMessage;
+  }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Set;
 import textgimp.model.Model;
 import textgimp.utility.Result;
 import textgimp.utility.ResultImpl;
@@ -74,6 +75,16 @@ class SaveFile implements Command {
     return res;
   }
 
+  @Override
+  public CommandAccess getAccess(String[] args) {
+    // the last element in the array is the image name, the rest is the file path
+    if (args.length < 2) {
+      return CommandAccess.none();
+    }
+    String filePath = String.join(" ", Arrays.asList(args).subList(0, args.length - 1));
+    return new CommandAccess(Set.of(args[args.length - 1]), Set.of(), Set.of(), Set.of(filePath));
+  }
+
   @Override
   public String help() {
     return this.helpMessage;
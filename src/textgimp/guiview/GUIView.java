@@ -1,6 +1,8 @@
 package textgimp.guiview;
 
 import textgimp.control.Features;
+import textgimp.model.betterimage.Region;
+import textgimp.utility.Result;
 
 /**
  * This interface represents a GUI view for the application.
@@ -25,4 +27,30 @@ public interface GUIView {
    * @param imageName name of the image to display.
    */
   void displayImage(String imageName);
+
+  /**
+   * Display the image to the user when it only changed inside a region since it was displayed.
+   * Only the changed region of the image and its histograms is read again.
+   *
+   * @param imageName name of the image to display.
+   * @param changed   region of the image that changed.
+   */
+  void refreshImage(String imageName, Region changed);
+
+  /**
+   * Show the progress of an operation running in the background. A progress of 1 or more means the
+   * operation is done and hides the progress.
+   *
+   * @param task     description of the operation.
+   * @param progress fraction of the operation that is done, between 0 and 1.
+   */
+  void showProgress(String task, double progress);
+
+  /**
+   * Show the result of an action that finished in the background, after its feature returned.
+   *
+   * @param action description of the action.
+   * @param result result of the action.
+   */
+  void showResult(String action, Result result);
 }
@@ -1,12 +1,15 @@
 package textgimp.guiview;
 
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import textgimp.control.Features;
 import textgimp.guiview.mainwindow.MainFrame;
 import textgimp.guiview.mainwindow.MainWindow;
 import textgimp.model.ReadOnlyModel;
+import textgimp.model.betterimage.Region;
+import textgimp.utility.Result;
 
 /**
  * This class implements the GUI for gimp with Swing.
@@ -63,8 +66,43 @@ public class SwingGUI implements GUIView {
     this.features = feature;
   }
 
+  /**
+   * Display the image with the given name. The controller may call this from a background thread,
+   * the image is then displayed on the event dispatch thread.
+   *
+   * @param imageName name of the image to display.
+   */
   @Override
   public void displayImage(String imageName) {
-    mainFrame.displayImage(imageName);
+    this.onEventThread(() -> mainFrame.displayImage(imageName));
+  }
+
+  @Override
+  public void refreshImage(String imageName, Region changed) {
+    this.onEventThread(() -> mainFrame.refreshImage(imageName, changed));
+  }
+
+  @Override
+  public void showProgress(String task, double progress) {
+    this.onEventThread(() -> mainFrame.showProgress(task, progress));
+  }
+
+  @Override
+  public void showResult(String action, Result result) {
+    this.onEventThread(() -> mainFrame.showResult(action, result));
+  }
+
+  /**
+   * Run an update of the window on the event dispatch thread. Updates requested from other
+   * threads are queued on it.
+   *
+   * @param update the update to run.
+   */
+  private void onEventThread(Runnable update) {
+    if (SwingUtilities.isEventDispatchThread()) {
+      update.run();
+    } else {
+      SwingUtilities.invokeLater(update);
+    }
   }
 }
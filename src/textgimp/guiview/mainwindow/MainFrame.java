@@ -18,6 +18,7 @@ import textgimp.guiview.mainwindow.imageinfo.GHistogramViewer;
 import textgimp.guiview.mainwindow.status.GStatusPane;
 import textgimp.guiview.mainwindow.status.StatusPanel;
 import textgimp.model.ReadOnlyModel;
+import textgimp.model.betterimage.Region;
 import textgimp.utility.Result;
 import textgimp.utility.ResultImpl;
 
@@ -27,6 +28,8 @@ import textgimp.utility.ResultImpl;
  */
 public class MainFrame extends JFrame implements MainWindow {
 
+  private static final int BAND_HEIGHT = 64;
+
   private final ReadOnlyModel readOnlyModel;
   private final Features features;
   private JPanel mainPanel;
@@ -34,6 +37,12 @@ public class MainFrame extends JFrame implements MainWindow {
   private GHistogramViewer imageDetailPanels;
   private StatusPanel statusPane;
 
+  // histograms of the displayed image, kept per band of rows so a changed region only counts the
+  // bands it touches
+  private Region shownBounds;
+  private int[][][] bandHistograms;
+  private int[][] histograms;
+
   /**
    * Initialize the main window with read only model and feature handler.
    *
@@ -108,7 +117,7 @@ public class MainFrame extends JFrame implements MainWindow {
    * @param idx index to the panel object in the frame.
    */
   private void setUpStatusPane(int idx) {
-    statusPane = new GStatusPane();
+    statusPane = new GStatusPane(features);
     ((JPanel) statusPane).setBorder(new BevelBorder(BevelBorder.RAISED));
     ((JPanel) statusPane).setPreferredSize(new Dimension(600, 100));
     GridBagConstraints constraints = new GridBagConstraints();
@@ -145,27 +154,118 @@ public class MainFrame extends JFrame implements MainWindow {
       // fetch the image and display the image
       imagePanel.setImage(readOnlyModel.getBytesOfImage(name));
 
-      // clear existing histogram
-      imageDetailPanels.clearHistograms();
-
-      // fetch red, green, blue and intensity histogram and display them
-      imageDetailPanels.displayHistogram(
-          readOnlyModel.getHistogramOfGreyscale(name, Histograms.RED.toString()), "red");
-      imageDetailPanels.displayHistogram(
-          readOnlyModel.getHistogramOfGreyscale(name, Histograms.GREEN.toString()), "green");
-      imageDetailPanels.displayHistogram(
-          readOnlyModel.getHistogramOfGreyscale(name, Histograms.BLUE.toString()), "blue");
-      imageDetailPanels.displayHistogram(
-          readOnlyModel.getHistogramOfGreyscale(name,
-              Histograms.INTENSITY.toString()), "intensity");
+      // count every band of rows for the red, green, blue and intensity histograms
+      shownBounds = readOnlyModel.getBounds(name);
+      int bands = (shownBounds.getHeight() + BAND_HEIGHT - 1) / BAND_HEIGHT;
+      Histograms[] types = Histograms.values();
+      bandHistograms = new int[types.length][bands][];
+      histograms = new int[types.length][];
+      for (int i = 0; i < types.length; i++) {
+        for (int band = 0; band < bands; band++) {
+          bandHistograms[i][band] = this.countBand(name, types[i], band);
+          histograms[i] = this.add(histograms[i], bandHistograms[i][band], 1);
+        }
+      }
+      this.showHistograms();
     } catch (IOException e) {
       Result res = new ResultImpl(false, e.getMessage());
       statusPane.setStatus("View image", res);
     }
   }
 
+  @Override
+  public void refreshImage(String name, Region changed) {
+    // anything but a change inside an image of the same size is displayed again
+    if (shownBounds == null || !readOnlyModel.getBounds(name).equals(shownBounds)
+        || !changed.fitsIn(shownBounds.getWidth(), shownBounds.getHeight())) {
+      this.displayImage(name);
+      return;
+    }
+    try {
+      // redraw the changed region
+      imagePanel.updateImage(readOnlyModel.getBytesOfImage(name, changed), changed.getX(),
+          changed.getY());
+
+      // replace the old counts of the bands holding changed rows with their new counts
+      Histograms[] types = Histograms.values();
+      int first = changed.getY() / BAND_HEIGHT;
+      int last = (changed.getY() + changed.getHeight() - 1) / BAND_HEIGHT;
+      for (int i = 0; i < types.length; i++) {
+        for (int band = first; band <= last; band++) {
+          int[] counts = this.countBand(name, types[i], band);
+          if (counts.length != histograms[i].length) {
+            // the range of the values changed, count everything again
+            this.displayImage(name);
+            return;
+          }
+          histograms[i] = this.add(histograms[i], bandHistograms[i][band], -1);
+          histograms[i] = this.add(histograms[i], counts, 1);
+          bandHistograms[i][band] = counts;
+        }
+      }
+      this.showHistograms();
+    } catch (IOException e) {
+      Result res = new ResultImpl(false, e.getMessage());
+      statusPane.setStatus("View image", res);
+    }
+  }
+
+  /**
+   * Fetch the histogram of one band of rows of the displayed image.
+   *
+   * @param name name of the image.
+   * @param type type of the histogram.
+   * @param band index of the band.
+   * @return the histogram of the band.
+   */
+  private int[] countBand(String name, Histograms type, int band) {
+    int top = band * BAND_HEIGHT;
+    int height = Math.min(BAND_HEIGHT, shownBounds.getHeight() - top);
+    return readOnlyModel.getHistogramOfGreyscale(name, type.toString(),
+        new Region(0, top, shownBounds.getWidth(), height));
+  }
+
+  /**
+   * Add the counts of a histogram, multiplied by a factor, to a total histogram.
+   *
+   * @param total  the total histogram, or null to start a new one.
+   * @param counts the counts to add.
+   * @param factor 1 to add the counts, -1 to subtract them.
+   * @return the updated total histogram.
+   */
+  private int[] add(int[] total, int[] counts, int factor) {
+    int[] result = total == null ? new int[counts.length] : total;
+    for (int i = 0; i < counts.length; i++) {
+      result[i] += factor * counts[i];
+    }
+    return result;
+  }
+
+  /**
+   * Display the red, green, blue and intensity histograms.
+   */
+  private void showHistograms() {
+    imageDetailPanels.clearHistograms();
+    imageDetailPanels.displayHistogram(histograms[Histograms.RED.ordinal()], "red");
+    imageDetailPanels.displayHistogram(histograms[Histograms.GREEN.ordinal()], "green");
+    imageDetailPanels.displayHistogram(histograms[Histograms.BLUE.ordinal()], "blue");
+    imageDetailPanels.displayHistogram(histograms[Histograms.INTENSITY.ordinal()],
+        "intensity");
+  }
+
+  @Override
+  public void showProgress(String task, double progress) {
+    statusPane.showProgress(task, progress);
+  }
+
+  @Override
+  public void showResult(String action, Result result) {
+    statusPane.setStatus(action, result);
+  }
+
   @Override
   public void clearImage() {
+    shownBounds = null;
     imagePanel.clearImage();
     imageDetailPanels.clearHistograms();
     statusPane.setStatus("Click Load button to load an image", null);
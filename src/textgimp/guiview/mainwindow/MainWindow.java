@@ -1,5 +1,8 @@
 package textgimp.guiview.mainwindow;
 
+import textgimp.model.betterimage.Region;
+import textgimp.utility.Result;
+
 /**
  * This interface represents the main window of GUI Swing gimp.
  */
@@ -12,6 +15,30 @@ public interface MainWindow {
    */
   void displayImage(String displayImage);
 
+  /**
+   * Display the image to the user when it only changed inside a region since it was displayed.
+   *
+   * @param displayImage image to display.
+   * @param changed      region of the image that changed.
+   */
+  void refreshImage(String displayImage, Region changed);
+
+  /**
+   * Show the progress of an operation running in the background.
+   *
+   * @param task     description of the operation.
+   * @param progress fraction of the operation that is done, 1 or more when it is done.
+   */
+  void showProgress(String task, double progress);
+
+  /**
+   * Show the result of an action that finished in the background in the status panel.
+   *
+   * @param action description of the action.
+   * @param result result of the action.
+   */
+  void showResult(String action, Result result);
+
   /**
    * Clear the image and histogram from the view.
    */
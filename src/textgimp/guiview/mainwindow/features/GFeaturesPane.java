@@ -8,8 +8,12 @@ import java.awt.FlowLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.LayoutManager;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.util.HashMap;
 import java.util.Map;
+import javax.swing.AbstractAction;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
@@ -17,6 +21,7 @@ import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.KeyStroke;
 import javax.swing.border.EmptyBorder;
 import textgimp.control.Features;
 import textgimp.guiview.mainwindow.MainWindow;
@@ -127,6 +132,22 @@ public class GFeaturesPane extends JPanel {
     Theme.setButtonColors(resetButton);
     fileOperationsButtonsPanel.add(resetButton);
 
+    // undo and redo buttons, also bound to Ctrl+Z and Ctrl+Y
+    JButton undoButton = new JButton("Undo");
+    undoButton.addActionListener((e) -> {
+      undoHandler();
+    });
+    Theme.setButtonColors(undoButton);
+    fileOperationsButtonsPanel.add(undoButton);
+    JButton redoButton = new JButton("Redo");
+    redoButton.addActionListener((e) -> {
+      redoHandler();
+    });
+    Theme.setButtonColors(redoButton);
+    fileOperationsButtonsPanel.add(redoButton);
+    bindKey(KeyEvent.VK_Z, "undo", this::undoHandler);
+    bindKey(KeyEvent.VK_Y, "redo", this::redoHandler);
+
     fileOperationsPanel.add(fileOperationsButtonsPanel, BorderLayout.CENTER);
     constraints.anchor = GridBagConstraints.CENTER;
     add(fileOperationsPanel, constraints, 1);
@@ -267,6 +288,46 @@ public class GFeaturesPane extends JPanel {
     }
   }
 
+  /**
+   * Undo button handler. Undoes the last operation on the image.
+   */
+  private void undoHandler() {
+    if (!validateState()) {
+      return;
+    }
+    Result res = featureControl.undo();
+    this.statusPanel.setStatus("Undo", res);
+  }
+
+  /**
+   * Redo button handler. Redoes the last operation that was undone.
+   */
+  private void redoHandler() {
+    if (!validateState()) {
+      return;
+    }
+    Result res = featureControl.redo();
+    this.statusPanel.setStatus("Redo", res);
+  }
+
+  /**
+   * Run an action when the given key is pressed with Ctrl anywhere in the window.
+   *
+   * @param key    the key code
+   * @param name   the name of the action
+   * @param action the action to run
+   */
+  private void bindKey(int key, String name, Runnable action) {
+    getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key,
+        InputEvent.CTRL_DOWN_MASK), name);
+    getActionMap().put(name, new AbstractAction() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        action.run();
+      }
+    });
+  }
+
   /**
    * Validate the state of the application - check if the image is loaded.
    *
@@ -3,27 +3,52 @@ package textgimp.guiview.mainwindow.image;
 import static textgimp.guiview.mainwindow.Theme.setPanelColors;
 
 import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.LayoutManager;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.InputEvent;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
-import javax.swing.JLabel;
+import javax.swing.JComponent;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
 import textgimp.guiview.mainwindow.Theme;
 
 /**
  * This class represents an image panel in the main window. It displays the image and provides
  * methods to clear the image.
+ *
+ * <p>The image is shown through a {@link TilePyramid}. Only the tiles that intersect the visible
+ * part of the panel are drawn, taken from the level closest to the zoom. Missing tiles are created
+ * in the background, meanwhile the matching part of a smaller level, or the image shown before, is
+ * drawn in their place. Updating a part of the image only creates the tiles of that part again.
+ * Holding Ctrl while scrolling the mouse wheel zooms around the cursor, the popup menu of the
+ * image has the other zoom options.
  */
 public class GImagePane extends JPanel implements ImageViewer {
 
-  private final JLabel displayedImage;
+  // range of the zoom, and the factor of a single zoom step
+  private static final double MIN_ZOOM = 1.0 / 64;
+  private static final double MAX_ZOOM = 32;
+  private static final double ZOOM_STEP = 1.25;
+
+  private final ImageCanvas displayedImage;
   private final LayoutManager manager;
+  private final ExecutorService tileWorker;
+  private JScrollPane scrollImage;
 
   /**
    * Initialize the image panel with scrollbar and background panels.
@@ -33,7 +58,12 @@ public class GImagePane extends JPanel implements ImageViewer {
   public GImagePane(Dimension maximumSize) {
     super();
     manager = new GridBagLayout();
-    displayedImage = new JLabel();
+    tileWorker = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "image-tiles");
+      thread.setDaemon(true);
+      return thread;
+    });
+    displayedImage = new ImageCanvas();
     addImageLabel(maximumSize);
     setPreferredSize(maximumSize);
     setPanelColors(this);
@@ -56,13 +86,14 @@ public class GImagePane extends JPanel implements ImageViewer {
   }
 
   /**
-   * Add the image label to the panel.
+   * Add the image canvas to the panel.
    * @param maximumSize maximum size of the image.
    */
   private void addImageLabel(Dimension maximumSize) {
     setLayout(manager);
-    JScrollPane scrollImage = new JScrollPane(displayedImage);
+    scrollImage = new JScrollPane(displayedImage);
     scrollImage.setBounds(0, 0, maximumSize.width, maximumSize.height);
+    scrollImage.setWheelScrollingEnabled(true);
     add(scrollImage, getConstraints(), 0);
   }
 
@@ -70,12 +101,276 @@ public class GImagePane extends JPanel implements ImageViewer {
   public void setImage(byte[] imageBytes) throws IOException {
     ByteArrayInputStream bIs = new ByteArrayInputStream(imageBytes);
     BufferedImage bImage = ImageIO.read(bIs);
-    displayedImage.setIcon(new ImageIcon(bImage));
+    if (bImage == null) {
+      throw new IOException("Image cannot be displayed.");
+    }
+    displayedImage.setPyramid(new TilePyramid(bImage));
+  }
+
+  @Override
+  public void updateImage(byte[] imageBytes, int x, int y) throws IOException {
+    TilePyramid current = displayedImage.pyramid;
+    if (current == null) {
+      throw new IOException("No image is displayed.");
+    }
+    BufferedImage patch = ImageIO.read(new ByteArrayInputStream(imageBytes));
+    if (patch == null) {
+      throw new IOException("Image cannot be displayed.");
+    }
+    try {
+      displayedImage.setPyramid(new TilePyramid(current, patch, x, y));
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage());
+    }
   }
 
   @Override
   public void clearImage() {
-    displayedImage.setIcon(null);
+    displayedImage.setPyramid(null);
+  }
+
+  /**
+   * Get the current zoom, 1 shows every pixel of the image as one pixel on screen.
+   *
+   * @return the current zoom.
+   */
+  public double getZoom() {
+    return displayedImage.zoom;
+  }
+
+  /**
+   * Set the zoom, keeping the center of the visible part of the image in place.
+   *
+   * @param zoom the new zoom, limited to the supported range.
+   */
+  public void setZoom(double zoom) {
+    Rectangle visible = scrollImage.getViewport().getViewRect();
+    displayedImage.zoomAround(zoom, new Point(visible.x + visible.width / 2,
+        visible.y + visible.height / 2));
+  }
+
+  /**
+   * Set the zoom so the whole image fits in the visible part of the panel.
+   */
+  public void zoomToFit() {
+    TilePyramid pyramid = displayedImage.pyramid;
+    if (pyramid == null) {
+      return;
+    }
+    Dimension size = scrollImage.getViewport().getExtentSize();
+    setZoom(Math.min((double) size.width / pyramid.getWidth(),
+        (double) size.height / pyramid.getHeight()));
   }
 
+  /**
+   * This class represents the component inside the scroll pane. Its size is the size of the image
+   * at the current zoom, and it only draws the tiles inside the area being painted.
+   */
+  private final class ImageCanvas extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient TilePyramid pyramid;
+
+    // the pyramid shown before, painted in place of missing tiles if it has the same size
+    private transient TilePyramid previous;
+    private double zoom;
+
+    /**
+     * Create an empty canvas at zoom 1.
+     */
+    ImageCanvas() {
+      super();
+      this.pyramid = null;
+      this.previous = null;
+      this.zoom = 1;
+      setOpaque(true);
+
+      // zoom around the cursor with Ctrl and the mouse wheel, scroll otherwise
+      addMouseWheelListener(e -> {
+        if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) == 0) {
+          getParent().dispatchEvent(SwingUtilities.convertMouseEvent(this, e, getParent()));
+          return;
+        }
+        double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+        this.zoomAround(this.zoom * factor, e.getPoint());
+      });
+
+      JPopupMenu menu = new JPopupMenu();
+      JMenuItem zoomIn = new JMenuItem("Zoom in");
+      zoomIn.addActionListener(e -> setZoom(this.zoom * ZOOM_STEP));
+      JMenuItem zoomOut = new JMenuItem("Zoom out");
+      zoomOut.addActionListener(e -> setZoom(this.zoom / ZOOM_STEP));
+      JMenuItem actual = new JMenuItem("Actual size");
+      actual.addActionListener(e -> setZoom(1));
+      JMenuItem fit = new JMenuItem("Fit to window");
+      fit.addActionListener(e -> zoomToFit());
+      menu.add(zoomIn);
+      menu.add(zoomOut);
+      menu.add(actual);
+      menu.add(fit);
+      setComponentPopupMenu(menu);
+    }
+
+    /**
+     * Show a new pyramid. The zoom is kept, so the image stays in place when an operation
+     * replaces it with an image of the same size.
+     *
+     * @param pyramid the pyramid to show, or null to show nothing
+     */
+    void setPyramid(TilePyramid pyramid) {
+      if (this.previous != null) {
+        this.previous.discard();
+      }
+      this.previous = null;
+
+      // keep the old image while the tiles of an image of the same size are created
+      if (this.pyramid != null) {
+        if (pyramid != null && pyramid.getWidth() == this.pyramid.getWidth()
+            && pyramid.getHeight() == this.pyramid.getHeight()) {
+          this.previous = this.pyramid;
+        } else {
+          this.pyramid.discard();
+        }
+      }
+      this.pyramid = pyramid;
+      this.updateSize();
+      repaint();
+    }
+
+    /**
+     * Change the zoom so the image point under the given point of the canvas stays under the same
+     * point of the viewport.
+     *
+     * @param zoom  the new zoom, limited to the supported range
+     * @param point the point of the canvas to keep in place
+     */
+    void zoomAround(double zoom, Point point) {
+      double next = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+      if (next == this.zoom) {
+        return;
+      }
+      JViewport viewport = scrollImage.getViewport();
+      Point view = viewport.getViewPosition();
+      double scale = next / this.zoom;
+      this.zoom = next;
+      this.updateSize();
+
+      // move the view so the point stays where it was on screen
+      int x = (int) Math.round(point.x * scale) - (point.x - view.x);
+      int y = (int) Math.round(point.y * scale) - (point.y - view.y);
+      Dimension extent = viewport.getExtentSize();
+      Dimension size = getPreferredSize();
+      x = Math.max(0, Math.min(x, size.width - extent.width));
+      y = Math.max(0, Math.min(y, size.height - extent.height));
+      viewport.setViewPosition(new Point(x, y));
+      repaint();
+    }
+
+    /**
+     * Resize the canvas to the image at the current zoom.
+     */
+    private void updateSize() {
+      if (this.pyramid == null) {
+        setPreferredSize(new Dimension(0, 0));
+      } else {
+        setPreferredSize(new Dimension(
+            (int) Math.ceil(this.pyramid.getWidth() * this.zoom),
+            (int) Math.ceil(this.pyramid.getHeight() * this.zoom)));
+      }
+      revalidate();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+      Graphics2D g = (Graphics2D) graphics;
+      Rectangle clip = g.getClipBounds();
+      if (clip == null) {
+        clip = new Rectangle(0, 0, getWidth(), getHeight());
+      }
+      g.setColor(getBackground());
+      g.fillRect(clip.x, clip.y, clip.width, clip.height);
+      TilePyramid current = this.pyramid;
+      if (current == null) {
+        return;
+      }
+
+      // use the smallest level that still has at least one pixel per screen pixel
+      int level = 0;
+      while (level + 1 < current.getLevels() && this.zoom * (1L << (level + 1)) <= 1) {
+        level++;
+      }
+      double scale = this.zoom * (1L << level);
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, scale < 1
+          ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+          : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+      // only visit the tiles that intersect the painted area
+      double tileSize = TilePyramid.TILE_SIZE * scale;
+      int firstColumn = Math.max(0, (int) Math.floor(clip.x / tileSize));
+      int firstRow = Math.max(0, (int) Math.floor(clip.y / tileSize));
+      int lastColumn = Math.min(current.columns(level) - 1,
+          (int) Math.floor((clip.x + clip.width - 1) / tileSize));
+      int lastRow = Math.min(current.rows(level) - 1,
+          (int) Math.floor((clip.y + clip.height - 1) / tileSize));
+      for (int row = firstRow; row <= lastRow; row++) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+          this.paintTile(g, current, level, column, row, scale);
+        }
+      }
+    }
+
+    /**
+     * Paint a single tile. A missing tile is requested, and the same area of the closest smaller
+     * level that has a tile is painted meanwhile.
+     *
+     * @param g       the graphics of the canvas
+     * @param current the pyramid being painted
+     * @param level   the level of the tile
+     * @param column  the column of the tile
+     * @param row     the row of the tile
+     * @param scale   the size on screen of one pixel of the level
+     */
+    private void paintTile(Graphics2D g, TilePyramid current, int level, int column, int row,
+        double scale) {
+      int x = column * TilePyramid.TILE_SIZE;
+      int y = row * TilePyramid.TILE_SIZE;
+      int width = Math.min(TilePyramid.TILE_SIZE, current.levelWidth(level) - x);
+      int height = Math.min(TilePyramid.TILE_SIZE, current.levelHeight(level) - y);
+      int dx1 = (int) Math.round(x * scale);
+      int dy1 = (int) Math.round(y * scale);
+      int dx2 = (int) Math.round((x + width) * scale);
+      int dy2 = (int) Math.round((y + height) * scale);
+
+      BufferedImage tile = current.getTile(level, column, row);
+      if (tile != null) {
+        g.drawImage(tile, dx1, dy1, dx2, dy2, 0, 0, width, height, null);
+        return;
+      }
+      current.request(level, column, row, tileWorker, this::repaint);
+
+      // paint the tile of the image shown before
+      TilePyramid old = this.previous;
+      BufferedImage stale = old == null ? null : old.getTile(level, column, row);
+      if (stale != null) {
+        g.drawImage(stale, dx1, dy1, dx2, dy2, 0, 0, width, height, null);
+        return;
+      }
+
+      // or paint the same area from a smaller level that is ready
+      for (int up = 1; level + up < current.getLevels(); up++) {
+        BufferedImage parent = current.getTile(level + up, column >> up, row >> up);
+        if (parent == null) {
+          continue;
+        }
+        double shrink = 1L << up;
+        double sx = x / shrink - (column >> up) * TilePyramid.TILE_SIZE;
+        double sy = y / shrink - (row >> up) * TilePyramid.TILE_SIZE;
+        g.drawImage(parent, dx1, dy1, dx2, dy2, (int) Math.floor(sx), (int) Math.floor(sy),
+            Math.min(parent.getWidth(), (int) Math.ceil(sx + width / shrink)),
+            Math.min(parent.getHeight(), (int) Math.ceil(sy + height / shrink)), null);
+        return;
+      }
+    }
+  }
 }
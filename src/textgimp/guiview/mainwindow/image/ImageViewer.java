@@ -16,6 +16,16 @@ public interface ImageViewer {
    */
   void setImage(byte[] image) throws IOException;
 
+  /**
+   * Replace a part of the image shown to the user. The rest of the image is kept as it is.
+   *
+   * @param image the new pixels of the part.
+   * @param x     the first column of the part.
+   * @param y     the first row of the part.
+   * @throws IOException when the part cannot be shown, or no image is shown.
+   */
+  void updateImage(byte[] image, int x, int y) throws IOException;
+
   /**
    * Clear the image shown to the user.
    */
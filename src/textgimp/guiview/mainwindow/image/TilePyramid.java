@@ -0,0 +1,300 @@
+package textgimp.guiview.mainwindow.image;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * This class represents a tile pyramid of an image. Level 0 is the image itself and every following
+ * level is half the size of the one before, until the whole image fits in a single tile. Every
+ * level is cut into square tiles of {@link #TILE_SIZE} pixels.
+ *
+ * <p>Tiles are only created when they are requested, on the given executor. A tile of a smaller
+ * level is made by halving the four tiles it covers on the level before, so only the parts of the
+ * pyramid that were viewed are ever created. Tiles are kept until the pyramid is discarded.
+ *
+ * <p>A pyramid of an image changed inside a rectangle is created from the pyramid before the
+ * change, and only the tiles overlapping the rectangle are created again.
+ */
+final class TilePyramid {
+
+  static final int TILE_SIZE = 256;
+
+  private final BufferedImage image;
+  private final int width;
+  private final int height;
+  private final int levels;
+  private final Map<Long, BufferedImage> tiles;
+  private final Set<Long> requested;
+  private volatile boolean discarded;
+
+  /**
+   * Create the pyramid of an image. No tiles are created yet.
+   *
+   * @param image the image at full size
+   * @throws IllegalArgumentException if the image is null
+   */
+  TilePyramid(BufferedImage image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    this.image = image;
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+
+    // add levels until the whole image fits in one tile
+    int count = 1;
+    while (Math.max(this.levelWidth(count - 1), this.levelHeight(count - 1)) > TILE_SIZE) {
+      count++;
+    }
+    this.levels = count;
+    this.tiles = new ConcurrentHashMap<>();
+    this.requested = ConcurrentHashMap.newKeySet();
+    this.discarded = false;
+  }
+
+  /**
+   * Create the pyramid of an image that differs from the image of another pyramid only inside a
+   * rectangle. The new image is the old one with the given patch drawn over it. Tiles of the old
+   * pyramid that do not overlap the patch on any level are reused as they are.
+   *
+   * @param old   the pyramid of the image before the change
+   * @param patch the new pixels of the changed rectangle
+   * @param x     the first column of the changed rectangle
+   * @param y     the first row of the changed rectangle
+   * @throws IllegalArgumentException if the pyramid or patch is null, or the patch does not fit in
+   *                                  the image
+   */
+  TilePyramid(TilePyramid old, BufferedImage patch, int x, int y)
+      throws IllegalArgumentException {
+    this(patched(old, patch, x, y));
+
+    // keep the tiles outside of the patch, on every level
+    for (Map.Entry<Long, BufferedImage> entry : old.tiles.entrySet()) {
+      long key = entry.getKey();
+      int level = (int) (key >>> 56);
+      long size = (long) TILE_SIZE << level;
+      long left = ((key >>> 28) & 0xFFFFFFFL) * size;
+      long top = (key & 0xFFFFFFFL) * size;
+      if (left + size <= x || left >= x + patch.getWidth()
+          || top + size <= y || top >= y + patch.getHeight()) {
+        this.tiles.put(key, entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Get the width of the image at full size.
+   *
+   * @return the width of the image
+   */
+  int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Get the height of the image at full size.
+   *
+   * @return the height of the image
+   */
+  int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Get the number of levels of the pyramid.
+   *
+   * @return the number of levels, at least 1
+   */
+  int getLevels() {
+    return this.levels;
+  }
+
+  /**
+   * Get the width of the image on a level.
+   *
+   * @param level the level
+   * @return the width of the level
+   */
+  int levelWidth(int level) {
+    return (int) (((long) this.width + (1L << level) - 1) >> level);
+  }
+
+  /**
+   * Get the height of the image on a level.
+   *
+   * @param level the level
+   * @return the height of the level
+   */
+  int levelHeight(int level) {
+    return (int) (((long) this.height + (1L << level) - 1) >> level);
+  }
+
+  /**
+   * Get the number of tile columns of a level.
+   *
+   * @param level the level
+   * @return the number of columns
+   */
+  int columns(int level) {
+    return (this.levelWidth(level) + TILE_SIZE - 1) / TILE_SIZE;
+  }
+
+  /**
+   * Get the number of tile rows of a level.
+   *
+   * @param level the level
+   * @return the number of rows
+   */
+  int rows(int level) {
+    return (this.levelHeight(level) + TILE_SIZE - 1) / TILE_SIZE;
+  }
+
+  /**
+   * Get a tile if it was already created.
+   *
+   * @param level  the level of the tile
+   * @param column the column of the tile
+   * @param row    the row of the tile
+   * @return the tile, or null if it was not created yet
+   */
+  BufferedImage getTile(int level, int column, int row) {
+    return this.tiles.get(key(level, column, row));
+  }
+
+  /**
+   * Create a tile on the executor unless it exists or was already requested. The listener is run
+   * on the executor once the tile is ready, it is not run if the pyramid was discarded meanwhile.
+   *
+   * @param level    the level of the tile
+   * @param column   the column of the tile
+   * @param row      the row of the tile
+   * @param executor the executor that creates the tile
+   * @param ready    the listener run when the tile is ready
+   */
+  void request(int level, int column, int row, Executor executor, Runnable ready) {
+    long key = key(level, column, row);
+    if (this.discarded || this.tiles.containsKey(key) || !this.requested.add(key)) {
+      return;
+    }
+    executor.execute(() -> {
+      if (this.discarded) {
+        return;
+      }
+      this.createTile(level, column, row);
+      if (!this.discarded) {
+        ready.run();
+      }
+    });
+  }
+
+  /**
+   * Drop every tile and stop creating requested tiles.
+   */
+  void discard() {
+    this.discarded = true;
+    this.tiles.clear();
+  }
+
+  /**
+   * Get a tile, creating it and the tiles it is made from if needed.
+   *
+   * @param level  the level of the tile
+   * @param column the column of the tile
+   * @param row    the row of the tile
+   * @return the tile
+   */
+  BufferedImage createTile(int level, int column, int row) {
+    long key = key(level, column, row);
+    BufferedImage tile = this.tiles.get(key);
+    if (tile != null) {
+      return tile;
+    }
+    int x = column * TILE_SIZE;
+    int y = row * TILE_SIZE;
+    int tileWidth = Math.min(TILE_SIZE, this.levelWidth(level) - x);
+    int tileHeight = Math.min(TILE_SIZE, this.levelHeight(level) - y);
+    tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = tile.createGraphics();
+    try {
+      if (level == 0) {
+        // copy the region of the image
+        g.drawImage(this.image, 0, 0, tileWidth, tileHeight, x, y, x + tileWidth,
+            y + tileHeight, null);
+      } else {
+        // halve the tiles of the level before, bilinear sampling at half size averages 2x2 pixels
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        int half = TILE_SIZE / 2;
+        for (int i = 0; i < 2; i++) {
+          for (int j = 0; j < 2; j++) {
+            int childColumn = 2 * column + j;
+            int childRow = 2 * row + i;
+            if (childColumn >= this.columns(level - 1) || childRow >= this.rows(level - 1)) {
+              continue;
+            }
+            BufferedImage child = this.createTile(level - 1, childColumn, childRow);
+            g.drawImage(child, j * half, i * half, (child.getWidth() + 1) / 2,
+                (child.getHeight() + 1) / 2, null);
+          }
+        }
+      }
+    } finally {
+      g.dispose();
+    }
+    if (!this.discarded) {
+      this.tiles.put(key, tile);
+    }
+    return tile;
+  }
+
+  /**
+   * Copy the image of a pyramid and draw a patch over it.
+   *
+   * @param old   the pyramid to copy
+   * @param patch the patch to draw
+   * @param x     the column of the patch
+   * @param y     the row of the patch
+   * @return the changed copy
+   * @throws IllegalArgumentException if the pyramid or patch is null, or the patch does not fit in
+   *                                  the image
+   */
+  private static BufferedImage patched(TilePyramid old, BufferedImage patch, int x, int y)
+      throws IllegalArgumentException {
+    if (old == null || patch == null) {
+      throw new IllegalArgumentException("Pyramid and patch cannot be null.");
+    }
+    if (x < 0 || y < 0 || x + patch.getWidth() > old.width || y + patch.getHeight() > old.height) {
+      throw new IllegalArgumentException("Patch does not fit in the image.");
+    }
+
+    // the old image is never changed, it may still be read by tiles being created
+    BufferedImage image = new BufferedImage(old.width, old.height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.drawImage(old.image, 0, 0, null);
+      g.setComposite(AlphaComposite.Src);
+      g.drawImage(patch, x, y, null);
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /**
+   * Get the key of a tile in the cache.
+   *
+   * @param level  the level of the tile
+   * @param column the column of the tile
+   * @param row    the row of the tile
+   * @return the key of the tile
+   */
+  private static long key(int level, int column, int row) {
+    return ((long) level << 56) | ((long) column << 28) | row;
+  }
+}
@@ -1,67 +1,358 @@
 package textgimp.guiview.mainwindow.imageinfo;
 
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.border.BevelBorder;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartPanel;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.XYPlot;
-import org.jfree.chart.renderer.xy.XYSplineRenderer;
-import org.jfree.data.xy.XYDataset;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
 
 /**
- * This class represents a panel that displays the histogram of the image. Histogram is a 2D line
- * chart that shows the distribution of the pixels in the image.
+ * This class represents a panel that displays the histogram of the image. Histogram is a 2D chart
+ * that shows the distribution of the pixels in the image.
+ *
+ * <p>The histograms are drawn straight from their arrays into a cached image, which is only drawn
+ * again when the histograms, the style or the size of the panel change. Histograms equal to the
+ * ones already displayed do not cause a redraw. Wide histograms are reduced to one value per column
+ * of the chart by taking the largest count of the bins in that column.
  */
-public class GHistogramViewer extends ChartPanel implements ImageInfoViewer {
+public class GHistogramViewer extends JPanel implements ImageInfoViewer {
 
   private static final long serialVersionUID = 1L;
 
-  private final XYPlot plot;
+  // space around the chart, for the title, legend and axis labels
+  private static final int MARGIN_LEFT = 48;
+  private static final int MARGIN_RIGHT = 10;
+  private static final int MARGIN_TOP = 28;
+  private static final int MARGIN_BOTTOM = 34;
 
-  private final XYSplineRenderer renderer;
+  // opacity of bars, so overlapping histograms stay visible
+  private static final int BAR_ALPHA = 90;
 
-  private final XYSeriesCollection seriesCollection;
+  private final List<int[]> histograms;
+  private final List<String> labels;
+
+  // number of histograms displayed since the last clear, the rest are removed when painting
+  private int shown;
+
+  private Style style;
+  private boolean logScale;
+
+  // drawn chart, null when it must be drawn again
+  private transient BufferedImage chart;
+
+  /**
+   * This enum represents the ways a histogram can be drawn.
+   */
+  public enum Style {
+    BARS,
+    LINES
+  }
 
   /**
-   * Initialize the histogram panel and setup JFreeChart configuration. Line chart is drawn when
-   * displayHistogram is called.
+   * Initialize the histogram panel. Histograms are drawn as lines on a linear scale, the style can
+   * be changed from the popup menu of the panel.
    *
    * @param preferredSize the preferred size of the panel.
    */
   public GHistogramViewer(Dimension preferredSize) {
-    super(null);
+    super();
     setPreferredSize(preferredSize);
     setBorder(new BevelBorder(BevelBorder.RAISED));
-    XYDataset dataset = new XYSeriesCollection();
-    JFreeChart chart = ChartFactory.createXYLineChart(
-        "Histogram",
-        "Pixel Value",
-        "Frequency",
-        dataset);
-    plot = chart.getXYPlot();
-    renderer = new XYSplineRenderer();
-    seriesCollection = new XYSeriesCollection();
-    setChart(chart);
+    setBackground(Color.WHITE);
+    this.histograms = new ArrayList<>();
+    this.labels = new ArrayList<>();
+    this.shown = 0;
+    this.style = Style.LINES;
+    this.logScale = false;
+    this.chart = null;
+
+    // let the user switch between bars and lines, and linear and log scale
+    JPopupMenu menu = new JPopupMenu();
+    JCheckBoxMenuItem bars = new JCheckBoxMenuItem("Bars");
+    bars.addActionListener(e -> setStyle(bars.isSelected() ? Style.BARS : Style.LINES));
+    JCheckBoxMenuItem log = new JCheckBoxMenuItem("Log scale");
+    log.addActionListener(e -> setLogScale(log.isSelected()));
+    menu.add(bars);
+    menu.add(log);
+    setComponentPopupMenu(menu);
   }
 
   @Override
   public void displayHistogram(int[] histogram, String label) {
-    XYSeries series = new XYSeries(label);
-    for (int i = 0; i < histogram.length; i++) {
-      series.add(i, histogram[i]);
+    if (histogram == null || label == null) {
+      throw new IllegalArgumentException("Histogram and label cannot be null.");
+    }
+
+    // nothing changes if the same histogram is displayed again
+    if (this.shown < this.histograms.size()
+        && this.labels.get(this.shown).equals(label)
+        && Arrays.equals(this.histograms.get(this.shown), histogram)) {
+      this.shown++;
+      return;
     }
-    seriesCollection.addSeries(series);
-    plot.setDataset(seriesCollection);
-    plot.setRenderer(renderer);
+
+    // replace this histogram and the ones after it
+    this.histograms.subList(this.shown, this.histograms.size()).clear();
+    this.labels.subList(this.shown, this.labels.size()).clear();
+    this.histograms.add(histogram.clone());
+    this.labels.add(label);
+    this.shown++;
+    this.chart = null;
+    repaint();
   }
 
   @Override
   public void clearHistograms() {
-    seriesCollection.removeAllSeries();
-    plot.setDataset(seriesCollection);
-    plot.setRenderer(renderer);
+    // keep the histograms until painting, so displaying the same ones again does not redraw
+    this.shown = 0;
+    repaint();
+  }
+
+  /**
+   * Set how the histograms are drawn.
+   *
+   * @param style bars or lines.
+   * @throws IllegalArgumentException if the style is null.
+   */
+  public void setStyle(Style style) throws IllegalArgumentException {
+    if (style == null) {
+      throw new IllegalArgumentException("Style cannot be null.");
+    }
+    if (this.style != style) {
+      this.style = style;
+      this.chart = null;
+      repaint();
+    }
+  }
+
+  /**
+   * Set if the counts are drawn on a logarithmic scale, which keeps small counts visible next to a
+   * few very large ones.
+   *
+   * @param logScale true to draw the logarithm of the counts.
+   */
+  public void setLogScale(boolean logScale) {
+    if (this.logScale != logScale) {
+      this.logScale = logScale;
+      this.chart = null;
+      repaint();
+    }
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+
+    // drop the histograms that were cleared and not displayed again
+    if (this.shown < this.histograms.size()) {
+      this.histograms.subList(this.shown, this.histograms.size()).clear();
+      this.labels.subList(this.shown, this.labels.size()).clear();
+      this.chart = null;
+    }
+
+    Insets insets = getInsets();
+    int width = getWidth() - insets.left - insets.right;
+    int height = getHeight() - insets.top - insets.bottom;
+    if (width <= 0 || height <= 0) {
+      return;
+    }
+    if (this.chart == null || this.chart.getWidth() != width
+        || this.chart.getHeight() != height) {
+      this.chart = this.drawChart(width, height);
+    }
+    g.drawImage(this.chart, insets.left, insets.top, null);
+  }
+
+  /**
+   * Draw the title, axes, legend and every histogram into a new image.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @return the drawn chart.
+   */
+  private BufferedImage drawChart(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setColor(getBackground());
+      g.fillRect(0, 0, width, height);
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+          RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+      // title
+      g.setFont(getFont().deriveFont(Font.BOLD, 14f));
+      FontMetrics metrics = g.getFontMetrics();
+      g.setColor(Color.BLACK);
+      String title = this.logScale ? "Histogram (log scale)" : "Histogram";
+      g.drawString(title, (width - metrics.stringWidth(title)) / 2, metrics.getAscent() + 4);
+
+      int plotWidth = width - MARGIN_LEFT - MARGIN_RIGHT;
+      int plotHeight = height - MARGIN_TOP - MARGIN_BOTTOM;
+      if (plotWidth <= 0 || plotHeight <= 0) {
+        return image;
+      }
+
+      // reduce every histogram to one value per column and find the largest
+      int bins = 0;
+      for (int[] histogram : this.histograms) {
+        bins = Math.max(bins, histogram.length);
+      }
+      int largest = 0;
+      List<int[]> columns = new ArrayList<>();
+      for (int[] histogram : this.histograms) {
+        int[] values = this.toColumns(histogram, bins, plotWidth);
+        for (int value : values) {
+          largest = Math.max(largest, value);
+        }
+        columns.add(values);
+      }
+      double top = Math.max(this.scale(largest), 1);
+      for (int i = 0; i < columns.size(); i++) {
+        this.drawHistogram(g, columns.get(i), this.colorOf(this.labels.get(i)), top,
+            plotHeight);
+      }
+      this.drawAxes(g, plotWidth, plotHeight, bins, largest);
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /**
+   * Draw one histogram in the plot area.
+   *
+   * @param g          the graphics of the chart.
+   * @param columns    the value of every column of the plot.
+   * @param color      the color of the histogram.
+   * @param top        the scaled value at the top of the plot.
+   * @param plotHeight the height of the plot area.
+   */
+  private void drawHistogram(Graphics2D g, int[] columns, Color color, double top,
+      int plotHeight) {
+    int bottom = MARGIN_TOP + plotHeight;
+    if (this.style == Style.BARS) {
+      g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), BAR_ALPHA));
+      for (int x = 0; x < columns.length; x++) {
+        int barHeight = (int) Math.round(this.scale(columns[x]) / top * plotHeight);
+        g.fillRect(MARGIN_LEFT + x, bottom - barHeight, 1, barHeight);
+      }
+      return;
+    }
+    int[] xs = new int[columns.length];
+    int[] ys = new int[columns.length];
+    for (int x = 0; x < columns.length; x++) {
+      xs[x] = MARGIN_LEFT + x;
+      ys[x] = bottom - (int) Math.round(this.scale(columns[x]) / top * plotHeight);
+    }
+    g.setColor(color);
+    g.drawPolyline(xs, ys, columns.length);
+  }
+
+  /**
+   * Draw the frame of the plot, the axis labels and the legend.
+   *
+   * @param g          the graphics of the chart.
+   * @param plotWidth  the width of the plot area.
+   * @param plotHeight the height of the plot area.
+   * @param bins       the number of bins of the widest histogram.
+   * @param largest    the largest count of any histogram.
+   */
+  private void drawAxes(Graphics2D g, int plotWidth, int plotHeight, int bins, int largest) {
+    g.setFont(getFont().deriveFont(Font.PLAIN, 11f));
+    FontMetrics metrics = g.getFontMetrics();
+    int bottom = MARGIN_TOP + plotHeight;
+    g.setColor(Color.GRAY);
+    g.drawRect(MARGIN_LEFT, MARGIN_TOP, plotWidth, plotHeight);
+
+    // range of the values below the plot and the largest count beside it
+    g.setColor(Color.BLACK);
+    String last = String.valueOf(Math.max(bins - 1, 0));
+    g.drawString("0", MARGIN_LEFT, bottom + metrics.getAscent() + 2);
+    g.drawString(last, MARGIN_LEFT + plotWidth - metrics.stringWidth(last),
+        bottom + metrics.getAscent() + 2);
+    String axis = "Pixel Value";
+    g.drawString(axis, MARGIN_LEFT + (plotWidth - metrics.stringWidth(axis)) / 2,
+        bottom + 2 * metrics.getHeight());
+    String count = String.valueOf(largest);
+    g.drawString(count, Math.max(MARGIN_LEFT - metrics.stringWidth(count) - 4, 0),
+        MARGIN_TOP + metrics.getAscent());
+    g.drawString("0", MARGIN_LEFT - metrics.stringWidth("0") - 4, bottom);
+
+    // legend in the top right corner of the plot
+    int y = MARGIN_TOP + metrics.getAscent() + 2;
+    for (String label : this.labels) {
+      g.setColor(this.colorOf(label));
+      g.drawString(label, MARGIN_LEFT + plotWidth - metrics.stringWidth(label) - 4, y);
+      y += metrics.getHeight();
+    }
+  }
+
+  /**
+   * Reduce a histogram to one value per column of the plot. Every column shows the largest count
+   * of the bins it covers, narrow histograms repeat a bin over several columns. Bins past the end
+   * of a shorter histogram count as empty.
+   *
+   * @param histogram the histogram to reduce.
+   * @param bins      the number of bins spread over the columns.
+   * @param count     the number of columns.
+   * @return the value of every column.
+   */
+  private int[] toColumns(int[] histogram, int bins, int count) {
+    int[] columns = new int[count];
+    if (bins == 0) {
+      return columns;
+    }
+    for (int x = 0; x < count; x++) {
+      int start = (int) ((long) x * bins / count);
+      int end = Math.min(Math.max(start + 1, (int) ((long) (x + 1) * bins / count)),
+          histogram.length);
+      int value = 0;
+      for (int i = start; i < end; i++) {
+        value = Math.max(value, histogram[i]);
+      }
+      columns[x] = value;
+    }
+    return columns;
+  }
+
+  /**
+   * Scale a count for drawing.
+   *
+   * @param value the count.
+   * @return the count, or its logarithm on a log scale.
+   */
+  private double scale(int value) {
+    return this.logScale ? Math.log1p(Math.max(value, 0)) : Math.max(value, 0);
+  }
+
+  /**
+   * Get the color of the histogram with the given label.
+   *
+   * @param label the label of the histogram.
+   * @return the color of the histogram.
+   */
+  private Color colorOf(String label) {
+    switch (label.toLowerCase()) {
+      case "red":
+        return Color.RED;
+      case "green":
+        return new Color(0, 160, 0);
+      case "blue":
+        return Color.BLUE;
+      default:
+        return Color.DARK_GRAY;
+    }
   }
 }
@@ -3,32 +3,60 @@ package textgimp.guiview.mainwindow.status;
 import static textgimp.guiview.mainwindow.Theme.setPanelColors;
 
 import java.awt.FlowLayout;
+import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import textgimp.control.Features;
 import textgimp.guiview.mainwindow.Theme;
 import textgimp.utility.Result;
 
 /**
  * Implements the status panel of SwingGimp. The status panel shows the last action performed and
- * the result of the action.
+ * the result of the action. While an operation runs in the background, it also shows its progress
+ * and a button to cancel it.
  */
 public class GStatusPane extends JPanel implements StatusPanel {
 
+  private final Features features;
   private JLabel lastAction;
   private JLabel status;
+  private JProgressBar progress;
+  private JButton cancel;
 
   /**
    * Create a new status panel and initialize the components.
+   *
+   * @param features feature handler used to cancel operations.
    */
-  public GStatusPane() {
+  public GStatusPane(Features features) {
+    this.features = features;
     setLayout(new FlowLayout(FlowLayout.CENTER, 5, 40));
     addLastActionPane();
     addResultPane();
+    addProgressPane();
     setToolTipText("Displays the status of last action performed");
     setPanelColors(this);
   }
 
+  /**
+   * Add the progress bar and the cancel button to the status panel. Both are hidden until an
+   * operation runs in the background.
+   */
+  private void addProgressPane() {
+    progress = new JProgressBar(0, 100);
+    progress.setStringPainted(true);
+    progress.setVisible(false);
+    add(progress, 2);
+
+    cancel = new JButton("Cancel");
+    cancel.setToolTipText("Cancel the operations running on the full image.");
+    cancel.setVisible(false);
+    cancel.addActionListener(e -> setStatus("Cancel", features.cancel()));
+    add(cancel, 3);
+  }
+
   /**
    * Add the last action label to the status panel.
    */
@@ -49,6 +77,18 @@ public class GStatusPane extends JPanel implements StatusPanel {
     add(status, 1);
   }
 
+  @Override
+  public void showProgress(String task, double value) {
+    boolean running = value < 1;
+    progress.setVisible(running);
+    cancel.setVisible(running);
+    if (running) {
+      progress.setValue((int) Math.round(value * 100));
+      progress.setString(task + " " + progress.getValue() + "%");
+    }
+    revalidate();
+  }
+
   @Override
   public void setStatus(String action, Result res) {
     // update the status panel
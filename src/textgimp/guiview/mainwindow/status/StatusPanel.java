@@ -15,4 +15,13 @@ public interface StatusPanel {
    * @param res    result of the last action.
    */
   void setStatus(String action, Result res);
+
+  /**
+   * Show the progress of an operation running in the background. A progress of 1 or more hides
+   * the progress.
+   *
+   * @param task     description of the operation.
+   * @param progress fraction of the operation that is done.
+   */
+  void showProgress(String task, double progress);
 }
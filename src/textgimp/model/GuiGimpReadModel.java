@@ -1,6 +1,7 @@
 package textgimp.model;
 
 import java.io.IOException;
+import textgimp.model.betterimage.Region;
 
 /**
  * This class is an object adapter to model. Provides restricted access to the model allowing data
@@ -29,4 +30,26 @@ public class GuiGimpReadModel implements ReadOnlyModel {
   public byte[] getBytesOfImage(String name) throws IllegalArgumentException, IOException {
     return model.getBytesOfImage(name);
   }
+
+  @Override
+  public int[] getHistogramOfGreyscale(String name, String component, Region region)
+      throws IllegalArgumentException {
+    return model.getHistogramOfGreyscale(name, component, region);
+  }
+
+  @Override
+  public byte[] getBytesOfImage(String name, Region region)
+      throws IllegalArgumentException, IOException {
+    return model.getBytesOfImage(name, region);
+  }
+
+  @Override
+  public Region getBounds(String name) throws IllegalArgumentException {
+    return model.getBounds(name);
+  }
+
+  @Override
+  public Region getChangedRegion(String first, String second) throws IllegalArgumentException {
+    return model.getChangedRegion(first, second);
+  }
 }
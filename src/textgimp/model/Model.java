@@ -1,10 +1,15 @@
 package textgimp.model;
 
 import java.io.IOException;
+import textgimp.model.betterimage.Region;
 
 /**
  * This interface represents a model for the TextGimp program. Defines the available operations that
  * can be performed on images. This interface is used by the controller to interact with the model.
+ *
+ * <p>Operations on large images check between bands of rows if the calling thread was interrupted,
+ * and if so stop with a {@link java.util.concurrent.CancellationException}. The stored images are
+ * left unchanged.
  */
 public interface Model extends ReadOnlyModel {
 
@@ -132,4 +137,134 @@ public interface Model extends ReadOnlyModel {
    * @throws IllegalArgumentException if the image does not exist.
    */
   void dither(String sourceImageName, String newImageName) throws IllegalArgumentException;
+
+  /**
+   * Remove an image from the model, freeing the memory it and its history use.
+   *
+   * @param name name of the image to remove.
+   * @throws IllegalArgumentException if the image does not exist.
+   */
+  void unload(String name) throws IllegalArgumentException;
+
+  /**
+   * Load a reduced copy of an image from the byte array, whose width and height are at most the
+   * given size. Only the pixels of the preview are decoded, so this is much faster than loading
+   * the full image. The preview is stored in the model with the given name.
+   *
+   * @param input   input byte array to load the image from.
+   * @param name    name of the preview loaded.
+   * @param type    type of the image loaded.
+   * @param maxSize largest width and height of the preview.
+   * @throws IllegalArgumentException if the input is invalid or the size is not positive.
+   */
+  void loadPreview(byte[] input, String name, String type, int maxSize)
+      throws IllegalArgumentException;
+
+  /**
+   * Create a reduced copy of an image whose width and height are at most the given size. Images
+   * that already fit are stored as they are.
+   *
+   * @param sourceImageName name of the image to create a preview of.
+   * @param maxSize         largest width and height of the preview.
+   * @param newImageName    name of the preview.
+   * @throws IllegalArgumentException if the image does not exist or the size is not positive.
+   */
+  void preview(String sourceImageName, int maxSize, String newImageName)
+      throws IllegalArgumentException;
+
+  /**
+   * Resize an image to the given width and height. The selection of the source image is ignored,
+   * the whole image is resized.
+   *
+   * @param sourceImageName name of the image to resize.
+   * @param width           width of the resized image.
+   * @param height          height of the resized image.
+   * @param method          resampling method: nearest, bilinear, bicubic or lanczos.
+   * @param newImageName    name of the resized image.
+   * @throws IllegalArgumentException if the image does not exist, the size is not positive or the
+   *                                  method is not supported.
+   */
+  void resize(String sourceImageName, int width, int height, String method, String newImageName)
+      throws IllegalArgumentException;
+
+  /**
+   * Rotate an image clockwise around its center. Multiples of 90 degrees move the pixels exactly,
+   * other angles interpolate them and enlarge the image to hold all of it. The selection of the
+   * source image is ignored.
+   *
+   * @param sourceImageName name of the image to rotate.
+   * @param degrees         clockwise angle, negative angles rotate counterclockwise.
+   * @param newImageName    name of the rotated image.
+   * @throws IllegalArgumentException if the image does not exist or the angle is not finite.
+   */
+  void rotate(String sourceImageName, double degrees, String newImageName)
+      throws IllegalArgumentException;
+
+  /**
+   * Apply an affine transform to an image. The pixel at column x and row y moves to column
+   * a x + b y + c and row d x + e y + f. The transformed image has the size of the source and
+   * positions that no source pixel maps to are black, or transparent if the image has
+   * transparency. The selection of the source image is ignored.
+   *
+   * @param sourceImageName name of the image to transform.
+   * @param matrix          the six values a, b, c, d, e and f.
+   * @param newImageName    name of the transformed image.
+   * @throws IllegalArgumentException if the image does not exist or the matrix does not have six
+   *                                  values or cannot be inverted.
+   */
+  void affine(String sourceImageName, double[] matrix, String newImageName)
+      throws IllegalArgumentException;
+
+  /**
+   * Keep the undo history of the image with the given name. Every later change of the image stored
+   * with this name can be undone and redone. Changed images are kept by reference while they fit
+   * in the budget, older ones are compressed and the oldest are dropped when they do not. Any
+   * history kept for the name before is dropped.
+   *
+   * @param name   name of the image to keep the history of.
+   * @param budget maximum number of bytes kept by the history.
+   * @throws IllegalArgumentException if the name is null or the budget is not positive.
+   */
+  void keepHistory(String name, long budget) throws IllegalArgumentException;
+
+  /**
+   * Bring back the image stored with the given name before its last change that was not undone.
+   *
+   * @param name name of the image.
+   * @throws IllegalArgumentException if no history is kept for the name or there is nothing to
+   *                                  undo.
+   */
+  void undo(String name) throws IllegalArgumentException;
+
+  /**
+   * Apply again the last change of the image stored with the given name that was undone.
+   *
+   * @param name name of the image.
+   * @throws IllegalArgumentException if no history is kept for the name or there is nothing to
+   *                                  redo.
+   */
+  void redo(String name) throws IllegalArgumentException;
+
+  /**
+   * Select a region of the image stored with the given name. Operations applied to an image with
+   * a selection only change the selected region, the rest of the result shares its pixels with the
+   * source image. The destination of such an operation keeps the same selection.
+   *
+   * @param name   name of the image.
+   * @param region region to select, or null to select the whole image again.
+   * @throws IllegalArgumentException if the image does not exist or the region does not fit in it.
+   */
+  void select(String name, Region region) throws IllegalArgumentException;
+
+  /**
+   * Create an image from a region of another image. The new image references the pixels of the
+   * source image, so cropping copies no pixel.
+   *
+   * @param sourceImageName name of the image to crop.
+   * @param region          region to keep.
+   * @param newImageName    name of the cropped image.
+   * @throws IllegalArgumentException if the image does not exist or the region does not fit in it.
+   */
+  void crop(String sourceImageName, Region region, String newImageName)
+      throws IllegalArgumentException;
 }
@@ -1,6 +1,7 @@
 package textgimp.model;
 
 import java.io.IOException;
+import textgimp.model.betterimage.Region;
 
 /**
  * This interface represents a read only version of Model. This provides restricted access to the
@@ -27,4 +28,52 @@ public interface ReadOnlyModel {
    * @throws IllegalArgumentException if the image does not exist.
    */
   byte[] getBytesOfImage(String name) throws IllegalArgumentException, IOException;
+
+  /**
+   * Return the histogram of a grey-scaled region of an image. Only the pixels of the region are
+   * counted, so the histogram of a changed region can replace its old counts in the histogram of
+   * the whole image.
+   *
+   * @param name      name of the image loaded.
+   * @param component greyscale component.
+   * @param region    region of the image to count.
+   * @return the histogram of the region.
+   * @throws IllegalArgumentException if no image of "name" exists, or the region does not fit in
+   *                                  the image.
+   */
+  int[] getHistogramOfGreyscale(String name, String component, Region region)
+      throws IllegalArgumentException;
+
+  /**
+   * Return the byte array representation of a region of an image, in the format of the image. Used
+   * to redraw only the changed part of a displayed image.
+   *
+   * @param name   name of the image.
+   * @param region region of the image.
+   * @return byte array representation of the region.
+   * @throws IllegalArgumentException if the image does not exist or the region does not fit in the
+   *                                  image.
+   * @throws IOException              when the region cannot be written.
+   */
+  byte[] getBytesOfImage(String name, Region region) throws IllegalArgumentException, IOException;
+
+  /**
+   * Return the region covering a whole image.
+   *
+   * @param name name of the image.
+   * @return the region of every pixel of the image.
+   * @throws IllegalArgumentException if the image does not exist.
+   */
+  Region getBounds(String name) throws IllegalArgumentException;
+
+  /**
+   * Return the smallest region of the second image holding every pixel that differs from the first
+   * image. Images of different sizes differ everywhere.
+   *
+   * @param first  name of the first image.
+   * @param second name of the second image.
+   * @return the changed region of the second image, or null if the images are equal.
+   * @throws IllegalArgumentException if either image does not exist.
+   */
+  Region getChangedRegion(String first, String second) throws IllegalArgumentException;
 }
@@ -1,47 +1,134 @@
 package textgimp.model;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.betterimage.Region;
 import textgimp.model.imagebuilder.BMPBuilder;
 import textgimp.model.imagebuilder.ImageBuilder;
 import textgimp.model.imagebuilder.JPGBuilder;
 import textgimp.model.imagebuilder.PNGBuilder;
 import textgimp.model.imagebuilder.PPMBuilder;
+import textgimp.model.imagestore.ConcurrentImageStore;
+import textgimp.model.imagestore.ImageHistory;
+import textgimp.model.imagestore.ImageInterner;
+import textgimp.model.imagestore.ImageStore;
+import textgimp.model.imagestore.ResultCache;
 import textgimp.model.macros.Macro;
 import textgimp.model.macros.colortransform.Brighten;
 import textgimp.model.macros.colortransform.ColorTransformManager;
 import textgimp.model.macros.colortransform.ColorTransformPresetManager;
 import textgimp.model.macros.colortransform.ColorTransformType;
+import textgimp.model.macros.imagetransform.Affine;
 import textgimp.model.macros.imagetransform.Dither;
 import textgimp.model.macros.imagetransform.FilterManager;
 import textgimp.model.macros.imagetransform.FilterPresetManager;
 import textgimp.model.macros.imagetransform.FilterType;
 import textgimp.model.macros.imagetransform.HorizontalFlip;
 import textgimp.model.macros.imagetransform.RGBCombine;
+import textgimp.model.macros.imagetransform.ResampleType;
+import textgimp.model.macros.imagetransform.Resize;
+import textgimp.model.macros.imagetransform.Rotate;
+import textgimp.model.macros.imagetransform.Subsample;
 import textgimp.model.macros.imagetransform.VerticalFlip;
 
 /**
  * This class represents a TextGimp application model. This model is responsible for storing and
  * manipulating images. This class is used by the controller to interact with the model.
+ *
+ * <p>This model is thread-safe. Images are immutable and are kept in a concurrent image store, so
+ * independent operations can run in parallel. An operation that writes its result back to its own
+ * source name is retried if another thread rebinds that name while the operation is running.
+ *
+ * <p>Results of operations are kept in a bounded result cache, so repeating an operation with the
+ * same parameters on the same source image returns the image computed the first time. Images are
+ * interned by content before they are stored, so identical images share one object across names.
+ *
+ * <p>Names can keep an undo history. Every change of an image with such a name is recorded in the
+ * history, and changes made by applying a macro in place keep the macro as their recipe, so they
+ * are redone through the result cache.
+ *
+ * <p>Names can have a selected region. Macros applied to an image with a selection only compute
+ * the region, and the rest of the result shares the rows of the source planes. Cropped images are
+ * views of the rows of their source, so neither operation copies the pixels it does not change.
  */
 public class TextGimpModel implements Model {
 
-  private final Map<String, Image> imageSet;
+  private final ImageStore imageSet;
+  private final ResultCache resultCache;
+  private final ImageInterner imageInterner;
   private final Map<String, ImageBuilder> imageBuilders;
   private final ColorTransformManager colorTransformManager;
 
   private final FilterManager filterManager;
+  private final Map<String, ImageHistory> histories;
+  private final Map<String, Region> selections;
 
   /**
    * Create a new TextGimp model and initialize image builders and presets.
    */
   public TextGimpModel() {
-    this.imageSet = new HashMap<>();
+    this(new ConcurrentImageStore());
+  }
+
+  /**
+   * Create a new TextGimp model that keeps its images in the given store.
+   *
+   * @param imageStore store to keep the images in.
+   * @throws IllegalArgumentException if the image store is null.
+   */
+  public TextGimpModel(ImageStore imageStore) throws IllegalArgumentException {
+    this(imageStore, new ResultCache(ResultCache.DEFAULT_BUDGET), new ImageInterner());
+  }
+
+  /**
+   * Create a new TextGimp model that keeps its images in the given store and the results of its
+   * operations in the given cache.
+   *
+   * @param imageStore  store to keep the images in.
+   * @param resultCache cache to keep the results of operations in.
+   * @throws IllegalArgumentException if the image store or the result cache is null.
+   */
+  public TextGimpModel(ImageStore imageStore, ResultCache resultCache)
+      throws IllegalArgumentException {
+    this(imageStore, resultCache, new ImageInterner());
+  }
+
+  /**
+   * Create a new TextGimp model that keeps its images in the given store, the results of its
+   * operations in the given cache and shares identical images through the given interner.
+   *
+   * @param imageStore    store to keep the images in.
+   * @param resultCache   cache to keep the results of operations in.
+   * @param imageInterner interner used to share identical images.
+   * @throws IllegalArgumentException if any of the arguments is null.
+   */
+  public TextGimpModel(ImageStore imageStore, ResultCache resultCache,
+      ImageInterner imageInterner) throws IllegalArgumentException {
+    if (imageStore == null) {
+      throw new IllegalArgumentException("Image store cannot be null.");
+    }
+    if (resultCache == null) {
+      throw new IllegalArgumentException("Result cache cannot be null.");
+    }
+    if (imageInterner == null) {
+      throw new IllegalArgumentException("Image interner cannot be null.");
+    }
+    this.imageSet = imageStore;
+    this.resultCache = resultCache;
+    this.imageInterner = imageInterner;
     this.colorTransformManager = new ColorTransformPresetManager();
     this.imageBuilders = this.loadImageBuilders();
     this.filterManager = new FilterPresetManager();
+    this.histories = new ConcurrentHashMap<>();
+    this.selections = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -53,9 +140,10 @@ public class TextGimpModel implements Model {
     // fetch the image builder for the given type
     ImageBuilder builder = this.fetchBuilder(type);
 
-    // load and save the image
+    // load and save the image, a new image is not selected
     Image image = builder.loadImage(input);
-    this.imageSet.put(name, image);
+    this.store(name, this.imageInterner.intern(image));
+    this.selections.remove(name);
   }
 
   @Override
@@ -79,13 +167,9 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the flip
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // create macro and perform the flip
     Macro macro = new HorizontalFlip();
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "horizontal-flip", sourceImageName, newImageName);
   }
 
   @Override
@@ -95,13 +179,9 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the flip
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // create macro and perform the flip
     Macro macro = new VerticalFlip();
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "vertical-flip", sourceImageName, newImageName);
   }
 
   @Override
@@ -115,22 +195,24 @@ public class TextGimpModel implements Model {
 
     // fetch the image and perform the split using greyscale macros
     Image sourceImage = this.fetchImage(sourceImageName);
+    Region region = this.selections.get(sourceImageName);
 
     // obtain red-component using greyscale-red
-    Macro macro = this.colorTransformManager.getColorTransform(ColorTransformType.GREYSCALE_RED);
-    Image redImage = macro.apply(sourceImage);
+    Image redImage = this.applyColorTransform(ColorTransformType.GREYSCALE_RED, sourceImage,
+        region);
 
     // obtain green-component using greyscale-green
-    macro = this.colorTransformManager.getColorTransform(ColorTransformType.GREYSCALE_GREEN);
-    Image greenImage = macro.apply(sourceImage);
+    Image greenImage = this.applyColorTransform(ColorTransformType.GREYSCALE_GREEN, sourceImage,
+        region);
 
     // obtain blue-component using greyscale-blue
-    macro = this.colorTransformManager.getColorTransform(ColorTransformType.GREYSCALE_BLUE);
-    Image blueImage = macro.apply(sourceImage);
+    Image blueImage = this.applyColorTransform(ColorTransformType.GREYSCALE_BLUE, sourceImage,
+        region);
 
-    this.imageSet.put(redImageName, redImage);
-    this.imageSet.put(greenImageName, greenImage);
-    this.imageSet.put(blueImageName, blueImage);
+    this.store(redImageName, this.imageInterner.intern(redImage));
+    this.store(greenImageName, this.imageInterner.intern(greenImage));
+    this.store(blueImageName, this.imageInterner.intern(blueImage));
+    this.selectAs(region, redImageName, greenImageName, blueImageName);
 
   }
 
@@ -141,13 +223,9 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the brighten
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // create macro and perform the brighten
     Macro macro = new Brighten(amount);
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "brighten " + amount, sourceImageName, newImageName);
   }
 
   @Override
@@ -164,10 +242,14 @@ public class TextGimpModel implements Model {
     Image greenImage = this.fetchImage(sourceGreenImageName);
     Image blueImage = this.fetchImage(sourceBlueImageName);
 
-    // create macro and perform the combine
+    // create macro and perform the combine, only in the selection of the red image if it has one
     Macro macro = new RGBCombine(greenImage, blueImage);
-    Image newImage = macro.apply(redImage);
-    this.imageSet.put(newImageName, newImage);
+    Region region = this.selections.get(sourceRedImageName);
+    Image newImage = this.resultCache.getOrCompute(operationIn("rgb-combine", region),
+        () -> region == null ? macro.apply(redImage) : macro.apply(redImage, region),
+        redImage, greenImage, blueImage);
+    this.store(newImageName, this.imageInterner.intern(newImage));
+    this.selectAs(region, newImageName);
   }
 
 
@@ -178,17 +260,13 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the greyscale
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // fetch the macro from presets
     component = "greyscale-" + component.toLowerCase();
     ColorTransformType type = this.colorTransformManager.getColorTransformType(component);
 
     // apply the macro
     Macro macro = this.colorTransformManager.getColorTransform(type);
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "color-transform " + type, sourceImageName, newImageName);
   }
 
   @Override
@@ -198,17 +276,13 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the filter
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // fetch the macro from presets
     filterType = filterType.toLowerCase();
     FilterType type = this.filterManager.getFilterType(filterType);
     Macro macro = this.filterManager.getFilter(type);
 
     // apply the macro
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "filter " + type, sourceImageName, newImageName);
   }
 
   @Override
@@ -218,17 +292,13 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the transform
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // fetch the macro from presets
     transformType = transformType.toLowerCase();
     ColorTransformType type = this.colorTransformManager.getColorTransformType(transformType);
     Macro macro = this.colorTransformManager.getColorTransform(type);
 
     // apply the macro
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "color-transform " + type, sourceImageName, newImageName);
   }
 
   @Override
@@ -237,13 +307,334 @@ public class TextGimpModel implements Model {
     this.validateName(sourceImageName);
     this.validateName(newImageName);
 
-    // fetch the image and perform the dithering
-    Image sourceImage = this.fetchImage(sourceImageName);
-
     // create macro and perform the dithering
     Macro macro = new Dither();
-    Image newImage = macro.apply(sourceImage);
-    this.imageSet.put(newImageName, newImage);
+    this.applyMacro(macro, "dither", sourceImageName, newImageName);
+  }
+
+  @Override
+  public void unload(String name) throws IllegalArgumentException {
+    // validate name
+    this.validateName(name);
+
+    // remove the image, its history, its selection and the results computed from it
+    this.histories.remove(name);
+    this.selections.remove(name);
+    Image removed = this.imageSet.remove(name);
+    if (removed == null) {
+      throw new IllegalArgumentException("Image not found: " + name);
+    }
+    this.resultCache.release(removed);
+  }
+
+  @Override
+  public void loadPreview(byte[] input, String name, String type, int maxSize)
+      throws IllegalArgumentException {
+    // validate name and type
+    this.validateName(name);
+    this.validateType(type);
+
+    // fetch the image builder for the given type
+    ImageBuilder builder = this.fetchBuilder(type);
+
+    // decode only the pixels of the preview and save it
+    Image image = builder.loadPreview(input, maxSize);
+    this.store(name, this.imageInterner.intern(image));
+    this.selections.remove(name);
+  }
+
+  @Override
+  public void preview(String sourceImageName, int maxSize, String newImageName)
+      throws IllegalArgumentException {
+    // validate name
+    this.validateName(sourceImageName);
+    this.validateName(newImageName);
+
+    // create macro and perform the subsampling, a preview is always made of the whole image
+    Macro macro = new Subsample(maxSize);
+    this.applyMacro(macro, "preview " + maxSize, sourceImageName, null, newImageName);
+    this.selectAs(null, newImageName);
+  }
+
+  @Override
+  public void resize(String sourceImageName, int width, int height, String method,
+      String newImageName) throws IllegalArgumentException {
+    // validate name and method
+    this.validateName(sourceImageName);
+    this.validateName(newImageName);
+    if (method == null) {
+      throw new IllegalArgumentException("Resampling method cannot be null.");
+    }
+    ResampleType type;
+    try {
+      type = ResampleType.valueOf(method.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported resampling method: " + method);
+    }
+
+    // create macro and resize the whole image
+    Macro macro = new Resize(width, height, type);
+    this.applyMacro(macro, "resize " + width + " " + height + " " + type, sourceImageName, null,
+        newImageName);
+    this.selectAs(null, newImageName);
+  }
+
+  @Override
+  public void rotate(String sourceImageName, double degrees, String newImageName)
+      throws IllegalArgumentException {
+    // validate name
+    this.validateName(sourceImageName);
+    this.validateName(newImageName);
+
+    // quarter turns move the values exactly, other angles are interpolated
+    Macro macro;
+    if (degrees % 90 == 0) {
+      macro = new Rotate((int) (degrees % 360));
+    } else {
+      Image image = this.fetchImage(sourceImageName);
+      macro = Affine.rotation(degrees, image.getWidth(), image.getHeight());
+    }
+    this.applyMacro(macro, "rotate " + degrees, sourceImageName, null, newImageName);
+    this.selectAs(null, newImageName);
+  }
+
+  @Override
+  public void affine(String sourceImageName, double[] matrix, String newImageName)
+      throws IllegalArgumentException {
+    // validate name and matrix
+    this.validateName(sourceImageName);
+    this.validateName(newImageName);
+    if (matrix == null || matrix.length != 6) {
+      throw new IllegalArgumentException("Affine matrix must have six values.");
+    }
+
+    // the transformed image has the size of the source
+    Image image = this.fetchImage(sourceImageName);
+    Macro macro = new Affine(new double[][]{{matrix[0], matrix[1], matrix[2]},
+        {matrix[3], matrix[4], matrix[5]}}, image.getWidth(), image.getHeight());
+    this.applyMacro(macro, "affine " + Arrays.toString(matrix), sourceImageName, null,
+        newImageName);
+    this.selectAs(null, newImageName);
+  }
+
+  @Override
+  public void keepHistory(String name, long budget) throws IllegalArgumentException {
+    // validate name
+    this.validateName(name);
+
+    // start a new history, dropping the old one
+    this.histories.put(name, new ImageHistory(budget));
+  }
+
+  @Override
+  public void undo(String name) throws IllegalArgumentException {
+    // validate name
+    this.validateName(name);
+
+    // restore the image before the last change, no change is recorded meanwhile
+    ImageHistory history = this.fetchHistory(name);
+    synchronized (history) {
+      Image older = history.undo(this.fetchImage(name));
+      this.imageSet.put(name, this.imageInterner.intern(older));
+    }
+  }
+
+  @Override
+  public void redo(String name) throws IllegalArgumentException {
+    // validate name
+    this.validateName(name);
+
+    // restore or compute again the image after the last undone change
+    ImageHistory history = this.fetchHistory(name);
+    synchronized (history) {
+      Image newer = history.redo(this.fetchImage(name));
+      this.imageSet.put(name, this.imageInterner.intern(newer));
+    }
+  }
+
+  @Override
+  public void select(String name, Region region) throws IllegalArgumentException {
+    // validate name
+    this.validateName(name);
+
+    // the region must fit in the current image
+    Image image = this.fetchImage(name);
+    if (region == null) {
+      this.selections.remove(name);
+      return;
+    }
+    if (!region.fitsIn(image.getWidth(), image.getHeight())) {
+      throw new IllegalArgumentException("Region does not fit in the image: " + region);
+    }
+    this.selections.put(name, region);
+  }
+
+  @Override
+  public void crop(String sourceImageName, Region region, String newImageName)
+      throws IllegalArgumentException {
+    // validate name and region
+    this.validateName(sourceImageName);
+    this.validateName(newImageName);
+    if (region == null) {
+      throw new IllegalArgumentException("Region cannot be null.");
+    }
+
+    // the cropped image is a view of the rows of the source
+    Image sourceImage = this.fetchImage(sourceImageName);
+    Image newImage = this.resultCache.getOrCompute("crop " + region,
+        () -> PlanarImage.of(sourceImage).crop(region), sourceImage);
+    this.store(newImageName, this.imageInterner.intern(newImage));
+    this.selections.remove(newImageName);
+  }
+
+  /**
+   * Apply a color transform to an image, reusing a cached result if there is one.
+   *
+   * @param type   the type of color transform
+   * @param image  the image to transform
+   * @param region the region to transform, or null to transform the whole image
+   * @return the transformed image
+   */
+  private Image applyColorTransform(ColorTransformType type, Image image, Region region) {
+    Macro macro = this.colorTransformManager.getColorTransform(type);
+    return this.resultCache.getOrCompute(operationIn("color-transform " + type, region),
+        () -> region == null ? macro.apply(image) : macro.apply(image, region), image);
+  }
+
+  /**
+   * Apply a macro to the selection of the image with the given name, or to all of it if it has no
+   * selection, and store the result with the new name.
+   *
+   * @param macro           the macro to apply
+   * @param operation       name and parameters of the operation, used as cache key
+   * @param sourceImageName name of the image to apply the macro to
+   * @param newImageName    name of the resulting image
+   * @throws IllegalArgumentException if the image is not found
+   */
+  private void applyMacro(Macro macro, String operation, String sourceImageName,
+      String newImageName) throws IllegalArgumentException {
+    Region region = this.selections.get(sourceImageName);
+    this.applyMacro(macro, operation, sourceImageName, region, newImageName);
+    this.selectAs(region, newImageName);
+  }
+
+  /**
+   * Apply a macro to a region of the image with the given name and store the result with the new
+   * name. When the result replaces its own source, the update only succeeds if no other thread
+   * rebound the name meanwhile, otherwise the macro is applied again on the latest image. Results
+   * are looked up in the result cache first.
+   *
+   * @param macro           the macro to apply
+   * @param operation       name and parameters of the operation, used as cache key
+   * @param sourceImageName name of the image to apply the macro to
+   * @param region          the region to apply the macro to, or null for the whole image
+   * @param newImageName    name of the resulting image
+   * @throws IllegalArgumentException if the image is not found or the region does not fit in it
+   */
+  private void applyMacro(Macro macro, String operation, String sourceImageName, Region region,
+      String newImageName) throws IllegalArgumentException {
+    String key = operationIn(operation, region);
+    UnaryOperator<Image> recipe = image -> this.imageInterner.intern(
+        this.resultCache.getOrCompute(key,
+            () -> region == null ? macro.apply(image) : macro.apply(image, region), image));
+    while (true) {
+      Image sourceImage = this.fetchImage(sourceImageName);
+      Image newImage = recipe.apply(sourceImage);
+
+      // a different destination can be rebound directly
+      if (!sourceImageName.equals(newImageName)) {
+        this.store(newImageName, newImage);
+        return;
+      }
+
+      // in-place update, retry if the source changed while the macro was running
+      if (this.replace(newImageName, sourceImage, newImage, recipe)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Give images the selection of the image they were computed from.
+   *
+   * @param region the selection, or null if the whole image was computed
+   * @param names  the names of the computed images
+   */
+  private void selectAs(Region region, String... names) {
+    for (String name : names) {
+      if (region == null) {
+        this.selections.remove(name);
+      } else {
+        this.selections.put(name, region);
+      }
+    }
+  }
+
+  /**
+   * Get the cache key of an operation applied to a region.
+   *
+   * @param operation name and parameters of the operation
+   * @param region    the region the operation is applied to, or null for the whole image
+   * @return the cache key
+   */
+  private static String operationIn(String operation, Region region) {
+    return region == null ? operation : operation + " in " + region;
+  }
+
+  /**
+   * Bind an image to a name, recording the change if the name keeps a history.
+   *
+   * @param name  the name of the image
+   * @param image the image to store
+   */
+  private void store(String name, Image image) {
+    // retry if another thread rebound the name, so the change is recorded from its image
+    Image expected;
+    do {
+      expected = this.imageSet.get(name);
+    } while (!this.replace(name, expected, image, null));
+  }
+
+  /**
+   * Replace the image bound to a name if it is still the expected image, and record the change if
+   * the name keeps a history.
+   *
+   * @param name     the name of the image
+   * @param expected the image expected to be bound to the name, or null if it is unbound
+   * @param update   the new image
+   * @param recipe   the operation that computes the new image from the expected one, or null
+   * @return true if the image was replaced
+   */
+  private boolean replace(String name, Image expected, Image update,
+      UnaryOperator<Image> recipe) {
+    ImageHistory history = this.histories.get(name);
+    if (history == null) {
+      return this.imageSet.compareAndSet(name, expected, update);
+    }
+    synchronized (history) {
+      if (!this.imageSet.compareAndSet(name, expected, update)) {
+        return false;
+      }
+      if (expected != null && expected != update) {
+        history.record(expected, update, recipe);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Fetch the history kept for the given name.
+   *
+   * @param name the name of the image
+   * @return the history of the image
+   * @throws IllegalArgumentException if no history is kept for the name
+   */
+  private ImageHistory fetchHistory(String name) throws IllegalArgumentException {
+    ImageHistory history = this.histories.get(name);
+    if (history == null) {
+      throw new IllegalArgumentException("No history is kept for image: " + name);
+    }
+    return history;
   }
 
   /**
@@ -257,7 +648,7 @@ public class TextGimpModel implements Model {
     imageBuilders.put("png", new PNGBuilder());
     imageBuilders.put("jpg", new JPGBuilder());
     imageBuilders.put("bmp", new BMPBuilder());
-    return imageBuilders;
+    return Collections.unmodifiableMap(imageBuilders);
   }
 
   /**
@@ -283,7 +674,7 @@ public class TextGimpModel implements Model {
    * @throws IllegalArgumentException if the image is not found
    */
   private Image fetchImage(String name) throws IllegalArgumentException {
-    Image image = this.imageSet.getOrDefault(name, null);
+    Image image = this.imageSet.get(name);
     if (image == null) {
       throw new IllegalArgumentException("Image not found: " + name);
     }
@@ -317,17 +708,34 @@ public class TextGimpModel implements Model {
   @Override
   public int[] getHistogramOfGreyscale(String name, String component)
       throws IllegalArgumentException {
-    // transform the image to the given component.
+    return this.getHistogramOfGreyscale(name, component, this.getBounds(name));
+  }
+
+  @Override
+  public int[] getHistogramOfGreyscale(String name, String component, Region region)
+      throws IllegalArgumentException {
+    // transform the image, or only the region of it, to the given component
     ColorTransformType cType = colorTransformManager.getColorTransformType(component);
-    Macro transformer = colorTransformManager.getColorTransform(cType);
     Image img = fetchImage(name);
-    Image transformedImage = transformer.apply(img);
+    if (region == null || !region.fitsIn(img.getWidth(), img.getHeight())) {
+      throw new IllegalArgumentException("Region does not fit in the image.");
+    }
+    Image transformedImage;
+    if (region.equals(Region.of(img))) {
+      transformedImage = applyColorTransform(cType, img, null);
+    } else {
+      Macro macro = this.colorTransformManager.getColorTransform(cType);
+      transformedImage = macro.apply(PlanarImage.of(img).crop(region));
+    }
     int[] histogram = new int[transformedImage.getMaxValue() + 1];
 
-    // generate histogram array
-    for (int i = 0; i < transformedImage.getHeight(); i++) {
-      for (int j = 0; j < transformedImage.getWidth(); j++) {
-        histogram[transformedImage.getPixel(i, j).getRed()]++;
+    // generate histogram array from the rows of the transformed plane
+    Plane plane = PlanarImage.of(transformedImage).getRed();
+    int[] row = new int[plane.getWidth()];
+    for (int i = 0; i < plane.getHeight(); i++) {
+      plane.copyRow(i, row);
+      for (int value : row) {
+        histogram[value]++;
       }
     }
     return histogram;
@@ -345,4 +753,34 @@ public class TextGimpModel implements Model {
     ImageBuilder builder = this.fetchBuilder(image.getImageType());
     return builder.writeImage(image);
   }
+
+  @Override
+  public byte[] getBytesOfImage(String name, Region region)
+      throws IllegalArgumentException, IOException {
+    // validate name
+    this.validateName(name);
+
+    // copy the region of the image
+    Image image = this.fetchImage(name);
+    Image part = PlanarImage.of(image).crop(region);
+
+    // fetch the image builder for the given type
+    ImageBuilder builder = this.fetchBuilder(image.getImageType());
+    return builder.writeImage(part);
+  }
+
+  @Override
+  public Region getBounds(String name) throws IllegalArgumentException {
+    this.validateName(name);
+    return Region.of(this.fetchImage(name));
+  }
+
+  @Override
+  public Region getChangedRegion(String first, String second) throws IllegalArgumentException {
+    this.validateName(first);
+    this.validateName(second);
+    PlanarImage before = PlanarImage.of(this.fetchImage(first));
+    PlanarImage after = PlanarImage.of(this.fetchImage(second));
+    return before.changedRegion(after);
+  }
 }
@@ -3,6 +3,11 @@ package textgimp.model.betterimage;
 /**
  * This class represents a generic image with Pixels. The image is stored as a 2D array of Pixels.
  * This class is immutable, and the pixels cannot be changed after the image is created.
+ *
+ * <p>A digest of the color values is computed once when the image is created. It is used as the
+ * hash code and lets equals reject different images without comparing their pixels. Images are
+ * equal to any other image with the same size, maximum value, colors and transparency, pixels
+ * without a transparency being opaque.
  */
 public final class GenericImage implements Image {
 
@@ -10,6 +15,7 @@ public final class GenericImage implements Image {
   private final int width;
   private final int height;
   private final int maxValue;
+  private final long digest;
 
   private final String type;
 
@@ -34,6 +40,7 @@ public final class GenericImage implements Image {
     this.pixels = pixels;
     this.maxValue = maxValue;
     this.type = type;
+    this.digest = this.computeDigest();
   }
 
   @Override
@@ -64,6 +71,54 @@ public final class GenericImage implements Image {
     return type;
   }
 
+  @Override
+  public long getDigest() {
+    return this.digest;
+  }
+
+  /**
+   * Compute the digest of the image from its size, maximum value and the color values of its
+   * pixels, and their transparency if any pixel is not opaque. Every channel is hashed separately,
+   * so the digest is the same as that of a planar image with the same content.
+   *
+   * @return the digest of the image
+   */
+  private long computeDigest() {
+    long[] redRows = new long[this.height];
+    long[] greenRows = new long[this.height];
+    long[] blueRows = new long[this.height];
+    long[] alphaRows = new long[this.height];
+    boolean[] translucentRows = new boolean[this.height];
+    ImageDigest.rows(this.width, this.height).forEach(row -> {
+      long red = ImageDigest.startRow(row);
+      long green = red;
+      long blue = red;
+      long alpha = red;
+      for (Pixel pixel : this.pixels[row]) {
+        red = ImageDigest.mix(red, pixel.getRed());
+        green = ImageDigest.mix(green, pixel.getGreen());
+        blue = ImageDigest.mix(blue, pixel.getBlue());
+        int transparency = ImageDigest.transparency(pixel, this.maxValue);
+        alpha = ImageDigest.mix(alpha, transparency);
+        translucentRows[row] |= transparency != this.maxValue;
+      }
+      redRows[row] = ImageDigest.finish(red);
+      greenRows[row] = ImageDigest.finish(green);
+      blueRows[row] = ImageDigest.finish(blue);
+      alphaRows[row] = ImageDigest.finish(alpha);
+    });
+
+    long red = ImageDigest.channel(this.width, this.height, redRows);
+    long green = ImageDigest.channel(this.width, this.height, greenRows);
+    long blue = ImageDigest.channel(this.width, this.height, blueRows);
+    for (boolean translucent : translucentRows) {
+      if (translucent) {
+        return ImageDigest.image(this.maxValue, red, green, blue,
+            ImageDigest.channel(this.width, this.height, alphaRows));
+      }
+    }
+    return ImageDigest.image(this.maxValue, red, green, blue);
+  }
 
   @Override
   public boolean equals(Object o) {
@@ -73,13 +128,14 @@ public final class GenericImage implements Image {
     if (o == this) {
       return true;
     }
-    if (!(o instanceof GenericImage)) {
+    if (!(o instanceof Image)) {
       return false;
     }
 
-    // check width and height of other image
-    GenericImage other = (GenericImage) o;
-    if (this.width != other.getWidth()
+    // check the digest, width and height of other image
+    Image other = (Image) o;
+    if (this.digest != other.getDigest()
+        || this.width != other.getWidth()
         || this.height != other.getHeight()
         || this.maxValue != other.getMaxValue()) {
       return false;
@@ -88,7 +144,7 @@ public final class GenericImage implements Image {
     // check if all pixels are the same
     for (int i = 0; i < this.height; i++) {
       for (int j = 0; j < this.width; j++) {
-        if (!this.pixels[i][j].equals(other.getPixel(i, j))) {
+        if (!ImageDigest.samePixel(this.pixels[i][j], other.getPixel(i, j), this.maxValue)) {
           return false;
         }
       }
@@ -98,15 +154,6 @@ public final class GenericImage implements Image {
 
   @Override
   public int hashCode() {
-    int result = 17;
-    result = 13 * this.width + result;
-    result = 23 * this.height + result;
-    result = 31 * this.maxValue + result;
-    for (int i = 0; i < this.height; i++) {
-      for (int j = 0; j < this.width; j++) {
-        result = result + 7 * this.pixels[i][j].hashCode();
-      }
-    }
-    return result;
+    return Long.hashCode(this.digest);
   }
 }
@@ -43,4 +43,12 @@ public interface Image {
    * @return String type of the image.
    */
   String getImageType();
+
+  /**
+   * Get a 64-bit digest of the content of the image. Equal images have the same digest, so images
+   * with different digests are known to be different without comparing their pixels.
+   *
+   * @return the digest of the image
+   */
+  long getDigest();
 }
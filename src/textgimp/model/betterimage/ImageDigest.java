@@ -0,0 +1,145 @@
+package textgimp.model.betterimage;
+
+import java.util.stream.IntStream;
+
+/**
+ * This class computes the content digests of images. Every channel is hashed row by row, the row
+ * digests are combined in order into a channel digest and the channel digests are combined with
+ * the maximum value into the image digest. Images with the same size, maximum value and color
+ * values have the same digest whatever their representation, and the digest of a shared channel
+ * can be reused.
+ *
+ * <p>Pixels without transparency are opaque, so a transparency channel only changes the digest if
+ * one of its values is below the maximum value. Images are compared with the same rule.
+ */
+final class ImageDigest {
+
+  // images with at least this many pixels are hashed in parallel
+  private static final int PARALLEL_PIXELS = 1 << 16;
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /**
+   * This class only has static helpers.
+   */
+  private ImageDigest() {
+  }
+
+  /**
+   * Get the indices of the rows of an image, in parallel if the image is large.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return stream of row indices
+   */
+  static IntStream rows(int width, int height) {
+    IntStream rows = IntStream.range(0, height);
+    if ((long) width * height >= PARALLEL_PIXELS) {
+      rows = rows.parallel();
+    }
+    return rows;
+  }
+
+  /**
+   * Get the starting digest of a row.
+   *
+   * @param row the index of the row
+   * @return the starting digest
+   */
+  static long startRow(int row) {
+    return row;
+  }
+
+  /**
+   * Combine the digests of the rows of a channel, in order.
+   *
+   * @param width      the width of the channel
+   * @param height     the height of the channel
+   * @param rowDigests the finished digest of every row
+   * @return the digest of the channel
+   */
+  static long channel(int width, int height, long[] rowDigests) {
+    long result = mix(mix(0, width), height);
+    for (long rowDigest : rowDigests) {
+      result = mix(result, rowDigest);
+    }
+    return finish(result);
+  }
+
+  /**
+   * Combine the digests of the channels of an image.
+   *
+   * @param maxValue the maximum value of a color in the image
+   * @param red      the digest of the red channel
+   * @param green    the digest of the green channel
+   * @param blue     the digest of the blue channel
+   * @return the digest of the image
+   */
+  static long image(int maxValue, long red, long green, long blue) {
+    return finish(mix(mix(mix(mix(0, maxValue), red), green), blue));
+  }
+
+  /**
+   * Combine the digests of the channels of an image that is not fully opaque.
+   *
+   * @param maxValue the maximum value of a color in the image
+   * @param red      the digest of the red channel
+   * @param green    the digest of the green channel
+   * @param blue     the digest of the blue channel
+   * @param alpha    the digest of the transparency channel
+   * @return the digest of the image
+   */
+  static long image(int maxValue, long red, long green, long blue, long alpha) {
+    return finish(mix(mix(mix(mix(mix(0, maxValue), red), green), blue), alpha));
+  }
+
+  /**
+   * Get the transparency of a pixel, pixels without one are opaque.
+   *
+   * @param pixel    the pixel
+   * @param maxValue the maximum value of a color in the image of the pixel
+   * @return the transparency of the pixel
+   */
+  static int transparency(Pixel pixel, int maxValue) {
+    return pixel instanceof PNGPixel ? ((PNGPixel) pixel).getTransparency() : maxValue;
+  }
+
+  /**
+   * Check if two pixels of images with the same maximum value have the same colors and
+   * transparency.
+   *
+   * @param first    the first pixel
+   * @param second   the second pixel
+   * @param maxValue the maximum value of a color in both images
+   * @return true if the pixels have the same content
+   */
+  static boolean samePixel(Pixel first, Pixel second, int maxValue) {
+    return first.getRed() == second.getRed()
+        && first.getGreen() == second.getGreen()
+        && first.getBlue() == second.getBlue()
+        && transparency(first, maxValue) == transparency(second, maxValue);
+  }
+
+  /**
+   * Mix a value into a running digest.
+   *
+   * @param digest the running digest
+   * @param value  the value to add
+   * @return the new running digest
+   */
+  static long mix(long digest, long value) {
+    long result = (digest ^ value) * MULTIPLIER;
+    return result ^ (result >>> 29);
+  }
+
+  /**
+   * Spread the bits of a running digest so that every input bit affects every output bit.
+   *
+   * @param digest the running digest
+   * @return the final digest
+   */
+  static long finish(long digest) {
+    digest = (digest ^ (digest >>> 33)) * 0xFF51AFD7ED558CCDL;
+    digest = (digest ^ (digest >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return digest ^ (digest >>> 33);
+  }
+}
@@ -21,12 +21,30 @@ public class PNGPixel extends RGBPixel implements Pixel {
    */
   public PNGPixel(int red, int green, int blue, int transparency, int maxValue)
       throws IllegalArgumentException {
+    this(red, green, blue, transparency, maxValue, true);
+  }
+
+  /**
+   * Create a new PNG pixel, optionally skipping the validation of its values. Only the pixel
+   * factory skips validation, for values its callers guarantee to be in range.
+   *
+   * @param red          the red component
+   * @param green        the green component
+   * @param blue         the blue component
+   * @param transparency the transparency value
+   * @param maxValue     the maximum value of a color in this image (usually 255)
+   * @param validate     true if the values must be checked
+   * @throws IllegalArgumentException if validated and any of the components are not in the range
+   *                                  [0, maxValue]
+   */
+  PNGPixel(int red, int green, int blue, int transparency, int maxValue, boolean validate)
+      throws IllegalArgumentException {
     // create a new RGB pixel - call to super
-    super(red, green, blue, maxValue);
+    super(red, green, blue, maxValue, validate);
     this.maxValue = maxValue;
 
     // validate the transparency value
-    if (!isValid(transparency)) {
+    if (validate && !isValid(transparency)) {
       throw new IllegalArgumentException(
           "The transparency value must be in the range [0, " + this.maxValue + "].");
     }
@@ -44,7 +62,7 @@ public class PNGPixel extends RGBPixel implements Pixel {
 
   @Override
   public Pixel createPixel(int red, int green, int blue) {
-    return new PNGPixel(red, green, blue, this.transparency, this.maxValue);
+    return PixelFactory.rgba(red, green, blue, this.transparency, this.maxValue);
   }
 
   @Override
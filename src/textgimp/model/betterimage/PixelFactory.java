@@ -0,0 +1,204 @@
+package textgimp.model.betterimage;
+
+/**
+ * This class creates pixels, sharing one object between pixels with the same values. Pixels are
+ * immutable, so images can reuse the same pixel object wherever the color repeats. This cuts the
+ * number of pixel objects of an image from one per pixel to at most one per distinct color.
+ *
+ * <p>Grey pixels with a maximum value of 255 come from a table holding all 256 of them. Other
+ * pixels are kept in direct-mapped caches of bounded size, a slot is simply overwritten when a
+ * different color maps to it. The caches are shared by all threads without locking: pixels only
+ * have final fields, so a pixel read from a slot is always fully constructed, and a lost update
+ * only means that an equal pixel is created again.
+ *
+ * <p>The package-private trusted methods skip the range checks of the pixel constructors. They
+ * are used by planar images, whose planes were validated when the image was created, anything
+ * else should use the checked methods.
+ */
+public final class PixelFactory {
+
+  private static final int GREY_LEVELS = 256;
+  private static final int CACHE_BITS = 16;
+  private static final int CACHE_MASK = (1 << CACHE_BITS) - 1;
+
+  private static final RGBPixel[] GREY_PIXELS = createGreyPixels();
+  private static final RGBPixel[] RGB_PIXELS = new RGBPixel[1 << CACHE_BITS];
+  private static final PNGPixel[] PNG_PIXELS = new PNGPixel[1 << CACHE_BITS];
+
+  /**
+   * This class only has static helpers.
+   */
+  private PixelFactory() {
+  }
+
+  /**
+   * Get an RGB pixel with the given values.
+   *
+   * @param red      the red component
+   * @param green    the green component
+   * @param blue     the blue component
+   * @param maxValue the maximum value of a color in the image (usually 255)
+   * @return a pixel with the given values, possibly shared
+   * @throws IllegalArgumentException if any of the components are not in the range [0, maxValue]
+   */
+  public static RGBPixel rgb(int red, int green, int blue, int maxValue)
+      throws IllegalArgumentException {
+    return rgb(red, green, blue, maxValue, true);
+  }
+
+  /**
+   * Get an RGB pixel with the given values, without checking them. The caller guarantees that every
+   * component is in the range [0, maxValue].
+   *
+   * @param red      the red component
+   * @param green    the green component
+   * @param blue     the blue component
+   * @param maxValue the maximum value of a color in the image (usually 255)
+   * @return a pixel with the given values, possibly shared
+   */
+  static RGBPixel trustedRgb(int red, int green, int blue, int maxValue) {
+    return rgb(red, green, blue, maxValue, false);
+  }
+
+  /**
+   * Get a PNG pixel with the given values, without checking them. The caller guarantees that every
+   * component is in the range [0, maxValue].
+   *
+   * @param red          the red component
+   * @param green        the green component
+   * @param blue         the blue component
+   * @param transparency the transparency value
+   * @param maxValue     the maximum value of a color in the image (usually 255)
+   * @return a pixel with the given values, possibly shared
+   */
+  static PNGPixel trustedRgba(int red, int green, int blue, int transparency, int maxValue) {
+    return rgba(red, green, blue, transparency, maxValue, false);
+  }
+
+  /**
+   * Get an RGB pixel with the given values from the caches, creating it on a miss.
+   *
+   * @param red      the red component
+   * @param green    the green component
+   * @param blue     the blue component
+   * @param maxValue the maximum value of a color in the image
+   * @param validate true if a new pixel must check its values
+   * @return a pixel with the given values, possibly shared
+   * @throws IllegalArgumentException if validated and any of the components are out of range
+   */
+  private static RGBPixel rgb(int red, int green, int blue, int maxValue, boolean validate)
+      throws IllegalArgumentException {
+    // invalid values never reach the caches, the constructor reports the error
+    if (validate && !(inRange(red, maxValue) && inRange(green, maxValue)
+        && inRange(blue, maxValue))) {
+      return new RGBPixel(red, green, blue, maxValue);
+    }
+
+    // grey pixels of 8-bit images are always cached
+    if (maxValue == GREY_LEVELS - 1 && red == green && green == blue
+        && red >= 0 && red < GREY_LEVELS) {
+      return GREY_PIXELS[red];
+    }
+
+    int slot = slot(red, green, blue, maxValue, 0);
+    RGBPixel cached = RGB_PIXELS[slot];
+    if (cached != null && cached.getRed() == red && cached.getGreen() == green
+        && cached.getBlue() == blue && cached.getMaxValue() == maxValue) {
+      return cached;
+    }
+    RGBPixel pixel = new RGBPixel(red, green, blue, maxValue, validate);
+    RGB_PIXELS[slot] = pixel;
+    return pixel;
+  }
+
+  /**
+   * Get a PNG pixel with the given values.
+   *
+   * @param red          the red component
+   * @param green        the green component
+   * @param blue         the blue component
+   * @param transparency the transparency value
+   * @param maxValue     the maximum value of a color in the image (usually 255)
+   * @return a pixel with the given values, possibly shared
+   * @throws IllegalArgumentException if any of the components are not in the range [0, maxValue]
+   */
+  public static PNGPixel rgba(int red, int green, int blue, int transparency, int maxValue)
+      throws IllegalArgumentException {
+    return rgba(red, green, blue, transparency, maxValue, true);
+  }
+
+  /**
+   * Get a PNG pixel with the given values from the cache, creating it on a miss.
+   *
+   * @param red          the red component
+   * @param green        the green component
+   * @param blue         the blue component
+   * @param transparency the transparency value
+   * @param maxValue     the maximum value of a color in the image
+   * @param validate     true if a new pixel must check its values
+   * @return a pixel with the given values, possibly shared
+   * @throws IllegalArgumentException if validated and any of the components are out of range
+   */
+  private static PNGPixel rgba(int red, int green, int blue, int transparency, int maxValue,
+      boolean validate) throws IllegalArgumentException {
+    // invalid values never reach the cache, the constructor reports the error
+    if (validate && !(inRange(red, maxValue) && inRange(green, maxValue)
+        && inRange(blue, maxValue) && inRange(transparency, maxValue))) {
+      return new PNGPixel(red, green, blue, transparency, maxValue);
+    }
+
+    int slot = slot(red, green, blue, maxValue, transparency);
+    PNGPixel cached = PNG_PIXELS[slot];
+    if (cached != null && cached.getRed() == red && cached.getGreen() == green
+        && cached.getBlue() == blue && cached.getTransparency() == transparency
+        && cached.getMaxValue() == maxValue) {
+      return cached;
+    }
+    PNGPixel pixel = new PNGPixel(red, green, blue, transparency, maxValue, validate);
+    PNG_PIXELS[slot] = pixel;
+    return pixel;
+  }
+
+  /**
+   * Check if a value is in the range [0, maxValue].
+   *
+   * @param value    the value to check
+   * @param maxValue the maximum value
+   * @return true if the value is in range
+   */
+  private static boolean inRange(int value, int maxValue) {
+    return value >= 0 && value <= maxValue;
+  }
+
+  /**
+   * Find the cache slot of a pixel.
+   *
+   * @param red          the red component
+   * @param green        the green component
+   * @param blue         the blue component
+   * @param maxValue     the maximum value of a color
+   * @param transparency the transparency value, 0 for RGB pixels
+   * @return index of the slot in the cache
+   */
+  private static int slot(int red, int green, int blue, int maxValue, int transparency) {
+    int hash = red * 0x9E3779B1;
+    hash = (hash ^ green) * 0x85EBCA6B;
+    hash = (hash ^ blue) * 0xC2B2AE35;
+    hash = (hash ^ transparency) * 0x27D4EB2F;
+    hash ^= maxValue;
+    return (hash ^ (hash >>> CACHE_BITS)) & CACHE_MASK;
+  }
+
+  /**
+   * Create all grey pixels of 8-bit images.
+   *
+   * @return grey pixels indexed by their value
+   */
+  private static RGBPixel[] createGreyPixels() {
+    RGBPixel[] pixels = new RGBPixel[GREY_LEVELS];
+    for (int i = 0; i < GREY_LEVELS; i++) {
+      pixels[i] = new RGBPixel(i, i, i, GREY_LEVELS - 1);
+    }
+    return pixels;
+  }
+}
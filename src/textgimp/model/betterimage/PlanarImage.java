@@ -0,0 +1,379 @@
+package textgimp.model.betterimage;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an image stored as separate red, green, blue and optional transparency
+ * planes. Planes are immutable and can be shared, so images whose channels are copies of the
+ * channels of other images reference the same planes instead of copying them. Combining three
+ * images or building a greyscale image from one channel needs no new values at all.
+ *
+ * <p>Pixels are created when they are requested. Images with a transparency plane return PNG
+ * pixels and the others return RGB pixels. A transparency plane whose values are all the maximum
+ * value is opaque, so the image is equal to and has the digest of the same colors without one.
+ */
+public final class PlanarImage implements Image {
+
+  private final Plane red;
+  private final Plane green;
+  private final Plane blue;
+  private final Plane alpha;
+  private final int width;
+  private final int height;
+  private final int maxValue;
+  private final String type;
+  private final long digest;
+
+  /**
+   * Create a new image from the given planes. The same plane may be used for several channels.
+   *
+   * @param red      the red plane
+   * @param green    the green plane
+   * @param blue     the blue plane
+   * @param alpha    the transparency plane, or null if the image has no transparency
+   * @param maxValue the maximum value of a color in this image (usually 255)
+   * @param type     type of the image
+   * @throws IllegalArgumentException if a color plane is null, if the planes have different sizes
+   *                                  or if any value is not in the range [0, maxValue]
+   */
+  public PlanarImage(Plane red, Plane green, Plane blue, Plane alpha, int maxValue, String type)
+      throws IllegalArgumentException {
+    if (red == null || green == null || blue == null) {
+      throw new IllegalArgumentException("Color planes cannot be null.");
+    }
+    if (maxValue < 0) {
+      throw new IllegalArgumentException("Maximum value of a color cannot be less than 0.");
+    }
+    this.width = red.getWidth();
+    this.height = red.getHeight();
+
+    // validate the planes, their ranges are known so no value has to be read
+    for (Plane plane : new Plane[]{red, green, blue, alpha}) {
+      if (plane == null) {
+        continue;
+      }
+      if (plane.getWidth() != this.width || plane.getHeight() != this.height) {
+        throw new IllegalArgumentException("All planes must be the same size.");
+      }
+      if (plane.getMin() < 0 || plane.getMax() > maxValue) {
+        throw new IllegalArgumentException("Pixel values must be in the range [0, "
+            + maxValue + "].");
+      }
+    }
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+    this.alpha = alpha;
+    this.maxValue = maxValue;
+    this.type = type;
+    if (this.isOpaque()) {
+      this.digest = ImageDigest.image(maxValue, red.getDigest(), green.getDigest(),
+          blue.getDigest());
+    } else {
+      this.digest = ImageDigest.image(maxValue, red.getDigest(), green.getDigest(),
+          blue.getDigest(), alpha.getDigest());
+    }
+  }
+
+  /**
+   * Get a planar image with the same content as the given image. Planar images are returned as
+   * they are, other images are copied into new planes. The copy has a transparency plane if any
+   * pixel has a transparency, pixels without one are opaque.
+   *
+   * @param image the image to convert
+   * @return a planar image equal to the given image
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static PlanarImage of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    if (image instanceof PlanarImage) {
+      return (PlanarImage) image;
+    }
+
+    // copy the values of every pixel into the planes
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int maxValue = image.getMaxValue();
+    int[] red = new int[width * height];
+    int[] green = new int[width * height];
+    int[] blue = new int[width * height];
+    int[] alpha = null;
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        Pixel pixel = image.getPixel(i, j);
+        int index = i * width + j;
+        red[index] = pixel.getRed();
+        green[index] = pixel.getGreen();
+        blue[index] = pixel.getBlue();
+        if (pixel instanceof PNGPixel) {
+          if (alpha == null) {
+            alpha = new int[width * height];
+            Arrays.fill(alpha, 0, index, maxValue);
+          }
+          alpha[index] = ((PNGPixel) pixel).getTransparency();
+        } else if (alpha != null) {
+          alpha[index] = maxValue;
+        }
+      }
+    }
+    return new PlanarImage(new Plane(red, width, height), new Plane(green, width, height),
+        new Plane(blue, width, height), alpha == null ? null : new Plane(alpha, width, height),
+        maxValue, image.getImageType());
+  }
+
+  /**
+   * Get the smallest subsampling step that makes an image of the given size fit in a square of
+   * the given size. Keeping every step-th pixel of every step-th row gives an image whose sides
+   * are at most maxSize.
+   *
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param maxSize the largest allowed width and height
+   * @return the subsampling step, 1 if the image already fits
+   * @throws IllegalArgumentException if the size or the maximum size is not positive
+   */
+  public static int previewStep(int width, int height, int maxSize)
+      throws IllegalArgumentException {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Preview size must be positive.");
+    }
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Image has no pixels.");
+    }
+    int longest = Math.max(width, height);
+    return (longest + maxSize - 1) / maxSize;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getMaxValue() {
+    return this.maxValue;
+  }
+
+  @Override
+  public Pixel getPixel(int x, int y) throws IllegalArgumentException {
+    if (x < 0 || x >= this.height || y < 0 || y >= this.width) {
+      throw new IllegalArgumentException("There is no pixel with the given coordinates.");
+    }
+
+    // values were validated when the planes were added
+    int r = this.red.get(x, y);
+    int g = this.green.get(x, y);
+    int b = this.blue.get(x, y);
+    if (this.alpha == null) {
+      return PixelFactory.trustedRgb(r, g, b, this.maxValue);
+    }
+    return PixelFactory.trustedRgba(r, g, b, this.alpha.get(x, y), this.maxValue);
+  }
+
+  @Override
+  public String getImageType() {
+    return this.type;
+  }
+
+  @Override
+  public long getDigest() {
+    return this.digest;
+  }
+
+  /**
+   * Get the red plane of the image.
+   *
+   * @return the red plane
+   */
+  public Plane getRed() {
+    return this.red;
+  }
+
+  /**
+   * Get the green plane of the image.
+   *
+   * @return the green plane
+   */
+  public Plane getGreen() {
+    return this.green;
+  }
+
+  /**
+   * Get the blue plane of the image.
+   *
+   * @return the blue plane
+   */
+  public Plane getBlue() {
+    return this.blue;
+  }
+
+  /**
+   * Get the transparency plane of the image.
+   *
+   * @return the transparency plane, or null if the image has no transparency
+   */
+  public Plane getAlpha() {
+    return this.alpha;
+  }
+
+  /**
+   * Create a new image from a region of this image. The planes of the new image are views of the
+   * region of the planes of this image, no value is copied.
+   *
+   * @param region the region to copy
+   * @return the image of the region, or this image if the region covers all of it
+   * @throws IllegalArgumentException if the region is null or does not fit in the image
+   */
+  public PlanarImage crop(Region region) throws IllegalArgumentException {
+    if (region == null || !region.fitsIn(this.width, this.height)) {
+      throw new IllegalArgumentException("Region does not fit in the image.");
+    }
+    if (region.getWidth() == this.width && region.getHeight() == this.height) {
+      return this;
+    }
+    return new PlanarImage(this.red.crop(region), this.green.crop(region),
+        this.blue.crop(region), this.alpha == null ? null : this.alpha.crop(region),
+        this.maxValue, this.type);
+  }
+
+  /**
+   * Create a new image whose pixels in a region are replaced by the pixels of another image. Rows
+   * of the planes outside the region are shared with this image, and planes that are shared by
+   * several channels of both images stay shared.
+   *
+   * @param region the region to replace
+   * @param part   the new pixels of the region, the same size as the region
+   * @return the patched image, or the part if the region covers all of this image
+   * @throws IllegalArgumentException if the region or the part is null, if the region does not fit
+   *                                  in the image or if the part differs in size, maximum value or
+   *                                  transparency
+   */
+  public PlanarImage patch(Region region, PlanarImage part) throws IllegalArgumentException {
+    if (region == null || !region.fitsIn(this.width, this.height)) {
+      throw new IllegalArgumentException("Region does not fit in the image.");
+    }
+    if (part == null || part.width != region.getWidth() || part.height != region.getHeight()
+        || part.maxValue != this.maxValue || (part.alpha == null) != (this.alpha == null)) {
+      throw new IllegalArgumentException("Part does not match the region of the image.");
+    }
+    if (part.width == this.width && part.height == this.height) {
+      return part;
+    }
+
+    // patch every distinct pair of planes once
+    Plane[] mine = {this.red, this.green, this.blue, this.alpha};
+    Plane[] theirs = {part.red, part.green, part.blue, part.alpha};
+    Plane[] patched = new Plane[mine.length];
+    for (int i = 0; i < mine.length && mine[i] != null; i++) {
+      for (int j = 0; j < i && patched[i] == null; j++) {
+        if (mine[j] == mine[i] && theirs[j] == theirs[i]) {
+          patched[i] = patched[j];
+        }
+      }
+      if (patched[i] == null) {
+        patched[i] = mine[i].patch(region, theirs[i]);
+      }
+    }
+    return new PlanarImage(patched[0], patched[1], patched[2], patched[3], this.maxValue,
+        this.type);
+  }
+
+  /**
+   * Find the smallest region that holds every pixel that differs between this image and another
+   * one. Planes shared by both images are skipped. Images of different sizes, ranges or
+   * transparency differ everywhere, so the whole other image is returned.
+   *
+   * @param other the image to compare with
+   * @return the region of the differences in the other image, or null if the images are equal
+   * @throws IllegalArgumentException if the other image is null
+   */
+  public Region changedRegion(PlanarImage other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    if (other.width != this.width || other.height != this.height
+        || other.maxValue != this.maxValue || (other.alpha == null) != (this.alpha == null)) {
+      return Region.of(other);
+    }
+
+    // the union of the changes of every plane
+    Region changed = null;
+    Plane[] mine = {this.red, this.green, this.blue, this.alpha};
+    Plane[] theirs = {other.red, other.green, other.blue, other.alpha};
+    for (int i = 0; i < mine.length; i++) {
+      if (mine[i] == null) {
+        continue;
+      }
+      Region plane = mine[i].changedRegion(theirs[i]);
+      if (plane != null) {
+        changed = changed == null ? plane : changed.union(plane);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Check if every pixel of the image is opaque, because it has no transparency plane or all the
+   * values of the plane are the maximum value.
+   *
+   * @return true if the image is opaque
+   */
+  private boolean isOpaque() {
+    return this.alpha == null || this.alpha.getMin() == this.maxValue;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == null) {
+      return false;
+    }
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof Image)) {
+      return false;
+    }
+
+    // check the digest, width and height of other image
+    Image other = (Image) o;
+    if (this.digest != other.getDigest()
+        || this.width != other.getWidth()
+        || this.height != other.getHeight()
+        || this.maxValue != other.getMaxValue()) {
+      return false;
+    }
+
+    // compare whole planes when the other image is planar too
+    if (other instanceof PlanarImage) {
+      PlanarImage planar = (PlanarImage) other;
+      boolean opaque = this.isOpaque();
+      if (opaque != planar.isOpaque() || !opaque && !this.alpha.sameValues(planar.alpha)) {
+        return false;
+      }
+      return this.red.sameValues(planar.red) && this.green.sameValues(planar.green)
+          && this.blue.sameValues(planar.blue);
+    }
+
+    // check if all pixels are the same
+    for (int i = 0; i < this.height; i++) {
+      for (int j = 0; j < this.width; j++) {
+        if (!ImageDigest.samePixel(this.getPixel(i, j), other.getPixel(i, j), this.maxValue)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(this.digest);
+  }
+}
@@ -0,0 +1,771 @@
+package textgimp.model.betterimage;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a single channel of an image, stored as one array of values per row.
+ * Planes are immutable, so any number of images can share the same plane, and planes can share
+ * rows: a cropped plane references the rows of its source starting at a column offset, and a
+ * patched plane only copies the rows that were changed.
+ *
+ * <p>The digest and the smallest and largest value of every row are computed once when the row is
+ * created or first viewed, so images built from existing planes can be validated and hashed
+ * without reading the values again.
+ *
+ * <p>Values are stored in the smallest array that holds them: bytes for values in [0, 255], shorts
+ * for values in [0, 65535] and ints otherwise. An 8-bit plane takes a quarter of the memory of an
+ * int array and a 16-bit plane half of it. Macros write new values through a {@link Builder},
+ * whose arrays are chosen from the maximum value of the image, so they never hold a whole plane
+ * as ints.
+ */
+public final class Plane {
+
+  private static final int BYTE_MAX = 0xFF;
+  private static final int SHORT_MAX = 0xFFFF;
+
+  // exactly one of the arrays holds the rows, each row starts at the same column offset
+  private final byte[][] bytes;
+  private final short[][] shorts;
+  private final int[][] ints;
+  private final int column;
+  private final int width;
+  private final int height;
+  private final int[] rowMin;
+  private final int[] rowMax;
+  private final long[] rowDigests;
+  private final int min;
+  private final int max;
+  private final long digest;
+
+  /**
+   * Create a new plane from the given values. The values are copied into one array per row, so
+   * the given array can be reused after the plane is created.
+   *
+   * @param values the values of the plane in row-major order
+   * @param width  the width of the plane
+   * @param height the height of the plane
+   * @throws IllegalArgumentException if the values are null, if the plane has no values or if the
+   *                                  number of values does not match the size
+   */
+  public Plane(int[] values, int width, int height) throws IllegalArgumentException {
+    if (values == null) {
+      throw new IllegalArgumentException("Values cannot be null.");
+    }
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Plane has no values.");
+    }
+    if ((long) width * height != values.length) {
+      throw new IllegalArgumentException("Number of values does not match the size of the plane.");
+    }
+    this.column = 0;
+    this.width = width;
+    this.height = height;
+
+    // find the range and digest of every row, in parallel for large planes
+    this.rowDigests = new long[height];
+    this.rowMin = new int[height];
+    this.rowMax = new int[height];
+    ImageDigest.rows(width, height).forEach(row -> {
+      long result = ImageDigest.startRow(row);
+      int low = Integer.MAX_VALUE;
+      int high = Integer.MIN_VALUE;
+      for (int i = row * width, end = i + width; i < end; i++) {
+        int value = values[i];
+        result = ImageDigest.mix(result, value);
+        low = Math.min(low, value);
+        high = Math.max(high, value);
+      }
+      this.rowDigests[row] = ImageDigest.finish(result);
+      this.rowMin[row] = low;
+      this.rowMax[row] = high;
+    });
+    this.min = Arrays.stream(this.rowMin).min().getAsInt();
+    this.max = Arrays.stream(this.rowMax).max().getAsInt();
+    this.digest = ImageDigest.channel(width, height, this.rowDigests);
+
+    // keep the values in the smallest array that holds them
+    if (this.min >= 0 && this.max <= BYTE_MAX) {
+      this.bytes = new byte[height][width];
+      this.shorts = null;
+      this.ints = null;
+    } else if (this.min >= 0 && this.max <= SHORT_MAX) {
+      this.bytes = null;
+      this.shorts = new short[height][width];
+      this.ints = null;
+    } else {
+      this.bytes = null;
+      this.shorts = null;
+      this.ints = new int[height][];
+    }
+    Object[] rows = this.rows();
+    ImageDigest.rows(width, height).forEach(row -> store(rows, row, values, row * width, 0,
+        width));
+  }
+
+  /**
+   * Create a new plane from existing rows. The range and digest of the rows from start to end are
+   * computed from the values, the others are given.
+   *
+   * @param rows       the rows of the new plane, their kind of array is the one used
+   * @param column     the index of the first value of the plane in every row
+   * @param width      the width of the plane
+   * @param rowMin     the smallest value of every row, owned by the new plane
+   * @param rowMax     the largest value of every row, owned by the new plane
+   * @param rowDigests the digest of every row, owned by the new plane
+   * @param start      the first row whose range and digest are computed
+   * @param end        the row after the last row whose range and digest are computed
+   */
+  private Plane(Object[] rows, int column, int width, int[] rowMin, int[] rowMax,
+      long[] rowDigests, int start, int end) {
+    this.bytes = rows instanceof byte[][] ? (byte[][]) rows : null;
+    this.shorts = rows instanceof short[][] ? (short[][]) rows : null;
+    this.ints = rows instanceof int[][] ? (int[][]) rows : null;
+    this.column = column;
+    this.width = width;
+    this.height = rows.length;
+    this.rowMin = rowMin;
+    this.rowMax = rowMax;
+    this.rowDigests = rowDigests;
+
+    // only the given rows are read
+    ImageDigest.rows(width, end - start).forEach(i -> {
+      int row = start + i;
+      long result = ImageDigest.startRow(row);
+      int low = Integer.MAX_VALUE;
+      int high = Integer.MIN_VALUE;
+      for (int j = 0; j < width; j++) {
+        int value = this.get(row, j);
+        result = ImageDigest.mix(result, value);
+        low = Math.min(low, value);
+        high = Math.max(high, value);
+      }
+      this.rowDigests[row] = ImageDigest.finish(result);
+      this.rowMin[row] = low;
+      this.rowMax[row] = high;
+    });
+    this.min = Arrays.stream(this.rowMin).min().getAsInt();
+    this.max = Arrays.stream(this.rowMax).max().getAsInt();
+    this.digest = ImageDigest.channel(width, this.height, this.rowDigests);
+  }
+
+  /**
+   * Create a builder that writes the values of a new plane straight into the smallest array that
+   * holds every value up to the given maximum, so a macro never holds the plane as ints.
+   *
+   * @param width    the width of the plane
+   * @param height   the height of the plane
+   * @param maxValue the largest value that will be written
+   * @return the builder, every value of which is 0
+   * @throws IllegalArgumentException if the plane has no values or the maximum is negative
+   */
+  public static Builder builder(int width, int height, int maxValue)
+      throws IllegalArgumentException {
+    return new Builder(width, height, maxValue);
+  }
+
+  /**
+   * Get the value at the given position. The position is not checked.
+   *
+   * @param row    the row of the value
+   * @param column the column of the value
+   * @return the value at the given position
+   */
+  public int get(int row, int column) {
+    int index = this.column + column;
+    if (this.bytes != null) {
+      return this.bytes[row][index] & BYTE_MAX;
+    }
+    if (this.shorts != null) {
+      return this.shorts[row][index] & SHORT_MAX;
+    }
+    return this.ints[row][index];
+  }
+
+  /**
+   * Copy one row of the plane into the start of the given array.
+   *
+   * @param row         the row to copy
+   * @param destination the array to copy into, at least as long as the width of the plane
+   * @throws IllegalArgumentException if the row does not exist or the array is too short
+   */
+  public void copyRow(int row, int[] destination) throws IllegalArgumentException {
+    this.copyRow(row, destination, 0);
+  }
+
+  /**
+   * Copy one row of the plane into the given array, starting at the given offset.
+   *
+   * @param row         the row to copy
+   * @param destination the array to copy into
+   * @param offset      the index in the array of the first value of the row
+   * @throws IllegalArgumentException if the row does not exist or the row does not fit in the
+   *                                  array
+   */
+  public void copyRow(int row, int[] destination, int offset) throws IllegalArgumentException {
+    this.copyRow(row, 0, this.width, destination, offset);
+  }
+
+  /**
+   * Copy part of one row of the plane into the given array, starting at the given offset.
+   *
+   * @param row         the row to copy
+   * @param column      the first column to copy
+   * @param length      the number of values to copy
+   * @param destination the array to copy into
+   * @param offset      the index in the array of the first value copied
+   * @throws IllegalArgumentException if the row does not exist, the columns are not in the plane
+   *                                  or the values do not fit in the array
+   */
+  public void copyRow(int row, int column, int length, int[] destination, int offset)
+      throws IllegalArgumentException {
+    if (row < 0 || row >= this.height) {
+      throw new IllegalArgumentException("There is no row with the given index.");
+    }
+    if (column < 0 || length < 0 || column > this.width - length) {
+      throw new IllegalArgumentException("Columns are not in the plane.");
+    }
+    if (destination == null || offset < 0 || destination.length - offset < length) {
+      throw new IllegalArgumentException("Destination is too short for a row.");
+    }
+    int start = this.column + column;
+    if (this.bytes != null) {
+      byte[] values = this.bytes[row];
+      for (int i = 0; i < length; i++) {
+        destination[offset + i] = values[start + i] & BYTE_MAX;
+      }
+    } else if (this.shorts != null) {
+      short[] values = this.shorts[row];
+      for (int i = 0; i < length; i++) {
+        destination[offset + i] = values[start + i] & SHORT_MAX;
+      }
+    } else {
+      System.arraycopy(this.ints[row], start, destination, offset, length);
+    }
+  }
+
+
+  /**
+   * Create a new plane by replacing every value with its entry in a lookup table. This is the
+   * fastest way to apply any function of a single value, the function is evaluated once per
+   * possible value instead of once per pixel.
+   *
+   * @param table the new value of every possible value, indexed by the old value
+   * @return the new plane
+   * @throws IllegalArgumentException if the table is null or does not cover every value of the
+   *                                  plane
+   */
+  public Plane lookup(int[] table) throws IllegalArgumentException {
+    if (table == null || this.min < 0 || this.max >= table.length) {
+      throw new IllegalArgumentException("Lookup table does not cover every value of the plane.");
+    }
+    int[] values = new int[this.width * this.height];
+    ImageDigest.rows(this.width, this.height).forEach(row -> {
+      int start = row * this.width;
+      for (int j = 0; j < this.width; j++) {
+        values[start + j] = table[this.get(row, j)];
+      }
+    });
+    return new Plane(values, this.width, this.height);
+  }
+
+  /**
+   * Create a smaller plane by keeping every step-th value of every step-th row, starting with the
+   * first. The new plane is ceil(width / step) wide and ceil(height / step) high.
+   *
+   * @param step the distance between two kept values, in both directions
+   * @return the subsampled plane, or this plane if the step is 1
+   * @throws IllegalArgumentException if the step is less than 1
+   */
+  public Plane subsample(int step) throws IllegalArgumentException {
+    if (step < 1) {
+      throw new IllegalArgumentException("Subsampling step must be at least 1.");
+    }
+    if (step == 1) {
+      return this;
+    }
+    int newWidth = (this.width + step - 1) / step;
+    int newHeight = (this.height + step - 1) / step;
+    if (this.min < 0) {
+      int[] values = new int[newWidth * newHeight];
+      for (int i = 0; i < newHeight; i++) {
+        for (int j = 0; j < newWidth; j++) {
+          values[i * newWidth + j] = this.get(i * step, j * step);
+        }
+      }
+      return new Plane(values, newWidth, newHeight);
+    }
+
+    // kept values are at most the largest value of this plane
+    Builder builder = new Builder(newWidth, newHeight, this.max);
+    for (int i = 0; i < newHeight; i++) {
+      for (int j = 0; j < newWidth; j++) {
+        builder.set(i, j, this.get(i * step, j * step));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Get a view of a region of this plane. The view references the rows of this plane, no value is
+   * copied, only the range and digest of the region are computed.
+   *
+   * @param region the region to view
+   * @return the values of the region, or this plane if the region covers all of it
+   * @throws IllegalArgumentException if the region is null or does not fit in the plane
+   */
+  public Plane crop(Region region) throws IllegalArgumentException {
+    if (region == null || !region.fitsIn(this.width, this.height)) {
+      throw new IllegalArgumentException("Region does not fit in the plane.");
+    }
+    if (region.getWidth() == this.width && region.getHeight() == this.height) {
+      return this;
+    }
+    int newHeight = region.getHeight();
+    Object[] rows = Arrays.copyOfRange(this.rows(), region.getY(), region.getY() + newHeight);
+    return new Plane(rows, this.column + region.getX(), region.getWidth(),
+        new int[newHeight], new int[newHeight], new long[newHeight], 0, newHeight);
+  }
+
+  /**
+   * Get a view of this plane upside down. The view references the rows of this plane in reverse
+   * order, no value is copied, only the digest of the view is computed.
+   *
+   * @return the plane with its rows in reverse order
+   */
+  public Plane flipRows() {
+    Object[] rows = this.rows().clone();
+    for (int i = 0, j = rows.length - 1; i < j; i++, j--) {
+      Object row = rows[i];
+      rows[i] = rows[j];
+      rows[j] = row;
+    }
+    return new Plane(rows, this.column, this.width, new int[this.height],
+        new int[this.height], new long[this.height], 0, this.height);
+  }
+
+  /**
+   * Create a new plane whose values in a region are replaced by the values of another plane. Rows
+   * outside the region are shared with this plane and only the rows of the region are copied.
+   *
+   * @param region the region to replace
+   * @param part   the new values of the region, the same size as the region
+   * @return the patched plane, this plane if the part is a view of the same region of it, or the
+   *         part if the region covers all of this plane
+   * @throws IllegalArgumentException if the region or the part is null, if the region does not fit
+   *                                  in the plane or if the part is not the size of the region
+   */
+  public Plane patch(Region region, Plane part) throws IllegalArgumentException {
+    if (region == null || !region.fitsIn(this.width, this.height)) {
+      throw new IllegalArgumentException("Region does not fit in the plane.");
+    }
+    if (part == null || part.width != region.getWidth() || part.height != region.getHeight()) {
+      throw new IllegalArgumentException("Part must be the size of the region.");
+    }
+    if (part.width == this.width && part.height == this.height) {
+      return part;
+    }
+    int top = region.getY();
+    int bottom = top + region.getHeight();
+    Object[] mine = this.rows();
+    Object[] theirs = part.rows();
+    boolean unchanged = part.column == this.column + region.getX();
+    for (int i = 0; unchanged && i < theirs.length; i++) {
+      unchanged = theirs[i] == mine[top + i];
+    }
+    if (unchanged) {
+      return this;
+    }
+
+    // values that do not fit in the arrays of this plane are stored again in wider arrays
+    if (part.min < 0 || part.max > this.largest()) {
+      int[] values = new int[this.width * this.height];
+      for (int row = 0; row < this.height; row++) {
+        if (row >= top && row < bottom) {
+          this.copyRow(row, values, row * this.width);
+          part.copyRow(row - top, values, row * this.width + region.getX());
+        } else {
+          this.copyRow(row, values, row * this.width);
+        }
+      }
+      return new Plane(values, this.width, this.height);
+    }
+
+    // copy the rows of the region and write the part into them
+    Object[] rows = mine.clone();
+    int[] buffer = new int[part.width];
+    for (int row = top; row < bottom; row++) {
+      rows[row] = copyOf(mine[row]);
+      part.copyRow(row - top, buffer);
+      store(rows, row, buffer, 0, this.column + region.getX(), part.width);
+    }
+    return new Plane(rows, this.column, this.width, this.rowMin.clone(),
+        this.rowMax.clone(), this.rowDigests.clone(), top, bottom);
+  }
+
+  /**
+   * Find the smallest region that holds every value that differs between this plane and another
+   * one of the same size. Rows are compared from the top and from the bottom until a difference
+   * is found, so small changes only read the rows around them.
+   *
+   * @param other the plane to compare with
+   * @return the region of the differences, or null if the planes have the same values
+   * @throws IllegalArgumentException if the other plane is null or has a different size
+   */
+  public Region changedRegion(Plane other) throws IllegalArgumentException {
+    if (other == null || other.width != this.width || other.height != this.height) {
+      throw new IllegalArgumentException("Planes must have the same size.");
+    }
+    if (other == this || this.sameValues(other)) {
+      return null;
+    }
+
+    // first and last rows with a difference
+    int top = 0;
+    while (this.firstDifference(other, top) < 0) {
+      top++;
+    }
+    int bottom = this.height - 1;
+    while (bottom > top && this.firstDifference(other, bottom) < 0) {
+      bottom--;
+    }
+
+    // first and last columns with a difference in those rows
+    int left = this.width;
+    int right = -1;
+    for (int i = top; i <= bottom; i++) {
+      int first = this.firstDifference(other, i);
+      if (first < 0) {
+        continue;
+      }
+      left = Math.min(left, first);
+      for (int j = this.width - 1; j > right; j--) {
+        if (this.get(i, j) != other.get(i, j)) {
+          right = j;
+          break;
+        }
+      }
+    }
+    return new Region(left, top, right - left + 1, bottom - top + 1);
+  }
+
+  /**
+   * Get the width of the plane.
+   *
+   * @return the width of the plane
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Get the height of the plane.
+   *
+   * @return the height of the plane
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Get the digest of the values of the plane.
+   *
+   * @return the digest of the plane
+   */
+  public long getDigest() {
+    return this.digest;
+  }
+
+  /**
+   * Get the number of bytes used to store a single value: 1, 2 or 4.
+   *
+   * @return bytes per value
+   */
+  public int getBytesPerValue() {
+    if (this.bytes != null) {
+      return Byte.BYTES;
+    }
+    return this.shorts != null ? Short.BYTES : Integer.BYTES;
+  }
+
+  /**
+   * Get the smallest value of the plane.
+   *
+   * @return the smallest value
+   */
+  int getMin() {
+    return this.min;
+  }
+
+  /**
+   * Get the largest value of the plane.
+   *
+   * @return the largest value
+   */
+  int getMax() {
+    return this.max;
+  }
+
+  /**
+   * Check if this plane has the same values as another plane.
+   *
+   * @param other the plane to compare with
+   * @return true if both planes have the same size and values
+   */
+  boolean sameValues(Plane other) {
+    if (other == this) {
+      return true;
+    }
+    if (this.digest != other.digest || this.width != other.width
+        || this.height != other.height) {
+      return false;
+    }
+    for (int row = 0; row < this.height; row++) {
+      if (this.firstDifference(other, row) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Find the first column of a row where this plane and another one of the same size differ.
+   *
+   * @param other the plane to compare with
+   * @param row   the row to compare
+   * @return the first differing column, or -1 if the rows are equal
+   */
+  private int firstDifference(Plane other, int row) {
+    int start = this.column;
+    int end = start + this.width;
+    int otherStart = other.column;
+    int otherEnd = otherStart + this.width;
+
+    // shared rows are equal, rows with the same kind of array are compared at once
+    if (this.rows()[row] == other.rows()[row] && start == otherStart) {
+      return -1;
+    }
+    int index;
+    if (this.bytes != null && other.bytes != null) {
+      index = Arrays.mismatch(this.bytes[row], start, end, other.bytes[row], otherStart, otherEnd);
+    } else if (this.shorts != null && other.shorts != null) {
+      index = Arrays.mismatch(this.shorts[row], start, end, other.shorts[row], otherStart,
+          otherEnd);
+    } else if (this.ints != null && other.ints != null) {
+      index = Arrays.mismatch(this.ints[row], start, end, other.ints[row], otherStart, otherEnd);
+    } else {
+      index = -1;
+      for (int j = 0; j < this.width; j++) {
+        if (this.get(row, j) != other.get(row, j)) {
+          index = j;
+          break;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Get the rows of the plane, whatever their kind of array.
+   *
+   * @return the rows
+   */
+  private Object[] rows() {
+    if (this.bytes != null) {
+      return this.bytes;
+    }
+    return this.shorts != null ? this.shorts : this.ints;
+  }
+
+  /**
+   * Get the largest value the arrays of this plane can hold.
+   *
+   * @return the largest value that can be stored
+   */
+  private int largest() {
+    if (this.bytes != null) {
+      return BYTE_MAX;
+    }
+    return this.shorts != null ? SHORT_MAX : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Write values into a row of a new plane. A missing int row is created from the values.
+   *
+   * @param rows   the rows of the plane
+   * @param row    the row to write
+   * @param values the values to write
+   * @param offset the index of the first value to write
+   * @param index  the index in the row of the first written value
+   * @param length the number of values to write
+   */
+  private static void store(Object[] rows, int row, int[] values, int offset, int index,
+      int length) {
+    if (rows instanceof byte[][]) {
+      byte[] target = (byte[]) rows[row];
+      for (int i = 0; i < length; i++) {
+        target[index + i] = (byte) values[offset + i];
+      }
+    } else if (rows instanceof short[][]) {
+      short[] target = (short[]) rows[row];
+      for (int i = 0; i < length; i++) {
+        target[index + i] = (short) values[offset + i];
+      }
+    } else if (rows[row] == null) {
+      rows[row] = Arrays.copyOfRange(values, offset, offset + length);
+    } else {
+      System.arraycopy(values, offset, rows[row], index, length);
+    }
+  }
+
+  /**
+   * Copy a row array of any kind.
+   *
+   * @param row the row to copy
+   * @return the copy
+   */
+  private static Object copyOf(Object row) {
+    if (row instanceof byte[]) {
+      return ((byte[]) row).clone();
+    }
+    if (row instanceof short[]) {
+      return ((short[]) row).clone();
+    }
+    return ((int[]) row).clone();
+  }
+
+  /**
+   * This class writes the values of a new plane into rows of bytes, shorts or ints chosen from the
+   * largest value that will be written. Different threads may write different values at the same
+   * time. The range and digest of every row are computed once, when the plane is built.
+   */
+  public static final class Builder {
+
+    private final int width;
+    private final int height;
+    private final int maxValue;
+    private byte[][] bytes;
+    private short[][] shorts;
+    private int[][] ints;
+
+    /**
+     * Create a builder whose values are all 0.
+     *
+     * @param width    the width of the plane
+     * @param height   the height of the plane
+     * @param maxValue the largest value that will be written
+     * @throws IllegalArgumentException if the plane has no values or the maximum is negative
+     */
+    private Builder(int width, int height, int maxValue) throws IllegalArgumentException {
+      if (width <= 0 || height <= 0) {
+        throw new IllegalArgumentException("Plane has no values.");
+      }
+      if (maxValue < 0) {
+        throw new IllegalArgumentException("Maximum value cannot be negative.");
+      }
+      this.width = width;
+      this.height = height;
+      this.maxValue = maxValue;
+      if (maxValue <= BYTE_MAX) {
+        this.bytes = new byte[height][width];
+      } else if (maxValue <= SHORT_MAX) {
+        this.shorts = new short[height][width];
+      } else {
+        this.ints = new int[height][width];
+      }
+    }
+
+    /**
+     * Write a single value. The position is not checked.
+     *
+     * @param row    the row of the value
+     * @param column the column of the value
+     * @param value  the value, in the range of [0, maxValue]
+     * @throws IllegalArgumentException if the value is out of range
+     * @throws IllegalStateException    if the plane was already built
+     */
+    public void set(int row, int column, int value)
+        throws IllegalArgumentException, IllegalStateException {
+      this.checkValue(value);
+      if (this.bytes != null) {
+        this.bytes[row][column] = (byte) value;
+      } else if (this.shorts != null) {
+        this.shorts[row][column] = (short) value;
+      } else if (this.ints != null) {
+        this.ints[row][column] = value;
+      } else {
+        throw new IllegalStateException("Plane was already built.");
+      }
+    }
+
+    /**
+     * Write a whole row from the given array, starting at the given offset.
+     *
+     * @param row    the row to write
+     * @param values the values to write, in the range of [0, maxValue]
+     * @param offset the index in the array of the first value of the row
+     * @throws IllegalArgumentException if the row does not exist, the row does not fit in the
+     *                                  array or a value is out of range
+     * @throws IllegalStateException    if the plane was already built
+     */
+    public void setRow(int row, int[] values, int offset)
+        throws IllegalArgumentException, IllegalStateException {
+      if (row < 0 || row >= this.height) {
+        throw new IllegalArgumentException("There is no row with the given index.");
+      }
+      if (values == null || offset < 0 || values.length - offset < this.width) {
+        throw new IllegalArgumentException("Values are too short for a row.");
+      }
+      for (int i = offset; i < offset + this.width; i++) {
+        this.checkValue(values[i]);
+      }
+      Object[] rows = this.rows();
+      if (rows == null) {
+        throw new IllegalStateException("Plane was already built.");
+      }
+      store(rows, row, values, offset, 0, this.width);
+    }
+
+    /**
+     * Create the plane from the written values. The rows are handed over to the plane without
+     * being copied, so the builder cannot be used afterwards.
+     *
+     * @return the new plane
+     * @throws IllegalStateException if the plane was already built
+     */
+    public Plane build() throws IllegalStateException {
+      Object[] rows = this.rows();
+      if (rows == null) {
+        throw new IllegalStateException("Plane was already built.");
+      }
+      this.bytes = null;
+      this.shorts = null;
+      this.ints = null;
+      return new Plane(rows, 0, this.width, new int[this.height], new int[this.height],
+          new long[this.height], 0, this.height);
+    }
+
+    /**
+     * Check that a value can be written.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if the value is out of the range of [0, maxValue]
+     */
+    private void checkValue(int value) throws IllegalArgumentException {
+      if (value < 0 || value > this.maxValue) {
+        throw new IllegalArgumentException("Value is out of the range of the plane.");
+      }
+    }
+
+    /**
+     * Get the rows being written, whatever their kind of array.
+     *
+     * @return the rows, or null if the plane was already built
+     */
+    private Object[] rows() {
+      if (this.bytes != null) {
+        return this.bytes;
+      }
+      return this.shorts != null ? this.shorts : this.ints;
+    }
+  }
+}
@@ -21,6 +21,30 @@ public class RGBPixel implements Pixel {
    * @throws IllegalArgumentException if any of the components are not in the range [0, 255]
    */
   public RGBPixel(int red, int green, int blue, int maxValue) throws IllegalArgumentException {
+    this(red, green, blue, maxValue, true);
+  }
+
+  /**
+   * Create a new RGB pixel, optionally skipping the validation of its values. Only the pixel
+   * factory skips validation, for values its callers guarantee to be in range.
+   *
+   * @param red      the red component
+   * @param green    the green component
+   * @param blue     the blue component
+   * @param maxValue the maximum value of a color in this image (usually 255)
+   * @param validate true if the values must be checked
+   * @throws IllegalArgumentException if validated and any of the components are not in the range
+   *                                  [0, maxValue]
+   */
+  RGBPixel(int red, int green, int blue, int maxValue, boolean validate)
+      throws IllegalArgumentException {
+    if (!validate) {
+      this.maxValue = maxValue;
+      this.red = red;
+      this.green = green;
+      this.blue = blue;
+      return;
+    }
     if (maxValue < 0) {
       throw new IllegalArgumentException("The maximum value of a color cannot be negative.");
     }
@@ -61,7 +85,16 @@ public class RGBPixel implements Pixel {
 
   @Override
   public Pixel createPixel(int red, int green, int blue) {
-    return new RGBPixel(red, green, blue, this.maxValue);
+    return PixelFactory.rgb(red, green, blue, this.maxValue);
+  }
+
+  /**
+   * Get the maximum value of a color of this pixel, used to match cached pixels.
+   *
+   * @return the maximum value
+   */
+  int getMaxValue() {
+    return this.maxValue;
   }
 
   /**
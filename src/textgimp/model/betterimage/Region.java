@@ -0,0 +1,162 @@
+package textgimp.model.betterimage;
+
+/**
+ * This class represents a rectangular region of an image. The region starts at column x and row y
+ * and covers width columns and height rows. Regions are immutable and never empty.
+ */
+public final class Region {
+
+  private final int x;
+  private final int y;
+  private final int width;
+  private final int height;
+
+  /**
+   * Create a new region.
+   *
+   * @param x      the first column of the region
+   * @param y      the first row of the region
+   * @param width  the number of columns of the region
+   * @param height the number of rows of the region
+   * @throws IllegalArgumentException if the region starts at a negative position, is empty or
+   *                                  ends past the largest possible position
+   */
+  public Region(int x, int y, int width, int height) throws IllegalArgumentException {
+    if (x < 0 || y < 0) {
+      throw new IllegalArgumentException("Region cannot start at a negative position.");
+    }
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Region cannot be empty.");
+    }
+    if ((long) x + width > Integer.MAX_VALUE || (long) y + height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Region is too large.");
+    }
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Get the region covering a whole image.
+   *
+   * @param image the image
+   * @return the region of every pixel of the image
+   * @throws IllegalArgumentException if the image is null or has no pixels
+   */
+  public static Region of(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    return new Region(0, 0, image.getWidth(), image.getHeight());
+  }
+
+  /**
+   * Get the first column of the region.
+   *
+   * @return the first column
+   */
+  public int getX() {
+    return this.x;
+  }
+
+  /**
+   * Get the first row of the region.
+   *
+   * @return the first row
+   */
+  public int getY() {
+    return this.y;
+  }
+
+  /**
+   * Get the number of columns of the region.
+   *
+   * @return the width of the region
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Get the number of rows of the region.
+   *
+   * @return the height of the region
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Check if the region lies within an image of the given size.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return true if every position of the region is in the image
+   */
+  public boolean fitsIn(int width, int height) {
+    return this.x + this.width <= width && this.y + this.height <= height;
+  }
+
+  /**
+   * Get the smallest region that contains this region and another one.
+   *
+   * @param other the other region
+   * @return the region covering both regions
+   * @throws IllegalArgumentException if the other region is null
+   */
+  public Region union(Region other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Region cannot be null.");
+    }
+    int left = Math.min(this.x, other.x);
+    int top = Math.min(this.y, other.y);
+    int right = Math.max(this.x + this.width, other.x + other.width);
+    int bottom = Math.max(this.y + this.height, other.y + other.height);
+    return new Region(left, top, right - left, bottom - top);
+  }
+
+  /**
+   * Get the part of this region that is also part of another one.
+   *
+   * @param other the other region
+   * @return the common region, or null if the regions do not overlap
+   * @throws IllegalArgumentException if the other region is null
+   */
+  public Region intersect(Region other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Region cannot be null.");
+    }
+    int left = Math.max(this.x, other.x);
+    int top = Math.max(this.y, other.y);
+    int right = Math.min(this.x + this.width, other.x + other.width);
+    int bottom = Math.min(this.y + this.height, other.y + other.height);
+    if (right <= left || bottom <= top) {
+      return null;
+    }
+    return new Region(left, top, right - left, bottom - top);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof Region)) {
+      return false;
+    }
+    Region other = (Region) o;
+    return this.x == other.x && this.y == other.y && this.width == other.width
+        && this.height == other.height;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((this.x * 31 + this.y) * 31 + this.width) * 31 + this.height;
+  }
+
+  @Override
+  public String toString() {
+    return this.x + " " + this.y + " " + this.width + " " + this.height;
+  }
+}
@@ -1,16 +1,27 @@
 package textgimp.model.imagebuilder;
 
-import java.awt.Color;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
-import textgimp.model.betterimage.GenericImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
-import textgimp.model.betterimage.RGBPixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 
 /**
  * This is an abstract class that implements the ImageBuilder interface. It provides helper methods
@@ -49,16 +60,16 @@ abstract class AbstractImageBuilder implements ImageBuilder {
   }
 
   /**
-   * Helper method to read a generic RGB image using ImageIO. This method assumes that the image is
-   * in the RGB format with 3 channels.
+   * Helper method to read an image using ImageIO. Grey, grey with transparency, RGB, RGBA and
+   * palette images are supported. Images with samples of more than 8 bits keep their full range,
+   * all others are read with a maximum value of 255.
    *
    * @param data    the byte array representation of the image
    * @param imgType the type of the image (format)
    * @return the image object
-   * @throws IllegalArgumentException if the given byte array is null or the image is not in the RGB
-   *                                  format
+   * @throws IllegalArgumentException if the given byte array is null or cannot be read as an image
    */
-  protected Image parseRGB(byte[] data, String imgType) throws IllegalArgumentException {
+  protected Image parseImage(byte[] data, String imgType) throws IllegalArgumentException {
     if (data == null) {
       throw new IllegalArgumentException("Input cannot be null.");
     }
@@ -76,32 +87,302 @@ abstract class AbstractImageBuilder implements ImageBuilder {
     } catch (IOException e) {
       throw new IllegalArgumentException("Invalid " + imgType + " file.");
     }
+    if (img == null) {
+      throw new IllegalArgumentException("Invalid " + imgType + " file.");
+    }
+    return toPlanarImage(img, imgType);
+  }
 
-    // validate that the image has 3 channels
-    if (img.getRaster().getNumBands() != 3) {
+  /**
+   * Helper method to read a reduced copy of an image using ImageIO. The size of the image is read
+   * from its header first, then the reader is asked to decode only every n-th pixel of every n-th
+   * row, so the skipped pixels are never stored.
+   *
+   * @param data    the byte array representation of the image
+   * @param imgType the type of the image (format)
+   * @param maxSize the largest width and height of the preview
+   * @return the reduced image object
+   * @throws IllegalArgumentException if the given byte array is null or cannot be read as an image,
+   *                                  or if the size is not positive
+   */
+  protected Image parsePreview(byte[] data, String imgType, int maxSize)
+      throws IllegalArgumentException {
+    if (data == null) {
+      throw new IllegalArgumentException("Input cannot be null.");
+    }
+    if (imgType == null) {
+      throw new IllegalArgumentException("Image type cannot be null.");
+    }
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Preview size must be positive.");
+    }
+
+    // find a reader for the data and decode the image with subsampling
+    BufferedImage img;
+    try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+      Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+      if (readers == null || !readers.hasNext()) {
+        throw new IllegalArgumentException("Invalid " + imgType + " file.");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int step = PlanarImage.previewStep(reader.getWidth(0), reader.getHeight(0), maxSize);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(step, step, 0, 0);
+        img = reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
       throw new IllegalArgumentException("Invalid " + imgType + " file.");
     }
+    return toPlanarImage(img, imgType);
+  }
 
-    // read image attributes
-    int width = img.getWidth();
-    int height = img.getHeight();
-    int maxValue = 255;
-    Pixel[][] pixelData = new Pixel[height][width];
+  /**
+   * Convert a BufferedImage to a planar image. Samples are copied band by band into the planes,
+   * grey images use the same plane for all three colors and transparency gets its own plane.
+   *
+   * @param image   the image to convert
+   * @param imgType the type of the image (format)
+   * @return the planar image
+   */
+  protected static PlanarImage toPlanarImage(BufferedImage image, String imgType) {
+    ColorModel model = image.getColorModel();
+    if (model instanceof IndexColorModel) {
+      return readPalette(image, (IndexColorModel) model, imgType);
+    }
+
+    // images in other color spaces or with packed samples of different sizes are converted
+    boolean hasAlpha = model.hasAlpha();
+    int colorBands = image.getRaster().getNumBands() - (hasAlpha ? 1 : 0);
+    int colorSpace = model.getColorSpace().getType();
+    int bits = sampleBits(image);
+    if (model.isAlphaPremultiplied() || bits <= 0 || bits > 16
+        || !(colorSpace == ColorSpace.TYPE_GRAY && colorBands == 1
+        || colorSpace == ColorSpace.TYPE_RGB && colorBands == 3)) {
+      return readPacked(image, imgType);
+    }
+
+    // read every band into its own plane
+    Plane[] planes = readPlanes(image, bits);
+    int maxValue = bits > 8 ? (1 << bits) - 1 : 255;
+    Plane alpha = hasAlpha ? planes[colorBands] : null;
+    if (colorBands == 1) {
+      return new PlanarImage(planes[0], planes[0], planes[0], alpha, maxValue, imgType);
+    }
+    return new PlanarImage(planes[0], planes[1], planes[2], alpha, maxValue, imgType);
+  }
 
-    // read pixel data
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int[] rgbData = new int[3];
-        img.getRaster().getPixel(j, i, rgbData);
-        pixelData[i][j] = new RGBPixel(rgbData[0], rgbData[1], rgbData[2], maxValue);
+  /**
+   * Read every band of an image into its own plane. Samples of less than 8 bits are scaled to the
+   * range [0, 255].
+   *
+   * @param image the image to read
+   * @param bits  the number of bits of every sample
+   * @return one plane per band, in band order
+   */
+  private static Plane[] readPlanes(BufferedImage image, int bits) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int sampleMax = (1 << bits) - 1;
+    Raster raster = image.getRaster();
+    Plane[] planes = new Plane[raster.getNumBands()];
+    for (int band = 0; band < planes.length; band++) {
+      int[] values = raster.getSamples(0, 0, width, height, band, new int[width * height]);
+      if (bits < 8) {
+        for (int i = 0; i < values.length; i++) {
+          values[i] = scale(values[i], sampleMax, 255);
+        }
       }
+      planes[band] = new Plane(values, width, height);
     }
-    return new GenericImage(pixelData, maxValue, imgType);
+    return planes;
   }
 
   /**
-   * Helper method to write an Image to a byte array using ImageIO. This method assumes that the
-   * image is in the RGB format with 3 channels.
+   * Read a palette image by looking up the color of every index. Grey palettes produce a single
+   * plane for all three colors.
+   *
+   * @param image   the image to read
+   * @param model   the palette of the image
+   * @param imgType the type of the image (format)
+   * @return the planar image
+   */
+  private static PlanarImage readPalette(BufferedImage image, IndexColorModel model,
+      String imgType) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] palette = new int[model.getMapSize()];
+    model.getRGBs(palette);
+
+    // check if every entry of the palette is grey
+    boolean grey = true;
+    for (int color : palette) {
+      int red = (color >> 16) & 0xFF;
+      grey &= red == ((color >> 8) & 0xFF) && red == (color & 0xFF);
+    }
+
+    int[] indices = image.getRaster().getSamples(0, 0, width, height, 0,
+        new int[width * height]);
+    int[] red = new int[indices.length];
+    int[] green = grey ? red : new int[indices.length];
+    int[] blue = grey ? red : new int[indices.length];
+    int[] alpha = model.hasAlpha() ? new int[indices.length] : null;
+    for (int i = 0; i < indices.length; i++) {
+      int color = palette[Math.min(indices[i], palette.length - 1)];
+      red[i] = (color >> 16) & 0xFF;
+      if (!grey) {
+        green[i] = (color >> 8) & 0xFF;
+        blue[i] = color & 0xFF;
+      }
+      if (alpha != null) {
+        alpha[i] = color >>> 24;
+      }
+    }
+    return createImage(red, green, blue, alpha, width, height, imgType);
+  }
+
+  /**
+   * Read an image through its color model as 8-bit ARGB values. This handles any image ImageIO
+   * can decode, without creating an object per pixel.
+   *
+   * @param image   the image to read
+   * @param imgType the type of the image (format)
+   * @return the planar image
+   */
+  private static PlanarImage readPacked(BufferedImage image, String imgType) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+    int[] red = new int[argb.length];
+    int[] green = new int[argb.length];
+    int[] blue = new int[argb.length];
+    int[] alpha = image.getColorModel().hasAlpha() ? new int[argb.length] : null;
+    for (int i = 0; i < argb.length; i++) {
+      red[i] = (argb[i] >> 16) & 0xFF;
+      green[i] = (argb[i] >> 8) & 0xFF;
+      blue[i] = argb[i] & 0xFF;
+      if (alpha != null) {
+        alpha[i] = argb[i] >>> 24;
+      }
+    }
+    return createImage(red, green, blue, alpha, width, height, imgType);
+  }
+
+  /**
+   * Create an 8-bit planar image from arrays of values. Arrays used for several channels become a
+   * single shared plane.
+   *
+   * @param red     the red values
+   * @param green   the green values
+   * @param blue    the blue values
+   * @param alpha   the transparency values, or null
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param imgType the type of the image (format)
+   * @return the planar image
+   */
+  private static PlanarImage createImage(int[] red, int[] green, int[] blue, int[] alpha,
+      int width, int height, String imgType) {
+    Plane redPlane = new Plane(red, width, height);
+    Plane greenPlane = green == red ? redPlane : new Plane(green, width, height);
+    Plane bluePlane = blue == red ? redPlane : new Plane(blue, width, height);
+    return new PlanarImage(redPlane, greenPlane, bluePlane,
+        alpha == null ? null : new Plane(alpha, width, height), 255, imgType);
+  }
+
+  /**
+   * Get the number of bits of every sample of an image.
+   *
+   * @param image the image to check
+   * @return the number of bits, or -1 if the bands have different sizes
+   */
+  private static int sampleBits(BufferedImage image) {
+    int[] sizes = image.getSampleModel().getSampleSize();
+    for (int size : sizes) {
+      if (size != sizes[0]) {
+        return -1;
+      }
+    }
+    return sizes[0];
+  }
+
+  /**
+   * Scale a value from the range [0, from] to the range [0, to], rounding to the nearest value.
+   *
+   * @param value the value to scale
+   * @param from  the maximum of the source range
+   * @param to    the maximum of the target range
+   * @return the scaled value
+   */
+  private static int scale(int value, int from, int to) {
+    if (from == to) {
+      return value;
+    }
+    if (from == 0) {
+      return 0;
+    }
+    return (int) ((value * (long) to + from / 2) / from);
+  }
+
+  /**
+   * Copy the planes of an image into a new BufferedImage with 8-bit or 16-bit samples. Values are
+   * scaled if the maximum value of the image is not the maximum of the samples. Images without
+   * transparency are opaque.
+   *
+   * @param image     the image to copy
+   * @param withAlpha true to create an image with a transparency band
+   * @param deep      true to create an image with 16-bit samples
+   * @return the BufferedImage
+   */
+  protected static BufferedImage toBufferedImage(Image image, boolean withAlpha, boolean deep) {
+    PlanarImage source = PlanarImage.of(image);
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int maxValue = source.getMaxValue();
+
+    // create an image with the requested bands and sample size
+    BufferedImage img;
+    int sampleMax;
+    if (deep) {
+      ColorModel model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+          withAlpha, false, withAlpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE,
+          DataBuffer.TYPE_USHORT);
+      img = new BufferedImage(model, model.createCompatibleWritableRaster(width, height), false,
+          null);
+      sampleMax = 0xFFFF;
+    } else {
+      img = new BufferedImage(width, height,
+          withAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+      sampleMax = 0xFF;
+    }
+
+    // write one band at a time, row by row
+    WritableRaster raster = img.getRaster();
+    Plane[] planes = {source.getRed(), source.getGreen(), source.getBlue(), source.getAlpha()};
+    int[] row = new int[width];
+    for (int band = 0; band < raster.getNumBands(); band++) {
+      Plane plane = planes[band];
+      for (int i = 0; i < height; i++) {
+        if (plane == null) {
+          Arrays.fill(row, sampleMax);
+        } else {
+          plane.copyRow(i, row);
+          for (int j = 0; j < width; j++) {
+            row[j] = scale(row[j], maxValue, sampleMax);
+          }
+        }
+        raster.setSamples(0, i, width, 1, band, row);
+      }
+    }
+    return img;
+  }
+
+  /**
+   * Helper method to write an Image to a byte array using ImageIO. The image is written with 3
+   * channels, transparency is dropped.
    *
    * @param image   the image to write
    * @param imgType the type of the image (format)
@@ -115,28 +396,6 @@ abstract class AbstractImageBuilder implements ImageBuilder {
     if (imgType == null) {
       throw new IllegalArgumentException("Image type cannot be null.");
     }
-
-    // get image attributes
-    int width = image.getWidth();
-    int height = image.getHeight();
-
-    // create a buffered image
-    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-    // write pixel data
-    int red;
-    int green;
-    int blue;
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        red = image.getPixel(i, j).getRed();
-        green = image.getPixel(i, j).getGreen();
-        blue = image.getPixel(i, j).getBlue();
-
-        Color c = new Color(red, green, blue);
-        img.setRGB(j, i, c.getRGB());
-      }
-    }
-    return this.bufferedImageToByteArray(img, imgType);
+    return this.bufferedImageToByteArray(toBufferedImage(image, false, false), imgType);
   }
 }
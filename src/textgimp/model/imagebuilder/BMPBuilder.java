@@ -11,7 +11,12 @@ public class BMPBuilder extends AbstractImageBuilder implements ImageBuilder {
 
   @Override
   public Image loadImage(byte[] data) throws IllegalArgumentException {
-    return this.parseRGB(data, "bmp");
+    return this.parseImage(data, "bmp");
+  }
+
+  @Override
+  public Image loadPreview(byte[] data, int maxSize) throws IllegalArgumentException {
+    return this.parsePreview(data, "bmp", maxSize);
   }
 
   @Override
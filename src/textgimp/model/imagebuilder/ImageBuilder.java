@@ -19,6 +19,19 @@ public interface ImageBuilder {
    */
   Image loadImage(byte[] loadData) throws IllegalArgumentException;
 
+  /**
+   * Decode a reduced copy of the image whose width and height are at most the given size. Only
+   * every n-th pixel of every n-th row is decoded, so a preview of a large image takes a fraction
+   * of the time and memory of the full image. The result equals the full image subsampled with the
+   * same step.
+   *
+   * @param loadData data to load from byte array
+   * @param maxSize  the largest width and height of the preview
+   * @return the reduced image object
+   * @throws IllegalArgumentException if the input stream is invalid or the size is not positive
+   */
+  Image loadPreview(byte[] loadData, int maxSize) throws IllegalArgumentException;
+
   /**
    * Given an Image object, this method will encode the image and return the corresponding byte
    * array.
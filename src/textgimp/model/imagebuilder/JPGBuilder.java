@@ -11,7 +11,12 @@ public class JPGBuilder extends AbstractImageBuilder implements ImageBuilder {
 
   @Override
   public Image loadImage(byte[] data) throws IllegalArgumentException {
-    return this.parseRGB(data, "jpg");
+    return this.parseImage(data, "jpg");
+  }
+
+  @Override
+  public Image loadPreview(byte[] data, int maxSize) throws IllegalArgumentException {
+    return this.parsePreview(data, "jpg", maxSize);
   }
 
   @Override
@@ -6,10 +6,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Scanner;
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
 import textgimp.model.betterimage.Pixel;
-import textgimp.model.betterimage.RGBPixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 
 /**
  * This class represents a builder for PPM images. This class is responsible for encoding and
@@ -19,6 +19,27 @@ public class PPMBuilder implements ImageBuilder {
 
   @Override
   public Image loadImage(byte[] data) throws IllegalArgumentException {
+    return this.readImage(data, 0);
+  }
+
+  @Override
+  public Image loadPreview(byte[] data, int maxSize) throws IllegalArgumentException {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Preview size must be positive.");
+    }
+    return this.readImage(data, maxSize);
+  }
+
+  /**
+   * Helper method to decode a PPM image, or a reduced copy of it. For a preview only every n-th
+   * pixel of every n-th row is parsed and stored, the values of the other pixels are skipped.
+   *
+   * @param data    the byte array representation of the image
+   * @param maxSize the largest width and height of the preview, or 0 for the full image
+   * @return the image object
+   * @throws IllegalArgumentException if the given byte array is null or not a valid PPM image
+   */
+  private Image readImage(byte[] data, int maxSize) throws IllegalArgumentException {
     if (data == null) {
       throw new IllegalArgumentException("Input cannot be null.");
     }
@@ -42,19 +63,36 @@ public class PPMBuilder implements ImageBuilder {
 
     // read the maximum value of a color in this file (usually 255)
     int maxValue = sc.nextInt();
-    Pixel[][] pixelData = new Pixel[height][width];
-
-    // read pixel data from the stream
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Image has no pixels.");
+    }
+    int step = maxSize > 0 ? PlanarImage.previewStep(width, height, maxSize) : 1;
+    int newWidth = (width + step - 1) / step;
+    int newHeight = (height + step - 1) / step;
+    int[] red = new int[newWidth * newHeight];
+    int[] green = new int[newWidth * newHeight];
+    int[] blue = new int[newWidth * newHeight];
+
+    // read pixel data from the stream, the image checks the range of every plane
+    int index = 0;
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-
-        pixelData[i][j] = new RGBPixel(r, g, b, maxValue);
+        if (i % step == 0 && j % step == 0) {
+          red[index] = sc.nextInt();
+          green[index] = sc.nextInt();
+          blue[index] = sc.nextInt();
+          index++;
+        } else {
+          // skip the pixel without parsing its values
+          sc.next();
+          sc.next();
+          sc.next();
+        }
       }
     }
-    return new GenericImage(pixelData, maxValue, "ppm");
+    return new PlanarImage(new Plane(red, newWidth, newHeight),
+        new Plane(green, newWidth, newHeight), new Plane(blue, newWidth, newHeight), null,
+        maxValue, "ppm");
   }
 
   @Override
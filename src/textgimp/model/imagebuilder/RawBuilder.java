@@ -0,0 +1,217 @@
+package textgimp.model.imagebuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+
+/**
+ * This class represents a builder for the raw TextGimp format. The raw format is a compact binary
+ * dump of the channel values used to spill images out of memory. It is not meant to be exchanged
+ * with other programs.
+ *
+ * <p>The format is a header with the magic number, width, height, maximum value, image type and a
+ * flag telling if a transparency channel is present, followed by the channel values of every pixel
+ * in row-major order. Values take 1, 2 or 4 bytes depending on the maximum value.
+ */
+public class RawBuilder implements ImageBuilder {
+
+  private static final int MAGIC = 0x54475231; // "TGR1"
+
+  @Override
+  public Image loadImage(byte[] data) throws IllegalArgumentException {
+    return this.readImage(data, 0);
+  }
+
+  @Override
+  public Image loadPreview(byte[] data, int maxSize) throws IllegalArgumentException {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Preview size must be positive.");
+    }
+    return this.readImage(data, maxSize);
+  }
+
+  /**
+   * Helper method to decode a raw image, or a reduced copy of it. For a preview only every n-th
+   * pixel of every n-th row is read, the bytes of the other pixels are skipped.
+   *
+   * @param data    the byte array representation of the image
+   * @param maxSize the largest width and height of the preview, or 0 for the full image
+   * @return the image object
+   * @throws IllegalArgumentException if the given byte array is null or not a valid raw image
+   */
+  private Image readImage(byte[] data, int maxSize) throws IllegalArgumentException {
+    if (data == null) {
+      throw new IllegalArgumentException("Input cannot be null.");
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      // read and validate the header
+      if (in.readInt() != MAGIC) {
+        throw new IllegalArgumentException("Invalid raw file.");
+      }
+      int width = in.readInt();
+      int height = in.readInt();
+      int maxValue = in.readInt();
+      String type = in.readUTF();
+      boolean hasTransparency = in.readBoolean();
+      int valueSize = this.valueSize(maxValue);
+
+      // read pixel data into one plane per channel
+      if (width <= 0 || height <= 0) {
+        throw new IllegalArgumentException("Invalid raw file.");
+      }
+      int step = maxSize > 0 ? PlanarImage.previewStep(width, height, maxSize) : 1;
+      int newWidth = (width + step - 1) / step;
+      int newHeight = (height + step - 1) / step;
+      int pixelSize = (hasTransparency ? 4 : 3) * valueSize;
+      int[] red = new int[newWidth * newHeight];
+      int[] green = new int[newWidth * newHeight];
+      int[] blue = new int[newWidth * newHeight];
+      int[] alpha = hasTransparency ? new int[newWidth * newHeight] : null;
+      int index = 0;
+      for (int i = 0; i < height; i++) {
+        // skip whole rows that are not part of the preview
+        if (i % step != 0) {
+          this.skip(in, (long) width * pixelSize);
+          continue;
+        }
+        for (int j = 0; j < width; j++) {
+          if (j % step != 0) {
+            this.skip(in, pixelSize);
+            continue;
+          }
+          red[index] = this.readValue(in, valueSize);
+          green[index] = this.readValue(in, valueSize);
+          blue[index] = this.readValue(in, valueSize);
+          if (hasTransparency) {
+            alpha[index] = this.readValue(in, valueSize);
+          }
+          index++;
+        }
+      }
+      return new PlanarImage(new Plane(red, newWidth, newHeight),
+          new Plane(green, newWidth, newHeight), new Plane(blue, newWidth, newHeight),
+          hasTransparency ? new Plane(alpha, newWidth, newHeight) : null,
+          maxValue, type.isEmpty() ? null : type);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid raw file.");
+    }
+  }
+
+  @Override
+  public byte[] writeImage(Image image) throws IllegalArgumentException, IOException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+
+    PlanarImage source = PlanarImage.of(image);
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int maxValue = source.getMaxValue();
+    int valueSize = this.valueSize(maxValue);
+    boolean hasTransparency = source.getAlpha() != null;
+
+    // reserve space for the header and all the values
+    int channels = hasTransparency ? 4 : 3;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+        64 + width * height * channels * valueSize);
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      // write headers
+      out.writeInt(MAGIC);
+      out.writeInt(width);
+      out.writeInt(height);
+      out.writeInt(maxValue);
+      out.writeUTF(image.getImageType() == null ? "" : image.getImageType());
+      out.writeBoolean(hasTransparency);
+
+      // write pixel data, one row of every plane at a time
+      Plane[] planes = hasTransparency
+          ? new Plane[]{source.getRed(), source.getGreen(), source.getBlue(), source.getAlpha()}
+          : new Plane[]{source.getRed(), source.getGreen(), source.getBlue()};
+      int[][] rows = new int[channels][width];
+      for (int i = 0; i < height; i++) {
+        for (int c = 0; c < channels; c++) {
+          planes[c].copyRow(i, rows[c]);
+        }
+        for (int j = 0; j < width; j++) {
+          for (int c = 0; c < channels; c++) {
+            this.writeValue(out, rows[c][j], valueSize);
+          }
+        }
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Number of bytes needed to store a single channel value.
+   *
+   * @param maxValue the maximum value of a color in the image
+   * @return number of bytes per value
+   */
+  private int valueSize(int maxValue) {
+    if (maxValue <= 0xFF) {
+      return 1;
+    }
+    return maxValue <= 0xFFFF ? 2 : 4;
+  }
+
+  /**
+   * Helper method to skip bytes of the stream.
+   *
+   * @param in    the stream to read from
+   * @param count number of bytes to skip
+   * @throws IOException if the stream ends early
+   */
+  private void skip(DataInputStream in, long count) throws IOException {
+    if (in.skip(count) != count) {
+      throw new IOException("Unexpected end of raw file.");
+    }
+  }
+
+  /**
+   * Helper method to read a single channel value.
+   *
+   * @param in        the stream to read from
+   * @param valueSize number of bytes per value
+   * @return the value read
+   * @throws IOException if the stream ends early
+   */
+  private int readValue(DataInputStream in, int valueSize) throws IOException {
+    switch (valueSize) {
+      case 1:
+        return in.readUnsignedByte();
+      case 2:
+        return in.readUnsignedShort();
+      default:
+        return in.readInt();
+    }
+  }
+
+  /**
+   * Helper method to write a single channel value.
+   *
+   * @param out       the stream to write to
+   * @param value     the value to write
+   * @param valueSize number of bytes per value
+   * @throws IOException if writing fails
+   */
+  private void writeValue(DataOutputStream out, int value, int valueSize) throws IOException {
+    switch (valueSize) {
+      case 1:
+        out.writeByte(value);
+        break;
+      case 2:
+        out.writeShort(value);
+        break;
+      default:
+        out.writeInt(value);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package textgimp.model.imagestore;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import textgimp.model.betterimage.Image;
+
+/**
+ * This class represents an in-memory image store backed by a concurrent hash map. Reads never
+ * block, and rebinding a name is atomic. Compare-and-set compares images by reference since
+ * images are immutable and comparing them by content would walk every pixel.
+ */
+public class ConcurrentImageStore implements ImageStore {
+
+  private final Map<String, Image> images;
+
+  /**
+   * Create a new empty image store.
+   */
+  public ConcurrentImageStore() {
+    this.images = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public Image get(String name) {
+    if (name == null) {
+      return null;
+    }
+    return this.images.get(name);
+  }
+
+  @Override
+  public void put(String name, Image image) throws IllegalArgumentException {
+    if (name == null || image == null) {
+      throw new IllegalArgumentException("Image name and image cannot be null.");
+    }
+    this.images.put(name, image);
+  }
+
+  @Override
+  public boolean compareAndSet(String name, Image expected, Image update)
+      throws IllegalArgumentException {
+    if (name == null) {
+      throw new IllegalArgumentException("Image name cannot be null.");
+    }
+
+    // compute runs atomically for the key, record whether the expected image was found
+    boolean[] updated = new boolean[1];
+    this.images.compute(name, (key, current) -> {
+      if (current != expected) {
+        return current;
+      }
+      updated[0] = true;
+      return update;
+    });
+    return updated[0];
+  }
+
+  @Override
+  public Image remove(String name) {
+    if (name == null) {
+      return null;
+    }
+    return this.images.remove(name);
+  }
+
+  @Override
+  public boolean contains(String name) {
+    return name != null && this.images.containsKey(name);
+  }
+
+  @Override
+  public Set<String> names() {
+    return Set.copyOf(this.images.keySet());
+  }
+}
@@ -0,0 +1,260 @@
+package textgimp.model.imagestore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.betterimage.Region;
+
+/**
+ * This class represents an image stored as its difference from a base image. Planes shared with
+ * the base image are kept as references to its planes. Other planes only store the region where
+ * they differ from the same plane of the base image, as the exclusive or of both values, which is
+ * mostly zero and compresses well. Planes of a different size store all of their values.
+ */
+final class ImageDelta {
+
+  // every plane of the stored image is one of these
+  private static final int ABSENT = 0;
+  private static final int BASE = 1;
+  private static final int SHARED = 2;
+  private static final int COMPRESSED = 3;
+
+  private final long baseDigest;
+  private final int width;
+  private final int height;
+  private final int maxValue;
+  private final String type;
+  private final int[] kinds;
+  private final int[] sources;
+  private final Region[] regions;
+  private final int[] bytesPerValue;
+  private final byte[][] data;
+  private final long bytes;
+
+  /**
+   * Create the delta of an image from a base image.
+   *
+   * @param image the image to store
+   * @param base  the image it is restored from
+   */
+  private ImageDelta(PlanarImage image, PlanarImage base) {
+    this.baseDigest = base.getDigest();
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    this.maxValue = image.getMaxValue();
+    this.type = image.getImageType();
+    this.kinds = new int[4];
+    this.sources = new int[4];
+    this.regions = new Region[4];
+    this.bytesPerValue = new int[4];
+    this.data = new byte[4][];
+
+    Plane[] mine = planes(image);
+    Plane[] theirs = planes(base);
+    boolean sameSize = this.width == base.getWidth() && this.height == base.getHeight();
+    long total = 0;
+    for (int i = 0; i < mine.length; i++) {
+      if (mine[i] == null) {
+        this.kinds[i] = ABSENT;
+        continue;
+      }
+
+      // planes shared with the base image or with another plane of this image are referenced
+      int shared = indexOf(theirs, mine[i], theirs.length);
+      if (shared >= 0) {
+        this.kinds[i] = BASE;
+        this.sources[i] = shared;
+        continue;
+      }
+      shared = indexOf(mine, mine[i], i);
+      if (shared >= 0) {
+        this.kinds[i] = SHARED;
+        this.sources[i] = shared;
+        continue;
+      }
+
+      // store the changed region against the same plane of the base image, if it has one
+      Plane other = sameSize ? theirs[i] : null;
+      Region region = other == null ? Region.of(image) : other.changedRegion(mine[i]);
+      if (region == null) {
+        this.kinds[i] = BASE;
+        this.sources[i] = i;
+        continue;
+      }
+      this.kinds[i] = COMPRESSED;
+      this.regions[i] = region;
+      this.bytesPerValue[i] = other == null ? mine[i].getBytesPerValue()
+          : Math.max(mine[i].getBytesPerValue(), other.getBytesPerValue());
+      this.data[i] = compress(mine[i], other, region, this.bytesPerValue[i]);
+      total += this.data[i].length;
+    }
+    this.bytes = total;
+  }
+
+  /**
+   * Create the delta of an image from a base image, if both images are stored as planes.
+   *
+   * @param image the image to store
+   * @param base  the image it is restored from
+   * @return the delta, or null if either image is not a planar image
+   * @throws IllegalArgumentException if either image is null
+   */
+  static ImageDelta between(Image image, Image base) throws IllegalArgumentException {
+    if (image == null || base == null) {
+      throw new IllegalArgumentException("Images cannot be null.");
+    }
+    if (!(image instanceof PlanarImage) || !(base instanceof PlanarImage)) {
+      return null;
+    }
+    return new ImageDelta((PlanarImage) image, (PlanarImage) base);
+  }
+
+  /**
+   * Restore the stored image from the base image the delta was created from.
+   *
+   * @param base the base image
+   * @return the stored image
+   * @throws IllegalArgumentException if the image is not the one the delta was created from
+   */
+  Image apply(Image base) throws IllegalArgumentException {
+    if (!(base instanceof PlanarImage) || base.getDigest() != this.baseDigest) {
+      throw new IllegalArgumentException("Delta was not created from this image.");
+    }
+    Plane[] theirs = planes((PlanarImage) base);
+    boolean sameSize = this.width == base.getWidth() && this.height == base.getHeight();
+    Plane[] mine = new Plane[4];
+    for (int i = 0; i < mine.length; i++) {
+      switch (this.kinds[i]) {
+        case BASE:
+          mine[i] = theirs[this.sources[i]];
+          break;
+        case SHARED:
+          mine[i] = mine[this.sources[i]];
+          break;
+        case COMPRESSED:
+          mine[i] = this.decompress(i, sameSize ? theirs[i] : null);
+          break;
+        default:
+          break;
+      }
+    }
+    return new PlanarImage(mine[0], mine[1], mine[2], mine[3], this.maxValue, this.type);
+  }
+
+  /**
+   * Get the number of compressed bytes held by the delta.
+   *
+   * @return the size of the delta in bytes
+   */
+  long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Restore one plane from its compressed values.
+   *
+   * @param index the index of the plane
+   * @param base  the same plane of the base image, or null if the values were stored as they are
+   * @return the plane
+   */
+  private Plane decompress(int index, Plane base) {
+    int[] values = new int[this.width * this.height];
+    if (base != null) {
+      for (int row = 0; row < this.height; row++) {
+        base.copyRow(row, values, row * this.width);
+      }
+    }
+    Region region = this.regions[index];
+    int size = this.bytesPerValue[index];
+    byte[] buffer = new byte[region.getWidth() * size];
+    try (DataInputStream input = new DataInputStream(new InflaterInputStream(
+        new ByteArrayInputStream(this.data[index])))) {
+      for (int row = region.getY(); row < region.getY() + region.getHeight(); row++) {
+        input.readFully(buffer);
+        int offset = row * this.width + region.getX();
+        for (int i = 0; i < region.getWidth(); i++) {
+          int value = 0;
+          for (int b = 0; b < size; b++) {
+            value = (value << 8) | (buffer[i * size + b] & 0xFF);
+          }
+          values[offset + i] ^= value;
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to decompress image delta.");
+    }
+    return new Plane(values, this.width, this.height);
+  }
+
+  /**
+   * Compress the region of a plane as the exclusive or of its values and the base values.
+   *
+   * @param plane  the plane to compress
+   * @param base   the plane it is compared with, or null to store the values as they are
+   * @param region the region to store
+   * @param size   the number of bytes written per value
+   * @return the compressed values
+   */
+  private static byte[] compress(Plane plane, Plane base, Region region, int size) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int[] row = new int[plane.getWidth()];
+    int[] baseRow = new int[plane.getWidth()];
+    byte[] buffer = new byte[region.getWidth() * size];
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try (DeflaterOutputStream output = new DeflaterOutputStream(bytes, deflater)) {
+      for (int y = region.getY(); y < region.getY() + region.getHeight(); y++) {
+        plane.copyRow(y, row);
+        if (base != null) {
+          base.copyRow(y, baseRow);
+        }
+        for (int i = 0; i < region.getWidth(); i++) {
+          int value = row[region.getX() + i] ^ baseRow[region.getX() + i];
+          for (int b = size - 1; b >= 0; b--) {
+            buffer[i * size + b] = (byte) value;
+            value >>>= 8;
+          }
+        }
+        output.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to compress image delta.");
+    } finally {
+      deflater.end();
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Get the planes of an image in the order red, green, blue and transparency.
+   *
+   * @param image the image
+   * @return the planes, the transparency plane may be null
+   */
+  static Plane[] planes(PlanarImage image) {
+    return new Plane[]{image.getRed(), image.getGreen(), image.getBlue(), image.getAlpha()};
+  }
+
+  /**
+   * Find the first of the given planes that is the same object as a plane.
+   *
+   * @param planes the planes to search
+   * @param plane  the plane to find
+   * @param end    the number of planes to search
+   * @return the index of the plane, or -1 if it is not one of them
+   */
+  private static int indexOf(Plane[] planes, Plane plane, int end) {
+    for (int i = 0; i < end; i++) {
+      if (planes[i] == plane) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
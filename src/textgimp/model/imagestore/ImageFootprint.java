@@ -0,0 +1,52 @@
+package textgimp.model.imagestore;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+
+/**
+ * This class estimates how much heap an image occupies. The estimate is used to keep image stores
+ * within their memory budget, it does not need to be exact.
+ */
+public final class ImageFootprint {
+
+  // a reference in the pixel array and an immutable pixel object with its header and fields
+  private static final long BYTES_PER_PIXEL = 4 + 32;
+
+  // array header of every row plus the image object itself
+  private static final long BYTES_PER_ROW = 16;
+  private static final long BYTES_PER_IMAGE = 64;
+
+  /**
+   * This class only has static helpers.
+   */
+  private ImageFootprint() {
+  }
+
+  /**
+   * Estimate the number of bytes occupied by an image.
+   *
+   * @param image the image to estimate
+   * @return estimated size in bytes
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static long estimate(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    long width = image.getWidth();
+    long height = image.getHeight();
+
+    // planes used for several channels are only counted once
+    if (image instanceof PlanarImage) {
+      PlanarImage planar = (PlanarImage) image;
+      long bytesPerPixel = Stream.of(planar.getRed(), planar.getGreen(), planar.getBlue(),
+          planar.getAlpha()).filter(Objects::nonNull).distinct()
+          .mapToLong(Plane::getBytesPerValue).sum();
+      return BYTES_PER_IMAGE + bytesPerPixel * width * height;
+    }
+    return BYTES_PER_IMAGE + height * BYTES_PER_ROW + width * height * BYTES_PER_PIXEL;
+  }
+}
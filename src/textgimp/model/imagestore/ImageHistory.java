@@ -0,0 +1,296 @@
+package textgimp.model.imagestore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+
+/**
+ * This class represents the undo and redo history of one image. Every change of the image is
+ * recorded as a step from the image before the change to the image after it.
+ *
+ * <p>Images are immutable, so the image of a step is first kept as a reference. Planes it shares
+ * with the current image or with other kept images are only counted once against the memory budget.
+ * When the budget is exceeded, the kept images farthest from the current image are replaced by
+ * compressed deltas from the image of the step next to them, and if that is not enough the steps
+ * farthest from the current image are dropped. A change made by an operation that can be applied
+ * again keeps that operation as its recipe, so an undone step is redone by recomputing it instead
+ * of keeping the image.
+ *
+ * <p>All methods are synchronized on the history. The caller passes the current image to every
+ * method and must bind the returned image to the name of the history before changing it again.
+ */
+public class ImageHistory {
+
+  /**
+   * The default number of bytes kept for the history of an image.
+   */
+  public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+  private final long budget;
+
+  // steps in the order they are undone and redone, the nearest step is at the end of each list
+  private final List<Step> undoSteps;
+  private final List<Step> redoSteps;
+  private long bytes;
+
+  // metrics
+  private long undos;
+  private long redos;
+  private long compressions;
+  private long recomputations;
+
+  /**
+   * Create a new empty history with the given budget.
+   *
+   * @param budget maximum number of bytes of images kept by the history.
+   * @throws IllegalArgumentException if the budget is not positive.
+   */
+  public ImageHistory(long budget) throws IllegalArgumentException {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("Memory budget must be positive.");
+    }
+    this.budget = budget;
+    this.undoSteps = new ArrayList<>();
+    this.redoSteps = new ArrayList<>();
+  }
+
+  /**
+   * Record a change of the image. Steps that were undone can no longer be redone.
+   *
+   * @param older  the image before the change
+   * @param newer  the image after the change, which becomes the current image
+   * @param recipe the operation that computes the newer image from the older one, or null if the
+   *               change cannot be computed again
+   * @throws IllegalArgumentException if either image is null
+   */
+  public synchronized void record(Image older, Image newer, UnaryOperator<Image> recipe)
+      throws IllegalArgumentException {
+    if (older == null || newer == null) {
+      throw new IllegalArgumentException("Images cannot be null.");
+    }
+    this.redoSteps.clear();
+    this.undoSteps.add(new Step(older, recipe));
+    this.compact(newer);
+  }
+
+  /**
+   * Undo the last step that was not undone yet.
+   *
+   * @param current the current image
+   * @return the image before the step
+   * @throws IllegalArgumentException if the current image is null or there is no step to undo
+   */
+  public synchronized Image undo(Image current) throws IllegalArgumentException {
+    if (current == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    if (this.undoSteps.isEmpty()) {
+      throw new IllegalArgumentException("Nothing to undo.");
+    }
+    Step step = this.undoSteps.remove(this.undoSteps.size() - 1);
+    Image older = step.image != null ? step.image : step.delta.apply(current);
+
+    // a step with a recipe is redone by computing it again, otherwise the current image is kept
+    this.redoSteps.add(new Step(step.recipe != null ? null : current, step.recipe));
+    this.undos++;
+    this.compact(older);
+    return older;
+  }
+
+  /**
+   * Redo the last step that was undone.
+   *
+   * @param current the current image
+   * @return the image after the step
+   * @throws IllegalArgumentException if the current image is null or there is no step to redo
+   */
+  public synchronized Image redo(Image current) throws IllegalArgumentException {
+    if (current == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    if (this.redoSteps.isEmpty()) {
+      throw new IllegalArgumentException("Nothing to redo.");
+    }
+
+    // the step stays in place if computing it again fails or is cancelled
+    Step step = this.redoSteps.get(this.redoSteps.size() - 1);
+    Image newer = step.image;
+    if (step.delta != null) {
+      newer = step.delta.apply(current);
+    } else if (newer == null) {
+      newer = step.recipe.apply(current);
+      this.recomputations++;
+    }
+    this.redoSteps.remove(this.redoSteps.size() - 1);
+    this.undoSteps.add(new Step(current, step.recipe));
+    this.redos++;
+    this.compact(newer);
+    return newer;
+  }
+
+  /**
+   * Get the number of steps that can be undone.
+   *
+   * @return the number of steps to undo
+   */
+  public synchronized int undoSize() {
+    return this.undoSteps.size();
+  }
+
+  /**
+   * Get the number of steps that can be redone.
+   *
+   * @return the number of steps to redo
+   */
+  public synchronized int redoSize() {
+    return this.redoSteps.size();
+  }
+
+  /**
+   * Get the number of bytes held by the history, not counting planes of the current image.
+   *
+   * @return the size of the history in bytes
+   */
+  public synchronized long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Drop every step.
+   */
+  public synchronized void clear() {
+    this.undoSteps.clear();
+    this.redoSteps.clear();
+    this.bytes = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("Image history: %d undos, %d redos, %d compressions, "
+            + "%d recomputations, %d of %d bytes kept", this.undos, this.redos, this.compressions,
+        this.recomputations, this.bytes, this.budget);
+  }
+
+  /**
+   * Keep the history within its budget. Kept images are compressed starting from the farthest
+   * one, then the farthest steps to redo and the oldest steps to undo are dropped.
+   *
+   * @param current the current image
+   */
+  private void compact(Image current) {
+    this.bytes = this.measure(current);
+    this.compress(this.undoSteps, current);
+    this.compress(this.redoSteps, current);
+
+    // deltas only depend on steps nearer to the current image, so the farthest can be dropped
+    while (this.bytes > this.budget && !this.redoSteps.isEmpty()) {
+      this.redoSteps.remove(0);
+      this.bytes = this.measure(current);
+    }
+    while (this.bytes > this.budget && !this.undoSteps.isEmpty()) {
+      this.undoSteps.remove(0);
+      this.bytes = this.measure(current);
+    }
+  }
+
+  /**
+   * Replace kept images by deltas, starting from the farthest step, until the history fits in its
+   * budget. A delta is created from the image of the next nearer step, which must be kept.
+   *
+   * @param steps   the steps to compress, the nearest at the end
+   * @param current the current image
+   */
+  private void compress(List<Step> steps, Image current) {
+    for (int i = 0; i < steps.size() && this.bytes > this.budget; i++) {
+      Step step = steps.get(i);
+      Image neighbour = i + 1 < steps.size() ? steps.get(i + 1).image : current;
+      if (step.image == null || neighbour == null) {
+        continue;
+      }
+      ImageDelta delta = ImageDelta.between(step.image, neighbour);
+      if (delta != null) {
+        step.image = null;
+        step.delta = delta;
+        this.compressions++;
+        this.bytes = this.measure(current);
+      }
+    }
+  }
+
+  /**
+   * Count the bytes held by every step. Planes are counted once, and not at all if they belong to
+   * the current image.
+   *
+   * @param current the current image
+   * @return the number of bytes held by the history
+   */
+  private long measure(Image current) {
+    Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    addPlanes(current, counted);
+    long total = 0;
+    for (List<Step> steps : List.of(this.undoSteps, this.redoSteps)) {
+      for (Step step : steps) {
+        if (step.delta != null) {
+          total += step.delta.getBytes();
+        } else if (step.image instanceof PlanarImage) {
+          for (Plane plane : ImageDelta.planes((PlanarImage) step.image)) {
+            if (plane != null && counted.add(plane)) {
+              total += (long) plane.getBytesPerValue() * plane.getWidth() * plane.getHeight();
+            }
+          }
+        } else if (step.image != null && counted.add(step.image)) {
+          total += ImageFootprint.estimate(step.image);
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Mark the planes of an image, or the image itself if it has no planes, as counted.
+   *
+   * @param image   the image
+   * @param counted the objects already counted
+   */
+  private static void addPlanes(Image image, Set<Object> counted) {
+    if (!(image instanceof PlanarImage)) {
+      counted.add(image);
+      return;
+    }
+    for (Plane plane : ImageDelta.planes((PlanarImage) image)) {
+      if (plane != null) {
+        counted.add(plane);
+      }
+    }
+  }
+
+  /**
+   * This class represents one step of the history. The image of the step is either kept, stored
+   * as a delta from the image of the next nearer step, or left out if it can be computed again with
+   * the recipe.
+   */
+  private static final class Step {
+
+    private Image image;
+    private ImageDelta delta;
+    private final UnaryOperator<Image> recipe;
+
+    /**
+     * Create a step that keeps its image.
+     *
+     * @param image  the image of the step, or null if it is computed with the recipe
+     * @param recipe the operation that computes the image after the step from the image before it
+     */
+    Step(Image image, UnaryOperator<Image> recipe) {
+      this.image = image;
+      this.delta = null;
+      this.recipe = recipe;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package textgimp.model.imagestore;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import textgimp.model.betterimage.Image;
+
+/**
+ * This class interns images by content, so that identical images stored under different names
+ * share a single object. Images are looked up by their digest and only compared pixel by pixel
+ * when the digests agree.
+ *
+ * <p>Interned images are only weakly referenced, an image that is no longer used by any name is
+ * collected as usual. All methods are synchronized on the interner.
+ */
+public class ImageInterner {
+
+  private final Map<Long, List<InternedImage>> images;
+  private final ReferenceQueue<Image> collected;
+
+  // metrics
+  private long deduplicated;
+  private long savedBytes;
+
+  /**
+   * Create a new empty interner.
+   */
+  public ImageInterner() {
+    this.images = new HashMap<>();
+    this.collected = new ReferenceQueue<>();
+  }
+
+  /**
+   * Get the canonical image with the same content as the given image. If there is none, the given
+   * image becomes the canonical one.
+   *
+   * @param image the image to intern.
+   * @return an interned image interchangeable with the given one.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public synchronized Image intern(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    this.purge();
+
+    // look for an existing image with the same content
+    List<InternedImage> candidates =
+        this.images.computeIfAbsent(image.getDigest(), k -> new ArrayList<>(1));
+    for (InternedImage candidate : candidates) {
+      Image existing = candidate.get();
+      if (existing != null && interchangeable(existing, image)) {
+        if (existing != image) {
+          this.deduplicated++;
+          this.savedBytes += ImageFootprint.estimate(image);
+        }
+        return existing;
+      }
+    }
+
+    candidates.add(new InternedImage(image, this.collected));
+    return image;
+  }
+
+  /**
+   * Get the number of images replaced by an existing identical image.
+   *
+   * @return number of deduplicated images.
+   */
+  public synchronized long getDeduplicated() {
+    return this.deduplicated;
+  }
+
+  /**
+   * Get the estimated number of bytes of the images replaced by an existing identical image.
+   *
+   * @return bytes saved by deduplication.
+   */
+  public synchronized long getSavedBytes() {
+    return this.savedBytes;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("Image deduplication: %d images shared, %d bytes saved",
+        this.deduplicated, this.savedBytes);
+  }
+
+  /**
+   * Check if two images have the same content and type, so that either can be used in place of the
+   * other.
+   *
+   * @param first  the first image.
+   * @param second the second image.
+   * @return true if the images are interchangeable.
+   */
+  static boolean interchangeable(Image first, Image second) {
+    if (first == second) {
+      return true;
+    }
+    return first.getDigest() == second.getDigest()
+        && Objects.equals(first.getImageType(), second.getImageType())
+        && first.equals(second) && second.equals(first);
+  }
+
+  /**
+   * Remove the entries of images that have been collected.
+   */
+  private void purge() {
+    Reference<? extends Image> reference;
+    while ((reference = this.collected.poll()) != null) {
+      InternedImage interned = (InternedImage) reference;
+      List<InternedImage> candidates = this.images.get(interned.digest);
+      if (candidates == null) {
+        continue;
+      }
+      Iterator<InternedImage> iterator = candidates.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next() == interned) {
+          iterator.remove();
+        }
+      }
+      if (candidates.isEmpty()) {
+        this.images.remove(interned.digest);
+      }
+    }
+  }
+
+  /**
+   * Weak reference to an interned image that remembers the digest it is filed under.
+   */
+  private static final class InternedImage extends WeakReference<Image> {
+
+    private final long digest;
+
+    /**
+     * Create a weak reference to an interned image.
+     *
+     * @param image the interned image.
+     * @param queue queue notified when the image is collected.
+     */
+    private InternedImage(Image image, ReferenceQueue<Image> queue) {
+      super(image, queue);
+      this.digest = image.getDigest();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package textgimp.model.imagestore;
+
+import java.util.Set;
+import textgimp.model.betterimage.Image;
+
+/**
+ * This interface represents a store of named images used by the model. Images are immutable, so
+ * implementations only need to guard the name to image bindings. Implementations of this
+ * interface must be safe to use from multiple threads.
+ */
+public interface ImageStore {
+
+  /**
+   * Get the image bound to the given name.
+   *
+   * @param name name of the image.
+   * @return the image, or null if no image is bound to the name.
+   */
+  Image get(String name);
+
+  /**
+   * Bind an image to the given name, replacing any existing binding atomically.
+   *
+   * @param name  name of the image.
+   * @param image image to store.
+   * @throws IllegalArgumentException if the name or image is null.
+   */
+  void put(String name, Image image) throws IllegalArgumentException;
+
+  /**
+   * Atomically replace the image bound to a name if it is still the expected image. Images are
+   * compared by reference, not by content.
+   *
+   * @param name     name of the image.
+   * @param expected image expected to be bound to the name, null if the name should be unbound.
+   * @param update   new image to bind to the name, null to remove the binding.
+   * @return true if the binding was updated, false if the name was bound to another image.
+   * @throws IllegalArgumentException if the name is null.
+   */
+  boolean compareAndSet(String name, Image expected, Image update) throws IllegalArgumentException;
+
+  /**
+   * Remove the image bound to the given name.
+   *
+   * @param name name of the image.
+   * @return the removed image, or null if no image was bound to the name.
+   */
+  Image remove(String name);
+
+  /**
+   * Check if an image is bound to the given name.
+   *
+   * @param name name of the image.
+   * @return true if the name is bound to an image.
+   */
+  boolean contains(String name);
+
+  /**
+   * Get a snapshot of the names currently bound in this store.
+   *
+   * @return set of image names.
+   */
+  Set<String> names();
+}
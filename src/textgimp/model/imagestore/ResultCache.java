@@ -0,0 +1,350 @@
+package textgimp.model.imagestore;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import textgimp.model.betterimage.Image;
+
+/**
+ * This class represents a bounded cache of operation results. Since images are immutable, the
+ * result of an operation only depends on the operation, its parameters and the source images, so
+ * repeating the same operation on the same sources can return the image computed the first time.
+ *
+ * <p>Entries are keyed by an operation string, which includes the parameters, and by the size,
+ * type and digest of the source images. An entry only references its sources weakly, and a hit is
+ * checked against them like the interner does, so an equal copy of a live source also finds the
+ * result, a digest collision is a miss and the cache never keeps a source alive. Entries whose
+ * sources were collected can no longer be checked and are dropped. The least recently used entries
+ * are evicted once the estimated size of the cached results exceeds the budget. Entries of an
+ * image are dropped when it is released.
+ *
+ * <p>A cache for a model whose store has a memory budget only references its results weakly, so a
+ * result stays cached while the store keeps it in memory but never stops the store from spilling
+ * or releasing it. The cache is thread-safe, results are computed outside the lock so concurrent
+ * misses may compute the same result more than once.
+ */
+public class ResultCache {
+
+  /**
+   * Number of bytes of results kept by the cache of a model unless another cache is given.
+   */
+  public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+  private final long budget;
+  private final boolean weakResults;
+  private final LinkedHashMap<Key, Entry> results;
+  private long bytes;
+
+  // metrics
+  private long hits;
+  private long misses;
+
+  /**
+   * Create a new result cache keeping results of at most the given number of bytes.
+   *
+   * @param budget maximum estimated size of the cached results in bytes, 0 disables the cache.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ResultCache(long budget) throws IllegalArgumentException {
+    this(budget, false);
+  }
+
+  /**
+   * Create a new result cache keeping results of at most the given number of bytes, optionally
+   * only referencing them weakly.
+   *
+   * @param budget      maximum estimated size of the cached results in bytes, 0 disables the
+   *                    cache.
+   * @param weakResults true if results are only kept while they are referenced elsewhere, for
+   *                    models whose store has a memory budget.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ResultCache(long budget, boolean weakResults) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Cache budget cannot be negative.");
+    }
+    this.budget = budget;
+    this.weakResults = weakResults;
+    this.results = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Get the result of an operation on the given sources, computing and caching it on a miss.
+   *
+   * @param operation name and parameters of the operation.
+   * @param compute   computes the result on a miss.
+   * @param sources   images the operation is applied to.
+   * @return the cached or newly computed result.
+   * @throws IllegalArgumentException if the operation or a source is null.
+   */
+  public Image getOrCompute(String operation, Supplier<Image> compute, Image... sources)
+      throws IllegalArgumentException {
+    if (operation == null || sources == null || Arrays.asList(sources).contains(null)) {
+      throw new IllegalArgumentException("Operation and sources cannot be null.");
+    }
+    Key key = new Key(operation, sources);
+
+    // look for an existing result, entries that cannot be used any more are dropped
+    synchronized (this) {
+      Entry entry = this.results.get(key);
+      Image cached = entry == null ? null : entry.get(sources);
+      if (cached != null) {
+        this.hits++;
+        return cached;
+      }
+      if (entry != null) {
+        this.remove(key);
+      }
+      this.misses++;
+    }
+
+    // compute without holding the lock, the first result stored wins
+    Image result = compute.get();
+    long size = ImageFootprint.estimate(result);
+    if (size > this.budget) {
+      return result;
+    }
+    synchronized (this) {
+      Entry existing = this.results.get(key);
+      Image cached = existing == null ? null : existing.get(sources);
+      if (cached != null) {
+        return cached;
+      }
+      if (existing != null) {
+        this.remove(key);
+      }
+      this.results.put(key, new Entry(this.reference(result), sources, size));
+      this.bytes += size;
+      this.evict();
+      return result;
+    }
+  }
+
+  /**
+   * Drop every cached result computed from an image or equal to it, because the image was
+   * released by the model. Entries whose result or sources were collected are dropped too.
+   *
+   * @param image the released image.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public synchronized void release(Image image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null.");
+    }
+    Iterator<Map.Entry<Key, Entry>> entries = this.results.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<Key, Entry> entry = entries.next();
+      Image result = entry.getValue().result.get();
+      if (result == null || result == image || entry.getValue().lostSources()
+          || entry.getKey().readsDigest(image.getDigest())) {
+        this.bytes -= entry.getValue().bytes;
+        entries.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all cached results.
+   */
+  public synchronized void clear() {
+    this.results.clear();
+    this.bytes = 0;
+  }
+
+  /**
+   * Get the number of cached results.
+   *
+   * @return number of results.
+   */
+  public synchronized int size() {
+    return this.results.size();
+  }
+
+  /**
+   * Get the estimated size of the cached results.
+   *
+   * @return size of the results in bytes.
+   */
+  public synchronized long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Get the number of operations answered from the cache.
+   *
+   * @return number of hits.
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Get the number of operations that had to be computed.
+   *
+   * @return number of misses.
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("Result cache: %d hits, %d misses, %d results of %d of %d bytes cached",
+        this.hits, this.misses, this.results.size(), this.bytes, this.budget);
+  }
+
+  /**
+   * Reference a result the way this cache keeps its results.
+   *
+   * @param result the result.
+   * @return a weak reference if results are only kept while referenced elsewhere, a soft one
+   *         otherwise so the results can still be reclaimed before running out of memory.
+   */
+  private Reference<Image> reference(Image result) {
+    return this.weakResults ? new WeakReference<>(result) : new SoftReference<>(result);
+  }
+
+  /**
+   * Remove the entry of a key.
+   *
+   * @param key the key.
+   */
+  private void remove(Key key) {
+    Entry entry = this.results.remove(key);
+    if (entry != null) {
+      this.bytes -= entry.bytes;
+    }
+  }
+
+  /**
+   * Evict the least recently used entries until the cached results fit in the budget.
+   */
+  private void evict() {
+    Iterator<Entry> entries = this.results.values().iterator();
+    while (this.bytes > this.budget && entries.hasNext()) {
+      this.bytes -= entries.next().bytes;
+      entries.remove();
+    }
+  }
+
+  /**
+   * A cached result, the sources it was computed from and its estimated size.
+   */
+  private static final class Entry {
+
+    private final Reference<Image> result;
+    private final List<Reference<Image>> sources;
+    private final long bytes;
+
+    /**
+     * Create an entry.
+     *
+     * @param result  reference to the result.
+     * @param sources images the result was computed from, only referenced weakly.
+     * @param bytes   estimated size of the result.
+     */
+    private Entry(Reference<Image> result, Image[] sources, long bytes) {
+      this.result = result;
+      this.sources = new ArrayList<>(sources.length);
+      for (Image source : sources) {
+        this.sources.add(new WeakReference<>(source));
+      }
+      this.bytes = bytes;
+    }
+
+    /**
+     * Get the result if it is still cached and was computed from sources interchangeable with the
+     * given ones. Sources with the same digest but another content or type are a collision.
+     *
+     * @param sources images the operation is applied to.
+     * @return the result, or null if it cannot be used.
+     */
+    private Image get(Image[] sources) {
+      for (int i = 0; i < sources.length; i++) {
+        Image source = this.sources.get(i).get();
+        if (source == null || !ImageInterner.interchangeable(source, sources[i])) {
+          return null;
+        }
+      }
+      return this.result.get();
+    }
+
+    /**
+     * Check if a source of the entry was collected, so that hits can no longer be checked.
+     *
+     * @return true if a source was collected.
+     */
+    private boolean lostSources() {
+      return this.sources.stream().anyMatch(source -> source.get() == null);
+    }
+  }
+
+  /**
+   * Key of a cached result, the operation and the size, type and digest of its source images.
+   */
+  private static final class Key {
+
+    private final String operation;
+    private final long[] sources;
+    private final String[] types;
+
+    /**
+     * Create a key for an operation on the given sources.
+     *
+     * @param operation name and parameters of the operation.
+     * @param sources   images the operation is applied to.
+     */
+    private Key(String operation, Image[] sources) {
+      this.operation = operation;
+      this.sources = new long[sources.length * 2];
+      this.types = new String[sources.length];
+      for (int i = 0; i < sources.length; i++) {
+        this.types[i] = sources[i].getImageType();
+        this.sources[2 * i] = (long) sources[i].getWidth() << 32 | sources[i].getHeight();
+        this.sources[2 * i + 1] = sources[i].getDigest();
+      }
+    }
+
+    /**
+     * Check if one of the sources of the key has the given digest.
+     *
+     * @param digest the digest.
+     * @return true if a source has the digest.
+     */
+    private boolean readsDigest(long digest) {
+      for (int i = 1; i < this.sources.length; i += 2) {
+        if (this.sources[i] == digest) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return this.operation.equals(other.operation)
+          && Arrays.equals(this.sources, other.sources)
+          && Arrays.equals(this.types, other.types);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * this.operation.hashCode() + Arrays.hashCode(this.sources))
+          + Arrays.hashCode(this.types);
+    }
+  }
+}
@@ -0,0 +1,521 @@
+package textgimp.model.imagestore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import textgimp.model.betterimage.Image;
+import textgimp.model.imagebuilder.ImageBuilder;
+import textgimp.model.imagebuilder.RawBuilder;
+
+/**
+ * This class represents an image store with a heap budget. When the images kept in memory exceed
+ * the budget, the least recently used ones are spilled to disk in the raw format and reloaded
+ * transparently the next time they are read. An image bound to several names, as interned images
+ * are, is counted once against the budget and spilled once for all its names.
+ *
+ * <p>The bindings are guarded by the lock of the store, but files are written and read outside
+ * it, so a spill or a reload never blocks the other names. A spilled image keeps a strong
+ * reference while it is written, and a record of the spill file acts as the placeholder of a
+ * reload: other readers of the image wait for the same read. A spilled image is still reachable
+ * through a weak reference afterwards, so while any caller holds it the same object is returned
+ * without reading the disk and compare-and-set keeps working on it.
+ */
+public class SpillingImageStore implements ImageStore, Closeable {
+
+  private final long budget;
+  private final Path spillDirectory;
+  private final ImageBuilder spillBuilder;
+
+  // images in memory, in least recently used order, and the number of names of every image
+  private final LinkedHashMap<String, Image> resident;
+  private final Map<Image, Integer> residentNames;
+  private final Map<String, SpilledImage> spilled;
+  private long residentBytes;
+  private long spillSequence;
+
+  // metrics
+  private long hits;
+  private long misses;
+  private long spills;
+  private long reloads;
+
+  /**
+   * Create a new image store with the given budget, spilling into a new temporary directory.
+   *
+   * @param budget maximum number of bytes of images to keep in memory.
+   * @throws IllegalArgumentException if the budget is not positive.
+   * @throws IOException              if the spill directory cannot be created.
+   */
+  public SpillingImageStore(long budget) throws IllegalArgumentException, IOException {
+    this(budget, Files.createTempDirectory("textgimp-spill"));
+    this.spillDirectory.toFile().deleteOnExit();
+  }
+
+  /**
+   * Create a new image store with the given budget, spilling into the given directory.
+   *
+   * @param budget         maximum number of bytes of images to keep in memory.
+   * @param spillDirectory existing directory to write spilled images to.
+   * @throws IllegalArgumentException if the budget is not positive or the directory is invalid.
+   */
+  public SpillingImageStore(long budget, Path spillDirectory) throws IllegalArgumentException {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("Memory budget must be positive.");
+    }
+    if (spillDirectory == null || !Files.isDirectory(spillDirectory)) {
+      throw new IllegalArgumentException("Spill directory must be an existing directory.");
+    }
+    this.budget = budget;
+    this.spillDirectory = spillDirectory;
+    this.spillBuilder = new RawBuilder();
+    this.resident = new LinkedHashMap<>(16, 0.75f, true);
+    this.residentNames = new IdentityHashMap<>();
+    this.spilled = new HashMap<>();
+  }
+
+  @Override
+  public Image get(String name) {
+    if (name == null) {
+      return null;
+    }
+    return this.fetch(name, true);
+  }
+
+  @Override
+  public void put(String name, Image image) throws IllegalArgumentException {
+    if (name == null || image == null) {
+      throw new IllegalArgumentException("Image name and image cannot be null.");
+    }
+    List<SpilledImage> writes;
+    synchronized (this) {
+      this.unbind(name);
+      writes = this.makeResident(name, image);
+    }
+    this.write(writes);
+  }
+
+  @Override
+  public boolean compareAndSet(String name, Image expected, Image update)
+      throws IllegalArgumentException {
+    if (name == null) {
+      throw new IllegalArgumentException("Image name cannot be null.");
+    }
+    List<SpilledImage> writes = List.of();
+    synchronized (this) {
+      if (this.current(name) != expected) {
+        return false;
+      }
+      this.unbind(name);
+      if (update != null) {
+        writes = this.makeResident(name, update);
+      }
+    }
+    this.write(writes);
+    return true;
+  }
+
+  @Override
+  public Image remove(String name) {
+    if (name == null) {
+      return null;
+    }
+
+    // read the image back if needed, then remove it unless it was rebound in the meantime
+    while (true) {
+      Image image = this.fetch(name, false);
+      synchronized (this) {
+        if (this.current(name) == image) {
+          this.unbind(name);
+          return image;
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized boolean contains(String name) {
+    return this.resident.containsKey(name) || this.spilled.containsKey(name);
+  }
+
+  @Override
+  public synchronized Set<String> names() {
+    Set<String> names = new HashSet<>(this.resident.keySet());
+    names.addAll(this.spilled.keySet());
+    return Set.copyOf(names);
+  }
+
+  /**
+   * Delete all the spilled images and the spill directory if it is empty. Files still being
+   * written are deleted once they are written.
+   */
+  @Override
+  public synchronized void close() {
+    for (SpilledImage spilledImage : this.spilled.values()) {
+      spilledImage.names = 0;
+      if (spilledImage.writing == null) {
+        this.deleteQuietly(spilledImage.path);
+      }
+    }
+    this.spilled.clear();
+    this.spillDirectory.toFile().delete();
+  }
+
+  /**
+   * Get the number of reads served from memory, including spilled images still referenced.
+   *
+   * @return number of hits.
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Get the number of reads for names without an image.
+   *
+   * @return number of misses.
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Get the number of images written to disk to stay within the budget.
+   *
+   * @return number of spills.
+   */
+  public synchronized long getSpills() {
+    return this.spills;
+  }
+
+  /**
+   * Get the number of images read back from disk.
+   *
+   * @return number of reloads.
+   */
+  public synchronized long getReloads() {
+    return this.reloads;
+  }
+
+  /**
+   * Get the estimated number of bytes of images currently in memory, every image being counted
+   * once whatever the number of its names.
+   *
+   * @return estimated resident bytes.
+   */
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("Image store: %d hits, %d misses, %d spills, %d reloads, "
+            + "%d of %d bytes resident", this.hits, this.misses, this.spills, this.reloads,
+        this.residentBytes, this.budget);
+  }
+
+  /**
+   * Get the image bound to a name, reading it back from disk outside the lock if it was spilled
+   * and is no longer in memory.
+   *
+   * @param name name of the image
+   * @param use  true if the image is read by a caller, which counts as a hit or a miss and makes
+   *             the image resident, false if it is only removed
+   * @return the image, or null if the name is not bound
+   * @throws IllegalStateException if the spilled image cannot be read
+   */
+  private Image fetch(String name, boolean use) throws IllegalStateException {
+    while (true) {
+      Image image;
+      SpilledImage spilledImage;
+      CompletableFuture<Image> loading;
+      boolean reader = false;
+      List<SpilledImage> writes = List.of();
+      synchronized (this) {
+        // resident images are moved to the end of the recency order by the read
+        image = this.resident.get(name);
+        if (image != null) {
+          if (use) {
+            this.hits++;
+          }
+          return image;
+        }
+        spilledImage = this.spilled.get(name);
+        if (spilledImage == null) {
+          if (use) {
+            this.misses++;
+          }
+          return null;
+        }
+
+        // the image may still be referenced by a caller, avoid reading it back
+        image = spilledImage.get();
+        if (image != null && !use) {
+          return image;
+        } else if (image != null) {
+          this.hits++;
+          this.unbind(name);
+          writes = this.makeResident(name, image);
+        } else if (spilledImage.loading == null) {
+          spilledImage.loading = new CompletableFuture<>();
+          reader = true;
+        }
+        loading = spilledImage.loading;
+      }
+      if (image != null) {
+        this.write(writes);
+        return image;
+      }
+
+      // only one reader reads the file, the others wait for its image
+      if (reader) {
+        this.read(spilledImage);
+      }
+      Image loaded = loading.join();
+      synchronized (this) {
+        // the name was rebound or removed while the file was read
+        if (this.spilled.get(name) != spilledImage) {
+          continue;
+        }
+        if (loaded == null) {
+          throw new IllegalStateException("Failed to reload spilled image: " + name);
+        }
+        if (!use) {
+          return loaded;
+        }
+        this.unbind(name);
+        writes = this.makeResident(name, loaded);
+      }
+      this.write(writes);
+      return loaded;
+    }
+  }
+
+  /**
+   * Read a spilled image back from its file, without holding the lock. The placeholder of the
+   * reload receives the image, or null if the file cannot be read.
+   *
+   * @param spilledImage spill record of the image
+   */
+  private void read(SpilledImage spilledImage) {
+    Image image;
+    try {
+      image = this.spillBuilder.loadImage(Files.readAllBytes(spilledImage.path));
+    } catch (IOException | RuntimeException e) {
+      // readers waiting for the image are told it failed
+      image = null;
+    }
+    synchronized (this) {
+      // later readers of other names of the image find it without reading the file again
+      if (image != null) {
+        spilledImage.image = new WeakReference<>(image);
+        this.reloads++;
+      }
+      spilledImage.loading.complete(image);
+      spilledImage.loading = null;
+    }
+  }
+
+  /**
+   * Find the image bound to a name without reading from disk or changing metrics.
+   *
+   * @param name name of the image
+   * @return the bound image, or null if it is not bound or no longer in memory
+   */
+  private Image current(String name) {
+    Image image = this.resident.get(name);
+    if (image == null && this.spilled.containsKey(name)) {
+      image = this.spilled.get(name).get();
+    }
+    return image;
+  }
+
+  /**
+   * Keep an image in memory and choose other images to spill if the budget is exceeded.
+   *
+   * @param name  name of the image
+   * @param image image to keep in memory
+   * @return the spilled images to write once the lock is released
+   */
+  private List<SpilledImage> makeResident(String name, Image image) {
+    this.addResident(name, image);
+    return this.evict(image);
+  }
+
+  /**
+   * Bind a name to an image in memory, counting the image once whatever the number of its names.
+   *
+   * @param name  name of the image
+   * @param image image to keep in memory
+   */
+  private void addResident(String name, Image image) {
+    this.resident.put(name, image);
+    if (this.residentNames.merge(image, 1, Integer::sum) == 1) {
+      this.residentBytes += ImageFootprint.estimate(image);
+    }
+  }
+
+  /**
+   * Spill least recently used images until the store is within budget. The image that was just
+   * used is never spilled, even if it alone exceeds the budget.
+   *
+   * @param keep image to keep in memory
+   * @return the spilled images to write once the lock is released
+   */
+  private List<SpilledImage> evict(Image keep) {
+    List<SpilledImage> writes = new ArrayList<>();
+    while (this.residentBytes > this.budget) {
+      Image victim = null;
+      for (Image image : this.resident.values()) {
+        if (image != keep) {
+          victim = image;
+          break;
+        }
+      }
+      if (victim == null) {
+        break;
+      }
+
+      // every name of the image moves to the same spill file
+      Path path = this.spillDirectory.resolve("image-" + (this.spillSequence++) + ".raw");
+      SpilledImage spilledImage = new SpilledImage(path, victim);
+      Iterator<Map.Entry<String, Image>> entries = this.resident.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<String, Image> entry = entries.next();
+        if (entry.getValue() == victim) {
+          this.spilled.put(entry.getKey(), spilledImage);
+          spilledImage.names++;
+          entries.remove();
+        }
+      }
+      this.residentNames.remove(victim);
+      this.residentBytes -= ImageFootprint.estimate(victim);
+      this.spills++;
+      writes.add(spilledImage);
+    }
+    return writes;
+  }
+
+  /**
+   * Write spilled images to their files, without holding the lock. An image that cannot be
+   * written is kept in memory under the names still bound to it.
+   *
+   * @param writes the spilled images to write
+   */
+  private void write(List<SpilledImage> writes) {
+    for (SpilledImage spilledImage : writes) {
+      boolean written;
+      try {
+        Files.write(spilledImage.path, this.spillBuilder.writeImage(spilledImage.writing));
+        written = true;
+      } catch (IOException e) {
+        written = false;
+      }
+
+      synchronized (this) {
+        Image image = spilledImage.writing;
+        spilledImage.writing = null;
+        if (written) {
+          spilledImage.path.toFile().deleteOnExit();
+        } else {
+          this.spills--;
+          Iterator<Map.Entry<String, SpilledImage>> entries = this.spilled.entrySet().iterator();
+          while (entries.hasNext()) {
+            Map.Entry<String, SpilledImage> entry = entries.next();
+            if (entry.getValue() == spilledImage) {
+              entries.remove();
+              this.addResident(entry.getKey(), image);
+            }
+          }
+          spilledImage.names = 0;
+        }
+
+        // the names of the image may have been rebound while it was written
+        if (spilledImage.names == 0) {
+          this.deleteQuietly(spilledImage.path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove any binding for a name, from memory or from disk.
+   *
+   * @param name name of the image
+   */
+  private void unbind(String name) {
+    Image image = this.resident.remove(name);
+    if (image != null) {
+      int names = this.residentNames.get(image);
+      if (names == 1) {
+        this.residentNames.remove(image);
+        this.residentBytes -= ImageFootprint.estimate(image);
+      } else {
+        this.residentNames.put(image, names - 1);
+      }
+    }
+    SpilledImage spilledImage = this.spilled.remove(name);
+    if (spilledImage != null && --spilledImage.names == 0 && spilledImage.writing == null) {
+      this.deleteQuietly(spilledImage.path);
+    }
+  }
+
+  /**
+   * Delete a file, ignoring failures.
+   *
+   * @param path file to delete
+   */
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // the file is also marked to be deleted on exit
+    }
+  }
+
+  /**
+   * This class records where an image was spilled and how many names are bound to the file. It
+   * keeps the image itself while the file is written, and for as long as something else keeps it
+   * alive afterwards. While the file is read, it holds the placeholder other readers wait on.
+   */
+  private static class SpilledImage {
+
+    private final Path path;
+    private WeakReference<Image> image;
+    private Image writing;
+    private CompletableFuture<Image> loading;
+    private int names;
+
+    /**
+     * Create a spill record for an image that is about to be written.
+     *
+     * @param path  file the image is written to
+     * @param image the spilled image
+     */
+    SpilledImage(Path path, Image image) {
+      this.path = path;
+      this.image = new WeakReference<>(image);
+      this.writing = image;
+    }
+
+    /**
+     * Get the image if it is still in memory.
+     *
+     * @return the image, or null if it has to be read back
+     */
+    Image get() {
+      return this.writing != null ? this.writing : this.image.get();
+    }
+  }
+}
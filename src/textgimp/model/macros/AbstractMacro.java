@@ -1,12 +1,97 @@
 package textgimp.model.macros;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.betterimage.Region;
 
 /**
  * This abstract class contains common methods that are used by all macros.
  */
 public abstract class AbstractMacro implements Macro {
 
+  /**
+   * Number of rows processed between two checks for cancellation.
+   */
+  protected static final int ROW_BAND = 64;
+
+  /**
+   * Side of the square tiles processed by {@link #forEachTile(int, int, Consumer)}. A tile of
+   * values and the values it is computed from fit in the cache of a core together.
+   */
+  protected static final int TILE_SIZE = 64;
+
+  // images with at least this many pixels are processed in parallel
+  private static final int PARALLEL_PIXELS = 1 << 16;
+
+  /**
+   * Apply the macro to a view of the region and patch the result into the image. Macros that read
+   * pixels around the one they compute get a view that includes as many pixels around the region
+   * as their halo, so the edges of the region are computed as they would be in the whole image.
+   *
+   * @param sourceImage The image to apply the macro to.
+   * @param region      The region of the image to change.
+   * @return The image after the macro has been applied to the region.
+   * @throws IllegalArgumentException if the given image is null or empty, if the region is null
+   *                                  or does not fit in the image, or if the macro changes the
+   *                                  size of the image
+   */
+  @Override
+  public Image apply(Image sourceImage, Region region) throws IllegalArgumentException {
+    this.validateImage(sourceImage);
+    if (region == null || !region.fitsIn(sourceImage.getWidth(), sourceImage.getHeight())) {
+      throw new IllegalArgumentException("Region does not fit in the image.");
+    }
+    if (region.equals(Region.of(sourceImage))) {
+      return this.apply(sourceImage);
+    }
+
+    // compute the region and its halo, clipped to the image
+    int halo = this.halo();
+    int left = Math.max(0, region.getX() - halo);
+    int top = Math.max(0, region.getY() - halo);
+    int right = Math.min(sourceImage.getWidth(), region.getX() + region.getWidth() + halo);
+    int bottom = Math.min(sourceImage.getHeight(), region.getY() + region.getHeight() + halo);
+    Region view = new Region(left, top, right - left, bottom - top);
+    PlanarImage source = PlanarImage.of(sourceImage);
+    Image result = this.restrict(view).apply(source.crop(view));
+    if (result.getWidth() != view.getWidth() || result.getHeight() != view.getHeight()) {
+      throw new IllegalArgumentException("Macro cannot be applied to a region.");
+    }
+
+    // only the region itself is kept, the halo was only read
+    Region inner = new Region(region.getX() - view.getX(), region.getY() - view.getY(),
+        region.getWidth(), region.getHeight());
+    return source.patch(region, PlanarImage.of(result).crop(inner));
+  }
+
+  /**
+   * Get the number of pixels around a pixel that are read to compute it. Macros that only read
+   * the pixel itself have no halo.
+   *
+   * @return the distance of the farthest pixel read, 0 by default.
+   */
+  protected int halo() {
+    return 0;
+  }
+
+  /**
+   * Get the macro applied to a view of a region of an image. Macros that read other images return
+   * a macro that reads the same region of them.
+   *
+   * @param view The region of the image the macro is applied to.
+   * @return the macro to apply to the view, this macro by default.
+   */
+  protected Macro restrict(Region view) {
+    return this;
+  }
+
   /**
    * Validates the given image.
    *
@@ -20,5 +105,118 @@ public abstract class AbstractMacro implements Macro {
       throw new IllegalArgumentException("Image has no pixels.");
     }
   }
-}
 
+  /**
+   * Check for cancellation and report progress at the start of every band of rows.
+   *
+   * @param row    the row about to be processed.
+   * @param height the number of rows.
+   * @throws java.util.concurrent.CancellationException if the macro was cancelled.
+   */
+  protected void checkpoint(int row, int height) {
+    if (row % ROW_BAND == 0) {
+      MacroProgress.checkpoint(row, height);
+    }
+  }
+
+  /**
+   * Run an action for every row of an image, band by band. Rows of a band run in parallel if the
+   * image is large, and cancellation is checked on the calling thread between bands.
+   *
+   * @param width  the width of the image, used to decide if rows run in parallel.
+   * @param height the number of rows.
+   * @param action the action run with the index of every row.
+   * @throws java.util.concurrent.CancellationException if the macro was cancelled.
+   */
+  protected void forEachRow(int width, int height, IntConsumer action) {
+    boolean parallel = (long) width * height >= PARALLEL_PIXELS;
+    for (int band = 0; band < height; band += ROW_BAND) {
+      this.checkpoint(band, height);
+      IntStream rows = IntStream.range(band, Math.min(height, band + ROW_BAND));
+      (parallel ? rows.parallel() : rows).forEach(action);
+    }
+  }
+
+  /**
+   * Run an action for every tile of an image, one row of tiles at a time. Operations that read or
+   * write values of many rows for every row they compute, like filters and transposes, touch far
+   * fewer cache lines and memory pages per tile than per row. Tiles of a row run in parallel if
+   * the image is large, and cancellation is checked on the calling thread between rows of tiles.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param action the action run with the region of every tile, tiles at the right and bottom
+   *               edges may be smaller than the others.
+   * @throws java.util.concurrent.CancellationException if the macro was cancelled.
+   */
+  protected void forEachTile(int width, int height, Consumer<Region> action) {
+    boolean parallel = (long) width * height >= PARALLEL_PIXELS;
+    int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+    for (int top = 0; top < height; top += TILE_SIZE) {
+      this.checkpoint(top, height);
+      int y = top;
+      int tileHeight = Math.min(TILE_SIZE, height - top);
+      IntStream tiles = IntStream.range(0, columns);
+      (parallel ? tiles.parallel() : tiles).forEach(i -> action.accept(new Region(i * TILE_SIZE,
+          y, Math.min(TILE_SIZE, width - i * TILE_SIZE), tileHeight)));
+    }
+  }
+
+  /**
+   * Copy the values of a tile and of the halo around it into a new array, row by row. Values of
+   * the halo outside the plane are 0, so a kernel can read the whole array without checking
+   * positions.
+   *
+   * @param plane the plane to read.
+   * @param tile  the region of the tile.
+   * @param halo  the number of values read on every side of the tile.
+   * @return the values, the array has a row of width + 2 * halo values for each of the height +
+   *         2 * halo rows.
+   */
+  protected static int[] readTile(Plane plane, Region tile, int halo) {
+    int stride = tile.getWidth() + 2 * halo;
+    int[] values = new int[stride * (tile.getHeight() + 2 * halo)];
+    int left = Math.max(0, tile.getX() - halo);
+    int right = Math.min(plane.getWidth(), tile.getX() + tile.getWidth() + halo);
+    int top = Math.max(0, tile.getY() - halo);
+    int bottom = Math.min(plane.getHeight(), tile.getY() + tile.getHeight() + halo);
+    for (int row = top; row < bottom; row++) {
+      int offset = (row - tile.getY() + halo) * stride + left - tile.getX() + halo;
+      plane.copyRow(row, left, right - left, values, offset);
+    }
+    return values;
+  }
+
+  /**
+   * Apply an operation to every plane of an image. A plane shared by several channels is only
+   * processed once and its result is shared the same way. The transparency plane is either
+   * processed too or kept as it is.
+   *
+   * @param sourceImage  The image whose planes are processed.
+   * @param operation    The operation to apply to a single plane.
+   * @param includeAlpha true if the transparency plane is processed as well.
+   * @return the image made of the processed planes.
+   */
+  protected PlanarImage mapPlanes(PlanarImage sourceImage, UnaryOperator<Plane> operation,
+      boolean includeAlpha) {
+    Plane alpha = sourceImage.getAlpha();
+    Plane[] planes = includeAlpha && alpha != null
+        ? new Plane[]{sourceImage.getRed(), sourceImage.getGreen(), sourceImage.getBlue(), alpha}
+        : new Plane[]{sourceImage.getRed(), sourceImage.getGreen(), sourceImage.getBlue()};
+
+    // every distinct plane is one stage of the progress
+    Map<Plane, Plane> results = new IdentityHashMap<>();
+    for (Plane plane : planes) {
+      results.put(plane, null);
+    }
+    int count = results.size();
+    int index = 0;
+    for (Map.Entry<Plane, Plane> entry : results.entrySet()) {
+      MacroProgress.stage(index++, count);
+      entry.setValue(operation.apply(entry.getKey()));
+    }
+    return new PlanarImage(results.get(planes[0]), results.get(planes[1]),
+        results.get(planes[2]), planes.length > 3 ? results.get(planes[3]) : alpha,
+        sourceImage.getMaxValue(), sourceImage.getImageType());
+  }
+}
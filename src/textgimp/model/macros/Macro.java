@@ -1,6 +1,7 @@
 package textgimp.model.macros;
 
 import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.Region;
 
 /**
  * This interface represents a macro that can be applied to an image. Macros are used for color
@@ -16,4 +17,17 @@ public interface Macro {
    * @throws IllegalArgumentException if the given image is null or empty
    */
   Image apply(Image sourceImage) throws IllegalArgumentException;
+
+  /**
+   * Applies the macro to a region of the given image. Only the region is computed, the rest of
+   * the image is kept as it is and shares its values with the given image.
+   *
+   * @param sourceImage The image to apply the macro to.
+   * @param region      The region of the image to change.
+   * @return The image after the macro has been applied to the region.
+   * @throws IllegalArgumentException if the given image is null or empty, if the region is null
+   *                                  or does not fit in the image, or if the macro changes the
+   *                                  size of the image
+   */
+  Image apply(Image sourceImage, Region region) throws IllegalArgumentException;
 }
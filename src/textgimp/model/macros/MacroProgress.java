@@ -0,0 +1,107 @@
+package textgimp.model.macros;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+
+/**
+ * This class lets long running macros report their progress and be cancelled. Macros call
+ * {@link #checkpoint(int, int)} between bands of rows. A checkpoint stops the macro with a
+ * {@link CancellationException} if the thread running it was interrupted, otherwise it passes the
+ * progress to the listener registered for that thread with
+ * {@link #track(Supplier, DoubleConsumer)}.
+ *
+ * <p>Progress is kept per thread, so macros running on other threads are not affected. Without a
+ * listener a checkpoint only checks for cancellation.
+ */
+public final class MacroProgress {
+
+  // smallest change of progress passed to the listener
+  private static final double STEP = 0.01;
+
+  private static final ThreadLocal<MacroProgress> CURRENT = new ThreadLocal<>();
+
+  private final DoubleConsumer listener;
+  private double start;
+  private double span;
+  private double reported;
+
+  /**
+   * Create the progress of a single task.
+   *
+   * @param listener the listener that receives the progress
+   */
+  private MacroProgress(DoubleConsumer listener) {
+    this.listener = listener;
+    this.start = 0;
+    this.span = 1;
+    this.reported = 0;
+  }
+
+  /**
+   * Run a task on the current thread, passing the progress of the macros it applies to the given
+   * listener. The listener receives values between 0 and 1, at most once per percent.
+   *
+   * @param task     the task to run
+   * @param listener the listener that receives the progress
+   * @param <T>      the result type of the task
+   * @return the result of the task
+   * @throws IllegalArgumentException if the task or the listener is null
+   */
+  public static <T> T track(Supplier<T> task, DoubleConsumer listener)
+      throws IllegalArgumentException {
+    if (task == null || listener == null) {
+      throw new IllegalArgumentException("Task and listener cannot be null.");
+    }
+    MacroProgress previous = CURRENT.get();
+    CURRENT.set(new MacroProgress(listener));
+    try {
+      return task.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Start one of several equal stages of a macro, for example one plane out of three. Checkpoints
+   * that follow report their progress within this stage.
+   *
+   * @param index the index of the stage, starting at 0
+   * @param count the number of stages
+   */
+  public static void stage(int index, int count) {
+    MacroProgress progress = CURRENT.get();
+    if (progress != null && count > 0) {
+      progress.start = (double) index / count;
+      progress.span = 1.0 / count;
+    }
+  }
+
+  /**
+   * Check if the macro was cancelled and report how much of the current stage is done.
+   *
+   * @param done  the number of rows done
+   * @param total the number of rows of the stage
+   * @throws CancellationException if the current thread was interrupted
+   */
+  public static void checkpoint(int done, int total) throws CancellationException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Operation was cancelled.");
+    }
+    MacroProgress progress = CURRENT.get();
+    if (progress == null || total <= 0) {
+      return;
+    }
+
+    // only report changes of at least one step
+    double value = progress.start + progress.span * done / total;
+    if (Math.abs(value - progress.reported) >= STEP) {
+      progress.reported = value;
+      progress.listener.accept(value);
+    }
+  }
+}
@@ -1,8 +1,8 @@
 package textgimp.model.macros.colortransform;
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
@@ -13,6 +13,9 @@ import textgimp.model.macros.Macro;
  */
 public class Brighten extends AbstractMacro implements Macro {
 
+  // largest maximum value brightened through a lookup table
+  private static final int MAX_TABLE_VALUE = 0xFFFF;
+
   private final int amount;
 
   /**
@@ -29,29 +32,49 @@ public class Brighten extends AbstractMacro implements Macro {
     // validate the image
     this.validateImage(sourceImg);
 
-    // read the image properties
-    int maxValue = sourceImg.getMaxValue();
-    int height = sourceImg.getHeight();
-    int width = sourceImg.getWidth();
+    // brighten every color plane, transparency is kept as it is
+    PlanarImage source = PlanarImage.of(sourceImg);
+    return this.mapPlanes(source, plane -> this.brighten(plane, source.getMaxValue()), false);
+  }
 
-    // create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[height][width];
+  /**
+   * Brighten every value of a single plane. Planes of 8-bit and 16-bit images go through a lookup
+   * table, so the clamping is computed once per possible value. Rows are processed band by band,
+   * so progress is reported and the macro can be cancelled either way.
+   *
+   * @param plane    the plane to brighten
+   * @param maxValue the maximum value of a color in this image
+   * @return the brightened plane
+   */
+  private Plane brighten(Plane plane, int maxValue) {
+    int width = plane.getWidth();
+    int height = plane.getHeight();
+    Plane.Builder brightened = Plane.builder(width, height, maxValue);
+    if (maxValue <= MAX_TABLE_VALUE) {
+      int[] table = new int[maxValue + 1];
+      for (int value = 0; value <= maxValue; value++) {
+        table[value] = this.clamp(value + this.amount, maxValue);
+      }
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        Pixel oldPixel = sourceImg.getPixel(i, j);
-        int newRed = oldPixel.getRed() + this.amount;
-        int newGreen = oldPixel.getGreen() + this.amount;
-        int newBlue = oldPixel.getBlue() + this.amount;
+      // copy every row and replace its values with their entries, values are at most maxValue
+      this.forEachRow(width, height, row -> {
+        int[] values = new int[width];
+        plane.copyRow(row, values);
+        for (int j = 0; j < width; j++) {
+          values[j] = table[values[j]];
+        }
+        brightened.setRow(row, values, 0);
+      });
+      return brightened.build();
+    }
 
+    this.forEachRow(width, height, row -> {
+      for (int j = 0; j < width; j++) {
         // clamp the values to the range of [0, maxValue]
-        newRed = this.clamp(newRed, maxValue);
-        newGreen = this.clamp(newGreen, maxValue);
-        newBlue = this.clamp(newBlue, maxValue);
-        newPixels[i][j] = oldPixel.createPixel(newRed, newGreen, newBlue);
+        brightened.set(row, j, this.clamp(plane.get(row, j) + this.amount, maxValue));
       }
-    }
-    return new GenericImage(newPixels, maxValue, sourceImg.getImageType());
+    });
+    return brightened.build();
   }
 
   /**
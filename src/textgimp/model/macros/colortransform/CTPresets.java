@@ -1,9 +1,9 @@
 package textgimp.model.macros.colortransform;
 
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
@@ -13,41 +13,61 @@ import textgimp.model.macros.Macro;
  */
 public class CTPresets {
 
+  /**
+   * Create a greyscale image that uses the given plane for all three channels. The plane is shared,
+   * no values are copied, and the transparency of the source image is kept.
+   *
+   * @param source the planar image to take the transparency and properties from
+   * @param plane  the plane to use as grey level
+   * @return the greyscale image
+   */
+  private static Image greyscale(PlanarImage source, Plane plane) {
+    return new PlanarImage(plane, plane, plane, source.getAlpha(), source.getMaxValue(),
+        source.getImageType());
+  }
+
+  /**
+   * This macro generates a greyscale image using the blue component. The blue plane of the source
+   * is shared by all three channels.
+   */
   static class GreyscaleBlue extends AbstractMacro implements Macro {
 
     @Override
     public Image apply(Image sourceImg) {
-      // matrix to read blue component
-      double[][] transformMatrix = {{0, 0, 1}, {0, 0, 1}, {0, 0, 1}};
-      return new RGBTransform(transformMatrix).apply(sourceImg);
+      // the blue plane is used for every channel
+      this.validateImage(sourceImg);
+      PlanarImage planar = PlanarImage.of(sourceImg);
+      return greyscale(planar, planar.getBlue());
     }
   }
 
   /**
-   * This macro generates a greyscale image using the green component. Re-uses the generic
-   * RGBTransform macro by passing the appropriate matrix.
+   * This macro generates a greyscale image using the green component. The green plane of the source
+   * is shared by all three channels.
    */
   static class GreyscaleGreen extends AbstractMacro implements Macro {
 
     @Override
     public Image apply(Image sourceImg) {
-      // matrix to read green component
-      double[][] transformMatrix = {{0, 1, 0}, {0, 1, 0}, {0, 1, 0}};
-      return new RGBTransform(transformMatrix).apply(sourceImg);
+      // the green plane is used for every channel
+      this.validateImage(sourceImg);
+      PlanarImage planar = PlanarImage.of(sourceImg);
+      return greyscale(planar, planar.getGreen());
     }
   }
 
   /**
-   * This macro generates a greyscale image using the red component. Re-uses the generic
-   * RGBTransform macro by passing the appropriate matrix.
+   * This macro generates a greyscale image using the red component. The red plane of the source
+   * is shared by all three channels.
    */
   static class GreyscaleRed extends AbstractMacro implements Macro {
 
     @Override
     public Image apply(Image sourceImg) {
-      // matrix to read red component
-      double[][] transformMatrix = {{1, 0, 0}, {1, 0, 0}, {1, 0, 0}};
-      return new RGBTransform(transformMatrix).apply(sourceImg);
+      // the red plane is used for every channel
+      this.validateImage(sourceImg);
+      PlanarImage planar = PlanarImage.of(sourceImg);
+      return greyscale(planar, planar.getRed());
     }
 
   }
@@ -101,23 +121,23 @@ public class CTPresets {
       // validate the image
       this.validateImage(sourceImage);
 
-      // read the image properties
-      int maxValue = sourceImage.getMaxValue();
-      int height = sourceImage.getHeight();
-      int width = sourceImage.getWidth();
-
-      // create a new 2D array of pixels
-      Pixel[][] newPixels = new Pixel[height][width];
+      // the largest value of every pixel is used for every channel
+      PlanarImage source = PlanarImage.of(sourceImage);
+      int width = source.getWidth();
+      int height = source.getHeight();
+      Plane red = source.getRed();
+      Plane green = source.getGreen();
+      Plane blue = source.getBlue();
 
+      int[] values = new int[width * height];
       for (int i = 0; i < height; i++) {
+        this.checkpoint(i, height);
         for (int j = 0; j < width; j++) {
-          Pixel oldPixel = sourceImage.getPixel(i, j);
-          int value = Math.max(oldPixel.getRed(),
-              Math.max(oldPixel.getGreen(), oldPixel.getBlue()));
-          newPixels[i][j] = oldPixel.createPixel(value, value, value);
+          values[i * width + j] = Math.max(red.get(i, j), Math.max(green.get(i, j),
+              blue.get(i, j)));
         }
       }
-      return new GenericImage(newPixels, maxValue, sourceImage.getImageType());
+      return greyscale(source, new Plane(values, width, height));
     }
   }
 
@@ -1,10 +1,12 @@
 package textgimp.model.macros.colortransform;
 
-import textgimp.model.betterimage.GenericImage;
+import java.util.Arrays;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
+import textgimp.model.macros.MacroProgress;
 
 /**
  * This is an RGB color transformation macro. This class accepts a 3x3 transformation matrix and
@@ -34,52 +36,53 @@ class RGBTransform extends AbstractMacro implements Macro {
     this.validateImage(sourceImage);
 
     // read the image properties
-    int maxValue = sourceImage.getMaxValue();
-    int height = sourceImage.getHeight();
-    int width = sourceImage.getWidth();
+    PlanarImage source = PlanarImage.of(sourceImage);
+    Plane red = this.transform(source, 0);
 
-    // create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[height][width];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        // read r, g, b data from the old pixel
-        Pixel oldPixel = sourceImage.getPixel(i, j);
-        int red = oldPixel.getRed();
-        int green = oldPixel.getGreen();
-        int blue = oldPixel.getBlue();
-
-        // generate new r, g, b data using the transformation matrix
-        int newRed = this.transform(red, green, blue, 0);
-        int newGreen = this.transform(red, green, blue, 1);
-        int newBlue = this.transform(red, green, blue, 2);
-
-        // clamp the values to the range [0, maxValue]
-        newRed = this.clamp(newRed, maxValue);
-        newGreen = this.clamp(newGreen, maxValue);
-        newBlue = this.clamp(newBlue, maxValue);
-        newPixels[i][j] = oldPixel.createPixel(newRed, newGreen, newBlue);
-      }
+    // rows that are the same produce the same plane, greyscale images share a single plane
+    Plane green = Arrays.equals(this.transformationMatrix[1], this.transformationMatrix[0])
+        ? red : this.transform(source, 1);
+    Plane blue;
+    if (Arrays.equals(this.transformationMatrix[2], this.transformationMatrix[0])) {
+      blue = red;
+    } else if (Arrays.equals(this.transformationMatrix[2], this.transformationMatrix[1])) {
+      blue = green;
+    } else {
+      blue = this.transform(source, 2);
     }
-    return new GenericImage(newPixels, maxValue, sourceImage.getImageType());
+    return new PlanarImage(red, green, blue, source.getAlpha(), source.getMaxValue(),
+        source.getImageType());
   }
 
   /**
-   * Transforms the given RGB values using the transformation matrix.
+   * Generate one output plane using a row of the transformation matrix.
    *
-   * @param red   the red value
-   * @param green the green value
-   * @param blue  the blue value
-   * @param row   the row of the transformation matrix to use
-   * @return the transformed value
+   * @param source the image to transform
+   * @param row    the row of the transformation matrix to use
+   * @return the transformed plane
    */
-  private int transform(int red, int green, int blue, int row) {
-    int[] rgb = {red, green, blue};
-    double transformedValue = 0;
-    for (int i = 0; i < 3; i++) {
-      transformedValue += this.transformationMatrix[row][i] * rgb[i];
+  private Plane transform(PlanarImage source, int row) {
+    int maxValue = source.getMaxValue();
+    int width = source.getWidth();
+    int height = source.getHeight();
+    Plane red = source.getRed();
+    Plane green = source.getGreen();
+    Plane blue = source.getBlue();
+    double[] weights = this.transformationMatrix[row];
+    MacroProgress.stage(row, 3);
+
+    Plane.Builder transformed = Plane.builder(width, height, maxValue);
+    for (int i = 0; i < height; i++) {
+      this.checkpoint(i, height);
+      for (int j = 0; j < width; j++) {
+        double transformedValue = weights[0] * red.get(i, j) + weights[1] * green.get(i, j)
+            + weights[2] * blue.get(i, j);
+
+        // clamp the values to the range [0, maxValue]
+        transformed.set(i, j, this.clamp(Math.round((float) transformedValue), maxValue));
+      }
     }
-    return Math.round((float) transformedValue);
+    return transformed.build();
   }
 
   /**
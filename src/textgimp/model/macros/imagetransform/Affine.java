@@ -0,0 +1,182 @@
+package textgimp.model.macros.imagetransform;
+
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.macros.AbstractMacro;
+import textgimp.model.macros.Macro;
+
+/**
+ * This class represents an Affine transform macro. It maps every pixel of the image with a 2 x 3
+ * matrix: the source position (x, y) moves to (a x + b y + c, d x + e y + f), where x is the
+ * column and y the row, both measured from the top left corner of the image.
+ *
+ * <p>The transform is computed backwards: the center of every pixel of the result is mapped to
+ * the source with the inverse matrix and the source is sampled there with bilinear
+ * interpolation. Positions outside the source have the value 0, which is transparent in images
+ * with transparency. Along a row the source position moves by a constant step, so no matrix is
+ * multiplied per pixel.
+ */
+public class Affine extends AbstractMacro implements Macro {
+
+  // sides of a rotated image within this fraction of a pixel of a whole number are rounded to it
+  private static final double SIZE_TOLERANCE = 1e-3;
+
+  private final double[][] inverse;
+  private final int width;
+  private final int height;
+
+  /**
+   * Create a new Affine macro whose result has the given size.
+   *
+   * @param matrix the 2 x 3 matrix of the transform
+   * @param width  the width of the result
+   * @param height the height of the result
+   * @throws IllegalArgumentException if the matrix is not a 2 x 3 matrix, if it cannot be inverted
+   *                                  or if the size is not positive
+   */
+  public Affine(double[][] matrix, int width, int height) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 2 || matrix[0] == null || matrix[0].length != 3
+        || matrix[1] == null || matrix[1].length != 3) {
+      throw new IllegalArgumentException("Affine matrix must be a 2 x 3 matrix.");
+    }
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Size of the transformed image must be positive.");
+    }
+    double determinant = matrix[0][0] * matrix[1][1] - matrix[0][1] * matrix[1][0];
+    if (Math.abs(determinant) < 1e-12 || Double.isNaN(determinant)) {
+      throw new IllegalArgumentException("Affine matrix cannot be inverted.");
+    }
+    this.width = width;
+    this.height = height;
+
+    // the inverse of the linear part, and the translation it undoes
+    double a = matrix[1][1] / determinant;
+    double b = -matrix[0][1] / determinant;
+    double d = -matrix[1][0] / determinant;
+    double e = matrix[0][0] / determinant;
+    this.inverse = new double[][]{
+        {a, b, -(a * matrix[0][2] + b * matrix[1][2])},
+        {d, e, -(d * matrix[0][2] + e * matrix[1][2])}
+    };
+  }
+
+  /**
+   * Create a macro that rotates an image clockwise around its center by any angle. The result is
+   * large enough to hold the whole rotated image.
+   *
+   * @param degrees the clockwise angle
+   * @param width   the width of the images to rotate
+   * @param height  the height of the images to rotate
+   * @return the rotation macro
+   * @throws IllegalArgumentException if the size is not positive or the angle is not finite
+   */
+  public static Affine rotation(double degrees, int width, int height)
+      throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Image has no pixels.");
+    }
+    if (!Double.isFinite(degrees)) {
+      throw new IllegalArgumentException("Angle must be a finite number.");
+    }
+    double radians = Math.toRadians(degrees);
+    double cos = Math.cos(radians);
+    double sin = Math.sin(radians);
+
+    // the bounding box of the rotated image, angles within a rounding error of a quarter turn
+    // only cover a tiny fraction of an extra pixel, so they keep the size of the quarter turn
+    int newWidth = (int) Math.ceil(Math.abs(width * cos) + Math.abs(height * sin)
+        - SIZE_TOLERANCE);
+    int newHeight = (int) Math.ceil(Math.abs(width * sin) + Math.abs(height * cos)
+        - SIZE_TOLERANCE);
+
+    // rows grow downwards, so this rotation is clockwise on screen, the centers are aligned
+    double[][] matrix = {
+        {cos, -sin, newWidth / 2.0 - cos * width / 2.0 + sin * height / 2.0},
+        {sin, cos, newHeight / 2.0 - sin * width / 2.0 - cos * height / 2.0}
+    };
+    return new Affine(matrix, newWidth, newHeight);
+  }
+
+  @Override
+  public Image apply(Image sourceImage) throws IllegalArgumentException {
+    // validate the image
+    this.validateImage(sourceImage);
+
+    // transform every plane, including transparency
+    PlanarImage source = PlanarImage.of(sourceImage);
+    return this.mapPlanes(source, plane -> this.transform(plane, source.getMaxValue()), true);
+  }
+
+  /**
+   * Transform a single plane, sampling the source at the inverse position of every value.
+   *
+   * @param plane    the plane to transform
+   * @param maxValue the maximum value of a color in this image
+   * @return the transformed plane
+   */
+  private Plane transform(Plane plane, int maxValue) {
+    int sourceWidth = plane.getWidth();
+    int sourceHeight = plane.getHeight();
+    double[][] m = this.inverse;
+    Plane.Builder transformed = Plane.builder(this.width, this.height, maxValue);
+    // the source positions of a tile are close together, unlike those of a whole rotated row
+    this.forEachTile(this.width, this.height, tile -> {
+      for (int row = tile.getY(); row < tile.getY() + tile.getHeight(); row++) {
+        // source position of the center of the first pixel of the tile row, relative to centers
+        double x = tile.getX() + 0.5;
+        double y = row + 0.5;
+        double sourceX = m[0][0] * x + m[0][1] * y + m[0][2] - 0.5;
+        double sourceY = m[1][0] * x + m[1][1] * y + m[1][2] - 0.5;
+        for (int j = tile.getX(); j < tile.getX() + tile.getWidth(); j++) {
+          transformed.set(row, j, sample(plane, sourceX, sourceY, sourceWidth, sourceHeight));
+          sourceX += m[0][0];
+          sourceY += m[1][0];
+        }
+      }
+    });
+    return transformed.build();
+  }
+
+  /**
+   * Sample a plane between the centers of its values with bilinear interpolation.
+   *
+   * @param plane  the plane to sample
+   * @param x      the column to sample, 0 being the center of the first column
+   * @param y      the row to sample, 0 being the center of the first row
+   * @param width  the width of the plane
+   * @param height the height of the plane
+   * @return the interpolated value, 0 outside the plane
+   */
+  private static int sample(Plane plane, double x, double y, int width, int height) {
+    if (x <= -1 || y <= -1 || x >= width || y >= height) {
+      return 0;
+    }
+    int left = (int) Math.floor(x);
+    int top = (int) Math.floor(y);
+    double dx = x - left;
+    double dy = y - top;
+    double upper = (1 - dx) * valueAt(plane, top, left, width, height)
+        + dx * valueAt(plane, top, left + 1, width, height);
+    double lower = (1 - dx) * valueAt(plane, top + 1, left, width, height)
+        + dx * valueAt(plane, top + 1, left + 1, width, height);
+    return (int) Math.round((1 - dy) * upper + dy * lower);
+  }
+
+  /**
+   * Get a value of a plane, or 0 if the position is outside of it.
+   *
+   * @param plane  the plane
+   * @param row    the row of the value
+   * @param column the column of the value
+   * @param width  the width of the plane
+   * @param height the height of the plane
+   * @return the value
+   */
+  private static int valueAt(Plane plane, int row, int column, int width, int height) {
+    if (row < 0 || column < 0 || row >= height || column >= width) {
+      return 0;
+    }
+    return plane.get(row, column);
+  }
+}
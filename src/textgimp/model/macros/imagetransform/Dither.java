@@ -1,8 +1,8 @@
 package textgimp.model.macros.imagetransform;
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 import textgimp.model.macros.colortransform.ColorTransformPresetManager;
@@ -18,142 +18,78 @@ public class Dither extends AbstractMacro implements Macro {
     // validate image
     this.validateImage(sourceImage);
 
-    // read image properties
-    int imgWidth = sourceImage.getWidth();
-    int imgHeight = sourceImage.getHeight();
-    int maxValue = sourceImage.getMaxValue();
-
     // generate greyscaled image using luma component
     Macro macro = new ColorTransformPresetManager().getColorTransform(
         ColorTransformType.GREYSCALE_LUMA);
-    Image greyImage = macro.apply(sourceImage);
-
-    // Create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[imgHeight][imgWidth];
-
-    // Loop through the pixels and copy the pixel to a new image
-    // this is required because dithering effects the pixels around the current pixel
-    for (int i = 0; i < imgHeight; i++) {
-      for (int j = 0; j < imgWidth; j++) {
-        newPixels[i][j] = greyImage.getPixel(i, j);
-      }
-    }
-
-    // Loop through the pixels and apply dithering
-    for (int i = 0; i < imgHeight; i++) {
-      for (int j = 0; j < imgWidth; j++) {
-        this.applyDither(newPixels, i, j, maxValue);
-      }
-    }
-    return new GenericImage(newPixels, maxValue, sourceImage.getImageType());
-  }
-
-
-  /**
-   * Apply floyd-steinberg dithering to a pixel.
-   *
-   * @param imgPixels 2D array of pixels representing an image
-   * @param row       The row of the pixel to apply the filter to.
-   * @param col       The column of the pixel to apply the filter to.
-   * @param maxValue  The max value of the color in the image.
-   */
-  private void applyDither(Pixel[][] imgPixels, int row, int col, int maxValue) {
-    // read the pixel
-    Pixel sourcePixel = imgPixels[row][col];
-
-    // read the pixel's color values
-    int red = sourcePixel.getRed();
-    int green = sourcePixel.getGreen();
-    int blue = sourcePixel.getBlue();
-
-    // calculate the new color values
-    int newRed = this.calculateNewColor(red, maxValue);
-    int newGreen = this.calculateNewColor(green, maxValue);
-    int newBlue = this.calculateNewColor(blue, maxValue);
+    PlanarImage greyImage = PlanarImage.of(macro.apply(sourceImage));
 
-    // calculate the error
-    int redError = red - newRed;
-    int greenError = green - newGreen;
-    int blueError = blue - newBlue;
-
-    // apply the error to the neighboring pixels
-    this.updateNeighbours(imgPixels, row, col, redError, greenError, blueError, maxValue);
-
-    // set the current pixel to the new color values
-    imgPixels[row][col] = sourcePixel.createPixel(newRed, newGreen, newBlue);
+    // dither every color plane, the grey image usually has a single plane for all channels
+    return this.mapPlanes(greyImage, plane -> this.dither(plane, greyImage.getMaxValue()), false);
   }
 
   /**
-   * Apply the error to the neighboring pixels.
+   * Apply floyd-steinberg dithering to a single plane.
    *
-   * @param imgPixels  2D array of pixels representing an image
-   * @param row        The row of the source pixel.
-   * @param col        The column of the source pixel.
-   * @param redError   The red error to apply.
-   * @param greenError The green error to apply.
-   * @param blueError  The blue error to apply.
+   * @param plane    The plane to dither.
+   * @param maxValue The max value of the color in the image.
+   * @return the dithered plane
    */
-  private void updateNeighbours(Pixel[][] imgPixels, int row, int col, int redError, int greenError,
-      int blueError, int maxValue) {
-    // read the width and height of the image
-    int imgWidth = imgPixels[0].length;
-    int imgHeight = imgPixels.length;
-
-    // apply the error to (row, col + 1) pixel
-    if (col + 1 < imgWidth) {
-      this.applyErrorToPixel(7, imgPixels, row, col + 1, redError, greenError, blueError, maxValue);
-    }
-
-    // apply error to (row + 1, col - 1) pixel
-    if (row + 1 < imgHeight && col - 1 >= 0) {
-      this.applyErrorToPixel(3, imgPixels, row + 1, col - 1, redError, greenError, blueError,
-          maxValue);
-    }
-
-    // apply error to (row + 1, col) pixel
-    if (row + 1 < imgHeight) {
-      this.applyErrorToPixel(5, imgPixels, row + 1, col, redError, greenError, blueError, maxValue);
-    }
-
-    // apply error to (row + 1, col + 1) pixel
-    if (row + 1 < imgHeight && col + 1 < imgWidth) {
-      this.applyErrorToPixel(1, imgPixels, row + 1, col + 1, redError, greenError, blueError,
-          maxValue);
+  private Plane dither(Plane plane, int maxValue) {
+    int imgWidth = plane.getWidth();
+    int imgHeight = plane.getHeight();
+
+    // the error only spreads to the next row, so two rows of values are enough
+    Plane.Builder dithered = Plane.builder(imgWidth, imgHeight, maxValue);
+    int[] current = new int[imgWidth];
+    int[] next = new int[imgWidth];
+    plane.copyRow(0, current);
+
+    // Loop through the values and apply dithering
+    for (int row = 0; row < imgHeight; row++) {
+      this.checkpoint(row, imgHeight);
+      boolean last = row + 1 == imgHeight;
+      if (!last) {
+        plane.copyRow(row + 1, next);
+      }
+      for (int col = 0; col < imgWidth; col++) {
+        int color = current[col];
+        int newColor = this.calculateNewColor(color, maxValue);
+        int error = color - newColor;
+
+        // apply the error to the neighboring values
+        if (col + 1 < imgWidth) {
+          this.applyError(current, col + 1, 7, error, maxValue);
+        }
+        if (!last && col - 1 >= 0) {
+          this.applyError(next, col - 1, 3, error, maxValue);
+        }
+        if (!last) {
+          this.applyError(next, col, 5, error, maxValue);
+        }
+        if (!last && col + 1 < imgWidth) {
+          this.applyError(next, col + 1, 1, error, maxValue);
+        }
+        current[col] = newColor;
+      }
+      dithered.setRow(row, current, 0);
+      int[] done = current;
+      current = next;
+      next = done;
     }
+    return dithered.build();
   }
 
   /**
-   * Apply the error to a single pixel. The error is multiplied by the factor.
+   * Apply the error to a single value. The error is multiplied by the factor.
    *
-   * @param imgPixels  2D array of pixels representing an image
-   * @param row        The row of the pixel to apply the error to.
-   * @param col        The column of the pixel to apply the error to.
-   * @param redError   The red error to apply.
-   * @param greenError The green error to apply.
-   * @param blueError  The blue error to apply.
-   * @param factor     The factor to apply the error by.
+   * @param values   The row of values being dithered.
+   * @param index    The index in the row of the value to apply the error to.
+   * @param factor   The factor to apply the error by.
+   * @param error    The error to apply.
+   * @param maxValue The max value of the color.
    */
-  private void applyErrorToPixel(int factor, Pixel[][] imgPixels, int row, int col, int redError,
-      int greenError, int blueError, int maxValue) {
-    // read the pixel
-    Pixel sourcePixel = imgPixels[row][col];
-
-    // read the pixel's color values
-    double red = sourcePixel.getRed();
-    double green = sourcePixel.getGreen();
-    double blue = sourcePixel.getBlue();
-
-    // calculate the new color values
-    red += (redError * factor / 16.0);
-    green += (greenError * factor / 16.0);
-    blue += (blueError * factor / 16.0);
-
-    int newRed = this.clamp(red, maxValue);
-    int newGreen = this.clamp(green, maxValue);
-    int newBlue = this.clamp(blue, maxValue);
-
-    // set the current pixel to the new color values
-    imgPixels[row][col] = sourcePixel.createPixel(newRed, newGreen, newBlue);
+  private void applyError(int[] values, int index, int factor, int error, int maxValue) {
+    values[index] = this.clamp(values[index] + (error * factor / 16.0), maxValue);
   }
 
   /**
@@ -1,8 +1,8 @@
 package textgimp.model.macros.imagetransform;
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
@@ -40,62 +40,58 @@ class Filter extends AbstractMacro implements Macro {
   public Image apply(Image sourceImage) {
     this.validateImage(sourceImage);
 
-    // read image properties
-    int imgWidth = sourceImage.getWidth();
-    int imgHeight = sourceImage.getHeight();
-    int maxValue = sourceImage.getMaxValue();
-
-    // Create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[imgHeight][imgWidth];
-
-    // Loop through the pixels apply the filter
-    for (int i = 0; i < imgHeight; i++) {
-      for (int j = 0; j < imgWidth; j++) {
-        newPixels[i][j] = this.applyFilter(sourceImage, i, j);
-      }
-    }
-    return new GenericImage(newPixels, maxValue, sourceImage.getImageType());
+    // filter every color plane, transparency is kept as it is
+    PlanarImage source = PlanarImage.of(sourceImage);
+    return this.mapPlanes(source, plane -> this.applyFilter(plane, source.getMaxValue()), false);
   }
 
   /**
-   * Apply the filter matrix to a single pixel.
+   * Filtering a pixel reads the pixels covered by the matrix around it.
    *
-   * @param sourceImage The image to apply the filter to.
-   * @param row         The row of the pixel to apply the filter to.
-   * @param col         The column of the pixel to apply the filter to.
-   * @return The pixel after the filter has been applied.
+   * @return half the size of the matrix.
    */
-  private Pixel applyFilter(Image sourceImage, int row, int col) {
-    double redSum = 0;
-    double greenSum = 0;
-    double blueSum = 0;
-    Pixel sourcePixel = sourceImage.getPixel(row, col);
-    int maxValue = sourceImage.getMaxValue();
-    int matrixCenter = this.matrixSize / 2;
-
-    // Loop through the pixels in the matrix and apply the filter
-    for (int i = 0; i < this.matrixSize; i++) {
-      for (int j = 0; j < this.matrixSize; j++) {
-        int pixelRow = row + i - matrixCenter;
-        int pixelCol = col + j - matrixCenter;
+  @Override
+  protected int halo() {
+    return this.matrixSize / 2;
+  }
 
-        // ignore pixels outside the image
-        if (pixelRow < 0 || pixelRow >= sourceImage.getHeight()
-            || pixelCol < 0 || pixelCol >= sourceImage.getWidth()) {
-          continue;
+  /**
+   * Apply the filter matrix to every value of a single plane. The plane is processed tile by tile,
+   * every tile is computed from a copy of its values and its halo, so the rows covered by the
+   * matrix stay in the cache.
+   *
+   * @param plane    The plane to apply the filter to.
+   * @param maxValue The maximum value of a color in this image.
+   * @return The plane after the filter has been applied.
+   */
+  private Plane applyFilter(Plane plane, int maxValue) {
+    int imgWidth = plane.getWidth();
+    int imgHeight = plane.getHeight();
+    int halo = this.halo();
+    int[] values = new int[imgWidth * imgHeight];
+
+    this.forEachTile(imgWidth, imgHeight, tile -> {
+      // pixels outside the image are 0 in the copy, so they add nothing to the sum
+      int[] window = readTile(plane, tile, halo);
+      int stride = tile.getWidth() + 2 * halo;
+      for (int row = 0; row < tile.getHeight(); row++) {
+        int start = (tile.getY() + row) * imgWidth + tile.getX();
+        for (int col = 0; col < tile.getWidth(); col++) {
+          double sum = 0;
+
+          // Loop through the values in the matrix and apply the filter
+          for (int i = 0; i < this.matrixSize; i++) {
+            int offset = (row + i) * stride + col;
+            double[] weights = this.filterMatrix[i];
+            for (int j = 0; j < this.matrixSize; j++) {
+              sum += window[offset + j] * weights[j];
+            }
+          }
+          values[start + col] = this.clamp(sum, maxValue);
         }
-
-        // apply filter
-        redSum += sourceImage.getPixel(pixelRow, pixelCol).getRed() * this.filterMatrix[i][j];
-        greenSum += sourceImage.getPixel(pixelRow, pixelCol).getGreen() * this.filterMatrix[i][j];
-        blueSum += sourceImage.getPixel(pixelRow, pixelCol).getBlue() * this.filterMatrix[i][j];
       }
-    }
-
-    return sourcePixel.createPixel(
-        this.clamp(redSum, maxValue),
-        this.clamp(greenSum, maxValue),
-        this.clamp(blueSum, maxValue));
+    });
+    return new Plane(values, imgWidth, imgHeight);
   }
 
   /**
@@ -1,6 +1,7 @@
 package textgimp.model.macros.imagetransform;
 
 import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.Region;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
@@ -16,15 +17,21 @@ public class FilterPresets {
    */
   static class Blur extends AbstractMacro implements Macro {
 
+    // matrix to blur the image
+    private static final double[][] FILTER_MATRIX = {
+        {1.0 / 16, 1.0 / 8, 1.0 / 16},
+        {1.0 / 8, 1.0 / 4, 1.0 / 8},
+        {1.0 / 16, 1.0 / 8, 1.0 / 16}
+    };
+
     @Override
     public Image apply(Image sourceImage) throws IllegalArgumentException {
-      // matrix to blur the image
-      double[][] filterMatrix = {
-          {1.0 / 16, 1.0 / 8, 1.0 / 16},
-          {1.0 / 8, 1.0 / 4, 1.0 / 8},
-          {1.0 / 16, 1.0 / 8, 1.0 / 16}
-      };
-      return new Filter(filterMatrix).apply(sourceImage);
+      return new Filter(FILTER_MATRIX).apply(sourceImage);
+    }
+
+    @Override
+    public Image apply(Image sourceImage, Region region) throws IllegalArgumentException {
+      return new Filter(FILTER_MATRIX).apply(sourceImage, region);
     }
   }
 
@@ -34,17 +41,23 @@ public class FilterPresets {
    */
   static class Sharpen extends AbstractMacro implements Macro {
 
+    // 5 x 5 matrix to sharpen an image
+    private static final double[][] FILTER_MATRIX = new double[][]{
+        {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
+    };
+
     @Override
     public Image apply(Image sourceImage) throws IllegalArgumentException {
-      // 5 x 5 matrix to sharpen an image
-      double[][] filterMatrix = new double[][]{
-          {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
-          {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
-          {-1.0 / 8, 1.0 / 4, 1.0, 1.0 / 4, -1.0 / 8},
-          {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
-          {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
-      };
-      return new Filter(filterMatrix).apply(sourceImage);
+      return new Filter(FILTER_MATRIX).apply(sourceImage);
+    }
+
+    @Override
+    public Image apply(Image sourceImage, Region region) throws IllegalArgumentException {
+      return new Filter(FILTER_MATRIX).apply(sourceImage, region);
     }
   }
 }
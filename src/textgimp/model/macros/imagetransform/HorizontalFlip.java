@@ -1,8 +1,8 @@
 package textgimp.model.macros.imagetransform;
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
@@ -16,20 +16,26 @@ public class HorizontalFlip extends AbstractMacro implements Macro {
     // validate the image
     this.validateImage(sourceImage);
 
-    // read the image properties
-    int maxValue = sourceImage.getMaxValue();
-    int height = sourceImage.getHeight();
-    int width = sourceImage.getWidth();
-
-    // create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[height][width];
+    // flip every plane, including transparency
+    return this.mapPlanes(PlanarImage.of(sourceImage), this::flip, true);
+  }
 
-    // flip the image horizontally
+  /**
+   * Flip a single plane horizontally.
+   *
+   * @param plane the plane to flip
+   * @return the flipped plane
+   */
+  private Plane flip(Plane plane) {
+    int width = plane.getWidth();
+    int height = plane.getHeight();
+    int[] values = new int[width * height];
     for (int i = 0; i < height; i++) {
+      this.checkpoint(i, height);
       for (int j = 0; j < width; j++) {
-        newPixels[i][j] = sourceImage.getPixel(i, width - j - 1);
+        values[i * width + j] = plane.get(i, width - j - 1);
       }
     }
-    return new GenericImage(newPixels, maxValue, sourceImage.getImageType());
+    return new Plane(values, width, height);
   }
 }
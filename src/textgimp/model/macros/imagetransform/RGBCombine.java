@@ -1,14 +1,15 @@
 package textgimp.model.macros.imagetransform;
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Region;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
 
 /**
  * This class represents a RGBCombine macro. It combines red, green, blue channels into one image.
+ * The combined image shares the planes of the channel images and the transparency of the red image.
  */
 public class RGBCombine extends AbstractMacro implements Macro {
 
@@ -54,19 +55,39 @@ public class RGBCombine extends AbstractMacro implements Macro {
       throw new IllegalArgumentException("Red image size does not march with blue and green");
     }
 
-    // Create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[imgHeight][imgWidth];
+    // the combined image references the planes of the sources, the values are not copied
+    PlanarImage red = PlanarImage.of(redImg);
+    return new PlanarImage(red.getRed(), PlanarImage.of(this.greenImg).getGreen(),
+        PlanarImage.of(this.blueImg).getBlue(), red.getAlpha(), maxValue,
+        redImg.getImageType());
+  }
 
-    // Loop through the pixels and set the new pixels to the combined version of the old pixels
-    for (int i = 0; i < imgHeight; i++) {
-      for (int j = 0; j < imgWidth; j++) {
-        Pixel redPixel = redImg.getPixel(i, j);
-        int red = redPixel.getRed();
-        int green = this.greenImg.getPixel(i, j).getGreen();
-        int blue = this.blueImg.getPixel(i, j).getBlue();
-        newPixels[i][j] = redPixel.createPixel(red, green, blue);
-      }
+  /**
+   * Combine a region of red, green, blue channels from three images into the red image.
+   *
+   * @param redImg The red channel image.
+   * @param region The region to combine.
+   * @return The red image with the combined region.
+   */
+  @Override
+  public Image apply(Image redImg, Region region) throws IllegalArgumentException {
+    this.validateImage(redImg);
+    if (redImg.getWidth() != this.greenImg.getWidth()
+        || redImg.getHeight() != this.greenImg.getHeight()) {
+      throw new IllegalArgumentException("Red image size does not march with blue and green");
     }
-    return new GenericImage(newPixels, maxValue, redImg.getImageType());
+    return super.apply(redImg, region);
+  }
+
+  /**
+   * Combine the same region of the green and blue images with a view of the red image.
+   *
+   * @param view The region of the red image the macro is applied to.
+   * @return the macro combining the region of the green and blue images.
+   */
+  @Override
+  protected Macro restrict(Region view) {
+    return new RGBCombine(PlanarImage.of(this.greenImg).crop(view),
+        PlanarImage.of(this.blueImg).crop(view));
   }
 }
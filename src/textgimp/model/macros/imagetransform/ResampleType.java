@@ -0,0 +1,9 @@
+package textgimp.model.macros.imagetransform;
+
+/**
+ * This is an enum class for resampling methods. This defines the available methods used to
+ * resize images, from the fastest to the sharpest.
+ */
+public enum ResampleType {
+  NEAREST, BILINEAR, BICUBIC, LANCZOS
+}
@@ -0,0 +1,347 @@
+package textgimp.model.macros.imagetransform;
+
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.macros.AbstractMacro;
+import textgimp.model.macros.Macro;
+
+/**
+ * This class represents a Resize macro. It scales an image to a given width and height.
+ *
+ * <p>Bilinear, bicubic and Lanczos resampling are separable: the image is resized horizontally
+ * and then vertically, or the other way round if that keeps the intermediate image smaller. The
+ * weights of every output column or row are computed once per pass. When shrinking, the filter
+ * is widened by the scale so every source pixel contributes. Shrinking by an exact power of two
+ * averages square blocks of pixels instead, and nearest neighbour resampling only picks values.
+ */
+public class Resize extends AbstractMacro implements Macro {
+
+  private final int width;
+  private final int height;
+  private final ResampleType type;
+
+  /**
+   * Create a new Resize macro.
+   *
+   * @param width  the width of the resized image
+   * @param height the height of the resized image
+   * @param type   the resampling method
+   * @throws IllegalArgumentException if the size is not positive or the method is null
+   */
+  public Resize(int width, int height, ResampleType type) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Size of the resized image must be positive.");
+    }
+    if (type == null) {
+      throw new IllegalArgumentException("Resampling method cannot be null.");
+    }
+    this.width = width;
+    this.height = height;
+    this.type = type;
+  }
+
+  @Override
+  public Image apply(Image sourceImage) throws IllegalArgumentException {
+    // validate the image
+    this.validateImage(sourceImage);
+    if (sourceImage.getWidth() == this.width && sourceImage.getHeight() == this.height) {
+      return sourceImage;
+    }
+
+    // resize every plane, including transparency
+    PlanarImage source = PlanarImage.of(sourceImage);
+    return this.mapPlanes(source, plane -> this.resize(plane, source.getMaxValue()), true);
+  }
+
+  /**
+   * Resize a single plane with the resampling method of the macro.
+   *
+   * @param plane    the plane to resize
+   * @param maxValue the maximum value of a color in this image
+   * @return the resized plane
+   */
+  private Plane resize(Plane plane, int maxValue) {
+    int sourceWidth = plane.getWidth();
+    int sourceHeight = plane.getHeight();
+    if (this.type == ResampleType.NEAREST) {
+      return this.nearest(plane, maxValue);
+    }
+
+    // shrinking by the same power of two in both directions averages blocks
+    int factor = sourceWidth / this.width;
+    if (factor > 1 && Integer.bitCount(factor) == 1 && sourceWidth == factor * this.width
+        && sourceHeight == factor * this.height) {
+      return this.box(plane, factor, maxValue);
+    }
+
+    // run first the pass that leaves the smaller intermediate plane
+    if ((long) sourceHeight * this.width <= (long) this.height * sourceWidth) {
+      Plane resized = this.horizontal(plane, maxValue);
+      return this.vertical(resized, maxValue);
+    }
+    Plane resized = this.vertical(plane, maxValue);
+    return this.horizontal(resized, maxValue);
+  }
+
+  /**
+   * Resize a plane by taking the value of the source pixel nearest to the center of every pixel.
+   *
+   * @param plane    the plane to resize
+   * @param maxValue the maximum value of a color in this image
+   * @return the resized plane
+   */
+  private Plane nearest(Plane plane, int maxValue) {
+    int[] columns = nearestIndices(plane.getWidth(), this.width);
+    int[] rows = nearestIndices(plane.getHeight(), this.height);
+    Plane.Builder resized = Plane.builder(this.width, this.height, maxValue);
+    this.forEachRow(this.width, this.height, row -> {
+      int[] source = new int[plane.getWidth()];
+      int[] values = new int[this.width];
+      plane.copyRow(rows[row], source);
+      for (int j = 0; j < this.width; j++) {
+        values[j] = source[columns[j]];
+      }
+      resized.setRow(row, values, 0);
+    });
+    return resized.build();
+  }
+
+  /**
+   * Shrink a plane by averaging square blocks of values.
+   *
+   * @param plane    the plane to shrink
+   * @param factor   the side of a block
+   * @param maxValue the maximum value of a color in this image
+   * @return the shrunk plane
+   */
+  private Plane box(Plane plane, int factor, int maxValue) {
+    int area = factor * factor;
+    Plane.Builder shrunk = Plane.builder(this.width, this.height, maxValue);
+    this.forEachRow(this.width, this.height, row -> {
+      int[] source = new int[plane.getWidth()];
+      long[] sums = new long[this.width];
+      for (int i = 0; i < factor; i++) {
+        plane.copyRow(row * factor + i, source);
+        for (int j = 0, k = 0; j < this.width; j++) {
+          for (int end = k + factor; k < end; k++) {
+            sums[j] += source[k];
+          }
+        }
+      }
+      int[] values = new int[this.width];
+      for (int j = 0; j < this.width; j++) {
+        values[j] = (int) ((sums[j] + area / 2) / area);
+      }
+      shrunk.setRow(row, values, 0);
+    });
+    return shrunk.build();
+  }
+
+  /**
+   * Resize every row of a plane to the width of the macro.
+   *
+   * @param plane    the plane to resize
+   * @param maxValue the maximum value of a color in this image
+   * @return the plane with the new width and the same height
+   */
+  private Plane horizontal(Plane plane, int maxValue) {
+    int sourceWidth = plane.getWidth();
+    int rows = plane.getHeight();
+    if (sourceWidth == this.width) {
+      return plane;
+    }
+    Weights weights = this.weights(sourceWidth, this.width);
+    Plane.Builder resized = Plane.builder(this.width, rows, maxValue);
+    this.forEachRow(this.width, rows, row -> {
+      int[] source = new int[sourceWidth];
+      int[] values = new int[this.width];
+      plane.copyRow(row, source);
+      for (int j = 0; j < this.width; j++) {
+        double sum = 0;
+        int first = weights.first[j];
+        int offset = j * weights.taps;
+        for (int k = 0; k < weights.count[j]; k++) {
+          sum += source[first + k] * weights.values[offset + k];
+        }
+        values[j] = clamp(sum, maxValue);
+      }
+      resized.setRow(row, values, 0);
+    });
+    return resized.build();
+  }
+
+  /**
+   * Resize every column of a plane to the height of the macro. Every output row accumulates whole
+   * source rows, so values are read in the order they are stored.
+   *
+   * @param plane    the plane to resize
+   * @param maxValue the maximum value of a color in this image
+   * @return the plane with the new height and the same width
+   */
+  private Plane vertical(Plane plane, int maxValue) {
+    int columns = plane.getWidth();
+    int sourceHeight = plane.getHeight();
+    if (sourceHeight == this.height) {
+      return plane;
+    }
+    Weights weights = this.weights(sourceHeight, this.height);
+    Plane.Builder resized = Plane.builder(columns, this.height, maxValue);
+    this.forEachRow(columns, this.height, row -> {
+      int[] source = new int[columns];
+      double[] sums = new double[columns];
+      int offset = row * weights.taps;
+      for (int k = 0; k < weights.count[row]; k++) {
+        plane.copyRow(weights.first[row] + k, source);
+        double weight = weights.values[offset + k];
+        for (int j = 0; j < columns; j++) {
+          sums[j] += source[j] * weight;
+        }
+      }
+      for (int j = 0; j < columns; j++) {
+        source[j] = clamp(sums[j], maxValue);
+      }
+      resized.setRow(row, source, 0);
+    });
+    return resized.build();
+  }
+
+  /**
+   * Compute the source values read for every output value along one direction, and their
+   * normalized weights.
+   *
+   * @param sourceSize the number of source values
+   * @param size       the number of output values
+   * @return the weights
+   */
+  private Weights weights(int sourceSize, int size) {
+    double scale = (double) sourceSize / size;
+    double filterScale = Math.max(scale, 1);
+    double support = this.support() * filterScale;
+    Weights weights = new Weights(size, (int) Math.ceil(support) * 2 + 1);
+    for (int i = 0; i < size; i++) {
+      double center = (i + 0.5) * scale;
+      int first = Math.max(0, (int) Math.floor(center - support + 0.5));
+      int last = Math.min(sourceSize, (int) Math.floor(center + support + 0.5));
+      int offset = i * weights.taps;
+      double total = 0;
+      for (int k = first; k < last; k++) {
+        double weight = this.kernel((k + 0.5 - center) / filterScale);
+        weights.values[offset + k - first] = weight;
+        total += weight;
+      }
+
+      // the weights of a value add up to 1, so flat areas keep their value
+      for (int k = 0; total != 0 && k < last - first; k++) {
+        weights.values[offset + k] /= total;
+      }
+      weights.first[i] = first;
+      weights.count[i] = last - first;
+    }
+    return weights;
+  }
+
+  /**
+   * Get the distance from the center beyond which the filter of the method is 0.
+   *
+   * @return the support of the filter
+   */
+  private double support() {
+    switch (this.type) {
+      case BICUBIC:
+        return 2;
+      case LANCZOS:
+        return 3;
+      default:
+        return 1;
+    }
+  }
+
+  /**
+   * Evaluate the filter of the method at a distance from the center.
+   *
+   * @param x the distance from the center, in source pixels
+   * @return the weight at that distance
+   */
+  private double kernel(double x) {
+    x = Math.abs(x);
+    switch (this.type) {
+      case BICUBIC:
+        // cubic convolution with a = -0.5
+        if (x < 1) {
+          return (1.5 * x - 2.5) * x * x + 1;
+        }
+        return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+      case LANCZOS:
+        return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+      default:
+        return x < 1 ? 1 - x : 0;
+    }
+  }
+
+  /**
+   * Compute the normalized sinc function.
+   *
+   * @param x the argument
+   * @return sin(pi x) / (pi x)
+   */
+  private static double sinc(double x) {
+    if (x == 0) {
+      return 1;
+    }
+    x *= Math.PI;
+    return Math.sin(x) / x;
+  }
+
+  /**
+   * Get the index of the source value nearest to the center of every output value.
+   *
+   * @param sourceSize the number of source values
+   * @param size       the number of output values
+   * @return the source index of every output value
+   */
+  private static int[] nearestIndices(int sourceSize, int size) {
+    int[] indices = new int[size];
+    for (int i = 0; i < size; i++) {
+      indices[i] = (int) Math.min(sourceSize - 1, ((2L * i + 1) * sourceSize) / (2L * size));
+    }
+    return indices;
+  }
+
+  /**
+   * Round a value and clamp it to the range of [0, maxValue].
+   *
+   * @param value    the value to clamp
+   * @param maxValue the maximum value of a color in this image
+   * @return the clamped value
+   */
+  private static int clamp(double value, int maxValue) {
+    long rounded = Math.round(value);
+    return (int) Math.max(0, Math.min(rounded, maxValue));
+  }
+
+  /**
+   * This class holds the weights of one pass. Every output value reads count consecutive source
+   * values starting at first, with their weights stored at a fixed stride.
+   */
+  private static final class Weights {
+
+    private final int taps;
+    private final int[] first;
+    private final int[] count;
+    private final double[] values;
+
+    /**
+     * Create empty weights.
+     *
+     * @param size the number of output values
+     * @param taps the largest number of source values read for one output value
+     */
+    Weights(int size, int taps) {
+      this.taps = taps;
+      this.first = new int[size];
+      this.count = new int[size];
+      this.values = new double[size * taps];
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package textgimp.model.macros.imagetransform;
+
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.macros.AbstractMacro;
+import textgimp.model.macros.Macro;
+
+/**
+ * This class represents a Rotate macro. It rotates the image clockwise by a multiple of 90
+ * degrees.
+ *
+ * <p>Quarter turns transpose the planes tile by tile, so both the rows read and the rows
+ * written stay in the cache while a block is copied. The turn direction comes from reversing the
+ * order of the rows before or after the transpose, which only creates a view of the rows.
+ */
+public class Rotate extends AbstractMacro implements Macro {
+
+  private final int quarterTurns;
+
+  /**
+   * Create a new Rotate macro.
+   *
+   * @param degrees the clockwise angle, negative angles turn counterclockwise
+   * @throws IllegalArgumentException if the angle is not a multiple of 90 degrees
+   */
+  public Rotate(int degrees) throws IllegalArgumentException {
+    if (degrees % 90 != 0) {
+      throw new IllegalArgumentException("Angle must be a multiple of 90 degrees.");
+    }
+    this.quarterTurns = Math.floorMod(degrees / 90, 4);
+  }
+
+  @Override
+  public Image apply(Image sourceImage) throws IllegalArgumentException {
+    // validate the image
+    this.validateImage(sourceImage);
+    if (this.quarterTurns == 0) {
+      return sourceImage;
+    }
+
+    // rotate every plane, including transparency
+    PlanarImage source = PlanarImage.of(sourceImage);
+    return this.mapPlanes(source, plane -> this.rotate(plane, source.getMaxValue()), true);
+  }
+
+  /**
+   * Rotate a single plane.
+   *
+   * @param plane    the plane to rotate
+   * @param maxValue the maximum value of a color in this image
+   * @return the rotated plane
+   */
+  private Plane rotate(Plane plane, int maxValue) {
+    switch (this.quarterTurns) {
+      case 1:
+        return this.transpose(plane.flipRows(), maxValue);
+      case 2:
+        return this.mirror(plane.flipRows(), maxValue);
+      default:
+        return this.transpose(plane, maxValue).flipRows();
+    }
+  }
+
+  /**
+   * Swap the rows and the columns of a plane, one tile of values at a time.
+   *
+   * @param plane    the plane to transpose
+   * @param maxValue the maximum value of a color in this image
+   * @return the transposed plane
+   */
+  private Plane transpose(Plane plane, int maxValue) {
+    int width = plane.getWidth();
+    int height = plane.getHeight();
+    Plane.Builder transposed = Plane.builder(height, width, maxValue);
+
+    // every tile of the source fills a tile of the transposed plane
+    this.forEachTile(width, height, tile -> {
+      for (int i = tile.getY(); i < tile.getY() + tile.getHeight(); i++) {
+        for (int j = tile.getX(); j < tile.getX() + tile.getWidth(); j++) {
+          transposed.set(j, i, plane.get(i, j));
+        }
+      }
+    });
+    return transposed.build();
+  }
+
+  /**
+   * Reverse every row of a plane.
+   *
+   * @param plane    the plane to mirror
+   * @param maxValue the maximum value of a color in this image
+   * @return the mirrored plane
+   */
+  private Plane mirror(Plane plane, int maxValue) {
+    int width = plane.getWidth();
+    int height = plane.getHeight();
+    Plane.Builder mirrored = Plane.builder(width, height, maxValue);
+    this.forEachRow(width, height, row -> {
+      for (int j = 0; j < width; j++) {
+        mirrored.set(row, j, plane.get(row, width - j - 1));
+      }
+    });
+    return mirrored.build();
+  }
+}
@@ -0,0 +1,45 @@
+package textgimp.model.macros.imagetransform;
+
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.macros.AbstractMacro;
+import textgimp.model.macros.Macro;
+
+/**
+ * This class represents a Subsample macro. It creates a reduced copy of an image whose width and
+ * height are at most a given size, by keeping every n-th pixel of every n-th row. The result is
+ * meant as a preview: it is cheap to compute and to display, but it is not filtered.
+ */
+public class Subsample extends AbstractMacro implements Macro {
+
+  private final int maxSize;
+
+  /**
+   * Create a new Subsample macro.
+   *
+   * @param maxSize the largest width and height of the result
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  public Subsample(int maxSize) throws IllegalArgumentException {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Preview size must be positive.");
+    }
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public Image apply(Image sourceImage) throws IllegalArgumentException {
+    // validate the image
+    this.validateImage(sourceImage);
+
+    // images that already fit are returned as they are
+    int step = PlanarImage.previewStep(sourceImage.getWidth(), sourceImage.getHeight(),
+        this.maxSize);
+    if (step == 1) {
+      return sourceImage;
+    }
+
+    // subsample every plane, including transparency
+    return this.mapPlanes(PlanarImage.of(sourceImage), plane -> plane.subsample(step), true);
+  }
+}
@@ -1,8 +1,8 @@
 package textgimp.model.macros.imagetransform;
 
-import textgimp.model.betterimage.GenericImage;
 import textgimp.model.betterimage.Image;
-import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.macros.AbstractMacro;
 import textgimp.model.macros.Macro;
 
@@ -16,20 +16,7 @@ public class VerticalFlip extends AbstractMacro implements Macro {
     // validate the image
     this.validateImage(sourceImage);
 
-    // read the image properties
-    int maxValue = sourceImage.getMaxValue();
-    int height = sourceImage.getHeight();
-    int width = sourceImage.getWidth();
-
-    // create a new 2D array of pixels
-    Pixel[][] newPixels = new Pixel[height][width];
-
-    // flip the image vertically
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        newPixels[i][j] = sourceImage.getPixel(height - i - 1, j);
-      }
-    }
-    return new GenericImage(newPixels, maxValue, sourceImage.getImageType());
+    // flip every plane, including transparency, the flipped planes share the rows of the source
+    return this.mapPlanes(PlanarImage.of(sourceImage), Plane::flipRows, true);
   }
 }
@@ -2,7 +2,9 @@ package textgimp;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import textgimp.model.Model;
+import textgimp.model.betterimage.Region;
 
 /**
  * This class represents a success mock model for the TextGimp program. The model returns success
@@ -81,6 +83,75 @@ public class TextGimpSuccessModelMock extends LoggerMockModel implements Model {
     this.addToLog(args);
   }
 
+  @Override
+  public void unload(String name) {
+    String[] args = {"unload", name};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void loadPreview(byte[] loadBytes, String name, String type, int maxSize) {
+    String[] args = {"load-preview", new String(loadBytes, StandardCharsets.UTF_8), name, type,
+        String.valueOf(maxSize)};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void preview(String sourceImageName, int maxSize, String newImageName) {
+    String[] args = {"preview", sourceImageName, String.valueOf(maxSize), newImageName};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void resize(String sourceImageName, int width, int height, String method,
+      String newImageName) {
+    String[] args = {"resize", sourceImageName, String.valueOf(width), String.valueOf(height),
+        method, newImageName};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void rotate(String sourceImageName, double degrees, String newImageName) {
+    String[] args = {"rotate", sourceImageName, String.valueOf(degrees), newImageName};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void affine(String sourceImageName, double[] matrix, String newImageName) {
+    String[] args = {"affine", sourceImageName, Arrays.toString(matrix), newImageName};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void keepHistory(String name, long budget) {
+    String[] args = {"keep-history", name, String.valueOf(budget)};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void undo(String name) {
+    String[] args = {"undo", name};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void redo(String name) {
+    String[] args = {"redo", name};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void select(String name, Region region) {
+    String[] args = {"select", name, String.valueOf(region)};
+    this.addToLog(args);
+  }
+
+  @Override
+  public void crop(String sourceImageName, Region region, String newImageName) {
+    String[] args = {"crop", sourceImageName, String.valueOf(region), newImageName};
+    this.addToLog(args);
+  }
+
   @Override
   public int[] getHistogramOfGreyscale(String name, String component)
       throws IllegalArgumentException {
@@ -95,4 +166,34 @@ public class TextGimpSuccessModelMock extends LoggerMockModel implements Model {
     this.addToLog(args);
     return new byte[0];
   }
+
+  @Override
+  public int[] getHistogramOfGreyscale(String name, String component, Region region)
+      throws IllegalArgumentException {
+    String[] args = {"histogram", name, component, String.valueOf(region)};
+    this.addToLog(args);
+    return new int[0];
+  }
+
+  @Override
+  public byte[] getBytesOfImage(String name, Region region)
+      throws IllegalArgumentException, IOException {
+    String[] args = {"bytes", name, String.valueOf(region)};
+    this.addToLog(args);
+    return new byte[0];
+  }
+
+  @Override
+  public Region getBounds(String name) throws IllegalArgumentException {
+    String[] args = {"bounds", name};
+    this.addToLog(args);
+    return new Region(0, 0, 1, 1);
+  }
+
+  @Override
+  public Region getChangedRegion(String first, String second) throws IllegalArgumentException {
+    String[] args = {"changed-region", first, second};
+    this.addToLog(args);
+    return new Region(0, 0, 1, 1);
+  }
 }
@@ -1,9 +1,12 @@
 package textgimp;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import textgimp.control.Features;
 import textgimp.guiview.GUIView;
+import textgimp.model.betterimage.Region;
+import textgimp.utility.Result;
 
 /**
  * This class represents a mock view for the TextGimp program. The view writes all the commands it
@@ -17,7 +20,7 @@ public class ViewMock implements GUIView {
    * Constructs a new ViewMock and initializes the log.
    */
   public ViewMock() {
-    log = new ArrayList<>();
+    log = Collections.synchronizedList(new ArrayList<>());
   }
 
   @Override
@@ -37,4 +40,22 @@ public class ViewMock implements GUIView {
     String[] args = {"display", imageName};
     log.add(args);
   }
+
+  @Override
+  public void refreshImage(String imageName, Region changed) {
+    String[] args = {"refresh", imageName, changed.toString()};
+    log.add(args);
+  }
+
+  @Override
+  public void showProgress(String task, double progress) {
+    String[] args = {"progress", task, progress >= 1 ? "done" : "running"};
+    log.add(args);
+  }
+
+  @Override
+  public void showResult(String action, Result result) {
+    String[] args = {"result", action, String.valueOf(result.isSuccess()), result.getMessage()};
+    log.add(args);
+  }
 }
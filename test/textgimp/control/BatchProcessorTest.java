@@ -0,0 +1,193 @@
+package textgimp.control;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Test;
+import textgimp.model.Model;
+import textgimp.model.TextGimpModel;
+import textgimp.utility.Result;
+import textgimp.view.TextGimpView;
+
+/**
+ * This is a JUnit test class for the BatchProcessor class.
+ */
+public class BatchProcessorTest {
+
+  private static final List<String> PIPELINE = List.of(
+      "# brighten and flip every image",
+      "brighten 10 image image",
+      "horizontal-flip image image");
+
+  private final List<Path> directories = new ArrayList<>();
+
+  /**
+   * Delete the directories created by a test.
+   *
+   * @throws IOException if a file cannot be deleted.
+   */
+  @After
+  public void deleteDirectories() throws IOException {
+    for (Path dir : this.directories) {
+      try (Stream<Path> files = Files.walk(dir)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Create a directory of images, one of them invalid, and a file that does not match.
+   *
+   * @return the directory.
+   * @throws IOException if the files cannot be written.
+   */
+  private Path createImages() throws IOException {
+    return this.createImages("batch");
+  }
+
+  /**
+   * Create a directory of images, one of them invalid, and a file that does not match.
+   *
+   * @param prefix the start of the name of the directory.
+   * @return the directory.
+   * @throws IOException if the files cannot be written.
+   */
+  private Path createImages(String prefix) throws IOException {
+    Path dir = Files.createTempDirectory(prefix);
+    this.directories.add(dir);
+    for (int i = 0; i < 5; i++) {
+      Files.write(dir.resolve("in" + i + ".ppm"), ("P3 2 2 255 " + i + " 20 30 40 50 60 70 80 "
+          + "90 1 2 3").getBytes());
+    }
+    Files.write(dir.resolve("broken.ppm"), "P3 2 2".getBytes());
+    Files.write(dir.resolve("notes.txt"), "not an image".getBytes());
+    return dir;
+  }
+
+  /**
+   * Tests that every matching file is processed as the pipeline would process it alone, and that
+   * failures are reported without stopping the batch.
+   *
+   * @throws IOException if the test files cannot be written
+   */
+  @Test
+  public void processesEveryFile() throws IOException {
+    Path dir = this.createImages();
+    Path target = dir.resolve("out");
+    List<Result> reported = new ArrayList<>();
+    Result summary = new BatchProcessor(TextGimpModel::new, 3)
+        .run(PIPELINE, dir, "*.ppm", target, reported::add);
+
+    // the broken file fails, the others are saved
+    assertFalse(summary.isSuccess());
+    assertTrue(summary.getMessage(),
+        summary.getMessage().startsWith("Processed 6 files, 1 failed"));
+    assertTrue(reported.stream().anyMatch(result -> !result.isSuccess()
+        && result.getMessage().startsWith("broken.ppm: ")));
+    assertFalse(Files.exists(target.resolve("broken.ppm")));
+    assertFalse(Files.exists(target.resolve("notes.txt")));
+
+    // every result is the same as running the pipeline on a single model
+    for (int i = 0; i < 5; i++) {
+      Model model = new TextGimpModel();
+      model.load(Files.readAllBytes(dir.resolve("in" + i + ".ppm")), "image", "ppm");
+      model.brighten("image", 10, "image");
+      model.horizontalFlip("image", "image");
+      assertArrayEquals(model.save("image", "ppm"),
+          Files.readAllBytes(target.resolve("in" + i + ".ppm")));
+    }
+  }
+
+  /**
+   * Tests that files and directories whose paths contain spaces are processed, from the
+   * processor and from the controller.
+   *
+   * @throws IOException if the test files cannot be written
+   */
+  @Test
+  public void pathsWithSpaces() throws IOException {
+    Path dir = this.createImages("batch with spaces");
+    Files.write(dir.resolve("in 5.ppm"), "P3 1 1 255 1 2 3".getBytes());
+    Path target = dir.resolve("out dir");
+    List<Result> reported = new ArrayList<>();
+    Result summary = new BatchProcessor(TextGimpModel::new, 2)
+        .run(PIPELINE, dir, "in*.ppm", target, reported::add);
+    assertTrue(summary.getMessage(), summary.isSuccess());
+    assertTrue(summary.getMessage().startsWith("Processed 6 files, 0 failed"));
+    assertTrue(Files.exists(target.resolve("in 5.ppm")));
+
+    // the controller takes quoted paths
+    Path pipeline = dir.resolve("pipeline script.tg");
+    Files.write(pipeline, PIPELINE);
+    String input = "batch \"" + pipeline + "\" \"" + dir + "\" \"in 5.ppm\" \""
+        + dir.resolve("quoted out") + "\"\n";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextGimpView view = new TextGimpView(new ByteArrayInputStream(input.getBytes()), out);
+    new TextGimpController(new TextGimpModel(), view, false, 2, TextGimpModel::new).run();
+    assertTrue(out.toString().contains("Processed 1 files, 0 failed"));
+    assertTrue(Files.exists(dir.resolve("quoted out").resolve("in 5.ppm")));
+  }
+
+  /**
+   * Tests that invalid pipelines, directories and arguments are rejected.
+   *
+   * @throws IOException if the test files cannot be written
+   */
+  @Test
+  public void rejectsInvalidBatches() throws IOException {
+    Path dir = this.createImages();
+    BatchProcessor processor = new BatchProcessor(TextGimpModel::new, 1);
+    List<Result> reported = new ArrayList<>();
+    assertFalse(processor.run(List.of("run other.tg"), dir, "*.ppm", dir.resolve("out"),
+        reported::add).isSuccess());
+    assertFalse(processor.run(PIPELINE, dir.resolve("missing"), "*.ppm", dir.resolve("out"),
+        reported::add).isSuccess());
+    assertTrue(reported.isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> new BatchProcessor(null, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new BatchProcessor(TextGimpModel::new, 0));
+  }
+
+  /**
+   * Tests that the controller runs batches from a pipeline script.
+   *
+   * @throws IOException if the test files cannot be written
+   */
+  @Test
+  public void controllerRunsBatches() throws IOException {
+    Path dir = this.createImages();
+    Path pipeline = dir.resolve("pipeline.tg");
+    Files.write(pipeline, PIPELINE);
+    String input = "batch " + pipeline + " " + dir + " in*.ppm " + dir.resolve("out") + "\n"
+        + "batch " + pipeline + " " + dir + "\n";
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextGimpView view = new TextGimpView(new ByteArrayInputStream(input.getBytes()), out);
+    new TextGimpController(new TextGimpModel(), view, false, 2, TextGimpModel::new).run();
+    assertTrue(out.toString().contains("Processed 5 files, 0 failed"));
+    assertTrue(out.toString().contains("Incorrect usage."));
+    assertEquals(5, dir.resolve("out").toFile().list().length);
+
+    // controllers without a model supplier do not run batches
+    out.reset();
+    view = new TextGimpView(new ByteArrayInputStream(input.getBytes()), out);
+    new TextGimpController(new TextGimpModel(), view).run();
+    assertTrue(out.toString().contains("Batches are not supported."));
+  }
+}
@@ -0,0 +1,361 @@
+package textgimp.control;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import textgimp.TextGimpFailureModelMock;
+import textgimp.TextGimpSuccessModelMock;
+import textgimp.ViewMock;
+import textgimp.model.Model;
+import textgimp.model.TextGimpModel;
+import textgimp.utility.Result;
+
+/**
+ * This class tests the features of the GUI view.
+ */
+public class GuiFeaturesTest {
+
+  /**
+   * Wait until every task given to the executor is done.
+   *
+   * @param worker the executor to wait for.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  private void finish(ExecutorService worker) throws InterruptedException {
+    worker.shutdown();
+    assertTrue(worker.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Wait until every task given to the executor so far is done, without shutting it down.
+   *
+   * @param worker the executor to wait for.
+   * @throws Exception if the thread is interrupted or the executor does not finish in time.
+   */
+  private void drain(ExecutorService worker) throws Exception {
+    worker.submit(() -> { }).get(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Get the last result given to the view.
+   *
+   * @param view the view to read.
+   * @return the last result entry of the log.
+   */
+  private String[] lastResult(ViewMock view) {
+    synchronized (view.log) {
+      List<String[]> results = this.calls(view.log, "result");
+      return results.get(results.size() - 1);
+    }
+  }
+
+  /**
+   * Get the images displayed or refreshed by the view, in order.
+   *
+   * @param view the view to read.
+   * @return the names of the displayed images.
+   */
+  private List<String> displayed(ViewMock view) {
+    synchronized (view.log) {
+      return view.log.stream()
+          .filter(entry -> entry[0].equals("display") || entry[0].equals("refresh"))
+          .map(entry -> entry[1]).collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Get the calls of one method in a log.
+   *
+   * @param log    the log to read.
+   * @param method the first entry of the calls to find.
+   * @return the matching calls, in order.
+   */
+  private List<String[]> calls(List<String[]> log, String method) {
+    return log.stream().filter(entry -> entry[0].equals(method)).collect(Collectors.toList());
+  }
+
+  /**
+   * Hold the worker until the returned latch is counted down.
+   *
+   * @param worker the executor to hold.
+   * @return the latch that releases the worker.
+   */
+  private CountDownLatch hold(ExecutorService worker) {
+    CountDownLatch latch = new CountDownLatch(1);
+    worker.execute(() -> {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    return latch;
+  }
+
+  /**
+   * Tests that a preview is decoded and displayed before the full image is loaded.
+   *
+   * @throws Exception if the image file cannot be written or the test is interrupted.
+   */
+  @Test
+  public void loadShowsPreview() throws Exception {
+    ViewMock view = new ViewMock();
+    TextGimpSuccessModelMock model = new TextGimpSuccessModelMock();
+    File file = File.createTempFile("preview", ".ppm");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "P3 1 1 255 1 2 3".getBytes());
+
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    assertTrue(new GuiFeatures(model, view, worker).load(file.getPath()).isSuccess());
+    this.finish(worker);
+    assertArrayEquals(new String[]{"load-preview", "P3 1 1 255 1 2 3", "TARGET_PREVIEW", "ppm",
+        "1024"}, model.getLog().get(0));
+    assertArrayEquals(new String[]{"load", "P3 1 1 255 1 2 3", "TARGET", "ppm"},
+        this.calls(model.getLog(), "load").get(0));
+    assertArrayEquals(new String[]{"display", "TARGET_PREVIEW"}, view.log.get(0));
+  }
+
+  /**
+   * Tests that operations are applied to the preview first and then to the full image, after
+   * which a preview of the full image is displayed.
+   *
+   * @throws InterruptedException if the test is interrupted.
+   */
+  @Test
+  public void operationsShowPreview() throws InterruptedException {
+    ViewMock view = new ViewMock();
+    TextGimpSuccessModelMock model = new TextGimpSuccessModelMock();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    assertTrue(new GuiFeatures(model, view, worker).brighten(10).isSuccess());
+    this.finish(worker);
+    List<String[]> brightened = this.calls(model.getLog(), "brighten");
+    assertArrayEquals(new String[]{"brighten", "TARGET_PREVIEW", "10", "TARGET_PREVIEW"},
+        brightened.get(0));
+    assertArrayEquals(new String[]{"brighten", "TARGET", "10", "TARGET"}, brightened.get(1));
+    assertTrue(this.calls(model.getLog(), "preview").stream().anyMatch(entry -> Arrays.equals(
+        new String[]{"preview", "TARGET", "1024", "TARGET_PREVIEW"}, entry)));
+    assertEquals(Arrays.asList("TARGET_PREVIEW", "TARGET_PREVIEW"), this.displayed(view));
+    assertArrayEquals(new String[]{"progress", "Brightening", "running"}, view.log.get(1));
+    assertArrayEquals(new String[]{"progress", "Brightening", "done"},
+        view.log.get(view.log.size() - 2));
+
+    // operations fail on the preview if no image is loaded
+    Model failing = new TextGimpFailureModelMock();
+    ExecutorService unused = Executors.newSingleThreadExecutor();
+    assertFalse(new GuiFeatures(failing, new ViewMock(), unused).dither().isSuccess());
+    this.finish(unused);
+  }
+
+  /**
+   * Tests that the full image receives every queued operation in order before it is saved, and
+   * that the preview is only replaced once the queue is empty.
+   *
+   * @throws Exception if the image file cannot be read or the test is interrupted.
+   */
+  @Test
+  public void saveWaitsForFullImage() throws Exception {
+    Model model = new TextGimpModel();
+    model.load("P3 4 1 255 10 10 10 20 20 20 30 30 30 40 40 40".getBytes(), "TARGET", "ppm");
+    model.preview("TARGET", 1024, "TARGET_PREVIEW");
+
+    // hold the worker until both operations are queued
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    CountDownLatch queued = this.hold(worker);
+    ViewMock view = new ViewMock();
+    GuiFeatures features = new GuiFeatures(model, view, worker);
+    assertTrue(features.brighten(5).isSuccess());
+    assertTrue(features.horizontalFlip().isSuccess());
+    assertEquals(2, this.displayed(view).size());
+
+    // saving returns while the worker is still held, the view is given the result later
+    File file = File.createTempFile("full", ".ppm");
+    file.deleteOnExit();
+    assertEquals("Saving...", features.save(file.getPath()).getMessage());
+    assertEquals(0, file.length());
+    assertTrue(this.calls(view.log, "result").isEmpty());
+    queued.countDown();
+    this.finish(worker);
+    String expected = "P3 4 1 255 45 45 45 35 35 35 25 25 25 15 15 15";
+    assertEquals(expected, String.join(" ", new String(Files.readAllBytes(file.toPath()))
+        .trim().split("\\s+")));
+    assertArrayEquals(model.save("TARGET", "ppm"), model.save("TARGET_PREVIEW", "ppm"));
+    List<String[]> results = this.calls(view.log, "result");
+    assertEquals(1, results.size());
+    assertArrayEquals(new String[]{"result", "Save file", "true"},
+        Arrays.copyOf(results.get(0), 3));
+
+    // the preview of the full image equals the displayed preview, so it is not refreshed
+    assertEquals(2, this.displayed(view).size());
+  }
+
+  /**
+   * Tests that combining is queued without waiting, and that its result is given to the view once
+   * the preview was rebuilt from the combined image.
+   *
+   * @throws Exception if the image files cannot be written or the test is interrupted.
+   */
+  @Test
+  public void combineDoesNotWait() throws Exception {
+    File red = File.createTempFile("red", ".ppm");
+    red.deleteOnExit();
+    Files.write(red.toPath(), "P3 2 1 255 10 10 10 20 20 20".getBytes());
+    File other = File.createTempFile("other", ".ppm");
+    other.deleteOnExit();
+    Files.write(other.toPath(), "P3 1 1 255 30 30 30".getBytes());
+    Model model = new TextGimpModel();
+    ViewMock view = new ViewMock();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    CountDownLatch queued = this.hold(worker);
+    GuiFeatures features = new GuiFeatures(model, view, worker);
+
+    // the images are only read once the worker is released
+    assertEquals("Combining...", features.rgbCombine(red.getPath(), red.getPath(),
+        red.getPath()).getMessage());
+    assertTrue(features.rgbCombine(red.getPath(), other.getPath(), red.getPath()).isSuccess());
+    assertTrue(view.log.isEmpty());
+    queued.countDown();
+    this.finish(worker);
+
+    List<String[]> results = this.calls(view.log, "result");
+    assertEquals(2, results.size());
+    assertArrayEquals(new String[]{"result", "RGB combine", "true"},
+        Arrays.copyOf(results.get(0), 3));
+    assertArrayEquals(new String[]{"result", "RGB combine", "false"},
+        Arrays.copyOf(results.get(1), 3));
+    assertEquals("refresh", view.log.get(view.log.indexOf(results.get(1)) - 1)[0]);
+    assertArrayEquals(model.save("TARGET", "ppm"), model.save("TARGET_PREVIEW", "ppm"));
+  }
+
+  /**
+   * Tests that the view is only told the region of the preview that changed.
+   *
+   * @throws InterruptedException if the test is interrupted.
+   */
+  @Test
+  public void refreshesChangedRegion() throws InterruptedException {
+    Model model = new TextGimpModel();
+    model.load("P3 4 2 255 1 1 1 2 2 2 3 3 3 4 4 4 5 5 5 6 6 6 6 6 6 5 5 5".getBytes(),
+        "TARGET", "ppm");
+    model.preview("TARGET", 1024, "TARGET_PREVIEW");
+    ViewMock view = new ViewMock();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    GuiFeatures features = new GuiFeatures(model, view, worker);
+
+    // nothing was shown yet, so the whole preview is refreshed
+    assertTrue(features.horizontalFlip().isSuccess());
+    this.finish(worker);
+    assertArrayEquals(new String[]{"refresh", "TARGET_PREVIEW", "0 0 4 2"},
+        this.calls(view.log, "refresh").get(0));
+
+    // the second row is symmetric, so flipping again only changes the first row
+    ExecutorService next = Executors.newSingleThreadExecutor();
+    features = new GuiFeatures(model, view, next);
+    assertTrue(features.horizontalFlip().isSuccess());
+    this.finish(next);
+    List<String[]> refreshed = this.calls(view.log, "refresh");
+    assertEquals(2, refreshed.size());
+    assertArrayEquals(new String[]{"refresh", "TARGET_PREVIEW", "0 0 4 1"}, refreshed.get(1));
+  }
+
+  /**
+   * Tests that cancelling drops the queued operations, leaves the full image unchanged and
+   * replaces the preview with a preview of the full image.
+   *
+   * @throws Exception if the image cannot be saved or the test is interrupted.
+   */
+  @Test
+  public void cancelKeepsFullImage() throws Exception {
+    Model model = new TextGimpModel();
+    model.load("P3 2 1 255 10 10 10 20 20 20".getBytes(), "TARGET", "ppm");
+    model.preview("TARGET", 1024, "TARGET_PREVIEW");
+    byte[] original = model.save("TARGET", "ppm");
+
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    CountDownLatch queued = this.hold(worker);
+    ViewMock view = new ViewMock();
+    GuiFeatures features = new GuiFeatures(model, view, worker);
+    assertTrue(features.brighten(5).isSuccess());
+    assertTrue(features.verticalFlip().isSuccess());
+    assertFalse(Arrays.equals(original, model.save("TARGET_PREVIEW", "ppm")));
+
+    // both operations are dropped before they start
+    Result res = features.cancel();
+    assertTrue(res.isSuccess());
+    assertEquals("Cancelled 2 operation(s).", res.getMessage());
+    queued.countDown();
+    this.finish(worker);
+    assertArrayEquals(original, model.save("TARGET", "ppm"));
+    assertArrayEquals(original, model.save("TARGET_PREVIEW", "ppm"));
+
+    // flipping a single row vertically changes nothing, so only brightening and cancelling refresh
+    assertEquals(2, this.displayed(view).size());
+
+    // nothing is left to cancel
+    assertEquals("No operation to cancel.", features.cancel().getMessage());
+  }
+
+  /**
+   * Tests that undo and redo are queued without waiting, that they are applied to the full image
+   * after the queued operations, and that the preview follows them.
+   *
+   * @throws Exception if the image file cannot be written or the test is interrupted.
+   */
+  @Test
+  public void undoAndRedo() throws Exception {
+    File file = File.createTempFile("history", ".ppm");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "P3 2 1 255 10 10 10 20 20 20".getBytes());
+    Model model = new TextGimpModel();
+    ViewMock view = new ViewMock();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    GuiFeatures features = new GuiFeatures(model, view, worker, 1024);
+    assertEquals("Undoing...", features.undo().getMessage());
+    this.drain(worker);
+    assertArrayEquals(new String[]{"result", "Undo", "false", "Nothing to undo."},
+        this.lastResult(view));
+
+    assertTrue(features.load(file.getPath()).isSuccess());
+    byte[] original = model.save("TARGET_PREVIEW", "ppm");
+    assertTrue(features.brighten(5).isSuccess());
+    byte[] brightened = model.save("TARGET_PREVIEW", "ppm");
+    assertTrue(features.horizontalFlip().isSuccess());
+
+    // undo returns while the worker is held, and applies after the operations before it
+    CountDownLatch queued = this.hold(worker);
+    assertTrue(features.undo().isSuccess());
+    assertEquals("Nothing to undo.", this.lastResult(view)[3]);
+    queued.countDown();
+    this.drain(worker);
+    assertArrayEquals(brightened, model.save("TARGET", "ppm"));
+    assertArrayEquals(new String[]{"result", "Undo", "true", "Undid the last operation."},
+        this.lastResult(view));
+    assertTrue(features.undo().isSuccess());
+    this.drain(worker);
+    assertArrayEquals(original, model.save("TARGET", "ppm"));
+    assertArrayEquals(original, model.save("TARGET_PREVIEW", "ppm"));
+    assertTrue(features.undo().isSuccess());
+    this.drain(worker);
+    assertEquals("false", this.lastResult(view)[2]);
+
+    assertTrue(features.redo().isSuccess());
+    this.drain(worker);
+    assertArrayEquals(brightened, model.save("TARGET_PREVIEW", "ppm"));
+    assertTrue(features.dither().isSuccess());
+    assertTrue(features.redo().isSuccess());
+    this.finish(worker);
+    assertArrayEquals(new String[]{"result", "Redo", "false", "Nothing to redo."},
+        this.lastResult(view));
+  }
+}
@@ -0,0 +1,128 @@
+package textgimp.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+/**
+ * This is a JUnit test class for the PipelineExecutor class.
+ */
+public class PipelineExecutorTest {
+
+  /**
+   * Tests that every item goes through every stage and that few items are in progress at once.
+   *
+   * @throws InterruptedException if the test is interrupted
+   */
+  @Test
+  public void processesEveryItem() throws InterruptedException {
+    AtomicInteger inProgress = new AtomicInteger();
+    AtomicInteger mostInProgress = new AtomicInteger();
+    PipelineExecutor<Integer> executor = new PipelineExecutor<Integer>()
+        .addStage("start", 2, item -> {
+          mostInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+          return item * 10;
+        })
+        .addStage("add", 3, item -> item + 1)
+        .addStage("odd", 1, item -> {
+          if (item % 20 == 1) {
+            inProgress.decrementAndGet();
+            return null;
+          }
+          return item;
+        });
+
+    // items are fed lazily, every stage, queue and the sink only hold a few of them
+    List<Integer> results = new ArrayList<>();
+    executor.run(IntStream.range(0, 200).boxed().iterator(), item -> {
+      inProgress.decrementAndGet();
+      results.add(item);
+    });
+    Collections.sort(results);
+    assertEquals(IntStream.range(0, 200).filter(i -> i % 2 == 1).mapToObj(i -> i * 10 + 1)
+        .collect(Collectors.toList()), results);
+    assertTrue(mostInProgress.get() <= 2 + 3 + 3 + 1 + 1 + 1 + 1);
+    assertTrue(executor.describeStages().startsWith("start "));
+    assertTrue(executor.describeStages().contains("odd "));
+  }
+
+  /**
+   * Tests that exceptions of stages are rethrown after the other items are processed.
+   */
+  @Test
+  public void rethrowsFailures() {
+    AtomicInteger processed = new AtomicInteger();
+    PipelineExecutor<Integer> executor = new PipelineExecutor<Integer>()
+        .addStage("check", 2, item -> {
+          if (item == 3) {
+            throw new IllegalArgumentException("three");
+          }
+          return item;
+        });
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> executor.run(IntStream.range(0, 10).boxed().iterator(),
+            item -> processed.incrementAndGet()));
+    assertEquals("three", e.getMessage());
+    assertEquals(9, processed.get());
+
+    assertThrows(IllegalStateException.class,
+        () -> new PipelineExecutor<Integer>().run(List.of(1).iterator(), item -> { }));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PipelineExecutor<Integer>().addStage("none", 0, item -> item));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PipelineExecutor<Integer>().addStage("none", 1, null));
+  }
+
+  /**
+   * Tests that errors of stages and of the items do not stop the run from ending, and are
+   * rethrown.
+   */
+  @Test(timeout = 5000)
+  public void rethrowsErrors() {
+    AtomicInteger processed = new AtomicInteger();
+    PipelineExecutor<Integer> executor = new PipelineExecutor<Integer>()
+        .addStage("first", 2, item -> {
+          if (item % 4 == 0) {
+            throw new OutOfMemoryError("large");
+          }
+          return item;
+        })
+        .addStage("second", 1, item -> item);
+    OutOfMemoryError e = assertThrows(OutOfMemoryError.class,
+        () -> executor.run(IntStream.range(0, 20).boxed().iterator(),
+            item -> processed.incrementAndGet()));
+    assertEquals("large", e.getMessage());
+    assertEquals(15, processed.get());
+
+    // an iterator failing part way still ends the run after the items it gave
+    Iterator<Integer> failing = new Iterator<>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        if (this.next == 3) {
+          throw new StackOverflowError();
+        }
+        return this.next++;
+      }
+    };
+    processed.set(0);
+    assertThrows(StackOverflowError.class, () -> new PipelineExecutor<Integer>()
+        .addStage("only", 3, item -> item).run(failing, item -> processed.incrementAndGet()));
+    assertEquals(3, processed.get());
+  }
+}
@@ -0,0 +1,116 @@
+package textgimp.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import textgimp.control.commands.ImageCommandRunner;
+import textgimp.model.TextGimpModel;
+import textgimp.utility.Result;
+import textgimp.view.TextGimpView;
+
+/**
+ * This is a JUnit test class for the ScriptScheduler class.
+ */
+public class ScriptSchedulerTest {
+
+  /**
+   * Run a script with the given number of threads and return the output and the saved files.
+   *
+   * @param script  lines of the script, $ is replaced by the working directory.
+   * @param threads number of threads.
+   * @param outputs names of the files saved by the script.
+   * @return output of the controller followed by the content of every saved file.
+   * @throws IOException if the working directory cannot be used.
+   */
+  private List<String> runScript(List<String> script, int threads, String... outputs)
+      throws IOException {
+    Path dir = Files.createTempDirectory("scheduler");
+    Files.write(dir.resolve("in.ppm"), "P3 3 2 255 10 20 30 40 50 60 70 80 90 1 2 3 4 5 6 7 8 9"
+        .getBytes());
+    String input = String.join("\n", script).replace("$", dir.toString());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextGimpView view = new TextGimpView(new ByteArrayInputStream(input.getBytes()), out);
+    new TextGimpController(new TextGimpModel(), view, true, threads).run();
+
+    List<String> results = new ArrayList<>();
+    results.add(out.toString());
+    for (String output : outputs) {
+      Path file = dir.resolve(output);
+      results.add(Files.exists(file) ? new String(Files.readAllBytes(file)) : "missing");
+    }
+    return results;
+  }
+
+  /**
+   * Tests that running a script concurrently gives the same output and files as running it in
+   * order.
+   *
+   * @throws IOException if the test files cannot be written
+   */
+  @Test
+  public void sameResultsAsSequential() throws IOException {
+    List<String> script = List.of(
+        "load $/in.ppm src",
+        "brighten 10 src bright",
+        "greyscale red-component src red",
+        "greyscale luma-component src luma",
+        "save $/bright.ppm bright",
+        "# reads the file saved above",
+        "load $/bright.ppm again",
+        "horizontal-flip again again",
+        "save $/again.ppm again",
+        "save $/red.ppm red",
+        "# replaces the source after all the reads above",
+        "blur src src",
+        "save $/src.ppm src",
+        "save $/luma.ppm luma",
+        "dither missing missing-dest",
+        "unload red",
+        "save $/red2.ppm red",
+        "q",
+        "save $/late.ppm src");
+    String[] outputs = {"bright.ppm", "again.ppm", "red.ppm", "src.ppm", "luma.ppm", "red2.ppm",
+        "late.ppm"};
+
+    List<String> expected = runScript(script, 1, outputs);
+    assertEquals("missing", expected.get(expected.size() - 2));
+    assertEquals("missing", expected.get(expected.size() - 1));
+    for (int i = 0; i < 20; i++) {
+      assertEquals(expected, runScript(script, 4, outputs));
+    }
+  }
+
+  /**
+   * Tests that silent releases are not reported and that commands after quit are not run.
+   */
+  @Test
+  public void releasesAndQuit() {
+    ImageCommandRunner runner = new ImageCommandRunner(new TextGimpModel());
+    ScriptScheduler scheduler = new ScriptScheduler(runner, 3);
+    List<Result> results = new ArrayList<>();
+
+    boolean quit = scheduler.run(List.of("dither a b", "q", "dither c d"),
+        Map.of(0, List.of("b")), results::add);
+    assertTrue(quit);
+    assertEquals(2, results.size());
+    assertFalse(results.get(0).isSuccess());
+    assertTrue(results.get(1).isTerminating());
+
+    results.clear();
+    assertFalse(scheduler.run(List.of("# comment", "dither a b"), Map.of(), results::add));
+    assertEquals(2, results.size());
+    assertTrue(results.get(0).isSuccess());
+    assertFalse(results.get(1).isSuccess());
+  }
+}
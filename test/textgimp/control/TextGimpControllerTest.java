@@ -13,6 +13,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import textgimp.LoggerMockModel;
 import textgimp.TextGimpFailureModelMock;
 import textgimp.TextGimpSuccessModelMock;
@@ -236,4 +237,39 @@ public class TextGimpControllerTest {
     // delete the test script file
     testScript.delete();
   }
-}
\ No newline at end of file
+
+  /**
+   * Tests that a script run with image release unloads every image right after its last use and
+   * that scripts running other scripts are left alone.
+   */
+  @Test
+  public void releaseImagesAfterLastUse() {
+    String script = String.join("\n",
+        "brighten 10 a b",
+        "# b is read below, a is not used again",
+        "horizontal-flip b c",
+        "dither b d",
+        "q");
+
+    LoggerMockModel m = new TextGimpSuccessModelMock();
+    TextView v = new TextGimpView(new ByteArrayInputStream(script.getBytes()),
+        OutputStream.nullOutputStream());
+    new TextGimpController(m, v, true).run();
+
+    List<String[]> log = m.getLog();
+    assertEquals(7, log.size());
+    assertArrayEquals(new String[]{"brighten", "a", "10", "b"}, log.get(0));
+    assertArrayEquals(new String[]{"unload", "a"}, log.get(1));
+    assertArrayEquals(new String[]{"h-flip", "b", "c"}, log.get(2));
+    assertArrayEquals(new String[]{"unload", "c"}, log.get(3));
+    assertArrayEquals(new String[]{"dither", "b", "d"}, log.get(4));
+    assertEquals(Set.of("b", "d"), Set.of(log.get(5)[1], log.get(6)[1]));
+
+    // nested scripts may use any image, so nothing is released
+    m = new TextGimpSuccessModelMock();
+    v = new TextGimpView(new ByteArrayInputStream(
+        "brighten 10 a b\nrun missing.tg\n".getBytes()), OutputStream.nullOutputStream());
+    new TextGimpController(m, v, true).run();
+    assertEquals(1, m.getLog().size());
+  }
+}
@@ -11,9 +11,13 @@ import java.io.File;
 import java.io.FileWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Set;
 import textgimp.LoggerMockModel;
 import textgimp.TextGimpSuccessModelMock;
+import org.junit.Before;
 import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
 import textgimp.control.commands.AllCommands.Brighten;
 import textgimp.utility.Result;
 import utility.TestHelper;
@@ -21,12 +25,13 @@ import utility.TestHelper;
 /**
  * This is a JUnit test class that contains test classes of all commands.
  */
+@RunWith(Enclosed.class)
 public class CommandsTest {
 
   /**
    * This is a JUnit test class for the blur command.
    */
-  class BlurTest {
+  public static class BlurTest {
 
     /**
      * Tests the execute method of the blur command using valid parameters.
@@ -75,7 +80,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the Brighten command.
    */
-  class BrightenTest {
+  public static class BrightenTest {
 
     /**
      * Tests the execute method of the Brighten command using valid parameters.
@@ -130,7 +135,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the dither command.
    */
-  class DitherTest {
+  public static class DitherTest {
 
     /**
      * Tests the execute method of the dither command using valid parameters.
@@ -179,7 +184,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the Greyscale command.
    */
-  class GreyscaleTest {
+  public static class GreyscaleTest {
 
     /**
      * Tests the execute method of the Greyscale command using valid parameters.
@@ -229,7 +234,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the Greyscale command.
    */
-  class GreyscaleTransformTest {
+  public static class GreyscaleTransformTest {
 
     /**
      * Tests the execute method of the Greyscale command using valid parameters.
@@ -278,7 +283,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the Horizontal Flip command.
    */
-  class HFlipTest {
+  public static class HFlipTest {
 
     /**
      * Tests the execute method of the Horizontal Flip command using valid parameters.
@@ -327,7 +332,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for RGBCombine command.
    */
-  class RGBCombineTest {
+  public static class RGBCombineTest {
 
     /**
      * Test the execute method of RGBCombine command using valid parameters.
@@ -383,7 +388,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for RGBSplit command.
    */
-  class RGBSplitTest {
+  public static class RGBSplitTest {
 
     /**
      * Test the execute method of RGBSplit command using valid parameters.
@@ -437,7 +442,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the sepia command.
    */
-  class SepiaTest {
+  public static class SepiaTest {
 
     /**
      * Tests the execute method of the sepia command using valid parameters.
@@ -486,7 +491,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the Sharpen command.
    */
-  class SharpenTest {
+  public static class SharpenTest {
 
     /**
      * Tests the execute method of the sharpen command using valid parameters.
@@ -535,7 +540,7 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the VerticalFlip command.
    */
-  class VFlipTest {
+  public static class VFlipTest {
 
     /**
      * Tests the execute method of the VerticalFlip command using valid parameters.
@@ -584,7 +589,15 @@ public class CommandsTest {
   /**
    * This is a JUnit test for the Load command.
    */
-  class LoadTest {
+  public static class LoadTest {
+
+    /**
+     * Create the folder the test files are written to.
+     */
+    @Before
+    public void createResourceFolder() {
+      new File("res/test/").mkdirs();
+    }
 
     /**
      * Test the execute method of the Load command using valid parameters.
@@ -674,11 +687,19 @@ public class CommandsTest {
   /**
    * This is a JUnit test class for the Save command.
    */
-  class SaveTest {
+  public static class SaveTest {
 
     // The folder where the test resources are located.
     private final String testResourceFolder = "res/test/";
 
+    /**
+     * Create the folder the test files are written to.
+     */
+    @Before
+    public void createResourceFolder() {
+      new File(this.testResourceFolder).mkdirs();
+    }
+
     /**
      * Tests the execute method of the Save command using valid parameters. Tests if valid commands
      * were passed to the model.
@@ -785,7 +806,249 @@ public class CommandsTest {
       assertNotEquals(0, c.help().length());
     }
   }
-}
 
+  /**
+   * This is a JUnit test class for the unload command.
+   */
+  public static class UnloadTest {
+
+    /**
+     * Tests the execute method of the unload command using valid parameters.
+     */
+    @Test
+    public void Success() {
+      Command c = new AllCommands.Unload();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // unload two images in a single command
+      String firstName = TestHelper.generateRandomStringOfSize(10);
+      String secondName = TestHelper.generateRandomStringOfSize(10);
+      Result res = c.execute(new String[]{firstName, secondName}, m);
+      assertTrue(res.isSuccess());
+      assertArrayEquals(new String[]{"unload", firstName}, m.getLog().get(0));
+      assertArrayEquals(new String[]{"unload", secondName}, m.getLog().get(1));
+      assertEquals(Set.of(firstName, secondName),
+          c.getAccess(new String[]{firstName, secondName}).getWrittenImages());
+    }
+
+    /**
+     * Tests the execute method of the unload command using invalid parameters.
+     */
+    @Test
+    public void Fail() {
+      Command c = new AllCommands.Unload();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // test an invalid command
+      Result res = c.execute(new String[]{}, m);
+      assertFalse(res.isSuccess());
+      assertEquals(m.getLog().size(), 0);
+    }
+
+    /**
+     * Tests the help method of the unload command.
+     */
+    @Test
+    public void help() {
+      Command c = new AllCommands.Unload();
+      assertNotEquals(0, c.help().length());
+    }
+  }
+
+  /**
+   * This is a JUnit test class for the resize command.
+   */
+  public static class ResizeTest {
+
+    /**
+     * Tests the execute method of the resize command using valid parameters.
+     */
+    @Test
+    public void Success() {
+      Command c = new AllCommands.Resize();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // the method is optional
+      String sourceName = TestHelper.generateRandomStringOfSize(10);
+      String destName = TestHelper.generateRandomStringOfSize(10);
+      assertTrue(c.execute(new String[]{"30", "20", sourceName, destName}, m).isSuccess());
+      assertArrayEquals(new String[]{"resize", sourceName, "30", "20", "bicubic", destName},
+          m.getLog().get(0));
+      assertTrue(c.execute(new String[]{"30", "20", sourceName, destName, "lanczos"}, m)
+          .isSuccess());
+      assertArrayEquals(new String[]{"resize", sourceName, "30", "20", "lanczos", destName},
+          m.getLog().get(1));
+    }
+
+    /**
+     * Tests the execute method of the resize command using invalid parameters.
+     */
+    @Test
+    public void Fail() {
+      Command c = new AllCommands.Resize();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // test invalid commands
+      String sourceName = TestHelper.generateRandomStringOfSize(10);
+      assertFalse(c.execute(new String[]{"30", "20", sourceName}, m).isSuccess());
+      assertFalse(c.execute(new String[]{"30", "x", sourceName, sourceName}, m).isSuccess());
+      assertEquals(m.getLog().size(), 0);
+    }
+
+    /**
+     * Tests the help method of the resize command.
+     */
+    @Test
+    public void help() {
+      Command c = new AllCommands.Resize();
+      assertNotEquals(0, c.help().length());
+    }
+  }
 
+  /**
+   * This is a JUnit test class for the rotate and affine commands.
+   */
+  public static class RotateTest {
 
+    /**
+     * Tests the execute method of the rotate and affine commands using valid parameters.
+     */
+    @Test
+    public void Success() {
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+      String sourceName = TestHelper.generateRandomStringOfSize(10);
+      String destName = TestHelper.generateRandomStringOfSize(10);
+      assertTrue(new AllCommands.Rotate().execute(new String[]{"-22.5", sourceName, destName}, m)
+          .isSuccess());
+      assertArrayEquals(new String[]{"rotate", sourceName, "-22.5", destName},
+          m.getLog().get(0));
+      String[] commandString = {"1", "0", "2", "0", "1", "3", sourceName, destName};
+      assertTrue(new AllCommands.Affine().execute(commandString, m).isSuccess());
+      assertArrayEquals(new String[]{"affine", sourceName, "[1.0, 0.0, 2.0, 0.0, 1.0, 3.0]",
+          destName}, m.getLog().get(1));
+      assertEquals(Set.of(destName),
+          new AllCommands.Affine().getAccess(commandString).getWrittenImages());
+    }
+
+    /**
+     * Tests the execute method of the rotate and affine commands using invalid parameters.
+     */
+    @Test
+    public void Fail() {
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+      String sourceName = TestHelper.generateRandomStringOfSize(10);
+      assertFalse(new AllCommands.Rotate().execute(new String[]{"x", sourceName, sourceName}, m)
+          .isSuccess());
+      assertFalse(new AllCommands.Affine().execute(new String[]{"1", "0", "0", "0", "1",
+          sourceName, sourceName}, m).isSuccess());
+      assertEquals(m.getLog().size(), 0);
+    }
+
+    /**
+     * Tests the help method of the rotate and affine commands.
+     */
+    @Test
+    public void help() {
+      assertNotEquals(0, new AllCommands.Rotate().help().length());
+      assertNotEquals(0, new AllCommands.Affine().help().length());
+    }
+  }
+
+  /**
+   * This is a JUnit test class for the select command.
+   */
+  public static class SelectTest {
+
+    /**
+     * Tests the execute method of the select command using valid parameters.
+     */
+    @Test
+    public void Success() {
+      Command c = new AllCommands.Select();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // select a region, then the whole image again
+      String name = TestHelper.generateRandomStringOfSize(10);
+      assertTrue(c.execute(new String[]{"1", "2", "3", "4", name}, m).isSuccess());
+      assertArrayEquals(new String[]{"select", name, "1 2 3 4"}, m.getLog().get(0));
+      assertTrue(c.execute(new String[]{"none", name}, m).isSuccess());
+      assertArrayEquals(new String[]{"select", name, "null"}, m.getLog().get(1));
+      assertEquals(Set.of(name), c.getAccess(new String[]{"none", name}).getWrittenImages());
+    }
+
+    /**
+     * Tests the execute method of the select command using invalid parameters.
+     */
+    @Test
+    public void Fail() {
+      Command c = new AllCommands.Select();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // test invalid commands
+      String name = TestHelper.generateRandomStringOfSize(10);
+      assertFalse(c.execute(new String[]{"1", "2", "3", name}, m).isSuccess());
+      assertFalse(c.execute(new String[]{"1", "2", "x", "4", name}, m).isSuccess());
+      assertFalse(c.execute(new String[]{"1", "2", "0", "4", name}, m).isSuccess());
+      assertEquals(m.getLog().size(), 0);
+    }
+
+    /**
+     * Tests the help method of the select command.
+     */
+    @Test
+    public void help() {
+      Command c = new AllCommands.Select();
+      assertNotEquals(0, c.help().length());
+    }
+  }
+
+  /**
+   * This is a JUnit test class for the crop command.
+   */
+  public static class CropTest {
+
+    /**
+     * Tests the execute method of the crop command using valid parameters.
+     */
+    @Test
+    public void Success() {
+      Command c = new AllCommands.Crop();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // Test valid command
+      String sourceName = TestHelper.generateRandomStringOfSize(10);
+      String destName = TestHelper.generateRandomStringOfSize(10);
+      String[] commandString = new String[]{"0", "5", "10", "20", sourceName, destName};
+      Result res = c.execute(commandString, m);
+      assertTrue(res.isSuccess());
+      assertArrayEquals(new String[]{"crop", sourceName, "0 5 10 20", destName},
+          m.getLog().get(0));
+      assertEquals(Set.of(sourceName), c.getAccess(commandString).getReadImages());
+    }
+
+    /**
+     * Tests the execute method of the crop command using invalid parameters.
+     */
+    @Test
+    public void Fail() {
+      Command c = new AllCommands.Crop();
+      LoggerMockModel m = new TextGimpSuccessModelMock();
+
+      // test invalid commands
+      String sourceName = TestHelper.generateRandomStringOfSize(10);
+      assertFalse(c.execute(new String[]{"0", "0", "1", "1", sourceName}, m).isSuccess());
+      assertFalse(c.execute(new String[]{"-1", "0", "1", "1", sourceName, sourceName}, m)
+          .isSuccess());
+      assertEquals(m.getLog().size(), 0);
+    }
+
+    /**
+     * Tests the help method of the crop command.
+     */
+    @Test
+    public void help() {
+      Command c = new AllCommands.Crop();
+      assertNotEquals(0, c.help().length());
+    }
+  }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertArrayEquals;
 
 import java.io.IOException;
 import textgimp.TextGimpSuccessModelMock;
+import textgimp.model.betterimage.Region;
 import org.junit.Test;
 import utility.TestHelper;
 
@@ -32,4 +33,19 @@ public class GuiGimpReadModelTest {
     assertArrayEquals(new String[]{"bytes", name},
         m.getLog().get(0));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void regions() throws IOException {
+    TextGimpSuccessModelMock m = new TextGimpSuccessModelMock();
+    GuiGimpReadModel rd = new GuiGimpReadModel(m);
+    Region region = new Region(1, 2, 3, 4);
+    rd.getHistogramOfGreyscale("image", "red", region);
+    rd.getBytesOfImage("image", region);
+    rd.getBounds("image");
+    rd.getChangedRegion("first", "second");
+    assertArrayEquals(new String[]{"histogram", "image", "red", "1 2 3 4"}, m.getLog().get(0));
+    assertArrayEquals(new String[]{"bytes", "image", "1 2 3 4"}, m.getLog().get(1));
+    assertArrayEquals(new String[]{"bounds", "image"}, m.getLog().get(2));
+    assertArrayEquals(new String[]{"changed-region", "first", "second"}, m.getLog().get(3));
+  }
+}
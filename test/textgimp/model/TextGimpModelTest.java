@@ -9,13 +9,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.imageio.ImageIO;
 import org.junit.Assert;
 import org.junit.Test;
 import textgimp.model.betterimage.Pixel;
 import textgimp.model.betterimage.RGBPixel;
+import textgimp.model.betterimage.Region;
 
 /**
  * This is a JUnit test class to test the TextGimpModel.
@@ -836,4 +843,252 @@ public class TextGimpModelTest {
     assertArrayEquals(bytes,
         model.getBytesOfImage("target"));
   }
-}
\ No newline at end of file
+
+  /**
+   * Stress test - many threads brighten the same image in place while others create and read
+   * independent images. In-place updates must not be lost.
+   *
+   * @throws Exception if a worker fails
+   */
+  @Test
+  public void concurrentOperations() throws Exception {
+    Model model = new TextGimpModel();
+    model.load("P3 2 2 255 0 0 0 0 0 0 0 0 0 0 0 0".getBytes(), "shared", "ppm");
+    int threads = 8;
+    int updates = 25;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      String ownName = "own-" + t;
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < updates; i++) {
+          // in-place update of the shared image
+          model.brighten("shared", 1, "shared");
+
+          // independent images derived from the shared one
+          model.horizontalFlip("shared", ownName);
+          model.greyscale(ownName, "red-component", ownName);
+          model.save(ownName, "ppm");
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    executor.shutdown();
+
+    // every brighten must have been applied exactly once
+    int expected = threads * updates;
+    String expectedImage = "P3" + System.lineSeparator() + "2 2" + System.lineSeparator()
+        + "255" + System.lineSeparator()
+        + (expected + System.lineSeparator()).repeat(12) + System.lineSeparator();
+    Assert.assertEquals(expectedImage, new String(model.save("shared", "ppm")));
+  }
+
+  /**
+   * Tests that unloaded images are removed from the model and that unknown names are rejected.
+   */
+  @Test
+  public void unload() {
+    Model model = new TextGimpModel();
+    model.load("P3 1 1 255 1 2 3".getBytes(), "image", "ppm");
+    model.unload("image");
+    assertThrows(IllegalArgumentException.class, () -> model.save("image", "ppm"));
+    assertThrows(IllegalArgumentException.class, () -> model.unload("image"));
+    assertThrows(IllegalArgumentException.class, () -> model.unload(null));
+  }
+
+  /**
+   * Tests that previews are loaded and created with their width and height within the size.
+   *
+   * @throws IOException if the image cannot be written.
+   */
+  @Test
+  public void preview() throws IOException {
+    Model model = new TextGimpModel();
+    byte[] ppm = "P3 3 2 255 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18".getBytes();
+    model.load(ppm, "image", "ppm");
+    model.loadPreview(ppm, "loaded", "ppm", 2);
+    model.preview("image", 2, "created");
+    String expected = "P3" + System.lineSeparator() + "2 1" + System.lineSeparator()
+        + "255" + System.lineSeparator() + "1\n2\n3\n7\n8\n9\n".replace("\n",
+        System.lineSeparator()) + System.lineSeparator();
+    Assert.assertEquals(expected, new String(model.save("loaded", "ppm")));
+    Assert.assertEquals(expected, new String(model.save("created", "ppm")));
+
+    // images that fit are kept as they are
+    model.preview("image", 3, "same");
+    assertArrayEquals(model.save("image", "ppm"), model.save("same", "ppm"));
+    assertThrows(IllegalArgumentException.class, () -> model.preview("image", 0, "bad"));
+    assertThrows(IllegalArgumentException.class, () -> model.preview("missing", 2, "bad"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.loadPreview(ppm, "bad", "tiff", 2));
+  }
+
+  @Test
+  public void regions() throws IOException {
+    Model model = new TextGimpModel();
+    byte[] ppm = "P3 3 2 255 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18".getBytes();
+    model.load(ppm, "image", "ppm");
+    Assert.assertEquals(new Region(0, 0, 3, 2), model.getBounds("image"));
+
+    // only the second row is counted
+    int[] histogram = model.getHistogramOfGreyscale("image", "greyscale-red-component",
+        new Region(0, 1, 3, 1));
+    Assert.assertEquals(1, histogram[10]);
+    Assert.assertEquals(1, histogram[13]);
+    Assert.assertEquals(1, histogram[16]);
+    Assert.assertEquals(0, histogram[1]);
+    assertArrayEquals(model.getHistogramOfGreyscale("image", "greyscale-red-component"),
+        model.getHistogramOfGreyscale("image", "greyscale-red-component",
+            new Region(0, 0, 3, 2)));
+    String expected = "P3" + System.lineSeparator() + "1 1" + System.lineSeparator()
+        + "255" + System.lineSeparator() + "16\n17\n18\n".replace("\n",
+        System.lineSeparator()) + System.lineSeparator();
+    Assert.assertEquals(expected,
+        new String(model.getBytesOfImage("image", new Region(2, 1, 1, 1))));
+
+    // flipping changes the first and last column, the region spans both
+    model.horizontalFlip("image", "flipped");
+    Assert.assertEquals(new Region(0, 0, 3, 2), model.getChangedRegion("image", "flipped"));
+    model.load("P3 3 1 255 1 1 1 5 5 5 1 1 1".getBytes(), "even", "ppm");
+    model.brighten("even", 0, "same");
+    Assert.assertNull(model.getChangedRegion("even", "same"));
+    Assert.assertEquals(new Region(0, 0, 3, 2), model.getChangedRegion("even", "image"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.getHistogramOfGreyscale("image", "greyscale-red-component",
+            new Region(0, 0, 4, 1)));
+    assertThrows(IllegalArgumentException.class, () -> model.getBounds("missing"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.getChangedRegion("image", "missing"));
+  }
+
+  /**
+   * Tests that changes of an image with a history can be undone and redone.
+   *
+   * @throws IOException if the image cannot be written.
+   */
+  @Test
+  public void history() throws IOException {
+    Model model = new TextGimpModel();
+    model.load("P3 2 1 255 1 2 3 4 5 6".getBytes(), "image", "ppm");
+    assertThrows(IllegalArgumentException.class, () -> model.undo("image"));
+    model.keepHistory("image", 1024);
+    byte[] original = model.save("image", "ppm");
+
+    model.brighten("image", 10, "image");
+    byte[] brightened = model.save("image", "ppm");
+    model.horizontalFlip("image", "image");
+    model.undo("image");
+    assertArrayEquals(brightened, model.save("image", "ppm"));
+    model.undo("image");
+    assertArrayEquals(original, model.save("image", "ppm"));
+    assertThrows(IllegalArgumentException.class, () -> model.undo("image"));
+
+    // redo applies the operation again, a new change drops what was undone
+    model.redo("image");
+    assertArrayEquals(brightened, model.save("image", "ppm"));
+    model.load("P3 1 1 255 7 8 9".getBytes(), "image", "ppm");
+    assertThrows(IllegalArgumentException.class, () -> model.redo("image"));
+    model.undo("image");
+    assertArrayEquals(brightened, model.save("image", "ppm"));
+
+    // other names are not recorded, and unloading drops the history
+    model.brighten("image", 5, "other");
+    model.undo("image");
+    assertArrayEquals(original, model.save("image", "ppm"));
+    model.unload("image");
+    assertThrows(IllegalArgumentException.class, () -> model.redo("image"));
+    assertThrows(IllegalArgumentException.class, () -> model.keepHistory("image", 0));
+  }
+
+  /**
+   * Tests that operations on an image with a selection only change the selection, and that
+   * cropping keeps a region of an image.
+   *
+   * @throws IOException if the image cannot be written.
+   */
+  @Test
+  public void selectionAndCrop() throws IOException {
+    Model model = new TextGimpModel();
+    model.load("P3 3 2 255 1 1 1 2 2 2 3 3 3 4 4 4 5 5 5 6 6 6".getBytes(), "image", "ppm");
+    model.select("image", new Region(1, 0, 2, 1));
+    model.brighten("image", 10, "bright");
+    model.load("P3 3 2 255 1 1 1 12 12 12 13 13 13 4 4 4 5 5 5 6 6 6".getBytes(), "expected",
+        "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("bright", "ppm"));
+
+    // the destination keeps the selection, selecting none changes the whole image again
+    model.horizontalFlip("bright", "flipped");
+    model.load("P3 3 2 255 1 1 1 13 13 13 12 12 12 4 4 4 5 5 5 6 6 6".getBytes(), "expected",
+        "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("flipped", "ppm"));
+    model.select("image", null);
+    model.brighten("image", 1, "image");
+    model.load("P3 3 2 255 2 2 2 3 3 3 4 4 4 5 5 5 6 6 6 7 7 7".getBytes(), "expected", "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("image", "ppm"));
+
+    // cropping keeps the region
+    model.crop("image", new Region(1, 1, 2, 1), "cropped");
+    model.load("P3 2 1 255 6 6 6 7 7 7".getBytes(), "expected", "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("cropped", "ppm"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.crop("image", new Region(2, 0, 2, 1), "cropped"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.select("image", new Region(0, 0, 4, 1)));
+    assertThrows(IllegalArgumentException.class, () -> model.select("missing", null));
+  }
+
+  /**
+   * Tests that images are resized with the given method.
+   *
+   * @throws IOException if the image cannot be written.
+   */
+  @Test
+  public void resize() throws IOException {
+    Model model = new TextGimpModel();
+    model.load("P3 2 1 255 10 20 30 40 50 60".getBytes(), "image", "ppm");
+    model.resize("image", 4, 2, "Nearest", "large");
+    model.load("P3 4 2 255 10 20 30 10 20 30 40 50 60 40 50 60 10 20 30 10 20 30 40 50 60 40 50 60"
+        .getBytes(), "expected", "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("large", "ppm"));
+
+    // halving averages the pixels
+    model.resize("large", 2, 1, "bicubic", "small");
+    assertArrayEquals(model.save("image", "ppm"), model.save("small", "ppm"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.resize("image", 4, 2, "sinc", "large"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.resize("image", 0, 2, "bilinear", "large"));
+  }
+
+  /**
+   * Tests that images are rotated and transformed.
+   *
+   * @throws IOException if the image cannot be written.
+   */
+  @Test
+  public void rotateAndAffine() throws IOException {
+    Model model = new TextGimpModel();
+    model.load("P3 2 1 255 10 20 30 40 50 60".getBytes(), "image", "ppm");
+    model.rotate("image", 90, "right");
+    model.load("P3 1 2 255 10 20 30 40 50 60".getBytes(), "expected", "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("right", "ppm"));
+    model.rotate("image", -180, "upside-down");
+    model.load("P3 2 1 255 40 50 60 10 20 30".getBytes(), "expected", "ppm");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("upside-down", "ppm"));
+
+    // the mirror image through an affine transform
+    model.affine("image", new double[]{-1, 0, 2, 0, 1, 0}, "mirrored");
+    assertArrayEquals(model.save("expected", "ppm"), model.save("mirrored", "ppm"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.affine("image", new double[]{1, 0, 0, 0}, "mirrored"));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.rotate("image", Double.NaN, "mirrored"));
+  }
+}
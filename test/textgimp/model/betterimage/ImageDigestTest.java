@@ -0,0 +1,88 @@
+package textgimp.model.betterimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+import textgimp.model.macros.imagetransform.HorizontalFlip;
+
+/**
+ * This is a JUnit test class for the digests of images. Every image is built in memory.
+ */
+public class ImageDigestTest {
+
+  // large enough to be hashed in parallel
+  private static final int SIDE = 300;
+
+  /**
+   * Create the pixels of a square test image.
+   *
+   * @return the pixels.
+   */
+  private Pixel[][] createPixels() {
+    Pixel[][] pixels = new Pixel[SIDE][SIDE];
+    for (int i = 0; i < SIDE; i++) {
+      for (int j = 0; j < SIDE; j++) {
+        pixels[i][j] = new RGBPixel(i % 256, j % 256, (i * j) % 256, 255);
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Tests that images with the same content have the same digest whatever their type and
+   * representation.
+   */
+  @Test
+  public void equalContent() {
+    Image image = new GenericImage(this.createPixels(), 255, "ppm");
+    Image[] copies = {new GenericImage(this.createPixels(), 255, "ppm"),
+        new GenericImage(this.createPixels(), 255, "png"), PlanarImage.of(image),
+        PlanarImage.of(new GenericImage(this.createPixels(), 255, "jpg"))};
+    for (Image copy : copies) {
+      assertEquals(image.getDigest(), copy.getDigest());
+      assertEquals(image.hashCode(), copy.hashCode());
+      assertEquals(image, copy);
+      assertEquals(copy, image);
+    }
+
+    // flipping twice gives back the same digest
+    Image flipped = new HorizontalFlip().apply(image);
+    assertEquals(image.getDigest(), new HorizontalFlip().apply(flipped).getDigest());
+  }
+
+  /**
+   * Tests that changing a single pixel, moving pixels or changing the maximum value changes the
+   * digest.
+   */
+  @Test
+  public void changedContent() {
+    Pixel[][] pixels = this.createPixels();
+    Image image = new GenericImage(pixels, 255, "ppm");
+
+    // one channel of one pixel is one higher
+    for (int[] position : new int[][]{{0, 0}, {150, 77}, {SIDE - 1, SIDE - 1}}) {
+      Pixel[][] changed = this.createPixels();
+      Pixel pixel = changed[position[0]][position[1]];
+      changed[position[0]][position[1]] = new RGBPixel(pixel.getRed(), pixel.getGreen(),
+          (pixel.getBlue() + 1) % 256, 255);
+      Image generic = new GenericImage(changed, 255, "ppm");
+      assertNotEquals(image.getDigest(), generic.getDigest());
+      assertNotEquals(image.getDigest(), PlanarImage.of(generic).getDigest());
+      assertNotEquals(image, generic);
+    }
+
+    // swapping two pixels or flipping only moves pixels
+    Pixel[][] swapped = this.createPixels();
+    Pixel swap = swapped[0][0];
+    swapped[0][0] = swapped[0][1];
+    swapped[0][1] = swap;
+    assertNotEquals(image.getDigest(), new GenericImage(swapped, 255, "ppm").getDigest());
+    Image flipped = new HorizontalFlip().apply(image);
+    assertNotEquals(image.getDigest(), flipped.getDigest());
+    assertNotEquals(image, flipped);
+
+    // the maximum value is part of the digest
+    assertNotEquals(image.getDigest(), new GenericImage(pixels, 256, "ppm").getDigest());
+  }
+}
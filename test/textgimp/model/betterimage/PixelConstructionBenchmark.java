@@ -0,0 +1,64 @@
+package textgimp.model.betterimage;
+
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Benchmark comparing the cost of creating pixels through the checked constructors and through the
+ * trusted path of the pixel factory. Run the main method, it prints the average time per pixel of
+ * each path after a warm-up.
+ */
+public class PixelConstructionBenchmark {
+
+  private static final int PIXELS = 4_000_000;
+  private static final int ROUNDS = 10;
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args ignored.
+   */
+  public static void main(String[] args) {
+    Random random = new Random(0);
+    int[] values = new int[PIXELS * 3];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(256);
+    }
+
+    report("constructor", i -> new RGBPixel(values[i], values[i + 1], values[i + 2], 255));
+    report("unchecked", i -> new RGBPixel(values[i], values[i + 1], values[i + 2], 255, false));
+    report("factory", i -> PixelFactory.rgb(values[i], values[i + 1], values[i + 2], 255));
+    report("trusted factory", i -> PixelFactory.trustedRgb(values[i], values[i + 1],
+        values[i + 2], 255));
+
+    // greyscale values, as produced by the greyscale macros
+    for (int i = 0; i < values.length; i += 3) {
+      values[i + 1] = values[i];
+      values[i + 2] = values[i];
+    }
+    report("grey constructor", i -> new RGBPixel(values[i], values[i + 1], values[i + 2], 255));
+    report("grey trusted", i -> PixelFactory.trustedRgb(values[i], values[i + 1],
+        values[i + 2], 255));
+  }
+
+  /**
+   * Time one way of creating pixels and print the average time per pixel of the fastest rounds.
+   *
+   * @param name   name of the path being measured.
+   * @param create creates the pixel whose values start at the given index.
+   */
+  private static void report(String name, IntFunction<Pixel> create) {
+    // pixels are kept like in an image, so that they cannot be optimized away
+    Pixel[] pixels = new Pixel[PIXELS];
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < PIXELS; i++) {
+        pixels[i] = create.apply(i * 3);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("%-16s %6.2f ns/pixel (last %d)%n", name, (double) best / PIXELS,
+        pixels[PIXELS - 1].getRed());
+  }
+}
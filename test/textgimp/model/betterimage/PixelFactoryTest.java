@@ -0,0 +1,56 @@
+package textgimp.model.betterimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This is a JUnit test class for the PixelFactory class.
+ */
+public class PixelFactoryTest {
+
+  /**
+   * Tests that grey and repeated colors share pixel objects.
+   */
+  @Test
+  public void sharesPixels() {
+    for (int i = 0; i < 256; i++) {
+      assertSame(PixelFactory.rgb(i, i, i, 255), PixelFactory.rgb(i, i, i, 255));
+    }
+    assertSame(PixelFactory.rgb(10, 20, 30, 255), PixelFactory.rgb(10, 20, 30, 255));
+    assertSame(PixelFactory.rgba(10, 20, 30, 40, 255), PixelFactory.rgba(10, 20, 30, 40, 255));
+
+    // createPixel keeps the type of the pixel and uses the factory
+    Pixel pixel = new PNGPixel(1, 2, 3, 4, 255).createPixel(5, 6, 7);
+    assertTrue(pixel instanceof PNGPixel);
+    assertEquals(4, ((PNGPixel) pixel).getTransparency());
+    assertSame(pixel, new PNGPixel(0, 0, 0, 4, 255).createPixel(5, 6, 7));
+    assertSame(PixelFactory.rgb(9, 9, 9, 255), new RGBPixel(1, 1, 1, 255).createPixel(9, 9, 9));
+  }
+
+  /**
+   * Tests that pixels with the same colors but other maximum values are not mixed up.
+   */
+  @Test
+  public void keepsValues() {
+    for (int max = 1; max < 1000; max += 7) {
+      for (int value = 0; value <= max; value += 13) {
+        RGBPixel pixel = PixelFactory.rgb(value, max - value, value / 2, max);
+        assertEquals(value, pixel.getRed());
+        assertEquals(max - value, pixel.getGreen());
+        assertEquals(value / 2, pixel.getBlue());
+        assertEquals(max, pixel.getMaxValue());
+
+        PNGPixel transparent = PixelFactory.rgba(value, value, value, max - value, max);
+        assertEquals(max - value, transparent.getTransparency());
+        assertEquals(max, transparent.getMaxValue());
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () -> PixelFactory.rgb(256, 0, 0, 255));
+    assertThrows(IllegalArgumentException.class, () -> PixelFactory.rgb(-1, -1, -1, 255));
+    assertThrows(IllegalArgumentException.class, () -> PixelFactory.rgba(0, 0, 0, 256, 255));
+  }
+}
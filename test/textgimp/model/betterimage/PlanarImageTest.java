@@ -0,0 +1,213 @@
+package textgimp.model.betterimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import textgimp.model.macros.colortransform.Brighten;
+import textgimp.model.macros.colortransform.ColorTransformPresetManager;
+import textgimp.model.macros.colortransform.ColorTransformType;
+import textgimp.model.macros.imagetransform.Dither;
+import textgimp.model.macros.imagetransform.FilterManager;
+import textgimp.model.macros.imagetransform.FilterPresetManager;
+import textgimp.model.macros.imagetransform.FilterType;
+import textgimp.model.macros.imagetransform.HorizontalFlip;
+import textgimp.model.macros.imagetransform.RGBCombine;
+import textgimp.model.macros.imagetransform.VerticalFlip;
+
+/**
+ * This is a JUnit test class for the PlanarImage class.
+ */
+public class PlanarImageTest {
+
+  /**
+   * Create a 2 x 3 plane with the given values.
+   *
+   * @param values the six values of the plane.
+   * @return the plane.
+   */
+  private Plane plane(int... values) {
+    return new Plane(values, 3, 2);
+  }
+
+  /**
+   * Create a 2 x 3 planar image without transparency.
+   *
+   * @param offset value added to every color.
+   * @return the image.
+   */
+  private PlanarImage createImage(int offset) {
+    return new PlanarImage(plane(offset, 1 + offset, 2 + offset, 3 + offset, 4 + offset, 5),
+        plane(10, 11, 12, 13, 14, 15), plane(20, 21, 22, 23, 24, 25), null, 255, "ppm");
+  }
+
+  /**
+   * Tests that planar images have the pixels, digest and equality of generic images.
+   */
+  @Test
+  public void matchesGenericImage() {
+    PlanarImage planar = createImage(0);
+    Pixel[][] pixels = new Pixel[2][3];
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        pixels[i][j] = new RGBPixel(i * 3 + j, 10 + i * 3 + j, 20 + i * 3 + j, 255);
+        assertEquals(pixels[i][j], planar.getPixel(i, j));
+      }
+    }
+    Image generic = new GenericImage(pixels, 255, "ppm");
+
+    assertEquals(generic.getDigest(), planar.getDigest());
+    assertEquals(generic, planar);
+    assertEquals(planar, generic);
+    assertEquals(planar, createImage(0));
+    assertNotEquals(planar, createImage(1));
+    assertThrows(IllegalArgumentException.class, () -> planar.getPixel(2, 0));
+    assertThrows(IllegalArgumentException.class, () -> planar.getPixel(0, 3));
+
+    // transparency gives PNG pixels
+    Plane alpha = plane(255, 255, 0, 0, 128, 128);
+    PlanarImage transparent = new PlanarImage(planar.getRed(), planar.getGreen(),
+        planar.getBlue(), alpha, 255, "png");
+    assertTrue(transparent.getPixel(1, 2) instanceof PNGPixel);
+    assertEquals(128, ((PNGPixel) transparent.getPixel(1, 2)).getTransparency());
+    assertNotEquals(transparent, planar);
+    assertNotEquals(planar, transparent);
+  }
+
+  /**
+   * Tests that a transparency plane only makes a difference if a pixel is not opaque, in both
+   * directions and for planar and generic images alike.
+   */
+  @Test
+  public void opaqueTransparency() {
+    PlanarImage planar = createImage(0);
+    PlanarImage opaque = new PlanarImage(planar.getRed(), planar.getGreen(), planar.getBlue(),
+        plane(255, 255, 255, 255, 255, 255), 255, "png");
+    PlanarImage transparent = new PlanarImage(planar.getRed(), planar.getGreen(),
+        planar.getBlue(), plane(255, 255, 0, 0, 128, 128), 255, "png");
+
+    // an opaque plane is the same as no plane
+    assertEquals(planar, opaque);
+    assertEquals(opaque, planar);
+    assertEquals(planar.getDigest(), opaque.getDigest());
+    assertEquals(planar.hashCode(), opaque.hashCode());
+
+    // a plane with transparent pixels is not
+    assertNotEquals(planar, transparent);
+    assertNotEquals(transparent, planar);
+    assertNotEquals(opaque, transparent);
+    assertNotEquals(transparent, opaque);
+    assertNotEquals(planar.getDigest(), transparent.getDigest());
+
+    // generic images follow the same rule, with RGB pixels being opaque
+    Pixel[][] rgb = new Pixel[2][3];
+    Pixel[][] png = new Pixel[2][3];
+    Pixel[][] translucent = new Pixel[2][3];
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        Pixel pixel = planar.getPixel(i, j);
+        rgb[i][j] = pixel;
+        png[i][j] = new PNGPixel(pixel.getRed(), pixel.getGreen(), pixel.getBlue(), 255, 255);
+        translucent[i][j] = transparent.getPixel(i, j);
+      }
+    }
+    for (Image generic : new Image[]{new GenericImage(rgb, 255, "ppm"),
+        new GenericImage(png, 255, "png")}) {
+      for (Image image : new Image[]{planar, opaque}) {
+        assertEquals(image, generic);
+        assertEquals(generic, image);
+        assertEquals(image.getDigest(), generic.getDigest());
+      }
+      assertNotEquals(transparent, generic);
+      assertNotEquals(generic, transparent);
+    }
+    Image generic = new GenericImage(translucent, 255, "png");
+    assertEquals(transparent, generic);
+    assertEquals(generic, transparent);
+    assertEquals(transparent.getDigest(), generic.getDigest());
+  }
+
+  /**
+   * Tests that invalid planes are rejected.
+   */
+  @Test
+  public void invalidPlanes() {
+    Plane plane = plane(0, 1, 2, 3, 4, 5);
+    assertThrows(IllegalArgumentException.class, () -> new Plane(new int[5], 3, 2));
+    assertThrows(IllegalArgumentException.class, () -> new Plane(new int[0], 0, 0));
+    assertThrows(IllegalArgumentException.class, () -> new Plane(null, 3, 2));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlanarImage(plane, null, plane, null, 255, "ppm"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlanarImage(plane, plane, new Plane(new int[6], 2, 3), null, 255, "ppm"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlanarImage(plane, plane, plane, null, 4, "ppm"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlanarImage(plane, plane, plane(-1, 0, 0, 0, 0, 0), null, 255, "ppm"));
+  }
+
+  /**
+   * Tests that combining and greyscale images reference the planes of their sources.
+   */
+  @Test
+  public void sharesPlanes() {
+    PlanarImage first = createImage(0);
+    PlanarImage second = createImage(1);
+    PlanarImage combined = (PlanarImage) new RGBCombine(second, first).apply(first);
+    assertSame(first.getRed(), combined.getRed());
+    assertSame(second.getGreen(), combined.getGreen());
+    assertSame(first.getBlue(), combined.getBlue());
+    assertNull(combined.getAlpha());
+
+    ColorTransformPresetManager presets = new ColorTransformPresetManager();
+    PlanarImage red = (PlanarImage) presets.getColorTransform(ColorTransformType.GREYSCALE_RED)
+        .apply(first);
+    assertSame(first.getRed(), red.getRed());
+    assertSame(first.getRed(), red.getGreen());
+    assertSame(first.getRed(), red.getBlue());
+    assertEquals(PixelFactory.rgb(4, 4, 4, 255), red.getPixel(1, 1));
+
+    PlanarImage blue = (PlanarImage) presets.getColorTransform(ColorTransformType.GREYSCALE_BLUE)
+        .apply(first);
+    assertSame(first.getBlue(), blue.getGreen());
+  }
+
+  /**
+   * Tests that every macro keeps the transparency plane of its source.
+   */
+  @Test
+  public void macrosKeepTransparency() {
+    PlanarImage opaque = createImage(0);
+    Plane alpha = plane(0, 50, 100, 150, 200, 250);
+    PlanarImage source = new PlanarImage(opaque.getRed(), opaque.getGreen(), opaque.getBlue(),
+        alpha, 255, "png");
+
+    ColorTransformPresetManager presets = new ColorTransformPresetManager();
+    for (ColorTransformType type : ColorTransformType.values()) {
+      PlanarImage result = (PlanarImage) presets.getColorTransform(type).apply(source);
+      assertSame(alpha, result.getAlpha());
+    }
+    assertSame(alpha, ((PlanarImage) new Brighten(10).apply(source)).getAlpha());
+    assertSame(alpha, ((PlanarImage) new Dither().apply(source)).getAlpha());
+    FilterManager filters = new FilterPresetManager();
+    assertSame(alpha, ((PlanarImage) filters.getFilter(FilterType.BLUR).apply(source))
+        .getAlpha());
+
+    // flips move the transparency with the colors
+    PlanarImage flipped = (PlanarImage) new HorizontalFlip().apply(source);
+    assertEquals(100, ((PNGPixel) flipped.getPixel(0, 0)).getTransparency());
+    assertEquals(2, flipped.getPixel(0, 0).getRed());
+    flipped = (PlanarImage) new VerticalFlip().apply(source);
+    assertEquals(150, ((PNGPixel) flipped.getPixel(0, 0)).getTransparency());
+
+    // the luma greyscale uses a single plane for all channels
+    PlanarImage luma = (PlanarImage) presets.getColorTransform(ColorTransformType.GREYSCALE_LUMA)
+        .apply(source);
+    assertSame(luma.getRed(), luma.getGreen());
+    assertSame(luma.getRed(), luma.getBlue());
+  }
+}
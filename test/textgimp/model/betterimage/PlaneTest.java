@@ -0,0 +1,204 @@
+package textgimp.model.betterimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import textgimp.model.macros.colortransform.Brighten;
+
+/**
+ * This is a JUnit test class for the Plane class.
+ */
+public class PlaneTest {
+
+  /**
+   * Tests that values are stored in the smallest array that holds them.
+   */
+  @Test
+  public void storageFollowsRange() {
+    Plane bytes = new Plane(new int[]{0, 128, 255, 7}, 2, 2);
+    Plane shorts = new Plane(new int[]{0, 256, 65535, 7}, 2, 2);
+    Plane ints = new Plane(new int[]{0, 65536, -1, 7}, 2, 2);
+    assertEquals(1, bytes.getBytesPerValue());
+    assertEquals(2, shorts.getBytesPerValue());
+    assertEquals(4, ints.getBytesPerValue());
+
+    // values read back unchanged from every storage
+    assertEquals(255, bytes.get(1, 0));
+    assertEquals(65535, shorts.get(1, 0));
+    assertEquals(-1, ints.get(1, 0));
+    int[] row = new int[3];
+    shorts.copyRow(0, row, 1);
+    assertEquals(0, row[1]);
+    assertEquals(256, row[2]);
+    assertThrows(IllegalArgumentException.class, () -> shorts.copyRow(0, row, 2));
+    assertThrows(IllegalArgumentException.class, () -> shorts.copyRow(2, row));
+    ints.copyRow(1, 1, 1, row, 0);
+    assertEquals(7, row[0]);
+    assertThrows(IllegalArgumentException.class, () -> ints.copyRow(1, 1, 2, row, 0));
+
+    // the digest only depends on the values
+    assertEquals(bytes.getDigest(), new Plane(new int[]{0, 128, 255, 7}, 2, 2).getDigest());
+    assertTrue(bytes.sameValues(new Plane(new int[]{0, 128, 255, 7}, 2, 2)));
+  }
+
+  /**
+   * Tests that lookup tables are applied to every value.
+   */
+  @Test
+  public void lookup() {
+    Plane plane = new Plane(new int[]{0, 1, 2, 3}, 2, 2);
+    Plane inverted = plane.lookup(new int[]{300, 200, 100, 0});
+    assertEquals(300, inverted.get(0, 0));
+    assertEquals(2, inverted.getBytesPerValue());
+    assertEquals(0, inverted.get(1, 1));
+    assertThrows(IllegalArgumentException.class, () -> plane.lookup(new int[3]));
+    assertThrows(IllegalArgumentException.class, () -> plane.lookup(null));
+  }
+
+  /**
+   * Tests that 16-bit images are brightened in their full range.
+   */
+  @Test
+  public void brightenDeepImage() {
+    Plane plane = new Plane(new int[]{0, 1000, 65000, 65535}, 2, 2);
+    PlanarImage image = new PlanarImage(plane, plane, plane, null, 65535, "ppm");
+    PlanarImage brighter = (PlanarImage) new Brighten(1000).apply(image);
+    assertEquals(1000, brighter.getPixel(0, 0).getRed());
+    assertEquals(2000, brighter.getPixel(0, 1).getGreen());
+    assertEquals(65535, brighter.getPixel(1, 0).getBlue());
+    assertEquals(2, brighter.getRed().getBytesPerValue());
+
+    // wider images are brightened without a table
+    Plane wide = new Plane(new int[]{0, 100000}, 2, 1);
+    PlanarImage wideImage = new PlanarImage(wide, wide, wide, null, 100000, "ppm");
+    assertEquals(99990, new Brighten(-10).apply(wideImage).getPixel(0, 1).getRed());
+  }
+
+  /**
+   * Tests that subsampling keeps every n-th value of every n-th row.
+   */
+  @Test
+  public void subsample() {
+    Plane plane = new Plane(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, 5, 2);
+    Plane half = plane.subsample(2);
+    assertEquals(3, half.getWidth());
+    assertEquals(1, half.getHeight());
+    assertEquals(2, half.get(0, 1));
+    assertEquals(4, half.get(0, 2));
+    assertEquals(plane, plane.subsample(1));
+    assertEquals(1, plane.subsample(7).getWidth());
+    assertThrows(IllegalArgumentException.class, () -> plane.subsample(0));
+
+    // the step keeps the longest side within the preview size
+    assertEquals(1, PlanarImage.previewStep(100, 50, 100));
+    assertEquals(2, PlanarImage.previewStep(101, 50, 100));
+    assertEquals(40, PlanarImage.previewStep(7952, 5304, 200));
+    assertThrows(IllegalArgumentException.class, () -> PlanarImage.previewStep(1, 1, 0));
+  }
+
+  /**
+   * Tests copying a region of a plane and finding the region where two planes differ.
+   */
+  @Test
+  public void regions() {
+    Plane plane = new Plane(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, 4, 3);
+    Plane part = plane.crop(new Region(1, 1, 2, 2));
+    assertEquals(2, part.getWidth());
+    assertEquals(5, part.get(0, 0));
+    assertEquals(10, part.get(1, 1));
+    assertEquals(plane, plane.crop(new Region(0, 0, 4, 3)));
+    assertThrows(IllegalArgumentException.class, () -> plane.crop(new Region(3, 0, 2, 1)));
+    assertThrows(IllegalArgumentException.class, () -> plane.crop(null));
+
+    // only the values at (1, 2) and (2, 0) differ
+    Plane changed = new Plane(new int[]{0, 1, 2, 3, 4, 5, 60, 7, 80, 9, 10, 11}, 4, 3);
+    assertEquals(new Region(0, 1, 3, 2), plane.changedRegion(changed));
+    assertEquals(null, plane.changedRegion(plane));
+    assertEquals(null, plane.changedRegion(new Plane(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9,
+        10, 11}, 4, 3)));
+
+    // planes stored in different arrays are compared by value
+    Plane wide = new Plane(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 1000}, 4, 3);
+    assertEquals(new Region(3, 2, 1, 1), plane.changedRegion(wide));
+    assertThrows(IllegalArgumentException.class, () -> plane.changedRegion(part));
+  }
+
+  /**
+   * Tests that crops are views of the rows of their plane and that patches only copy the rows of
+   * their region.
+   */
+  @Test
+  public void viewsAndPatches() {
+    Plane plane = new Plane(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, 4, 3);
+    Plane view = plane.crop(new Region(1, 0, 3, 2));
+    assertEquals(new Plane(new int[]{1, 2, 3, 5, 6, 7}, 3, 2).getDigest(), view.getDigest());
+    assertEquals(1, view.getMin());
+    assertEquals(7, view.getMax());
+    Plane inner = view.crop(new Region(1, 1, 2, 1));
+    assertEquals(6, inner.get(0, 0));
+    assertEquals(new Region(0, 1, 1, 1),
+        view.changedRegion(new Plane(new int[]{1, 2, 3, 50, 6, 7}, 3, 2)));
+
+    // patching with a view of the same region changes nothing
+    Region region = new Region(1, 1, 2, 1);
+    assertSame(plane, plane.patch(region, plane.crop(region)));
+    Plane patched = plane.patch(region, new Plane(new int[]{20, 30}, 2, 1));
+    assertEquals(new Plane(new int[]{0, 1, 2, 3, 4, 20, 30, 7, 8, 9, 10, 11}, 4, 3).getDigest(),
+        patched.getDigest());
+    assertEquals(new Region(1, 1, 2, 1), plane.changedRegion(patched));
+    assertEquals(30, patched.getMax());
+    assertEquals(1, patched.getBytesPerValue());
+
+    // wider values are stored in wider arrays
+    Plane wide = view.patch(new Region(0, 0, 1, 1), new Plane(new int[]{1000}, 1, 1));
+    assertEquals(2, wide.getBytesPerValue());
+    assertEquals(1000, wide.get(0, 0));
+    assertEquals(7, wide.get(1, 2));
+    assertThrows(IllegalArgumentException.class, () -> plane.patch(region, view));
+
+    // flipped views have the digest of the flipped values
+    Plane flipped = view.flipRows();
+    assertEquals(new Plane(new int[]{5, 6, 7, 1, 2, 3}, 3, 2).getDigest(), flipped.getDigest());
+    assertTrue(view.sameValues(flipped.flipRows()));
+    assertThrows(IllegalArgumentException.class, () -> plane.patch(null, view));
+  }
+
+  /**
+   * Tests that builders write into the array chosen from the maximum value.
+   */
+  @Test
+  public void builder() {
+    Plane.Builder builder = Plane.builder(2, 2, 255);
+    builder.setRow(0, new int[]{9, 0, 128}, 1);
+    builder.set(1, 0, 255);
+    builder.set(1, 1, 7);
+    Plane bytes = builder.build();
+    assertEquals(1, bytes.getBytesPerValue());
+    assertEquals(new Plane(new int[]{0, 128, 255, 7}, 2, 2).getDigest(), bytes.getDigest());
+    assertEquals(255, bytes.getMax());
+    assertTrue(bytes.sameValues(new Plane(new int[]{0, 128, 255, 7}, 2, 2)));
+    assertThrows(IllegalStateException.class, () -> builder.set(0, 0, 1));
+    assertThrows(IllegalStateException.class, builder::build);
+
+    // the maximum value sets the storage, not the values written
+    Plane.Builder deep = Plane.builder(2, 1, 65535);
+    deep.set(0, 1, 3);
+    Plane shorts = deep.build();
+    assertEquals(2, shorts.getBytesPerValue());
+    assertTrue(shorts.sameValues(new Plane(new int[]{0, 3}, 2, 1)));
+    assertEquals(4, Plane.builder(1, 1, 70000).build().getBytesPerValue());
+
+    // values out of range are rejected instead of being truncated
+    Plane.Builder small = Plane.builder(2, 1, 100);
+    assertThrows(IllegalArgumentException.class, () -> small.set(0, 0, 101));
+    assertThrows(IllegalArgumentException.class, () -> small.set(0, 0, -1));
+    assertThrows(IllegalArgumentException.class, () -> small.setRow(0, new int[]{1, 200}, 0));
+    assertThrows(IllegalArgumentException.class, () -> small.setRow(1, new int[2], 0));
+    assertThrows(IllegalArgumentException.class, () -> small.setRow(0, new int[2], 1));
+    assertThrows(IllegalArgumentException.class, () -> Plane.builder(0, 1, 255));
+    assertThrows(IllegalArgumentException.class, () -> Plane.builder(1, 1, -1));
+  }
+}
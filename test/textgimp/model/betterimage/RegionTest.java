@@ -0,0 +1,48 @@
+package textgimp.model.betterimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This is a JUnit test class for the Region class.
+ */
+public class RegionTest {
+
+  @Test
+  public void create() {
+    Region region = new Region(1, 2, 3, 4);
+    assertEquals(1, region.getX());
+    assertEquals(2, region.getY());
+    assertEquals(3, region.getWidth());
+    assertEquals(4, region.getHeight());
+    assertEquals("1 2 3 4", region.toString());
+    assertEquals(new Region(1, 2, 3, 4), region);
+    assertEquals(new Region(1, 2, 3, 4).hashCode(), region.hashCode());
+    assertTrue(region.fitsIn(4, 6));
+    assertFalse(region.fitsIn(3, 6));
+
+    // regions cannot be empty or start outside of an image
+    assertThrows(IllegalArgumentException.class, () -> new Region(-1, 0, 1, 1));
+    assertThrows(IllegalArgumentException.class, () -> new Region(0, -1, 1, 1));
+    assertThrows(IllegalArgumentException.class, () -> new Region(0, 0, 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new Region(0, 0, 1, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new Region(Integer.MAX_VALUE, 0, 1, 1));
+  }
+
+  @Test
+  public void combine() {
+    Region first = new Region(0, 0, 4, 4);
+    Region second = new Region(2, 3, 4, 4);
+    assertEquals(new Region(0, 0, 6, 7), first.union(second));
+    assertEquals(new Region(2, 3, 2, 1), first.intersect(second));
+    assertNull(first.intersect(new Region(4, 0, 1, 1)));
+    assertThrows(IllegalArgumentException.class, () -> first.union(null));
+    assertThrows(IllegalArgumentException.class, () -> first.intersect(null));
+  }
+}
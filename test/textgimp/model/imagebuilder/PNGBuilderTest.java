@@ -0,0 +1,169 @@
+package textgimp.model.imagebuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PNGPixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.macros.imagetransform.Subsample;
+
+/**
+ * This is a JUnit test class for reading and writing PNG images of different layouts.
+ */
+public class PNGBuilderTest {
+
+  /**
+   * Encode a BufferedImage as PNG.
+   *
+   * @param image the image to encode.
+   * @return the PNG data.
+   * @throws IOException if encoding fails.
+   */
+  private byte[] encode(BufferedImage image) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Tests that grey images of different depths are read with one shared plane.
+   *
+   * @throws IOException if encoding fails.
+   */
+  @Test
+  public void greyImages() throws IOException {
+    BufferedImage grey = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_GRAY);
+    grey.getRaster().setSample(1, 0, 0, 200);
+    PlanarImage image = (PlanarImage) new PNGBuilder().loadImage(this.encode(grey));
+    assertEquals(255, image.getMaxValue());
+    assertEquals(200, image.getPixel(0, 1).getGreen());
+    assertSame(image.getRed(), image.getBlue());
+    assertNull(image.getAlpha());
+
+    BufferedImage binary = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_BINARY);
+    binary.getRaster().setSample(2, 1, 0, 1);
+    image = (PlanarImage) new PNGBuilder().loadImage(this.encode(binary));
+    assertEquals(255, image.getPixel(1, 2).getRed());
+    assertEquals(0, image.getPixel(1, 1).getRed());
+
+    BufferedImage deep = new BufferedImage(3, 2, BufferedImage.TYPE_USHORT_GRAY);
+    deep.getRaster().setSample(0, 1, 0, 40000);
+    image = (PlanarImage) new PNGBuilder().loadImage(this.encode(deep));
+    assertEquals(65535, image.getMaxValue());
+    assertEquals(40000, image.getPixel(1, 0).getBlue());
+  }
+
+  /**
+   * Tests that palette images are read with their colors and transparency.
+   *
+   * @throws IOException if encoding fails.
+   */
+  @Test
+  public void paletteImage() throws IOException {
+    byte[] reds = {0, (byte) 255, 10};
+    byte[] greens = {0, 0, 20};
+    byte[] blues = {0, 0, 30};
+    byte[] alphas = {0, (byte) 255, (byte) 128};
+    IndexColorModel palette = new IndexColorModel(2, 3, reds, greens, blues, alphas);
+    BufferedImage indexed = new BufferedImage(2, 2, BufferedImage.TYPE_BYTE_BINARY, palette);
+    indexed.getRaster().setSample(0, 0, 0, 1);
+    indexed.getRaster().setSample(1, 1, 0, 2);
+
+    Image image = new PNGBuilder().loadImage(this.encode(indexed));
+    assertEquals(255, image.getPixel(0, 0).getRed());
+    assertEquals(0, ((PNGPixel) image.getPixel(0, 1)).getTransparency());
+    PNGPixel pixel = (PNGPixel) image.getPixel(1, 1);
+    assertEquals(20, pixel.getGreen());
+    assertEquals(30, pixel.getBlue());
+    assertEquals(128, pixel.getTransparency());
+  }
+
+  /**
+   * Tests that transparency survives writing and reading a PNG image.
+   *
+   * @throws IOException if encoding fails.
+   */
+  @Test
+  public void roundTrip() throws IOException {
+    BufferedImage argb = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+    argb.setRGB(0, 0, 0x80102030);
+    argb.setRGB(1, 1, 0xFFFFFFFF);
+    PNGBuilder builder = new PNGBuilder();
+    Image image = builder.loadImage(this.encode(argb));
+    Image reloaded = builder.loadImage(builder.writeImage(image));
+    assertEquals(image, reloaded);
+    assertTrue(reloaded.getPixel(0, 0) instanceof PNGPixel);
+    assertEquals(0x80, ((PNGPixel) reloaded.getPixel(0, 0)).getTransparency());
+    assertEquals(0x30, reloaded.getPixel(0, 0).getBlue());
+
+    // images with other maximum values are scaled to 8 bits
+    Image ppm = new PPMBuilder().loadImage("P3 1 1 15 15 0 5".getBytes());
+    Image scaled = builder.loadImage(builder.writeImage(ppm));
+    assertEquals(255, scaled.getPixel(0, 0).getRed());
+    assertEquals(85, scaled.getPixel(0, 0).getBlue());
+
+    assertThrows(IllegalArgumentException.class, () -> builder.loadImage(new byte[]{1, 2, 3}));
+  }
+
+  /**
+   * Tests that images with more than 8 bits are written with 16-bit samples.
+   *
+   * @throws IOException if encoding fails.
+   */
+  @Test
+  public void deepRoundTrip() throws IOException {
+    Image ppm = new PPMBuilder().loadImage("P3 2 1 65535 65535 0 12345 1 2 3".getBytes());
+    PNGBuilder builder = new PNGBuilder();
+    PlanarImage image = (PlanarImage) builder.loadImage(builder.writeImage(ppm));
+    assertEquals(65535, image.getMaxValue());
+    assertEquals(12345, image.getPixel(0, 0).getBlue());
+    assertEquals(3, image.getPixel(0, 1).getBlue());
+    assertEquals(65535, ((PNGPixel) image.getPixel(0, 1)).getTransparency());
+    assertEquals(2, image.getRed().getBytesPerValue());
+  }
+
+  /**
+   * Tests that previews are decoded with subsampling and equal the subsampled full image.
+   *
+   * @throws IOException if encoding fails.
+   */
+  @Test
+  public void preview() throws IOException {
+    BufferedImage argb = new BufferedImage(5, 3, BufferedImage.TYPE_INT_ARGB);
+    for (int i = 0; i < 15; i++) {
+      argb.setRGB(i % 5, i / 5, (i * 16) << 24 | i << 16 | (i * 2) << 8 | i * 3);
+    }
+    PNGBuilder builder = new PNGBuilder();
+    byte[] data = this.encode(argb);
+    Image preview = builder.loadPreview(data, 2);
+    assertEquals(2, preview.getWidth());
+    assertEquals(1, preview.getHeight());
+    assertEquals(new Subsample(2).apply(builder.loadImage(data)), preview);
+    assertEquals(3, preview.getPixel(0, 1).getRed());
+    assertEquals(48, ((PNGPixel) preview.getPixel(0, 1)).getTransparency());
+
+    // images that fit are decoded completely
+    assertEquals(builder.loadImage(data), builder.loadPreview(data, 5));
+    assertThrows(IllegalArgumentException.class, () -> builder.loadPreview(data, 0));
+    assertThrows(IllegalArgumentException.class, () -> builder.loadPreview(new byte[]{1}, 2));
+
+    // plain PPM images skip the values of the other pixels
+    byte[] ppm = "P3 3 3 255 1 1 1 2 2 2 3 3 3 4 4 4 5 5 5 6 6 6 7 7 7 8 8 8 9 9 9".getBytes();
+    Image small = new PPMBuilder().loadPreview(ppm, 2);
+    assertEquals(2, small.getWidth());
+    assertEquals(3, small.getPixel(0, 1).getGreen());
+    assertEquals(7, small.getPixel(1, 0).getBlue());
+    assertEquals(9, small.getPixel(1, 1).getRed());
+    assertEquals(new Subsample(2).apply(new PPMBuilder().loadImage(ppm)), small);
+  }
+}
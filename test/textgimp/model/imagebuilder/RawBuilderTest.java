@@ -0,0 +1,74 @@
+package textgimp.model.imagebuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static textgimp.ModelMocks.createRandomGenericImage;
+
+import java.io.IOException;
+import org.junit.Test;
+import textgimp.model.betterimage.GenericImage;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PNGPixel;
+import textgimp.model.betterimage.Pixel;
+
+/**
+ * This class tests the raw image builder used to spill images to disk.
+ */
+public class RawBuilderTest {
+
+  /**
+   * Tests that RGB images survive a round trip through the raw format.
+   *
+   * @throws IOException if writing fails
+   */
+  @Test
+  public void roundTripRGB() throws IOException {
+    ImageBuilder builder = new RawBuilder();
+
+    // 8-bit and 16-bit images
+    for (int maxValue : new int[]{255, 65535}) {
+      Image image = createRandomGenericImage(7, 5, maxValue);
+      byte[] data = builder.writeImage(image);
+      Image loaded = builder.loadImage(data);
+      assertEquals(image, loaded);
+      assertEquals(maxValue, loaded.getMaxValue());
+      assertEquals("ppm", loaded.getImageType());
+    }
+
+    // 8-bit values take a single byte each
+    Image image = createRandomGenericImage(10, 10, 255);
+    assertTrue(builder.writeImage(image).length < 10 * 10 * 3 + 64);
+  }
+
+  /**
+   * Tests that transparency survives a round trip through the raw format.
+   *
+   * @throws IOException if writing fails
+   */
+  @Test
+  public void roundTripTransparency() throws IOException {
+    ImageBuilder builder = new RawBuilder();
+    Pixel[][] pixels = new Pixel[2][3];
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        pixels[i][j] = new PNGPixel(i, j, i + j, 40 * j, 255);
+      }
+    }
+    Image image = new GenericImage(pixels, 255, "png");
+    Image loaded = builder.loadImage(builder.writeImage(image));
+    assertEquals(image, loaded);
+    assertEquals(80, ((PNGPixel) loaded.getPixel(1, 2)).getTransparency());
+  }
+
+  /**
+   * Tests that invalid data is rejected.
+   */
+  @Test
+  public void invalidData() {
+    ImageBuilder builder = new RawBuilder();
+    assertThrows(IllegalArgumentException.class, () -> builder.loadImage(null));
+    assertThrows(IllegalArgumentException.class, () -> builder.loadImage(new byte[]{1, 2, 3}));
+    assertThrows(IllegalArgumentException.class, () -> builder.writeImage(null));
+  }
+}
@@ -0,0 +1,139 @@
+package textgimp.model.imagestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static textgimp.ModelMocks.createRandomGenericImage;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import textgimp.model.betterimage.Image;
+
+/**
+ * This class tests the concurrent image store.
+ */
+public class ConcurrentImageStoreTest {
+
+  /**
+   * Tests binding, reading and removing images.
+   */
+  @Test
+  public void putGetRemove() {
+    ImageStore store = new ConcurrentImageStore();
+    Image first = createRandomGenericImage(2, 2, 255);
+    Image second = createRandomGenericImage(2, 2, 255);
+
+    // empty store
+    assertNull(store.get("a"));
+    assertFalse(store.contains("a"));
+
+    // bind and rebind a name
+    store.put("a", first);
+    assertSame(first, store.get("a"));
+    store.put("a", second);
+    assertSame(second, store.get("a"));
+    store.put("b", first);
+    assertEquals(Set.of("a", "b"), store.names());
+
+    // remove a binding
+    assertSame(second, store.remove("a"));
+    assertNull(store.remove("a"));
+    assertFalse(store.contains("a"));
+    assertTrue(store.contains("b"));
+
+    // invalid arguments
+    assertThrows(IllegalArgumentException.class, () -> store.put(null, first));
+    assertThrows(IllegalArgumentException.class, () -> store.put("a", null));
+    assertThrows(IllegalArgumentException.class, () -> store.compareAndSet(null, null, first));
+  }
+
+  /**
+   * Tests that compare-and-set compares images by reference.
+   */
+  @Test
+  public void compareAndSet() {
+    ImageStore store = new ConcurrentImageStore();
+    Image first = createRandomGenericImage(2, 2, 255);
+    Image second = createRandomGenericImage(2, 2, 255);
+
+    // bind an unbound name
+    assertTrue(store.compareAndSet("a", null, first));
+    assertFalse(store.compareAndSet("a", null, second));
+    assertSame(first, store.get("a"));
+
+    // replace only if the expected image is bound
+    assertFalse(store.compareAndSet("a", second, second));
+    assertTrue(store.compareAndSet("a", first, second));
+    assertSame(second, store.get("a"));
+
+    // remove using compare-and-set
+    assertTrue(store.compareAndSet("a", second, null));
+    assertFalse(store.contains("a"));
+  }
+
+  /**
+   * Stress test - many threads increment a counter stored as the image bound to a name using
+   * compare-and-set. No update may be lost.
+   *
+   * @throws Exception if a worker fails
+   */
+  @Test
+  public void concurrentCompareAndSet() throws Exception {
+    ImageStore store = new ConcurrentImageStore();
+    int threads = 8;
+    int updates = 2000;
+
+    // each image in this list stands for a counter value
+    List<Image> values = new ArrayList<>();
+    Map<Image, Integer> counters = new IdentityHashMap<>();
+    for (int i = 0; i <= threads * updates; i++) {
+      Image value = createRandomGenericImage(1, 1, 255);
+      values.add(value);
+      counters.put(value, i);
+    }
+    store.put("counter", values.get(0));
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger retries = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < updates; i++) {
+          while (true) {
+            Image current = store.get("counter");
+            Image next = values.get(counters.get(current) + 1);
+            if (store.compareAndSet("counter", current, next)) {
+              break;
+            }
+            retries.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    // every increment must be visible
+    assertSame(values.get(threads * updates), store.get("counter"));
+  }
+}
@@ -0,0 +1,153 @@
+package textgimp.model.imagestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import org.junit.Test;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+
+/**
+ * This class tests the undo and redo history of an image.
+ */
+public class ImageHistoryTest {
+
+  /**
+   * Create a plane whose values are the sum of row and column times a factor, plus an offset in
+   * the given row.
+   *
+   * @param width  the width of the plane.
+   * @param height the height of the plane.
+   * @param factor the factor of the values.
+   * @param row    the row that is offset.
+   * @param offset the offset of that row.
+   * @return the plane.
+   */
+  private Plane createPlane(int width, int height, int factor, int row, int offset) {
+    int[] values = new int[width * height];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = ((i / width + i % width) * factor + (i / width == row ? offset : 0)) % 256;
+    }
+    return new Plane(values, width, height);
+  }
+
+  /**
+   * Create a greyscale image of one plane.
+   *
+   * @param plane the plane used for every channel.
+   * @return the image.
+   */
+  private Image createImage(Plane plane) {
+    return new PlanarImage(plane, plane, plane, null, 255, "ppm");
+  }
+
+  /**
+   * Tests that steps are kept by reference and redone through their recipe when they have one.
+   */
+  @Test
+  public void referencesAndRecipes() {
+    ImageHistory history = new ImageHistory(ImageHistory.DEFAULT_BUDGET);
+    Image first = this.createImage(this.createPlane(4, 4, 1, 0, 0));
+    Image second = this.createImage(this.createPlane(4, 4, 2, 0, 0));
+    Image third = this.createImage(this.createPlane(4, 4, 3, 0, 0));
+    AtomicInteger computed = new AtomicInteger();
+    UnaryOperator<Image> recipe = image -> {
+      computed.incrementAndGet();
+      return third;
+    };
+    history.record(first, second, null);
+    history.record(second, third, recipe);
+    assertEquals(2, history.undoSize());
+
+    // undone images are the recorded objects
+    assertSame(second, history.undo(third));
+    assertSame(first, history.undo(second));
+    assertThrows(IllegalArgumentException.class, () -> history.undo(first));
+    assertEquals(2, history.redoSize());
+
+    // the first step is redone from its kept image, the second one from its recipe
+    assertSame(second, history.redo(first));
+    assertEquals(0, computed.get());
+    assertSame(third, history.redo(second));
+    assertEquals(1, computed.get());
+    assertThrows(IllegalArgumentException.class, () -> history.redo(third));
+
+    // a new change drops the steps that were undone
+    history.undo(third);
+    history.record(second, first, null);
+    assertEquals(0, history.redoSize());
+    assertEquals(2, history.undoSize());
+    assertThrows(IllegalArgumentException.class, () -> history.record(null, first, null));
+    assertThrows(IllegalArgumentException.class, () -> new ImageHistory(0));
+  }
+
+  /**
+   * Tests that kept images are compressed when the budget is exceeded and are restored equal.
+   */
+  @Test
+  public void compressesOverBudget() {
+    Image[] images = new Image[4];
+    images[0] = this.createImage(this.createPlane(64, 64, 1, 0, 0));
+    for (int i = 1; i < images.length; i++) {
+      images[i] = this.createImage(this.createPlane(64, 64, 1, i * 10, i));
+    }
+
+    // every kept image takes 4096 bytes, only the changed rows are kept once compressed
+    ImageHistory history = new ImageHistory(6000);
+    for (int i = 1; i < images.length; i++) {
+      history.record(images[i - 1], images[i], null);
+    }
+    assertEquals(3, history.undoSize());
+    assertTrue(history.getBytes() <= 6000);
+    assertTrue(history.toString().contains("2 compressions"));
+
+    Image current = images[images.length - 1];
+    for (int i = images.length - 2; i >= 0; i--) {
+      current = history.undo(current);
+      assertEquals(images[i], current);
+    }
+    assertNotSame(images[0], current);
+
+    // the images to redo are compressed too
+    for (int i = 1; i < images.length; i++) {
+      current = history.redo(current);
+      assertEquals(images[i], current);
+    }
+    assertTrue(history.getBytes() <= 6000);
+  }
+
+  /**
+   * Tests that deltas keep shared planes and transparency, and that the oldest steps are dropped
+   * when compressing is not enough.
+   */
+  @Test
+  public void sharedPlanesAndDropping() {
+    Plane plane = this.createPlane(16, 16, 5, 3, 1);
+    Plane alpha = this.createPlane(16, 16, 7, 0, 0);
+    Image older = new PlanarImage(plane, plane, alpha, alpha, 255, "png");
+    Image resized = this.createImage(this.createPlane(8, 8, 3, 0, 0));
+    Image newer = this.createImage(this.createPlane(8, 8, 3, 2, 9));
+
+    ImageHistory history = new ImageHistory(1);
+    history.record(older, resized, null);
+    history.record(resized, newer, null);
+    assertEquals(0, history.undoSize());
+    assertEquals(0, history.getBytes());
+
+    // a large budget keeps both steps, compressing them only as needed
+    history = new ImageHistory(300);
+    history.record(older, resized, null);
+    history.record(resized, newer, null);
+    assertEquals(2, history.undoSize());
+    PlanarImage restored = (PlanarImage) history.undo(history.undo(newer));
+    assertEquals(older, restored);
+    assertSame(restored.getRed(), restored.getGreen());
+    assertSame(restored.getBlue(), restored.getAlpha());
+  }
+}
@@ -0,0 +1,92 @@
+package textgimp.model.imagestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import textgimp.model.TextGimpModel;
+import textgimp.model.betterimage.GenericImage;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PNGPixel;
+import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.RGBPixel;
+
+/**
+ * This class tests the interning of identical images.
+ */
+public class ImageInternerTest {
+
+  /**
+   * Create a 2 x 2 image with the given colors.
+   *
+   * @param values colors of the four pixels, one value for all channels.
+   * @return the image.
+   */
+  private Image createImage(int... values) {
+    Pixel[][] pixels = new Pixel[2][2];
+    for (int i = 0; i < 4; i++) {
+      pixels[i / 2][i % 2] = new RGBPixel(values[i], values[i], values[i], 255);
+    }
+    return new GenericImage(pixels, 255, "ppm");
+  }
+
+  /**
+   * Tests that equal images are shared and different images are kept.
+   */
+  @Test
+  public void intern() {
+    ImageInterner interner = new ImageInterner();
+    Image image = createImage(1, 2, 3, 4);
+    assertSame(image, interner.intern(image));
+    assertSame(image, interner.intern(image));
+    assertEquals(0, interner.getDeduplicated());
+
+    // an equal copy is replaced by the interned image
+    Image copy = createImage(1, 2, 3, 4);
+    assertSame(image, interner.intern(copy));
+    assertEquals(1, interner.getDeduplicated());
+    assertEquals(ImageFootprint.estimate(copy), interner.getSavedBytes());
+
+    // different content is kept as is
+    Image other = createImage(4, 3, 2, 1);
+    assertSame(other, interner.intern(other));
+
+    // the same colors with transparency are a different image
+    Pixel[][] pixels = new Pixel[2][2];
+    for (int i = 0; i < 4; i++) {
+      pixels[i / 2][i % 2] = new PNGPixel(i + 1, i + 1, i + 1, 255, 255);
+    }
+    Image transparent = new GenericImage(pixels, 255, "png");
+    assertSame(transparent, interner.intern(transparent));
+    assertEquals(1, interner.getDeduplicated());
+    assertThrows(IllegalArgumentException.class, () -> interner.intern(null));
+  }
+
+  /**
+   * Tests that the model shares identical images across names.
+   */
+  @Test
+  public void modelSharesImages() {
+    ImageInterner interner = new ImageInterner();
+    Map<String, Image> images = new HashMap<>();
+    ImageStore store = new ConcurrentImageStore() {
+      @Override
+      public void put(String name, Image image) {
+        images.put(name, image);
+        super.put(name, image);
+      }
+    };
+    TextGimpModel model = new TextGimpModel(store, new ResultCache(0), interner);
+    model.load("P3 2 1 255 1 2 3 4 5 6".getBytes(), "a", "ppm");
+    model.horizontalFlip("a", "b");
+    model.horizontalFlip("b", "c");
+    model.brighten("a", 0, "d");
+
+    assertSame(images.get("a"), images.get("c"));
+    assertSame(images.get("a"), images.get("d"));
+    assertEquals(2, interner.getDeduplicated());
+  }
+}
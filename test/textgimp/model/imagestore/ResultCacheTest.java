@@ -0,0 +1,204 @@
+package textgimp.model.imagestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static textgimp.ModelMocks.createRandomGenericImage;
+
+import java.lang.ref.WeakReference;
+import org.junit.Test;
+import textgimp.model.TextGimpModel;
+import textgimp.model.betterimage.GenericImage;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.RGBPixel;
+import textgimp.model.macros.imagetransform.HorizontalFlip;
+
+/**
+ * This class tests the cache of operation results.
+ */
+public class ResultCacheTest {
+
+  /**
+   * Tests that results are reused for the same operation and sources only.
+   */
+  @Test
+  public void hitsAndMisses() {
+    ResultCache cache = new ResultCache(ResultCache.DEFAULT_BUDGET);
+    Image source = createRandomGenericImage(5, 5, 255);
+    Image other = createRandomGenericImage(5, 5, 255);
+    HorizontalFlip flip = new HorizontalFlip();
+
+    Image flipped = cache.getOrCompute("flip", () -> flip.apply(source), source);
+    assertSame(flipped, cache.getOrCompute("flip", () -> flip.apply(source), source));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    // a different operation or source is a miss
+    assertNotSame(flipped, cache.getOrCompute("flip twice", () -> flip.apply(flipped), source));
+    assertNotSame(flipped, cache.getOrCompute("flip", () -> flip.apply(other), other));
+    assertEquals(3, cache.getMisses());
+
+    // the order of the sources matters
+    cache.getOrCompute("combine", () -> source, source, other);
+    assertSame(other, cache.getOrCompute("combine", () -> other, other, source));
+    assertEquals(5, cache.size());
+    assertThrows(IllegalArgumentException.class,
+        () -> cache.getOrCompute("flip", () -> source, (Image) null));
+  }
+
+  /**
+   * Tests that sources with the same pixels but another type, or with the same digest but other
+   * pixels, do not find the result of the original source.
+   */
+  @Test
+  public void typesAndCollisions() {
+    ResultCache cache = new ResultCache(ResultCache.DEFAULT_BUDGET);
+    Pixel[][] pixels = {{new RGBPixel(1, 2, 3, 255), new RGBPixel(4, 5, 6, 255)}};
+    Image ppm = new GenericImage(pixels, 255, "ppm");
+    Image png = new GenericImage(pixels, 255, "png");
+    HorizontalFlip flip = new HorizontalFlip();
+    Image flipped = cache.getOrCompute("flip", () -> flip.apply(ppm), ppm);
+    Image flippedPng = cache.getOrCompute("flip", () -> flip.apply(png), png);
+    assertEquals("ppm", flipped.getImageType());
+    assertEquals("png", flippedPng.getImageType());
+    assertEquals(2, cache.getMisses());
+
+    // an image whose digest collides with the source is checked against it
+    Image other = createRandomGenericImage(2, 1, 255);
+    Image colliding = new Image() {
+      @Override
+      public int getWidth() {
+        return other.getWidth();
+      }
+
+      @Override
+      public int getHeight() {
+        return other.getHeight();
+      }
+
+      @Override
+      public int getMaxValue() {
+        return other.getMaxValue();
+      }
+
+      @Override
+      public Pixel getPixel(int x, int y) {
+        return other.getPixel(x, y);
+      }
+
+      @Override
+      public String getImageType() {
+        return "ppm";
+      }
+
+      @Override
+      public long getDigest() {
+        return ppm.getDigest();
+      }
+    };
+    Image result = cache.getOrCompute("flip", () -> flip.apply(colliding), colliding);
+    assertNotSame(flipped, result);
+    assertEquals(3, cache.getMisses());
+    assertEquals(0, cache.getHits());
+    assertSame(result, cache.getOrCompute("flip", () -> ppm, colliding));
+  }
+
+  /**
+   * Tests that the least recently used results are evicted when the budget is exceeded.
+   */
+  @Test
+  public void eviction() {
+    Image source = createRandomGenericImage(3, 3, 255);
+    long size = ImageFootprint.estimate(source);
+    ResultCache cache = new ResultCache(2 * size);
+    Image first = cache.getOrCompute("first", () -> createRandomGenericImage(3, 3, 255), source);
+    cache.getOrCompute("second", () -> createRandomGenericImage(3, 3, 255), source);
+    assertEquals(2 * size, cache.getBytes());
+
+    // using first makes second the least recently used result
+    assertSame(first, cache.getOrCompute("first", () -> source, source));
+    cache.getOrCompute("third", () -> createRandomGenericImage(3, 3, 255), source);
+    assertEquals(2, cache.size());
+    assertSame(first, cache.getOrCompute("first", () -> source, source));
+    assertSame(source, cache.getOrCompute("second", () -> source, source));
+
+    // results larger than the budget are not cached
+    Image large = createRandomGenericImage(6, 6, 255);
+    cache.getOrCompute("large", () -> large, source);
+    assertTrue(cache.getBytes() <= 2 * size);
+    assertNotSame(large, cache.getOrCompute("large", () -> source, source));
+
+    // a cache without budget computes every time
+    ResultCache disabled = new ResultCache(0);
+    disabled.getOrCompute("first", () -> source, source);
+    disabled.getOrCompute("first", () -> source, source);
+    assertEquals(0, disabled.size());
+    assertEquals(2, disabled.getMisses());
+    assertThrows(IllegalArgumentException.class, () -> new ResultCache(-1));
+  }
+
+  /**
+   * Tests that the cache does not keep sources or released images alive.
+   */
+  @Test
+  public void releaseAndWeakResults() {
+    ResultCache cache = new ResultCache(ResultCache.DEFAULT_BUDGET, true);
+    Image source = createRandomGenericImage(4, 4, 255);
+    Image kept = createRandomGenericImage(4, 4, 255);
+    cache.getOrCompute("kept", () -> kept, source);
+    cache.getOrCompute("dropped", () -> createRandomGenericImage(4, 4, 255), source);
+
+    // sources are not referenced by the cache, weakly kept results can be collected
+    WeakReference<Image> collected = new WeakReference<>(createRandomGenericImage(4, 4, 255));
+    cache.getOrCompute("collected", collected::get, kept);
+    for (int i = 0; i < 50 && collected.get() != null; i++) {
+      System.gc();
+    }
+    assertNull(collected.get());
+    assertSame(kept, cache.getOrCompute("kept", () -> source, source));
+    assertNotSame(kept, cache.getOrCompute("collected", () -> source, kept));
+
+    // releasing an image drops the results computed from it and the results equal to it
+    cache.release(source);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+    assertNotSame(kept, cache.getOrCompute("kept", () -> source, source));
+    assertThrows(IllegalArgumentException.class, () -> cache.release(null));
+  }
+
+  /**
+   * Tests that the model reuses cached results for repeated operations.
+   */
+  @Test
+  public void modelReusesResults() {
+    ResultCache cache = new ResultCache(ResultCache.DEFAULT_BUDGET);
+    TextGimpModel model = new TextGimpModel(new ConcurrentImageStore(), cache);
+    model.load("P3 2 1 255 1 2 3 4 5 6".getBytes(), "source", "ppm");
+
+    model.filter("source", "blur", "first");
+    model.filter("source", "blur", "second");
+    model.greyscale("source", "red-component", "red");
+    model.rgbSplit("source", "r", "g", "b");
+    assertEquals(2, cache.getHits());
+
+    // a different parameter is computed again
+    model.brighten("source", 10, "bright");
+    model.brighten("source", 20, "brighter");
+    assertEquals(2, cache.getHits());
+    assertEquals(6, cache.getMisses());
+
+    // an equal copy of the source finds the results of the original
+    model.load("P3 2 1 255 1 2 3 4 5 6".getBytes(), "copy", "ppm");
+    model.brighten("copy", 20, "copy-brighter");
+    assertEquals(3, cache.getHits());
+
+    // unloading an image drops the results computed from it
+    model.unload("copy");
+    model.brighten("source", 20, "brighter-again");
+    assertEquals(3, cache.getHits());
+  }
+}
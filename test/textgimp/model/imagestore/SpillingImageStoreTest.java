@@ -0,0 +1,233 @@
+package textgimp.model.imagestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static textgimp.ModelMocks.createRandomGenericImage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import textgimp.model.Model;
+import textgimp.model.TextGimpModel;
+import textgimp.model.betterimage.Image;
+
+/**
+ * This class tests the memory budgeted image store.
+ */
+public class SpillingImageStoreTest {
+
+  /**
+   * Tests that least recently used images are spilled and reloaded transparently.
+   *
+   * @throws IOException if the spill directory cannot be created
+   */
+  @Test
+  public void spillAndReload() throws IOException {
+    Path directory = Files.createTempDirectory("spill-test");
+    Image first = createRandomGenericImage(10, 10, 255);
+    Image second = createRandomGenericImage(10, 10, 255);
+    Image third = createRandomGenericImage(10, 10, 255);
+
+    // room for two images only
+    long budget = 2 * ImageFootprint.estimate(first);
+    SpillingImageStore store = new SpillingImageStore(budget, directory);
+    store.put("first", first);
+    store.put("second", second);
+    assertEquals(0, store.getSpills());
+
+    // reading first makes second the least recently used image
+    assertSame(first, store.get("first"));
+    store.put("third", third);
+    assertEquals(1, store.getSpills());
+    assertTrue(store.getResidentBytes() <= budget);
+    assertEquals(Set.of("first", "second", "third"), store.names());
+    assertTrue(store.contains("second"));
+    try (var files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+
+    // drop our reference so second has to be read back from disk
+    Image secondCopy = createCopy(second);
+    second = null;
+    System.gc();
+    Image reloaded = store.get("second");
+    assertEquals(secondCopy, reloaded);
+    assertEquals(2, store.getSpills());
+    assertTrue(store.getReloads() + store.getHits() >= 2);
+
+    store.close();
+    assertFalse(Files.exists(directory));
+  }
+
+  /**
+   * Tests that a spilled image that is still referenced keeps its identity, so compare-and-set
+   * works on it.
+   *
+   * @throws IOException if the spill directory cannot be created
+   */
+  @Test
+  public void compareAndSetSpilled() throws IOException {
+    Path directory = Files.createTempDirectory("spill-test");
+    Image first = createRandomGenericImage(10, 10, 255);
+    Image second = createRandomGenericImage(10, 10, 255);
+    SpillingImageStore store = new SpillingImageStore(ImageFootprint.estimate(first), directory);
+
+    store.put("first", first);
+    store.put("second", second);
+    assertEquals(1, store.getSpills());
+
+    // first is spilled but still referenced here
+    assertTrue(store.compareAndSet("first", first, second));
+    assertSame(second, store.get("first"));
+    assertFalse(store.compareAndSet("first", first, second));
+
+    // removing returns the image and forgets it
+    assertSame(second, store.remove("first"));
+    assertNull(store.get("first"));
+    assertEquals(1, store.getMisses());
+    store.close();
+  }
+
+  /**
+   * Tests that an image bound to several names is counted once and spilled once for all of them.
+   *
+   * @throws IOException if the spill directory cannot be created
+   */
+  @Test
+  public void sharedImages() throws IOException {
+    Path directory = Files.createTempDirectory("spill-test");
+    Image shared = createRandomGenericImage(10, 10, 255);
+    Image other = createRandomGenericImage(10, 10, 255);
+    long size = ImageFootprint.estimate(shared);
+    SpillingImageStore store = new SpillingImageStore(size, directory);
+    store.put("a", shared);
+    store.put("b", shared);
+    store.put("c", shared);
+    assertEquals(size, store.getResidentBytes());
+    assertEquals(0, store.getSpills());
+
+    // another image spills the shared one under all its names, into one file
+    store.put("other", other);
+    assertEquals(1, store.getSpills());
+    assertEquals(size, store.getResidentBytes());
+    try (var files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+
+    // the file is kept until the last name is rebound
+    store.put("a", other);
+    store.remove("b");
+    try (var files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+    store.put("c", other);
+    try (var files = Files.list(directory)) {
+      assertEquals(0, files.count());
+    }
+    assertEquals(size, store.getResidentBytes());
+    assertEquals(Set.of("a", "c", "other"), store.names());
+    store.close();
+    assertFalse(Files.exists(directory));
+  }
+
+  /**
+   * Tests that threads reading and writing their own names through a tiny budget, so that most
+   * reads reload a spilled image, always get their own images back.
+   *
+   * @throws Exception if the spill directory cannot be created or a thread fails
+   */
+  @Test(timeout = 20000)
+  public void concurrentSpillsAndReloads() throws Exception {
+    SpillingImageStore store = new SpillingImageStore(1);
+    int threads = 4;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(pool.submit(() -> {
+        Image[] images = new Image[3];
+        Image[] copies = new Image[3];
+        for (int i = 0; i < images.length; i++) {
+          images[i] = createRandomGenericImage(8, 8, 255);
+          copies[i] = createCopy(images[i]);
+          store.put(thread + "-" + i, images[i]);
+        }
+        Arrays.fill(images, null);
+        for (int round = 0; round < 50; round++) {
+          int i = round % copies.length;
+          assertEquals(copies[i], store.get(thread + "-" + i));
+          store.put(thread + "-shared-" + i, store.get(thread + "-" + i));
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    assertEquals(threads * 6, store.names().size());
+    store.close();
+  }
+
+  /**
+   * Tests that the model keeps working when every intermediate image is spilled.
+   *
+   * @throws IOException if the spill directory cannot be created
+   */
+  @Test
+  public void modelWithTinyBudget() throws IOException {
+    SpillingImageStore store = new SpillingImageStore(1);
+    Model model = new TextGimpModel(store);
+    model.load("P3 2 1 255 10 20 30 40 50 60".getBytes(), "a", "ppm");
+    model.horizontalFlip("a", "b");
+    model.brighten("b", 5, "c");
+    model.brighten("a", 5, "a");
+
+    String expected = String.join(System.lineSeparator(),
+        "P3", "2 1", "255", "45", "55", "65", "15", "25", "35", "", "");
+    assertEquals(expected, new String(model.save("c", "ppm")));
+    assertTrue(store.getSpills() > 0);
+    store.close();
+  }
+
+  /**
+   * Tests invalid arguments.
+   */
+  @Test
+  public void invalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new SpillingImageStore(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpillingImageStore(10, Path.of("does", "not", "exist")));
+  }
+
+  /**
+   * Create a copy of an image by reading all its pixels.
+   *
+   * @param image image to copy
+   * @return a new image equal to the given one
+   */
+  private Image createCopy(Image image) {
+    textgimp.model.betterimage.Pixel[][] pixels =
+        new textgimp.model.betterimage.Pixel[image.getHeight()][image.getWidth()];
+    for (int i = 0; i < image.getHeight(); i++) {
+      for (int j = 0; j < image.getWidth(); j++) {
+        pixels[i][j] = image.getPixel(i, j);
+      }
+    }
+    return new textgimp.model.betterimage.GenericImage(pixels, image.getMaxValue(),
+        image.getImageType());
+  }
+}
@@ -1,11 +1,22 @@
 package textgimp.model.macros;
 
 import static textgimp.ModelMocks.createRandomGenericImage;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.junit.Test;
 import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.betterimage.Region;
+import textgimp.model.macros.colortransform.Brighten;
+import textgimp.model.macros.imagetransform.FilterPresetManager;
+import textgimp.model.macros.imagetransform.FilterType;
+import textgimp.model.macros.imagetransform.Subsample;
 
 /**
  * This class tests abstract macro class.
@@ -27,6 +38,54 @@ public class AbstractMacroTest {
 
   }
 
+  /**
+   * Tests that macros applied to a region only change the region, computed as in the whole image.
+   */
+  @Test
+  public void applyToRegion() {
+    Image img = createRandomGenericImage(20, 30, 255);
+    Region region = new Region(5, 4, 10, 8);
+    Macro blur = new FilterPresetManager().getFilter(FilterType.BLUR);
+    PlanarImage whole = PlanarImage.of(blur.apply(img));
+    PlanarImage part = PlanarImage.of(blur.apply(img, region));
+
+    // inside the region the pixels are blurred as in the whole image, outside they are kept
+    assertEquals(region, PlanarImage.of(img).changedRegion(part));
+    assertEquals(whole.crop(region), part.crop(region));
+    assertEquals(img.getPixel(0, 0), part.getPixel(0, 0));
+    assertEquals(Region.of(img), PlanarImage.of(img).changedRegion(
+        PlanarImage.of(new Brighten(10).apply(img, Region.of(img)))));
+
+    // the region must fit and macros cannot change the size of a region
+    assertThrows(IllegalArgumentException.class,
+        () -> blur.apply(img, new Region(25, 0, 10, 1)));
+    assertThrows(IllegalArgumentException.class, () -> blur.apply(img, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new Subsample(2).apply(img, region));
+  }
+
+  /**
+   * Tests that tiles cover the image once and that tiles are read with their halo.
+   */
+  @Test
+  public void tilesAndHalo() {
+    // tiles at the right and bottom edges are cut to the image
+    Set<Region> tiles = ConcurrentHashMap.newKeySet();
+    new TestMacro().forEachTile(300, 260, tiles::add);
+    assertEquals(5 * 5, tiles.size());
+    assertEquals(new Region(0, 0, 300, 260),
+        tiles.stream().reduce(Region::union).orElseThrow());
+    assertEquals(300 * 260, tiles.stream()
+        .mapToInt(tile -> tile.getWidth() * tile.getHeight()).sum());
+    assertEquals(true, tiles.contains(new Region(256, 256, 44, 4)));
+
+    // values of the halo outside the plane are 0
+    Plane plane = new Plane(new int[]{1, 2, 3, 4, 5, 6}, 3, 2);
+    assertArrayEquals(new int[]{0, 0, 0, 0, 0, 1, 2, 3, 0, 4, 5, 6, 0, 0, 0, 0},
+        AbstractMacro.readTile(plane, new Region(0, 0, 2, 2), 1));
+    assertArrayEquals(new int[]{5, 6}, AbstractMacro.readTile(plane, new Region(1, 1, 2, 1), 0));
+  }
+
   private class TestMacro extends AbstractMacro {
 
     @Override
@@ -0,0 +1,70 @@
+package textgimp.model.macros;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static textgimp.ModelMocks.createRandomGenericImage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+import textgimp.model.betterimage.Image;
+import textgimp.model.macros.colortransform.Brighten;
+import textgimp.model.macros.imagetransform.HorizontalFlip;
+
+/**
+ * This class tests the progress and cancellation of macros.
+ */
+public class MacroProgressTest {
+
+  @Test
+  public void reportsProgress() {
+    Image img = createRandomGenericImage(300, 300, 255);
+    List<Double> values = new ArrayList<>();
+    Image result = MacroProgress.track(() -> new HorizontalFlip().apply(img), values::add);
+    assertEquals(img.getWidth(), result.getWidth());
+
+    // progress only grows and ends close to done
+    assertTrue(values.size() > 1);
+    for (int i = 1; i < values.size(); i++) {
+      assertTrue(values.get(i) > values.get(i - 1));
+    }
+    assertTrue(values.get(values.size() - 1) > 0.9);
+    assertTrue(values.get(values.size() - 1) <= 1);
+
+    // without a listener the macro still runs
+    assertEquals(img.getHeight(), new HorizontalFlip().apply(img).getHeight());
+    assertThrows(IllegalArgumentException.class, () -> MacroProgress.track(null, values::add));
+    assertThrows(IllegalArgumentException.class, () -> MacroProgress.track(() -> 1, null));
+  }
+
+  @Test
+  public void lookupReportsProgress() {
+    // brightening an 8-bit image goes through a lookup table
+    Image img = createRandomGenericImage(300, 300, 255);
+    List<Double> values = new ArrayList<>();
+    Image result = MacroProgress.track(() -> new Brighten(10).apply(img), values::add);
+    assertEquals(Math.min(255, img.getPixel(7, 9).getRed() + 10), result.getPixel(7, 9).getRed());
+    assertTrue(values.size() > 1);
+    assertTrue(values.get(values.size() - 1) > 0.9);
+
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(CancellationException.class, () -> new Brighten(10).apply(img));
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void interruptCancels() {
+    Image img = createRandomGenericImage(10, 10, 255);
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(CancellationException.class, () -> new HorizontalFlip().apply(img));
+    } finally {
+      Thread.interrupted();
+    }
+  }
+}
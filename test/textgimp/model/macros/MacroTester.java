@@ -2,20 +2,28 @@ package textgimp.model.macros;
 
 import static textgimp.ModelMocks.createGenericImageWithPixel;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 
 import org.junit.Test;
 import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PNGPixel;
 import textgimp.model.betterimage.Pixel;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
 import textgimp.model.betterimage.RGBPixel;
 import textgimp.model.macros.colortransform.Brighten;
 import textgimp.model.macros.colortransform.ColorTransformManager;
 import textgimp.model.macros.colortransform.ColorTransformPresetManager;
 import textgimp.model.macros.colortransform.ColorTransformType;
+import textgimp.model.macros.imagetransform.Affine;
 import textgimp.model.macros.imagetransform.Dither;
 import textgimp.model.macros.imagetransform.FilterManager;
 import textgimp.model.macros.imagetransform.FilterPresetManager;
 import textgimp.model.macros.imagetransform.FilterType;
+import textgimp.model.macros.imagetransform.ResampleType;
+import textgimp.model.macros.imagetransform.Resize;
+import textgimp.model.macros.imagetransform.Rotate;
 
 /**
  * This class tests macros in TextGimp.
@@ -206,4 +214,104 @@ public class MacroTester {
     expectedPx = new RGBPixel(255, 255, 255, 255);
     assertEquals(expectedPx, dm.apply(img).getPixel(0, 0));
   }
+
+  /**
+   * This method tests the resize macro with every resampling method.
+   */
+  @Test
+  public void resize() {
+    Plane plane = new Plane(new int[]{0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100, 110, 120, 130,
+        140, 150}, 4, 4);
+    Image img = new PlanarImage(plane, plane, plane, null, 255, "ppm");
+
+    // halving averages blocks of 2 x 2 pixels
+    Image half = new Resize(2, 2, ResampleType.BILINEAR).apply(img);
+    assertEquals(2, half.getWidth());
+    assertEquals(new RGBPixel(25, 25, 25, 255), half.getPixel(0, 0));
+    assertEquals(new RGBPixel(125, 125, 125, 255), half.getPixel(1, 1));
+
+    // nearest neighbour takes the value at the center of every pixel
+    Image wide = new Resize(8, 2, ResampleType.NEAREST).apply(img);
+    assertEquals(new RGBPixel(40, 40, 40, 255), wide.getPixel(0, 1));
+    assertEquals(new RGBPixel(130, 130, 130, 255), wide.getPixel(1, 3));
+
+    // flat areas keep their value with every filter, sharp filters stay in range
+    Image flat = createGenericImageWithPixel(5, 7, new RGBPixel(40, 80, 120, 255), 255);
+    for (ResampleType type : ResampleType.values()) {
+      Image resized = new Resize(11, 3, type).apply(flat);
+      assertEquals(11, resized.getWidth());
+      assertEquals(3, resized.getHeight());
+      assertEquals(new RGBPixel(40, 80, 120, 255), resized.getPixel(2, 10));
+      Image larger = new Resize(9, 7, type).apply(img);
+      assertEquals(0, larger.getPixel(0, 0).getRed(), type == ResampleType.NEAREST ? 0 : 10);
+      assertEquals(150, larger.getPixel(6, 8).getRed(), type == ResampleType.NEAREST ? 0 : 10);
+    }
+    // enlarging and shrinking a row give the values of the filters, computed by hand
+    Plane row = new Plane(new int[]{12, 50, 200, 40}, 4, 1);
+    Image line = new PlanarImage(row, row, row, null, 255, "ppm");
+    int[][][] expected = {
+        {{12, 26, 47, 125, 189, 97, 40}, {23, 125, 88}},
+        {{9, 18, 44, 137, 197, 94, 27}, {13, 132, 88}},
+        {{13, 10, 40, 153, 195, 98, 16}, {4, 137, 93}}};
+    ResampleType[] types = {ResampleType.BILINEAR, ResampleType.BICUBIC, ResampleType.LANCZOS};
+    for (int t = 0; t < types.length; t++) {
+      for (int[] values : expected[t]) {
+        Image resized = new Resize(values.length, 1, types[t]).apply(line);
+        for (int j = 0; j < values.length; j++) {
+          assertEquals(types[t] + " " + j, values[j], resized.getPixel(0, j).getRed());
+        }
+      }
+    }
+    assertSame(img, new Resize(4, 4, ResampleType.LANCZOS).apply(img));
+    assertThrows(IllegalArgumentException.class, () -> new Resize(0, 4, ResampleType.BICUBIC));
+    assertThrows(IllegalArgumentException.class, () -> new Resize(4, 4, null));
+  }
+
+  /**
+   * This method tests quarter turns and affine transforms.
+   */
+  @Test
+  public void rotateAndAffine() {
+    Plane plane = new Plane(new int[]{1, 2, 3, 4, 5, 6}, 3, 2);
+    Image img = new PlanarImage(plane, plane, plane, plane, 255, "png");
+
+    // a quarter turn clockwise moves the bottom left pixel to the top left
+    Image right = new Rotate(90).apply(img);
+    assertEquals(2, right.getWidth());
+    assertEquals(3, right.getHeight());
+    assertEquals(4, right.getPixel(0, 0).getRed());
+    assertEquals(1, right.getPixel(0, 1).getRed());
+    assertEquals(6, right.getPixel(2, 0).getRed());
+    assertEquals(6, new Rotate(180).apply(img).getPixel(0, 0).getRed());
+    assertEquals(3, new Rotate(-90).apply(img).getPixel(0, 0).getRed());
+    assertEquals(img, new Rotate(90).apply(new Rotate(270).apply(img)));
+    assertSame(img, new Rotate(360).apply(img));
+    assertThrows(IllegalArgumentException.class, () -> new Rotate(45));
+
+    // an exact rotation by 90 degrees through the affine macro gives the same image
+    Image turned = Affine.rotation(90, 3, 2).apply(img);
+    assertEquals(right, turned);
+
+    // angles a rounding error away from a quarter turn keep its size
+    for (double degrees : new double[]{90.0000001, 89.9999999, 270.0000001, 180.0000001}) {
+      Image almost = Affine.rotation(degrees, 3, 2).apply(img);
+      int quarter = (int) Math.round(degrees / 90) % 2;
+      assertEquals(quarter == 1 ? 2 : 3, almost.getWidth());
+      assertEquals(quarter == 1 ? 3 : 2, almost.getHeight());
+    }
+    assertEquals(right, Affine.rotation(90.0000001, 3, 2).apply(img));
+    Image rotated = Affine.rotation(30, 3, 2).apply(img);
+    assertEquals(4, rotated.getWidth());
+    assertEquals(4, rotated.getHeight());
+
+    // a translation moves the pixels, uncovered pixels are transparent
+    Image moved = new Affine(new double[][]{{1, 0, 1}, {0, 1, 0}}, 3, 2).apply(img);
+    assertEquals(new PNGPixel(0, 0, 0, 0, 255), moved.getPixel(0, 0));
+    assertEquals(1, moved.getPixel(0, 1).getRed());
+    assertEquals(5, moved.getPixel(1, 2).getRed());
+    assertThrows(IllegalArgumentException.class,
+        () -> new Affine(new double[][]{{1, 2, 0}, {2, 4, 0}}, 3, 2));
+    assertThrows(IllegalArgumentException.class,
+        () -> new Affine(new double[][]{{1, 0}, {0, 1}}, 3, 2));
+  }
 }
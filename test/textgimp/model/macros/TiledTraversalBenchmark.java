@@ -0,0 +1,180 @@
+package textgimp.model.macros;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import textgimp.model.betterimage.Image;
+import textgimp.model.betterimage.PlanarImage;
+import textgimp.model.betterimage.Plane;
+import textgimp.model.macros.imagetransform.FilterPresetManager;
+import textgimp.model.macros.imagetransform.FilterType;
+import textgimp.model.macros.imagetransform.Rotate;
+
+/**
+ * Benchmark comparing row by row and tiled traversals of a plane much larger than the caches, for
+ * a transpose and for a 5 x 5 kernel. Run the main method, it prints the average time per value of
+ * each traversal after a warm-up, followed by the time of the macros that use tiles.
+ */
+public class TiledTraversalBenchmark {
+
+  private static final int SIDE = 4096;
+  private static final int KERNEL = 5;
+  private static final int ROUNDS = 5;
+
+  /**
+   * Run the benchmark.
+   *
+   * @param args ignored.
+   */
+  public static void main(String[] args) {
+    Random random = new Random(0);
+    int[] values = new int[SIDE * SIDE];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(256);
+    }
+    Plane plane = new Plane(values, SIDE, SIDE);
+    Traversal traversal = new Traversal();
+
+    report("rows transpose", () -> traversal.transposeRows(plane));
+    report("tiled transpose", () -> traversal.transposeTiles(plane));
+    report("rows kernel", () -> traversal.kernelRows(plane));
+    report("tiled kernel", () -> traversal.kernelTiles(plane));
+
+    // the macros themselves, on an image of three planes
+    Image image = new PlanarImage(plane, plane, plane, null, 255, "ppm");
+    Macro rotate = new Rotate(90);
+    Macro blur = new FilterPresetManager().getFilter(FilterType.BLUR);
+    report("rotate macro", () -> PlanarImage.of(rotate.apply(image)).getRed());
+    report("blur macro", () -> PlanarImage.of(blur.apply(image)).getRed());
+    report("transpose macro", () -> PlanarImage.of(traversal.apply(image)).getRed());
+  }
+
+  /**
+   * Time one traversal and print the average time per value of the fastest round.
+   *
+   * @param name name of the traversal being measured.
+   * @param run  runs the traversal once and returns the plane it created.
+   */
+  private static void report(String name, Supplier<Plane> run) {
+    long best = Long.MAX_VALUE;
+    long digest = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      Plane result = run.get();
+      best = Math.min(best, System.nanoTime() - start);
+      digest ^= result.getDigest();
+    }
+    System.out.printf("%-16s %6.2f ns/value (digest %x)%n", name,
+        (double) best / ((long) SIDE * SIDE), digest);
+  }
+
+  /**
+   * A macro transposing images one tile at a time, along with the other traversals being
+   * compared. All of them run through the band and tile iterations of the macros.
+   */
+  private static final class Traversal extends AbstractMacro {
+
+    @Override
+    public Image apply(Image sourceImage) throws IllegalArgumentException {
+      // validate the image
+      this.validateImage(sourceImage);
+
+      // transpose every plane, including transparency
+      return this.mapPlanes(PlanarImage.of(sourceImage), this::transposeTiles, true);
+    }
+
+    /**
+     * Transpose a plane one row at a time, every value of a row is written to another row.
+     *
+     * @param plane the plane to transpose.
+     * @return the transposed plane.
+     */
+    Plane transposeRows(Plane plane) {
+      int width = plane.getWidth();
+      int height = plane.getHeight();
+      int[] values = new int[width * height];
+      this.forEachRow(width, height, row -> {
+        for (int j = 0; j < width; j++) {
+          values[j * height + row] = plane.get(row, j);
+        }
+      });
+      return new Plane(values, height, width);
+    }
+
+    /**
+     * Transpose a plane one tile at a time.
+     *
+     * @param plane the plane to transpose.
+     * @return the transposed plane.
+     */
+    Plane transposeTiles(Plane plane) {
+      int width = plane.getWidth();
+      int height = plane.getHeight();
+      int[] values = new int[width * height];
+      this.forEachTile(width, height, tile -> {
+        for (int i = tile.getY(); i < tile.getY() + tile.getHeight(); i++) {
+          for (int j = tile.getX(); j < tile.getX() + tile.getWidth(); j++) {
+            values[j * height + i] = plane.get(i, j);
+          }
+        }
+      });
+      return new Plane(values, height, width);
+    }
+
+    /**
+     * Sum the values around every value one row at a time, reading the plane directly.
+     *
+     * @param plane the plane to read.
+     * @return the plane of the averages.
+     */
+    Plane kernelRows(Plane plane) {
+      int width = plane.getWidth();
+      int height = plane.getHeight();
+      int halo = KERNEL / 2;
+      int[] values = new int[width * height];
+      this.forEachRow(width, height, row -> {
+        for (int col = 0; col < width; col++) {
+          int sum = 0;
+          for (int i = Math.max(0, row - halo); i <= Math.min(height - 1, row + halo); i++) {
+            for (int j = Math.max(0, col - halo); j <= Math.min(width - 1, col + halo); j++) {
+              sum += plane.get(i, j);
+            }
+          }
+          values[row * width + col] = sum / (KERNEL * KERNEL);
+        }
+      });
+      return new Plane(values, width, height);
+    }
+
+    /**
+     * Sum the values around every value one tile at a time, reading a copy of the tile and its
+     * halo.
+     *
+     * @param plane the plane to read.
+     * @return the plane of the averages.
+     */
+    Plane kernelTiles(Plane plane) {
+      int width = plane.getWidth();
+      int height = plane.getHeight();
+      int halo = KERNEL / 2;
+      int[] values = new int[width * height];
+      this.forEachTile(width, height, tile -> {
+        int[] window = readTile(plane, tile, halo);
+        int stride = tile.getWidth() + 2 * halo;
+        for (int row = 0; row < tile.getHeight(); row++) {
+          int start = (tile.getY() + row) * width + tile.getX();
+          for (int col = 0; col < tile.getWidth(); col++) {
+            int sum = 0;
+            for (int i = 0; i < KERNEL; i++) {
+              int offset = (row + i) * stride + col;
+              for (int j = 0; j < KERNEL; j++) {
+                sum += window[offset + j];
+              }
+            }
+            values[start + col] = sum / (KERNEL * KERNEL);
+          }
+        }
+      });
+      return new Plane(values, width, height);
+    }
+  }
+}